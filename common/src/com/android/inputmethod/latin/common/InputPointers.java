@@ -18,18 +18,40 @@ package com.android.inputmethod.latin.common;
 
 import com.android.inputmethod.annotations.UsedForTesting;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
 import javax.annotation.Nonnull;
 
 // TODO: This class is not thread-safe.
 public final class InputPointers {
     private static final boolean DEBUG_TIME = false;
 
+    // The direct buffer consists of the x-coordinate, y-coordinate, pointer id and time planes in
+    // this order. Each plane has the same number of slots, see {@link #getDirectBuffer(int)}.
+    public static final int DIRECT_BUFFER_PLANE_COUNT = 4;
+    // The direct buffer grows by this number of pointers per plane.
+    private static final int DIRECT_BUFFER_CHUNK_SIZE = 128;
+
     private final int mDefaultCapacity;
     private final ResizableIntArray mXCoordinates;
     private final ResizableIntArray mYCoordinates;
     private final ResizableIntArray mPointerIds;
     private final ResizableIntArray mTimes;
 
+    // Identifies the pointers stored in this instance. It is replaced whenever existing pointers
+    // may change, and shared with the instance whose arrays {@link #set(InputPointers)} shares, so
+    // that pointers that have already been transferred to the direct buffer are not transferred
+    // again as long as pointers are only appended.
+    @Nonnull
+    private Object mContentToken = new Object();
+    private boolean mIsContentTokenShared;
+    private IntBuffer mDirectBuffer;
+    private int mDirectBufferStride;
+    private Object mDirectBufferContentToken;
+    private int mDirectBufferPointerSize;
+
     public InputPointers(final int defaultCapacity) {
         mDefaultCapacity = defaultCapacity;
         mXCoordinates = new ResizableIntArray(defaultCapacity);
@@ -53,8 +75,26 @@ public final class InputPointers {
         mTimes.fill(lastTime, fromIndex, fillLength);
     }
 
+    private void onContentChanged() {
+        mContentToken = new Object();
+        mIsContentTokenShared = false;
+    }
+
+    private void onContentAppended() {
+        if (mIsContentTokenShared) {
+            // The arrays may still be shared with the source of {@link #set(InputPointers)}, which
+            // may append different pointers at the same indices.
+            onContentChanged();
+        }
+    }
+
     public void addPointerAt(final int index, final int x, final int y, final int pointerId,
             final int time) {
+        if (index < getPointerSize()) {
+            onContentChanged();
+        } else {
+            onContentAppended();
+        }
         mXCoordinates.addAt(index, x);
         mYCoordinates.addAt(index, y);
         mPointerIds.addAt(index, pointerId);
@@ -66,6 +106,7 @@ public final class InputPointers {
 
     @UsedForTesting
     public void addPointer(final int x, final int y, final int pointerId, final int time) {
+        onContentAppended();
         mXCoordinates.add(x);
         mYCoordinates.add(y);
         mPointerIds.add(pointerId);
@@ -77,6 +118,8 @@ public final class InputPointers {
         mYCoordinates.set(ip.mYCoordinates);
         mPointerIds.set(ip.mPointerIds);
         mTimes.set(ip.mTimes);
+        mContentToken = ip.mContentToken;
+        mIsContentTokenShared = true;
     }
 
     public void copy(@Nonnull final InputPointers ip) {
@@ -84,6 +127,7 @@ public final class InputPointers {
         mYCoordinates.copy(ip.mYCoordinates);
         mPointerIds.copy(ip.mPointerIds);
         mTimes.copy(ip.mTimes);
+        onContentChanged();
     }
 
     /**
@@ -102,6 +146,7 @@ public final class InputPointers {
         if (length == 0) {
             return;
         }
+        onContentAppended();
         mXCoordinates.append(xCoordinates, startPos, length);
         mYCoordinates.append(yCoordinates, startPos, length);
         mPointerIds.fill(pointerId, mPointerIds.getLength(), length);
@@ -118,6 +163,7 @@ public final class InputPointers {
         mYCoordinates.shift(elementCount);
         mPointerIds.shift(elementCount);
         mTimes.shift(elementCount);
+        onContentChanged();
     }
 
     public void reset() {
@@ -126,6 +172,7 @@ public final class InputPointers {
         mYCoordinates.reset(defaultCapacity);
         mPointerIds.reset(defaultCapacity);
         mTimes.reset(defaultCapacity);
+        onContentChanged();
     }
 
     public int getPointerSize() {
@@ -158,6 +205,57 @@ public final class InputPointers {
         return mTimes.getPrimitiveArray();
     }
 
+    /**
+     * Gets a direct buffer in the native byte order that holds all pointers, to be handed to the
+     * native code without copying. The buffer consists of {@link #DIRECT_BUFFER_PLANE_COUNT}
+     * planes, the x-coordinates, the y-coordinates, the pointer ids and the times in this order,
+     * and each plane has {@code capacity / DIRECT_BUFFER_PLANE_COUNT} slots.
+     *
+     * Only the pointers that have been appended since the last call are transferred to the buffer,
+     * so updating the buffer for an incremental batch input costs only the newly added points.
+     * The returned buffer is owned by this instance and is only valid until the next call.
+     *
+     * @param minimumSize the minimum number of slots of each plane.
+     * @return the direct buffer that holds all pointers.
+     */
+    @Nonnull
+    public IntBuffer getDirectBuffer(final int minimumSize) {
+        final int pointerSize = getPointerSize();
+        final int requiredStride = Math.max(minimumSize, pointerSize);
+        if (mDirectBuffer == null || mDirectBufferStride < requiredStride) {
+            final int chunkCount = Math.max(1, (requiredStride + DIRECT_BUFFER_CHUNK_SIZE - 1)
+                    / DIRECT_BUFFER_CHUNK_SIZE);
+            mDirectBufferStride = chunkCount * DIRECT_BUFFER_CHUNK_SIZE;
+            mDirectBuffer = ByteBuffer.allocateDirect(mDirectBufferStride
+                    * DIRECT_BUFFER_PLANE_COUNT * (Integer.SIZE / Byte.SIZE))
+                    .order(ByteOrder.nativeOrder()).asIntBuffer();
+            mDirectBufferContentToken = null;
+        }
+        if (mDirectBufferContentToken != mContentToken) {
+            mDirectBufferContentToken = mContentToken;
+            mDirectBufferPointerSize = 0;
+        }
+        final int fromIndex = Math.min(mDirectBufferPointerSize, pointerSize);
+        final int length = pointerSize - fromIndex;
+        if (length > 0) {
+            final IntBuffer buffer = mDirectBuffer;
+            final int stride = mDirectBufferStride;
+            putToDirectBuffer(buffer, 0, mXCoordinates, fromIndex, length);
+            putToDirectBuffer(buffer, stride, mYCoordinates, fromIndex, length);
+            putToDirectBuffer(buffer, stride * 2, mPointerIds, fromIndex, length);
+            putToDirectBuffer(buffer, stride * 3, mTimes, fromIndex, length);
+            buffer.position(0);
+        }
+        mDirectBufferPointerSize = pointerSize;
+        return mDirectBuffer;
+    }
+
+    private static void putToDirectBuffer(@Nonnull final IntBuffer buffer, final int planeOffset,
+            @Nonnull final ResizableIntArray src, final int fromIndex, final int length) {
+        buffer.position(planeOffset + fromIndex);
+        buffer.put(src.getPrimitiveArray(), fromIndex, length);
+    }
+
     @Override
     public String toString() {
         return "size=" + getPointerSize() + " id=" + mPointerIds + " time=" + mTimes
@@ -88,6 +88,20 @@ public final class ActionBatch {
         void execute(final Context context);
     }
 
+    /**
+     * An action that only changes the metadata database of its client.
+     *
+     * Consecutive database actions for the same client are executed in a single transaction.
+     * Actions that read the database from other threads, like installing a word list through
+     * the content provider, must not be database actions or they would wait for the transaction.
+     */
+    public interface DatabaseAction extends Action {
+        /**
+         * @return the id of the client whose database this action changes.
+         */
+        String getClientId();
+    }
+
     /**
      * An action that starts downloading an available word list.
      */
@@ -202,7 +216,7 @@ public final class ActionBatch {
     /**
      * An action that enables an existing word list.
      */
-    public static final class EnableAction implements Action {
+    public static final class EnableAction implements DatabaseAction {
         static final String TAG = "DictionaryProvider:" + EnableAction.class.getSimpleName();
         private final String mClientId;
         // The state to upgrade from. May not be null.
@@ -214,6 +228,11 @@ public final class ActionBatch {
             mWordList = wordList;
         }
 
+        @Override
+        public String getClientId() {
+            return mClientId;
+        }
+
         @Override
         public void execute(final Context context) {
             if (null == mWordList) {
@@ -238,7 +257,7 @@ public final class ActionBatch {
     /**
      * An action that disables a word list.
      */
-    public static final class DisableAction implements Action {
+    public static final class DisableAction implements DatabaseAction {
         static final String TAG = "DictionaryProvider:" + DisableAction.class.getSimpleName();
         private final String mClientId;
         // The word list to disable. May not be null.
@@ -249,6 +268,11 @@ public final class ActionBatch {
             mWordList = wordlist;
         }
 
+        @Override
+        public String getClientId() {
+            return mClientId;
+        }
+
         @Override
         public void execute(final Context context) {
             if (null == mWordList) { // This should never happen
@@ -280,7 +304,7 @@ public final class ActionBatch {
     /**
      * An action that makes a word list available.
      */
-    public static final class MakeAvailableAction implements Action {
+    public static final class MakeAvailableAction implements DatabaseAction {
         static final String TAG = "DictionaryProvider:" + MakeAvailableAction.class.getSimpleName();
         private final String mClientId;
         // The word list to make available. May not be null.
@@ -291,6 +315,11 @@ public final class ActionBatch {
             mWordList = wordlist;
         }
 
+        @Override
+        public String getClientId() {
+            return mClientId;
+        }
+
         @Override
         public void execute(final Context context) {
             if (null == mWordList) { // This should never happen
@@ -329,7 +358,7 @@ public final class ActionBatch {
      * It also explicitly sets the filename to the empty string, so that we don't try to open
      * it on our side.
      */
-    public static final class MarkPreInstalledAction implements Action {
+    public static final class MarkPreInstalledAction implements DatabaseAction {
         static final String TAG = "DictionaryProvider:"
                 + MarkPreInstalledAction.class.getSimpleName();
         private final String mClientId;
@@ -341,6 +370,11 @@ public final class ActionBatch {
             mWordList = wordlist;
         }
 
+        @Override
+        public String getClientId() {
+            return mClientId;
+        }
+
         @Override
         public void execute(final Context context) {
             if (null == mWordList) { // This should never happen
@@ -373,7 +407,7 @@ public final class ActionBatch {
     /**
      * An action that updates information about a word list - description, locale etc
      */
-    public static final class UpdateDataAction implements Action {
+    public static final class UpdateDataAction implements DatabaseAction {
         static final String TAG = "DictionaryProvider:" + UpdateDataAction.class.getSimpleName();
         private final String mClientId;
         final WordListMetadata mWordList;
@@ -383,6 +417,11 @@ public final class ActionBatch {
             mWordList = wordlist;
         }
 
+        @Override
+        public String getClientId() {
+            return mClientId;
+        }
+
         @Override
         public void execute(final Context context) {
             if (null == mWordList) { // This should never happen
@@ -423,7 +462,7 @@ public final class ActionBatch {
      * If the word list has not been installed, it's possible to delete its associated metadata.
      * Otherwise, the settings are retained so that the user can still administrate it.
      */
-    public static final class ForgetAction implements Action {
+    public static final class ForgetAction implements DatabaseAction {
         static final String TAG = "DictionaryProvider:" + ForgetAction.class.getSimpleName();
         private final String mClientId;
         // The word list to remove. May not be null.
@@ -437,6 +476,11 @@ public final class ActionBatch {
             mHasNewerVersion = hasNewerVersion;
         }
 
+        @Override
+        public String getClientId() {
+            return mClientId;
+        }
+
         @Override
         public void execute(final Context context) {
             if (null == mWordList) { // This should never happen
@@ -497,7 +541,7 @@ public final class ActionBatch {
      * dictionary. This way, there is no need for the user to make a distinction between
      * dictionaries installed by default and add-on dictionaries.
      */
-    public static final class StartDeleteAction implements Action {
+    public static final class StartDeleteAction implements DatabaseAction {
         static final String TAG = "DictionaryProvider:" + StartDeleteAction.class.getSimpleName();
         private final String mClientId;
         // The word list to delete. May not be null.
@@ -508,6 +552,11 @@ public final class ActionBatch {
             mWordList = wordlist;
         }
 
+        @Override
+        public String getClientId() {
+            return mClientId;
+        }
+
         @Override
         public void execute(final Context context) {
             if (null == mWordList) { // This should never happen
@@ -536,7 +585,7 @@ public final class ActionBatch {
      * This will restore the word list as available if it still is, or remove the entry if
      * it is not any more.
      */
-    public static final class FinishDeleteAction implements Action {
+    public static final class FinishDeleteAction implements DatabaseAction {
         static final String TAG = "DictionaryProvider:" + FinishDeleteAction.class.getSimpleName();
         private final String mClientId;
         // The word list to delete. May not be null.
@@ -547,6 +596,11 @@ public final class ActionBatch {
             mWordList = wordlist;
         }
 
+        @Override
+        public String getClientId() {
+            return mClientId;
+        }
+
         @Override
         public void execute(final Context context) {
             if (null == mWordList) { // This should never happen
@@ -606,20 +660,50 @@ public final class ActionBatch {
     /**
      * Execute this batch.
      *
+     * Runs of database actions for the same client share a transaction, so that a large upgrade
+     * commits once instead of once per action.
+     *
      * @param context the context for getting resources, databases, system services.
      * @param reporter a Reporter to send errors to.
      */
     public void execute(final Context context, final ProblemReporter reporter) {
         DebugLogUtils.l("Executing a batch of actions");
         Queue<Action> remainingActions = mActions;
-        while (!remainingActions.isEmpty()) {
-            final Action a = remainingActions.poll();
-            try {
-                a.execute(context);
-            } catch (Exception e) {
-                if (null != reporter)
-                    reporter.report(e);
+        SQLiteDatabase transactionDb = null;
+        String transactionClientId = null;
+        try {
+            while (!remainingActions.isEmpty()) {
+                final Action a = remainingActions.poll();
+                final String clientId =
+                        a instanceof DatabaseAction ? ((DatabaseAction)a).getClientId() : null;
+                if (null != transactionDb && (null == clientId
+                        || !clientId.equals(transactionClientId))) {
+                    endTransaction(transactionDb);
+                    transactionDb = null;
+                }
+                if (null != clientId && null == transactionDb) {
+                    // A failing action is reported and skipped like outside of a transaction,
+                    // so the transaction always commits the other actions.
+                    transactionDb = MetadataDbHelper.getDb(context, clientId);
+                    transactionClientId = clientId;
+                    transactionDb.beginTransactionNonExclusive();
+                }
+                try {
+                    a.execute(context);
+                } catch (Exception e) {
+                    if (null != reporter)
+                        reporter.report(e);
+                }
+            }
+        } finally {
+            if (null != transactionDb) {
+                endTransaction(transactionDb);
             }
         }
     }
+
+    private static void endTransaction(final SQLiteDatabase db) {
+        db.setTransactionSuccessful();
+        db.endTransaction();
+    }
 }
@@ -25,10 +25,8 @@ public final class MD5Calculator {
 
     public static String checksum(final InputStream in) throws IOException {
         // This code from the Android documentation for MessageDigest. Nearly verbatim.
-        MessageDigest digester;
-        try {
-            digester = MessageDigest.getInstance("MD5");
-        } catch (java.security.NoSuchAlgorithmException e) {
+        final MessageDigest digester = getDigester();
+        if (null == digester) {
             return null; // Platform does not support MD5 : can't check, so return null
         }
         final byte[] bytes = new byte[8192];
@@ -36,7 +34,26 @@ public final class MD5Calculator {
         while ((byteCount = in.read(bytes)) > 0) {
             digester.update(bytes, 0, byteCount);
         }
-        final byte[] digest = digester.digest();
+        return toChecksumString(digester.digest());
+    }
+
+    /**
+     * Returns a new MD5 digester, for example to compute a checksum while the data is being
+     * written with a {@link java.security.DigestOutputStream}.
+     * @return the digester, or null if the platform does not support MD5.
+     */
+    public static MessageDigest getDigester() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (java.security.NoSuchAlgorithmException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the checksum string of a digest, in the format of {@link #checksum(InputStream)}.
+     */
+    public static String toChecksumString(final byte[] digest) {
         final StringBuilder s = new StringBuilder();
         for (int i = 0; i < digest.length; ++i) {
             s.append(String.format("%1$02x", digest[i]));
@@ -22,6 +22,7 @@ import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteException;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
 import android.text.TextUtils;
 import android.util.Log;
 
@@ -135,6 +136,25 @@ public class MetadataDbHelper extends SQLiteOpenHelper {
             + RAW_CHECKSUM_COLUMN + " TEXT,"
             + RETRY_COUNT_COLUMN + " INTEGER, "
             + "PRIMARY KEY (" + WORDLISTID_COLUMN + "," + VERSION_COLUMN + "));";
+    // Secondary indices for the queries that don't filter on the primary key. Downloads are
+    // looked up by their DownloadManager id, the settings list word lists by locale and the
+    // provider lists them by status.
+    private static final String[] METADATA_TABLE_INDEX_COLUMNS = {
+            PENDINGID_COLUMN, LOCALE_COLUMN, STATUS_COLUMN };
+    // Statements to update the status of a word list without reading the whole row first.
+    // The SQL is constant so that the connection reuses its prepared statements.
+    private static final String UPDATE_STATUS_STATEMENT =
+            "UPDATE " + METADATA_TABLE_NAME + " SET " + STATUS_COLUMN + " = ?"
+            + " WHERE " + WORDLISTID_COLUMN + " = ? AND " + VERSION_COLUMN + " = ?";
+    private static final String UPDATE_STATUS_AND_PENDINGID_STATEMENT =
+            "UPDATE " + METADATA_TABLE_NAME + " SET " + STATUS_COLUMN + " = ?, "
+            + PENDINGID_COLUMN + " = ?"
+            + " WHERE " + WORDLISTID_COLUMN + " = ? AND " + VERSION_COLUMN + " = ?";
+    private static final String UPDATE_STATUS_AND_RETRY_COUNT_STATEMENT =
+            "UPDATE " + METADATA_TABLE_NAME + " SET " + STATUS_COLUMN + " = ?, "
+            + RETRY_COUNT_COLUMN + " = " + RETRY_COUNT_COLUMN + " - 1"
+            + " WHERE " + WORDLISTID_COLUMN + " = ? AND " + VERSION_COLUMN + " = ?"
+            + " AND " + RETRY_COUNT_COLUMN + " > 1";
     private static final String METADATA_CREATE_CLIENT_TABLE =
             "CREATE TABLE IF NOT EXISTS " + CLIENT_TABLE_NAME + " ("
             + CLIENT_CLIENT_ID_COLUMN + " TEXT, "
@@ -226,9 +246,35 @@ public class MetadataDbHelper extends SQLiteOpenHelper {
     @Override
     public void onCreate(final SQLiteDatabase db) {
         db.execSQL(METADATA_TABLE_CREATE);
+        createIndicesUnlessPresent(db);
         createClientTable(db);
     }
 
+    /**
+     * Make sure the indices exist every time the database is opened.
+     *
+     * The indices were introduced without changing the database version, because upgrading
+     * drops the client table. Creating them is a no-op when they are already there.
+     *
+     * @see SQLiteOpenHelper#onOpen(SQLiteDatabase)
+     *
+     * @param db the database that has been opened.
+     */
+    @Override
+    public void onOpen(final SQLiteDatabase db) {
+        super.onOpen(db);
+        if (!db.isReadOnly()) {
+            createIndicesUnlessPresent(db);
+        }
+    }
+
+    private static void createIndicesUnlessPresent(final SQLiteDatabase db) {
+        for (final String column : METADATA_TABLE_INDEX_COLUMNS) {
+            db.execSQL("CREATE INDEX IF NOT EXISTS " + METADATA_TABLE_NAME + "_" + column
+                    + " ON " + METADATA_TABLE_NAME + " (" + column + ");");
+        }
+    }
+
     private static void addRawChecksumColumnUnlessPresent(final SQLiteDatabase db) {
         try {
             db.execSQL("SELECT " + RAW_CHECKSUM_COLUMN + " FROM "
@@ -843,6 +889,7 @@ public class MetadataDbHelper extends SQLiteOpenHelper {
         final SQLiteDatabase db = getDb(context, clientId);
         db.execSQL("DROP TABLE IF EXISTS " + METADATA_TABLE_NAME);
         db.execSQL(METADATA_TABLE_CREATE);
+        createIndicesUnlessPresent(db);
         // Remove this client's entry in the clients table
         final SQLiteDatabase defaultDb = getDb(context, "");
         if (0 == defaultDb.delete(CLIENT_TABLE_NAME,
@@ -1056,14 +1103,24 @@ public class MetadataDbHelper extends SQLiteOpenHelper {
      */
     private static void markEntryAs(final SQLiteDatabase db, final String id,
             final int version, final int status, final long downloadId) {
-        final ContentValues values = MetadataDbHelper.getContentValuesByWordListId(db, id, version);
-        values.put(STATUS_COLUMN, status);
-        if (NOT_A_DOWNLOAD_ID != downloadId) {
-            values.put(MetadataDbHelper.PENDINGID_COLUMN, downloadId);
+        final boolean hasDownloadId = NOT_A_DOWNLOAD_ID != downloadId;
+        final SQLiteStatement statement = db.compileStatement(hasDownloadId
+                ? UPDATE_STATUS_AND_PENDINGID_STATEMENT : UPDATE_STATUS_STATEMENT);
+        try {
+            int index = 1;
+            statement.bindLong(index++, status);
+            if (hasDownloadId) {
+                statement.bindLong(index++, downloadId);
+            }
+            statement.bindString(index++, id);
+            statement.bindLong(index, version);
+            if (0 == statement.executeUpdateDelete()) {
+                Log.e(TAG, "Trying to set the status of a non-existing word list " + id
+                        + " version " + version + " to " + status);
+            }
+        } finally {
+            statement.close();
         }
-        db.update(METADATA_TABLE_NAME, values,
-                WORDLISTID_COLUMN + " = ? AND " + VERSION_COLUMN + " = ?",
-                new String[] { id, Integer.toString(version) });
     }
 
     /**
@@ -1140,16 +1197,16 @@ public class MetadataDbHelper extends SQLiteOpenHelper {
      */
     public static boolean maybeMarkEntryAsRetrying(final SQLiteDatabase db, final String id,
             final int version) {
-        final ContentValues values = MetadataDbHelper.getContentValuesByWordListId(db, id, version);
-        int retryCount = values.getAsInteger(MetadataDbHelper.RETRY_COUNT_COLUMN);
-        if (retryCount > 1) {
-            values.put(STATUS_COLUMN, STATUS_RETRYING);
-            values.put(RETRY_COUNT_COLUMN, retryCount - 1);
-            db.update(METADATA_TABLE_NAME, values,
-                    WORDLISTID_COLUMN + " = ? AND " + VERSION_COLUMN + " = ?",
-                    new String[] { id, Integer.toString(version) });
-            return true;
+        // The retry count is checked and decremented by the update itself.
+        final SQLiteStatement statement =
+                db.compileStatement(UPDATE_STATUS_AND_RETRY_COUNT_STATEMENT);
+        try {
+            statement.bindLong(1, STATUS_RETRYING);
+            statement.bindString(2, id);
+            statement.bindLong(3, version);
+            return statement.executeUpdateDelete() > 0;
+        } finally {
+            statement.close();
         }
-        return false;
     }
 }
@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.inputmethod.dictionarypack;
+
+import android.text.TextUtils;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+/**
+ * Compares two sets of metadata, matching their word lists on the id.
+ *
+ * Both sets are sorted by id and merged in a single pass, and only the word lists that differ
+ * are reported to the listener. Word lists that have the same data in both sets are skipped.
+ */
+final class MetadataDiff {
+    private static final String TAG = MetadataDiff.class.getSimpleName();
+
+    /**
+     * The changes between the two sets, in the order of the ids of the word lists.
+     */
+    interface Listener {
+        /**
+         * A word list that was not known appeared.
+         */
+        void onWordListAdded(WordListMetadata newInfo);
+
+        /**
+         * A known word list is not in the new metadata any more.
+         */
+        void onWordListRemoved(WordListMetadata currentInfo);
+
+        /**
+         * The data of the same version of a known word list changed.
+         */
+        void onWordListChanged(WordListMetadata currentInfo, WordListMetadata newInfo);
+
+        /**
+         * A newer version of a known word list is available.
+         */
+        void onWordListUpgraded(WordListMetadata currentInfo, WordListMetadata newInfo);
+    }
+
+    private static final Comparator<WordListMetadata> ID_COMPARATOR =
+            new Comparator<WordListMetadata>() {
+                @Override
+                public int compare(final WordListMetadata lhs, final WordListMetadata rhs) {
+                    return lhs.mId.compareTo(rhs.mId);
+                }
+            };
+
+    private MetadataDiff() {
+        // This utility class is not publicly instantiable.
+    }
+
+    /**
+     * Gets the word list with the highest supported format version for each id, sorted by id.
+     *
+     * Like {@link MetadataHandler#findWordListById}, this picks the first of the word lists that
+     * have the same highest format version, and it ignores the word lists in a format that is
+     * not supported.
+     */
+    private static ArrayList<WordListMetadata> getSupportedWordListsSortedById(
+            @Nullable final List<WordListMetadata> metadata, final int maximumFormatVersion) {
+        final ArrayList<WordListMetadata> result = new ArrayList<>();
+        if (null == metadata) {
+            return result;
+        }
+        final ArrayList<WordListMetadata> sortedMetadata = new ArrayList<>(metadata);
+        // The sort is stable, so the word lists with the same id keep their order.
+        Collections.sort(sortedMetadata, ID_COMPARATOR);
+        final int count = sortedMetadata.size();
+        int start = 0;
+        while (start < count) {
+            final String id = sortedMetadata.get(start).mId;
+            WordListMetadata bestWordList = null;
+            int end = start;
+            for (; end < count && id.equals(sortedMetadata.get(end).mId); end++) {
+                final WordListMetadata wordList = sortedMetadata.get(end);
+                if (wordList.mFormatVersion <= maximumFormatVersion && (null == bestWordList
+                        || wordList.mFormatVersion > bestWordList.mFormatVersion)) {
+                    bestWordList = wordList;
+                }
+            }
+            if (null != bestWordList) {
+                result.add(bestWordList);
+            } else {
+                // We may come here if there is a new word list that we can't handle.
+                Log.i(TAG, "Can't handle word list with id '" + id + "' because it has format"
+                        + " version " + sortedMetadata.get(start).mFormatVersion + " and the"
+                        + " maximum version we can handle is " + maximumFormatVersion);
+            }
+            start = end;
+        }
+        return result;
+    }
+
+    /**
+     * Compares two sets of metadata.
+     *
+     * When the same version of a word list keeps its remote file name, the new metadata
+     * inherits the retry count of the current one before they are compared.
+     *
+     * @param from the metadata to upgrade from.
+     * @param to the metadata to upgrade to.
+     * @param maximumFormatVersion the highest format version of the word lists to consider.
+     * @param listener the listener to report the changes to.
+     * @return the number of word lists that did not change.
+     */
+    static int compare(@Nullable final List<WordListMetadata> from,
+            @Nullable final List<WordListMetadata> to, final int maximumFormatVersion,
+            final Listener listener) {
+        final ArrayList<WordListMetadata> fromList =
+                getSupportedWordListsSortedById(from, maximumFormatVersion);
+        final ArrayList<WordListMetadata> toList =
+                getSupportedWordListsSortedById(to, maximumFormatVersion);
+        final int fromCount = fromList.size();
+        final int toCount = toList.size();
+        int unchangedCount = 0;
+        int fromIndex = 0;
+        int toIndex = 0;
+        while (fromIndex < fromCount || toIndex < toCount) {
+            final WordListMetadata currentInfo =
+                    fromIndex < fromCount ? fromList.get(fromIndex) : null;
+            final WordListMetadata newInfo = toIndex < toCount ? toList.get(toIndex) : null;
+            final int order;
+            if (null == currentInfo) {
+                order = 1;
+            } else if (null == newInfo) {
+                order = -1;
+            } else {
+                order = ID_COMPARATOR.compare(currentInfo, newInfo);
+            }
+            if (order < 0) {
+                listener.onWordListRemoved(currentInfo);
+                fromIndex++;
+                continue;
+            }
+            if (order > 0) {
+                listener.onWordListAdded(newInfo);
+                toIndex++;
+                continue;
+            }
+            fromIndex++;
+            toIndex++;
+            if (newInfo.mVersion == currentInfo.mVersion) {
+                if (TextUtils.equals(newInfo.mRemoteFilename, currentInfo.mRemoteFilename)) {
+                    // If the dictionary url hasn't changed, we should preserve the retryCount.
+                    newInfo.mRetryCount = currentInfo.mRetryCount;
+                }
+                if (newInfo.hasSameDataAs(currentInfo)) {
+                    unchangedCount++;
+                } else {
+                    listener.onWordListChanged(currentInfo, newInfo);
+                }
+            } else if (newInfo.mVersion > currentInfo.mVersion) {
+                listener.onWordListUpgraded(currentInfo, newInfo);
+            } else {
+                // The server has an older version than ours: keep what we have.
+                unchangedCount++;
+            }
+        }
+        return unchangedCount;
+    }
+}
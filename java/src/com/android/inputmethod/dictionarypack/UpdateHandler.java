@@ -57,7 +57,6 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Set;
 import java.util.TreeSet;
 
 import javax.annotation.Nullable;
@@ -735,7 +734,7 @@ public final class UpdateHandler {
      *
      * This method takes whole metadata sets directly and compares them, matching the wordlists in
      * each of them on the id. It creates an ActionBatch object that can be .execute()'d to perform
-     * the actual upgrade from `from' to `to'.
+     * the actual upgrade from `from' to `to'. Word lists that did not change get no action.
      *
      * @param context the context to open databases on.
      * @param clientId the id of the client.
@@ -749,41 +748,17 @@ public final class UpdateHandler {
         final ActionBatch actions = new ActionBatch();
         // Upgrade existing word lists
         DebugLogUtils.l("Comparing dictionaries");
-        final Set<String> wordListIds = new TreeSet<>();
-        // TODO: Can these be null?
-        final List<WordListMetadata> fromList = (from == null) ? new ArrayList<WordListMetadata>()
-                : from;
-        final List<WordListMetadata> toList = (to == null) ? new ArrayList<WordListMetadata>()
-                : to;
-        for (WordListMetadata wlData : fromList) wordListIds.add(wlData.mId);
-        for (WordListMetadata wlData : toList) wordListIds.add(wlData.mId);
-        for (String id : wordListIds) {
-            final WordListMetadata currentInfo = MetadataHandler.findWordListById(fromList, id);
-            final WordListMetadata metadataInfo = MetadataHandler.findWordListById(toList, id);
-            // TODO: Remove the following unnecessary check, since we are now doing the filtering
-            // inside findWordListById.
-            final WordListMetadata newInfo = null == metadataInfo
-                    || metadataInfo.mFormatVersion > MAXIMUM_SUPPORTED_FORMAT_VERSION
-                            ? null : metadataInfo;
-            DebugLogUtils.l("Considering updating ", id, "currentInfo =", currentInfo);
-
-            if (null == currentInfo && null == newInfo) {
-                // This may happen if a new word list appeared that we can't handle.
-                if (null == metadataInfo) {
-                    // What happened? Bug in Set<>?
-                    Log.e(TAG, "Got an id for a wordlist that is neither in from nor in to");
-                } else {
-                    // We may come here if there is a new word list that we can't handle.
-                    Log.i(TAG, "Can't handle word list with id '" + id + "' because it has format"
-                            + " version " + metadataInfo.mFormatVersion + " and the maximum version"
-                            + " we can handle is " + MAXIMUM_SUPPORTED_FORMAT_VERSION);
-                }
-                continue;
-            } else if (null == currentInfo) {
+        final int unchangedCount = MetadataDiff.compare(from, to,
+                MAXIMUM_SUPPORTED_FORMAT_VERSION, new MetadataDiff.Listener() {
+            @Override
+            public void onWordListAdded(final WordListMetadata newInfo) {
                 // This is the case where a new list that we did not know of popped on the server.
                 // Make it available.
                 actions.add(new ActionBatch.MakeAvailableAction(clientId, newInfo));
-            } else if (null == newInfo) {
+            }
+
+            @Override
+            public void onWordListRemoved(final WordListMetadata currentInfo) {
                 // This is the case where an old list we had is not in the server data any more.
                 // Pass false to ForgetAction: this may be installed and we still want to apply
                 // a forget-like action (remove the URL) if it is, so we want to turn off the
@@ -791,41 +766,39 @@ public final class UpdateHandler {
                 // as we want to leave the record as long as Android Keyboard has not deleted it ;
                 // the record will be removed when the file is actually deleted.
                 actions.add(new ActionBatch.ForgetAction(clientId, currentInfo, false));
-            } else {
+            }
+
+            @Override
+            public void onWordListChanged(final WordListMetadata currentInfo,
+                    final WordListMetadata newInfo) {
+                // If it's the same id/version, we update the DB with the new values.
+                actions.add(new ActionBatch.UpdateDataAction(clientId, newInfo));
+            }
+
+            @Override
+            public void onWordListUpgraded(final WordListMetadata currentInfo,
+                    final WordListMetadata newInfo) {
+                // If it's a new version, it's a different entry in the database. Make it
+                // available, and if it's installed, also start the download.
                 final SQLiteDatabase db = MetadataDbHelper.getDb(context, clientId);
-                if (newInfo.mVersion == currentInfo.mVersion) {
-                    if (TextUtils.equals(newInfo.mRemoteFilename, currentInfo.mRemoteFilename)) {
-                        // If the dictionary url hasn't changed, we should preserve the retryCount.
-                        newInfo.mRetryCount = currentInfo.mRetryCount;
-                    }
-                    // If it's the same id/version, we update the DB with the new values.
-                    // It doesn't matter too much if they didn't change.
-                    actions.add(new ActionBatch.UpdateDataAction(clientId, newInfo));
-                } else if (newInfo.mVersion > currentInfo.mVersion) {
-                    // If it's a new version, it's a different entry in the database. Make it
-                    // available, and if it's installed, also start the download.
-                    final ContentValues values = MetadataDbHelper.getContentValuesByWordListId(db,
-                            currentInfo.mId, currentInfo.mVersion);
-                    final int status = values.getAsInteger(MetadataDbHelper.STATUS_COLUMN);
-                    actions.add(new ActionBatch.MakeAvailableAction(clientId, newInfo));
-                    if (status == MetadataDbHelper.STATUS_INSTALLED
-                            || status == MetadataDbHelper.STATUS_DISABLED) {
-                        actions.add(new ActionBatch.StartDownloadAction(clientId, newInfo));
-                    } else {
-                        // Pass true to ForgetAction: this is indeed an update to a non-installed
-                        // word list, so activate status == AVAILABLE check
-                        // In case the status is DELETING, this is the right thing to do. It will
-                        // leave the entry as DELETING and remove its URL so that Android Keyboard
-                        // can delete it the next time it starts up.
-                        actions.add(new ActionBatch.ForgetAction(clientId, currentInfo, true));
-                    }
-                } else if (DEBUG) {
-                    Log.i(TAG, "Not updating word list " + id
-                            + " : current list timestamp is " + currentInfo.mLastUpdate
-                                    + " ; new list timestamp is " + newInfo.mLastUpdate);
+                final ContentValues values = MetadataDbHelper.getContentValuesByWordListId(db,
+                        currentInfo.mId, currentInfo.mVersion);
+                final int status = values.getAsInteger(MetadataDbHelper.STATUS_COLUMN);
+                actions.add(new ActionBatch.MakeAvailableAction(clientId, newInfo));
+                if (status == MetadataDbHelper.STATUS_INSTALLED
+                        || status == MetadataDbHelper.STATUS_DISABLED) {
+                    actions.add(new ActionBatch.StartDownloadAction(clientId, newInfo));
+                } else {
+                    // Pass true to ForgetAction: this is indeed an update to a non-installed
+                    // word list, so activate status == AVAILABLE check
+                    // In case the status is DELETING, this is the right thing to do. It will
+                    // leave the entry as DELETING and remove its URL so that Android Keyboard
+                    // can delete it the next time it starts up.
+                    actions.add(new ActionBatch.ForgetAction(clientId, currentInfo, true));
                 }
             }
-        }
+        });
+        DebugLogUtils.l("Word lists without changes :", unchangedCount);
         return actions;
     }
 
@@ -17,6 +17,7 @@
 package com.android.inputmethod.dictionarypack;
 
 import android.content.ContentValues;
+import android.text.TextUtils;
 
 import javax.annotation.Nonnull;
 
@@ -113,6 +114,26 @@ public class WordListMetadata {
                 flags, locale);
     }
 
+    /**
+     * Whether another metadata describes the same version of this word list with the same data.
+     *
+     * This compares all the fields that an update of the data of a word list writes to the
+     * database, so that there is no need to update a word list that has the same data.
+     */
+    public boolean hasSameDataAs(@Nonnull final WordListMetadata other) {
+        return mVersion == other.mVersion
+                && mFormatVersion == other.mFormatVersion
+                && mLastUpdate == other.mLastUpdate
+                && mFileSize == other.mFileSize
+                && mRetryCount == other.mRetryCount
+                && TextUtils.equals(mId, other.mId)
+                && TextUtils.equals(mLocale, other.mLocale)
+                && TextUtils.equals(mDescription, other.mDescription)
+                && TextUtils.equals(mRemoteFilename, other.mRemoteFilename)
+                && TextUtils.equals(mRawChecksum, other.mRawChecksum)
+                && TextUtils.equals(mChecksum, other.mChecksum);
+    }
+
     @Override
     public String toString() {
         final StringBuilder sb = new StringBuilder(WordListMetadata.class.getSimpleName());
@@ -415,6 +415,40 @@ public class Key implements Comparable<Key> {
         this(key, key.mMoreKeys);
     }
 
+    /**
+     * Constructor for DynamicGridKeyboard.GridKey to lay out a key of a &lt;GridRows/&gt; like a
+     * template key, without building the keyboard the key belongs to.
+     *
+     * @param templateKey the key to take the geometry and the attributes from.
+     * @param label the label of the key.
+     * @param code the code of the key.
+     * @param outputText the output text of the key.
+     */
+    protected Key(@Nonnull final Key templateKey, @Nullable final String label, final int code,
+            @Nullable final String outputText) {
+        mCode = code;
+        mLabel = label;
+        mHintLabel = null;
+        mLabelFlags = templateKey.mLabelFlags;
+        mIconId = ICON_UNDEFINED;
+        mWidth = templateKey.mWidth;
+        mHeight = templateKey.mHeight;
+        mHorizontalGap = templateKey.mHorizontalGap;
+        mVerticalGap = templateKey.mVerticalGap;
+        mX = templateKey.mX;
+        mY = templateKey.mY;
+        mHitBox.set(templateKey.mHitBox);
+        mMoreKeys = null;
+        mMoreKeysColumnAndFlags = 0;
+        mBackgroundType = templateKey.mBackgroundType;
+        mActionFlags = templateKey.mActionFlags;
+        mKeyVisualAttributes = templateKey.mKeyVisualAttributes;
+        mOptionalAttributes = OptionalAttributes.newInstance(outputText, CODE_UNSPECIFIED,
+                ICON_UNDEFINED, 0 /* visualInsetsLeft */, 0 /* visualInsetsRight */);
+        mEnabled = (code != CODE_UNSPECIFIED);
+        mHashCode = computeHashCode(this);
+    }
+
     private Key(@Nonnull final Key key, @Nullable final MoreKeySpec[] moreKeys) {
         // Final attributes.
         mCode = key.mCode;
@@ -524,6 +558,48 @@ public class Key implements Comparable<Key> {
         return o instanceof Key && equalsInternal((Key)o);
     }
 
+    /**
+     * Returns whether this key and another key are drawn the same when they are in the same
+     * pressed and enabled state, wherever each of them is placed.
+     * @param o the other key.
+     * @return true if the keys have the same size, background, labels, icons and flags.
+     * @see #getVisualsHashCode()
+     */
+    public final boolean hasSameVisualsAs(@Nonnull final Key o) {
+        if (this == o) return true;
+        return o.getDrawWidth() == getDrawWidth()
+                && o.getHeight() == getHeight()
+                && o.mCode == mCode
+                && TextUtils.equals(o.getLabel(), getLabel())
+                && TextUtils.equals(o.getHintLabel(), getHintLabel())
+                && o.getIconId() == getIconId()
+                && o.getDisabledIconId() == getDisabledIconId()
+                && o.mBackgroundType == mBackgroundType
+                && o.mLabelFlags == mLabelFlags
+                && o.mActionFlags == mActionFlags
+                && (o.mMoreKeys == null) == (mMoreKeys == null)
+                && o.mKeyVisualAttributes == mKeyVisualAttributes
+                && o.isSpacer() == isSpacer();
+    }
+
+    /**
+     * Returns a hash code of the members {@link #hasSameVisualsAs(Key)} compares. It is computed
+     * without allocating, so that it can be called for every key drawn.
+     */
+    public final int getVisualsHashCode() {
+        final String label = getLabel();
+        final String hintLabel = getHintLabel();
+        int hashCode = getDrawWidth();
+        hashCode = hashCode * 31 + getHeight();
+        hashCode = hashCode * 31 + mCode;
+        hashCode = hashCode * 31 + ((label == null) ? 0 : label.hashCode());
+        hashCode = hashCode * 31 + ((hintLabel == null) ? 0 : hintLabel.hashCode());
+        hashCode = hashCode * 31 + getIconId();
+        hashCode = hashCode * 31 + mBackgroundType;
+        hashCode = hashCode * 31 + mLabelFlags;
+        return hashCode;
+    }
+
     @Override
     public String toString() {
         return toShortString() + " " + getX() + "," + getY() + " " + getWidth() + "x" + getHeight();
@@ -809,11 +885,14 @@ public class Key implements Comparable<Key> {
         return mIconId;
     }
 
+    private int getDisabledIconId() {
+        final OptionalAttributes attrs = mOptionalAttributes;
+        return (attrs != null) ? attrs.mDisabledIconId : ICON_UNDEFINED;
+    }
+
     @Nullable
     public Drawable getIcon(final KeyboardIconsSet iconSet, final int alpha) {
-        final OptionalAttributes attrs = mOptionalAttributes;
-        final int disabledIconId = (attrs != null) ? attrs.mDisabledIconId : ICON_UNDEFINED;
-        final int iconId = mEnabled ? getIconId() : disabledIconId;
+        final int iconId = mEnabled ? getIconId() : getDisabledIconId();
         final Drawable icon = iconSet.getIconDrawable(iconId);
         if (icon != null) {
             icon.setAlpha(alpha);
@@ -906,6 +985,10 @@ public class Key implements Comparable<Key> {
         mPressed = false;
     }
 
+    public final boolean isPressed() {
+        return mPressed;
+    }
+
     public final boolean isEnabled() {
         return mEnabled;
     }
@@ -92,9 +92,18 @@ public class KeyDetector {
         final int touchX = getTouchX(x);
         final int touchY = getTouchY(y);
 
+        final Key[] candidates = mKeyboard.getHitCandidateKeys(touchX, touchY);
+        final int candidatesCount = candidates.length;
+        if (candidatesCount == 1) {
+            // Fast path for a point that is well inside a key, such as a finger that is still
+            // on the same key while it moves.
+            final Key key = candidates[0];
+            return key.isOnKey(touchX, touchY) ? key : null;
+        }
         int minDistance = Integer.MAX_VALUE;
         Key primaryKey = null;
-        for (final Key key: mKeyboard.getNearestKeys(touchX, touchY)) {
+        for (int i = 0; i < candidatesCount; i++) {
+            final Key key = candidates[i];
             // An edge key always has its enlarged hitbox to respond to an event that occurred in
             // the empty area around the key. (@see Key#markAsLeftEdge(KeyboardParams)} etc.)
             if (!key.isOnKey(touchX, touchY)) {
@@ -26,6 +26,7 @@ import com.android.inputmethod.latin.common.CoordinateUtils;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
 
 import javax.annotation.Nonnull;
@@ -92,6 +93,10 @@ public class Keyboard {
     public final KeyboardIconsSet mIconsSet;
 
     private final SparseArray<Key> mKeyCache = new SparseArray<>();
+    // The index of each key in {@link #mIndexedKeys}, the last list returned by
+    // {@link #getSortedKeys()} the indices have been computed for.
+    private final IdentityHashMap<Key, Integer> mKeyIndices = new IdentityHashMap<>();
+    private List<Key> mIndexedKeys;
 
     @Nonnull
     private final ProximityInfo mProximityInfo;
@@ -208,6 +213,28 @@ public class Keyboard {
         }
     }
 
+    /**
+     * Returns the index of a key in {@link #getSortedKeys()}.
+     * @param aKey the key to look for.
+     * @return the index of the key, or -1 if the key is not in this keyboard.
+     */
+    public int getKeyIndex(@Nonnull final Key aKey) {
+        final List<Key> sortedKeys = getSortedKeys();
+        synchronized (mKeyIndices) {
+            if (mIndexedKeys != sortedKeys) {
+                // The sorted keys have changed, for instance in a grid of recent emoji.
+                mKeyIndices.clear();
+                // Going backwards leaves the first index of a key that appears twice.
+                for (int index = sortedKeys.size() - 1; index >= 0; index--) {
+                    mKeyIndices.put(sortedKeys.get(index), index);
+                }
+                mIndexedKeys = sortedKeys;
+            }
+            final Integer index = mKeyIndices.get(aKey);
+            return (index == null) ? -1 : index;
+        }
+    }
+
     public boolean hasKey(@Nonnull final Key aKey) {
         if (mKeyCache.indexOfValue(aKey) >= 0) {
             return true;
@@ -242,6 +269,23 @@ public class Keyboard {
         return mProximityInfo.getNearestKeys(adjustedX, adjustedY);
     }
 
+    /**
+     * Returns the keys whose hit box may contain the given point. Unlike
+     * {@link #getNearestKeys(int,int)}, this is allocation free and most of the points inside a
+     * key have only that key as a candidate.
+     * @param x the x-coordinate of the point
+     * @param y the y-coordinate of the point
+     * @return the shared array of the candidate keys of the given point, that must not be
+     * modified.
+     */
+    @Nonnull
+    public Key[] getHitCandidateKeys(final int x, final int y) {
+        // Avoid dead pixels at edges of the keyboard
+        final int adjustedX = Math.max(0, Math.min(x, mOccupiedWidth - 1));
+        final int adjustedY = Math.max(0, Math.min(y, mOccupiedHeight - 1));
+        return mProximityInfo.getHitCandidateKeys(adjustedX, adjustedY);
+    }
+
     @Nonnull
     public int[] getCoordinates(@Nonnull final int[] codePoints) {
         final int length = codePoints.length;
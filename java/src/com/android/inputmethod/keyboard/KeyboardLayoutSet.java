@@ -86,8 +86,15 @@ public final class KeyboardLayoutSet {
     private static final Keyboard[] sForcibleKeyboardCache = new Keyboard[FORCIBLE_CACHE_SIZE];
     private static final HashMap<KeyboardId, SoftReference<Keyboard>> sKeyboardCache =
             new HashMap<>();
+    // Incremented each time the caches are cleared, so that a keyboard built meanwhile isn't
+    // cached. Guarded by {@link #sKeyboardCache}.
+    private static int sKeyboardCacheGeneration;
+    // The keys of the alphabet keyboards, that share most of their keys.
     @Nonnull
     private static final UniqueKeysCache sUniqueKeysCache = UniqueKeysCache.newInstance();
+    static {
+        sUniqueKeysCache.setEnabled(true);
+    }
     private final static HashMap<InputMethodSubtype, Integer> sScriptIdsForSubtypes =
             new HashMap<>();
 
@@ -144,8 +151,12 @@ public final class KeyboardLayoutSet {
     }
 
     private static void clearKeyboardCache() {
-        sKeyboardCache.clear();
-        sUniqueKeysCache.clear();
+        synchronized (sKeyboardCache) {
+            sKeyboardCacheGeneration++;
+            sKeyboardCache.clear();
+            sUniqueKeysCache.clear();
+            MoreKeysKeyboardCache.getInstance().clear();
+        }
     }
 
     public static int getScriptId(final Resources resources,
@@ -197,9 +208,12 @@ public final class KeyboardLayoutSet {
         // specified as an elementKeyboard attribute in the file.
         // The KeyboardId is an internal key for a Keyboard object.
 
-        mParams.mIsSplitLayoutEnabled = mParams.mIsSplitLayoutEnabledByUser
-                && elementParams.mSupportsSplitLayout;
-        final KeyboardId id = new KeyboardId(keyboardLayoutSetElementId, mParams);
+        final KeyboardId id;
+        synchronized (mParams) {
+            mParams.mIsSplitLayoutEnabled = mParams.mIsSplitLayoutEnabledByUser
+                    && elementParams.mSupportsSplitLayout;
+            id = new KeyboardId(keyboardLayoutSetElementId, mParams);
+        }
         try {
             return getKeyboard(elementParams, id);
         } catch (final RuntimeException e) {
@@ -208,20 +222,31 @@ public final class KeyboardLayoutSet {
         }
     }
 
+    // The emoji palettes build keyboards from a background thread, so the caches that all the
+    // keyboard layout sets share are guarded by {@link #sKeyboardCache}. The lock is only held
+    // to read and write the caches, never while a keyboard is built, so that the UI thread
+    // doesn't wait for a keyboard being built in the background.
     @Nonnull
     private Keyboard getKeyboard(final ElementParams elementParams, final KeyboardId id) {
-        final SoftReference<Keyboard> ref = sKeyboardCache.get(id);
-        final Keyboard cachedKeyboard = (ref == null) ? null : ref.get();
-        if (cachedKeyboard != null) {
-            if (DEBUG_CACHE) {
-                Log.d(TAG, "keyboard cache size=" + sKeyboardCache.size() + ": HIT  id=" + id);
+        final SoftReference<Keyboard> ref;
+        final int cacheGeneration;
+        synchronized (sKeyboardCache) {
+            ref = sKeyboardCache.get(id);
+            final Keyboard cachedKeyboard = (ref == null) ? null : ref.get();
+            if (cachedKeyboard != null) {
+                if (DEBUG_CACHE) {
+                    Log.d(TAG, "keyboard cache size=" + sKeyboardCache.size() + ": HIT  id="
+                            + id);
+                }
+                return cachedKeyboard;
             }
-            return cachedKeyboard;
+            cacheGeneration = sKeyboardCacheGeneration;
         }
 
+        final UniqueKeysCache keysCache = id.isAlphabetKeyboard() ? sUniqueKeysCache
+                : UniqueKeysCache.NO_CACHE;
         final KeyboardBuilder<KeyboardParams> builder =
-                new KeyboardBuilder<>(mContext, new KeyboardParams(sUniqueKeysCache));
-        sUniqueKeysCache.setEnabled(id.isAlphabetKeyboard());
+                new KeyboardBuilder<>(mContext, new KeyboardParams(keysCache));
         builder.setAllowRedundantMoreKes(elementParams.mAllowRedundantMoreKeys);
         final int keyboardXmlId = elementParams.mKeyboardXmlId;
         builder.load(keyboardXmlId, id);
@@ -230,23 +255,37 @@ public final class KeyboardLayoutSet {
         }
         builder.setProximityCharsCorrectionEnabled(elementParams.mProximityCharsCorrectionEnabled);
         final Keyboard keyboard = builder.build();
-        sKeyboardCache.put(id, new SoftReference<>(keyboard));
-        if ((id.mElementId == KeyboardId.ELEMENT_ALPHABET
-                || id.mElementId == KeyboardId.ELEMENT_ALPHABET_AUTOMATIC_SHIFTED)
-                && !mParams.mIsSpellChecker) {
-            // We only forcibly cache the primary, "ALPHABET", layouts.
-            for (int i = sForcibleKeyboardCache.length - 1; i >= 1; --i) {
-                sForcibleKeyboardCache[i] = sForcibleKeyboardCache[i - 1];
+
+        synchronized (sKeyboardCache) {
+            if (cacheGeneration != sKeyboardCacheGeneration) {
+                // The caches have been cleared while the keyboard was built, for instance
+                // because the theme has changed.
+                return keyboard;
+            }
+            // Another thread may have built the same keyboard meanwhile.
+            final SoftReference<Keyboard> builtRef = sKeyboardCache.get(id);
+            final Keyboard builtKeyboard = (builtRef == null) ? null : builtRef.get();
+            if (builtKeyboard != null) {
+                return builtKeyboard;
+            }
+            sKeyboardCache.put(id, new SoftReference<>(keyboard));
+            if ((id.mElementId == KeyboardId.ELEMENT_ALPHABET
+                    || id.mElementId == KeyboardId.ELEMENT_ALPHABET_AUTOMATIC_SHIFTED)
+                    && !mParams.mIsSpellChecker) {
+                // We only forcibly cache the primary, "ALPHABET", layouts.
+                for (int i = sForcibleKeyboardCache.length - 1; i >= 1; --i) {
+                    sForcibleKeyboardCache[i] = sForcibleKeyboardCache[i - 1];
+                }
+                sForcibleKeyboardCache[0] = keyboard;
+                if (DEBUG_CACHE) {
+                    Log.d(TAG, "forcing caching of keyboard with id=" + id);
+                }
             }
-            sForcibleKeyboardCache[0] = keyboard;
             if (DEBUG_CACHE) {
-                Log.d(TAG, "forcing caching of keyboard with id=" + id);
+                Log.d(TAG, "keyboard cache size=" + sKeyboardCache.size() + ": "
+                        + ((ref == null) ? "LOAD" : "GCed") + " id=" + id);
             }
         }
-        if (DEBUG_CACHE) {
-            Log.d(TAG, "keyboard cache size=" + sKeyboardCache.size() + ": "
-                    + ((ref == null) ? "LOAD" : "GCed") + " id=" + id);
-        }
         return keyboard;
     }
 
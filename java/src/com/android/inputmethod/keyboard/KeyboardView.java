@@ -32,13 +32,16 @@ import android.text.TextUtils;
 import android.util.AttributeSet;
 import android.view.View;
 
+import com.android.inputmethod.annotations.UsedForTesting;
 import com.android.inputmethod.keyboard.internal.KeyDrawParams;
 import com.android.inputmethod.keyboard.internal.KeyVisualAttributes;
+import com.android.inputmethod.keyboard.internal.KeyVisualCache;
 import com.android.inputmethod.latin.R;
 import com.android.inputmethod.latin.common.Constants;
 import com.android.inputmethod.latin.utils.TypefaceUtils;
 
-import java.util.HashSet;
+import java.util.BitSet;
+import java.util.List;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -99,6 +102,11 @@ public class KeyboardView extends View {
     // The maximum key label width in the proportion to the key width.
     private static final float MAX_LABEL_RATIO = 0.90f;
 
+    // The key visual cache holds up to this percentage of the size of the tiles of the keys of
+    // the keyboard. The keys that look the same share their tiles, so this is enough for the
+    // keyboard, the letters of the other shift state and a few pressed keys.
+    private static final int KEY_VISUAL_CACHE_SIZE_PERCENT = 200;
+
     // Main keyboard
     // TODO: Consider having a base keyboard object to make this @Nonnull
     @Nullable
@@ -109,8 +117,27 @@ public class KeyboardView extends View {
     // Drawing
     /** True if all keys should be drawn */
     private boolean mInvalidateAllKeys;
-    /** The keys that should be drawn */
-    private final HashSet<Key> mInvalidatedKeys = new HashSet<>();
+    /** The indices in {@link Keyboard#getSortedKeys()} of the keys that should be drawn */
+    private final BitSet mInvalidatedKeyIndices = new BitSet();
+    /** The sorted keys {@link #mInvalidatedKeyIndices} index into */
+    @Nullable
+    private List<Key> mInvalidatedSortedKeys;
+    /** The union of the rectangles of the keys invalidated since the last frame */
+    private final Rect mInvalidatedKeysRect = new Rect();
+    /** True if {@link #mInvalidateKeysRunnable} is waiting for the next frame */
+    private boolean mInvalidateKeysPosted;
+    /** Invalidates the keys of a frame all at once */
+    private final Runnable mInvalidateKeysRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mInvalidateKeysPosted = false;
+            final Rect rect = mInvalidatedKeysRect;
+            if (!rect.isEmpty()) {
+                invalidate(rect.left, rect.top, rect.right, rect.bottom);
+                rect.setEmpty();
+            }
+        }
+    };
     /** The working rectangle for clipping */
     private final Rect mClipRect = new Rect();
     /** The keyboard bitmap buffer for faster updates */
@@ -121,6 +148,17 @@ public class KeyboardView extends View {
     @Nonnull
     private final Paint mPaint = new Paint();
     private final Paint.FontMetrics mFontMetrics = new Paint.FontMetrics();
+    /** The rasterized visuals of the keys, or null if the keys are drawn every time */
+    @Nullable
+    private KeyVisualCache mKeyVisualCache;
+    /** The draw parameters the tiles of the above cache are looked up with, or null if unknown */
+    @Nullable
+    private KeyDrawParams mKeyVisualDrawParams;
+    /** The canvas to rasterize the visuals of a key into a tile of the above cache */
+    @Nonnull
+    private final Canvas mKeyVisualCanvas = new Canvas();
+    /** How far the visuals of a key may extend beyond the key on each side */
+    private final Rect mKeyVisualMargin = new Rect();
 
     public KeyboardView(final Context context, final AttributeSet attrs) {
         this(context, attrs, R.attr.keyboardViewStyle);
@@ -155,6 +193,12 @@ public class KeyboardView extends View {
         mVerticalCorrection = keyboardViewAttr.getDimension(
                 R.styleable.KeyboardView_verticalCorrection, 0.0f);
         keyboardViewAttr.recycle();
+        // The key background is drawn over its padding, and the label shadow may spill over.
+        final int shadowMargin = (int)Math.ceil(Math.max(0.0f, mKeyTextShadowRadius));
+        mKeyVisualMargin.set(mKeyBackgroundPadding.left + shadowMargin,
+                mKeyBackgroundPadding.top + shadowMargin,
+                mKeyBackgroundPadding.right + shadowMargin,
+                mKeyBackgroundPadding.bottom + shadowMargin);
 
         final TypedArray keyAttr = context.obtainStyledAttributes(attrs,
                 R.styleable.Keyboard_Key, defStyle, R.style.KeyboardView);
@@ -176,6 +220,63 @@ public class KeyboardView extends View {
                 Color.red(color), Color.green(color), Color.blue(color));
     }
 
+    /**
+     * Enables or disables drawing the keys from a cache of their rasterized visuals.
+     *
+     * The visuals of a key in a given state are rasterized the first time they are drawn, and
+     * then composited on each redraw. This pays off for a view that is redrawn many times with
+     * the same keys, like the main keyboard, but not for a short-lived view.
+     * @param enabled whether the keys should be drawn from the cache.
+     */
+    public void setKeyVisualCacheEnabled(final boolean enabled) {
+        if (enabled == (mKeyVisualCache != null)) {
+            return;
+        }
+        if (enabled) {
+            mKeyVisualCache = new KeyVisualCache(getKeyVisualCacheMaxBytes());
+        } else {
+            mKeyVisualCache.clear();
+            mKeyVisualCache = null;
+        }
+        mKeyVisualDrawParams = null;
+        invalidateAllKeys();
+    }
+
+    @UsedForTesting
+    @Nullable
+    KeyVisualCache getKeyVisualCache() {
+        return mKeyVisualCache;
+    }
+
+    private int getKeyVisualCacheMaxBytes() {
+        final Keyboard keyboard = getKeyboard();
+        if (keyboard == null) {
+            return 0;
+        }
+        final Rect margin = mKeyVisualMargin;
+        long tilesBytes = 0;
+        for (final Key key : keyboard.getSortedKeys()) {
+            if (isKeyVisualCacheable(key)) {
+                // The tiles are ARGB_8888 bitmaps.
+                tilesBytes += (long)(key.getDrawWidth() + margin.left + margin.right)
+                        * (key.getHeight() + margin.top + margin.bottom) * 4;
+            }
+        }
+        return (int)Math.min(Integer.MAX_VALUE, tilesBytes * KEY_VISUAL_CACHE_SIZE_PERCENT / 100);
+    }
+
+    /**
+     * Returns whether the visuals of a key may be drawn from the key visual cache. A subclass that
+     * draws a key differently according to its own state, for example to animate it, should
+     * return false for this key.
+     * @param key the key to draw.
+     * @return true if the visuals of the key only depend on the key and its keyboard.
+     */
+    protected boolean isKeyVisualCacheable(@Nonnull final Key key) {
+        // A spacer draws nothing.
+        return !key.isSpacer();
+    }
+
     public void setHardwareAcceleratedDrawingEnabled(final boolean enabled) {
         if (!enabled) return;
         // TODO: Should use LAYER_TYPE_SOFTWARE when hardware acceleration is off?
@@ -194,6 +295,10 @@ public class KeyboardView extends View {
         final int keyHeight = keyboard.mMostCommonKeyHeight - keyboard.mVerticalGap;
         mKeyDrawParams.updateParams(keyHeight, mKeyVisualAttributes);
         mKeyDrawParams.updateParams(keyHeight, keyboard.mKeyVisualAttributes);
+        mKeyVisualDrawParams = null;
+        if (mKeyVisualCache != null) {
+            mKeyVisualCache.setMaxBytes(getKeyVisualCacheMaxBytes());
+        }
         invalidateAllKeys();
         requestLayout();
     }
@@ -219,6 +324,7 @@ public class KeyboardView extends View {
 
     protected void updateKeyDrawParams(final int keyHeight) {
         mKeyDrawParams.updateParams(keyHeight, mKeyVisualAttributes);
+        mKeyVisualDrawParams = null;
     }
 
     @Override
@@ -242,7 +348,8 @@ public class KeyboardView extends View {
             return;
         }
 
-        final boolean bufferNeedsUpdates = mInvalidateAllKeys || !mInvalidatedKeys.isEmpty();
+        final boolean bufferNeedsUpdates =
+                mInvalidateAllKeys || !mInvalidatedKeyIndices.isEmpty();
         if (bufferNeedsUpdates || mOffscreenBuffer == null) {
             if (maybeAllocateOffscreenBuffer()) {
                 mInvalidateAllKeys = true;
@@ -287,9 +394,13 @@ public class KeyboardView extends View {
         final Paint paint = mPaint;
         final Drawable background = getBackground();
         // Calculate clip region and set.
-        final boolean drawAllKeys = mInvalidateAllKeys || mInvalidatedKeys.isEmpty();
+        // The invalidated keys can't be found if the sorted keys have changed since.
+        final boolean drawAllKeys = mInvalidateAllKeys || mInvalidatedKeyIndices.isEmpty()
+                || keyboard.getSortedKeys() != mInvalidatedSortedKeys;
         final boolean isHardwareAccelerated = canvas.isHardwareAccelerated();
-        // TODO: Confirm if it's really required to draw all keys when hardware acceleration is on.
+        // A hardware accelerated view records all of its drawing again when it is invalidated,
+        // whatever the dirty region is, so all keys have to be drawn. The key visual cache keeps
+        // this cheap by turning each key into a single bitmap draw.
         if (drawAllKeys || isHardwareAccelerated) {
             if (!isHardwareAccelerated && background != null) {
                 // Need to draw keyboard background on {@link #mOffscreenBuffer}.
@@ -301,26 +412,40 @@ public class KeyboardView extends View {
                 onDrawKey(key, canvas, paint);
             }
         } else {
-            for (final Key key : mInvalidatedKeys) {
-                if (!keyboard.hasKey(key)) {
-                    continue;
-                }
-                if (background != null) {
-                    // Need to redraw key's background on {@link #mOffscreenBuffer}.
-                    final int x = key.getX() + getPaddingLeft();
-                    final int y = key.getY() + getPaddingTop();
-                    mClipRect.set(x, y, x + key.getWidth(), y + key.getHeight());
-                    canvas.save();
-                    canvas.clipRect(mClipRect);
-                    canvas.drawColor(Color.BLACK, PorterDuff.Mode.CLEAR);
-                    background.draw(canvas);
-                    canvas.restore();
+            final List<Key> sortedKeys = keyboard.getSortedKeys();
+            final int keyCount = sortedKeys.size();
+            // Merge the invalidated keys into a single dirty region in keyboard coordinates.
+            final Rect dirtyRect = mClipRect;
+            dirtyRect.setEmpty();
+            for (int index = mInvalidatedKeyIndices.nextSetBit(0); index >= 0 && index < keyCount;
+                    index = mInvalidatedKeyIndices.nextSetBit(index + 1)) {
+                final Key key = sortedKeys.get(index);
+                dirtyRect.union(key.getX(), key.getY(), key.getX() + key.getWidth(),
+                        key.getY() + key.getHeight());
+            }
+            canvas.save();
+            canvas.clipRect(dirtyRect.left + getPaddingLeft(), dirtyRect.top + getPaddingTop(),
+                    dirtyRect.right + getPaddingLeft(), dirtyRect.bottom + getPaddingTop());
+            if (background != null) {
+                // Need to redraw the background of the region on {@link #mOffscreenBuffer}, and
+                // then all the keys in the region, whether they have been invalidated or not.
+                canvas.drawColor(Color.BLACK, PorterDuff.Mode.CLEAR);
+                background.draw(canvas);
+            }
+            for (int index = 0; index < keyCount; index++) {
+                final Key key = sortedKeys.get(index);
+                final boolean isInDirtyRect = (background != null) && dirtyRect.intersects(
+                        key.getX(), key.getY(), key.getX() + key.getWidth(),
+                        key.getY() + key.getHeight());
+                if (isInDirtyRect || mInvalidatedKeyIndices.get(index)) {
+                    onDrawKey(key, canvas, paint);
                 }
-                onDrawKey(key, canvas, paint);
             }
+            canvas.restore();
         }
 
-        mInvalidatedKeys.clear();
+        mInvalidatedKeyIndices.clear();
+        mInvalidatedSortedKeys = null;
         mInvalidateAllKeys = false;
     }
 
@@ -328,8 +453,51 @@ public class KeyboardView extends View {
             @Nonnull final Paint paint) {
         final int keyDrawX = key.getDrawX() + getPaddingLeft();
         final int keyDrawY = key.getY() + getPaddingTop();
+        final Keyboard keyboard = getKeyboard();
+        final KeyVisualCache keyVisualCache = mKeyVisualCache;
+        if (keyVisualCache != null && keyboard != null && isKeyVisualCacheable(key)) {
+            if (mKeyVisualDrawParams == null) {
+                mKeyVisualDrawParams = keyVisualCache.internDrawParams(mKeyDrawParams);
+            }
+            Bitmap tile = keyVisualCache.get(mKeyVisualDrawParams, key);
+            if (tile == null) {
+                tile = rasterizeKeyVisuals(key, paint);
+                if (tile != null) {
+                    keyVisualCache.put(mKeyVisualDrawParams, key, tile);
+                }
+            }
+            if (tile != null) {
+                canvas.drawBitmap(tile, keyDrawX - mKeyVisualMargin.left,
+                        keyDrawY - mKeyVisualMargin.top, null);
+                return;
+            }
+        }
         canvas.translate(keyDrawX, keyDrawY);
+        onDrawKeyVisuals(key, canvas, paint);
+        canvas.translate(-keyDrawX, -keyDrawY);
+    }
 
+    @Nullable
+    private Bitmap rasterizeKeyVisuals(@Nonnull final Key key, @Nonnull final Paint paint) {
+        final Rect margin = mKeyVisualMargin;
+        final int width = key.getDrawWidth() + margin.left + margin.right;
+        final int height = key.getHeight() + margin.top + margin.bottom;
+        if (width <= 0 || height <= 0) {
+            return null;
+        }
+        final Bitmap tile = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        final Canvas canvas = mKeyVisualCanvas;
+        canvas.setBitmap(tile);
+        canvas.translate(margin.left, margin.top);
+        onDrawKeyVisuals(key, canvas, paint);
+        canvas.setMatrix(null);
+        canvas.setBitmap(null);
+        return tile;
+    }
+
+    // Draw the key background and top visuals with the origin at the top left of the key.
+    private void onDrawKeyVisuals(@Nonnull final Key key, @Nonnull final Canvas canvas,
+            @Nonnull final Paint paint) {
         final KeyVisualAttributes attr = key.getVisualAttributes();
         final KeyDrawParams params = mKeyDrawParams.mayCloneAndUpdateParams(key.getHeight(), attr);
         params.mAnimAlpha = Constants.Color.ALPHA_OPAQUE;
@@ -342,8 +510,6 @@ public class KeyboardView extends View {
             }
         }
         onDrawKeyTopVisuals(key, canvas, paint, params);
-
-        canvas.translate(-keyDrawX, -keyDrawY);
     }
 
     // Draw key background.
@@ -556,7 +722,9 @@ public class KeyboardView extends View {
      * @see #invalidateKey(Key)
      */
     public void invalidateAllKeys() {
-        mInvalidatedKeys.clear();
+        mInvalidatedKeyIndices.clear();
+        mInvalidatedSortedKeys = null;
+        mInvalidatedKeysRect.setEmpty();
         mInvalidateAllKeys = true;
         invalidate();
     }
@@ -565,26 +733,57 @@ public class KeyboardView extends View {
      * Invalidates a key so that it will be redrawn on the next repaint. Use this method if only
      * one key is changing it's content. Any changes that affect the position or size of the key
      * may not be honored.
+     * The keys invalidated during a frame are redrawn together on the next frame, as a single
+     * dirty region.
      * @param key key in the attached {@link Keyboard}.
      * @see #invalidateAllKeys
      */
     public void invalidateKey(@Nullable final Key key) {
-        if (mInvalidateAllKeys || key == null) {
+        final Keyboard keyboard = getKeyboard();
+        if (mInvalidateAllKeys || key == null || keyboard == null) {
             return;
         }
-        mInvalidatedKeys.add(key);
+        final List<Key> sortedKeys = keyboard.getSortedKeys();
+        if (sortedKeys != mInvalidatedSortedKeys && !mInvalidatedKeyIndices.isEmpty()) {
+            // The keys invalidated so far were indexed in the previous sorted keys, for instance
+            // before a key has been added to a grid of recent emoji.
+            invalidateAllKeys();
+            return;
+        }
+        final int index = keyboard.getKeyIndex(key);
+        if (index < 0) {
+            return;
+        }
+        mInvalidatedKeyIndices.set(index);
+        mInvalidatedSortedKeys = sortedKeys;
         final int x = key.getX() + getPaddingLeft();
         final int y = key.getY() + getPaddingTop();
-        invalidate(x, y, x + key.getWidth(), y + key.getHeight());
+        mInvalidatedKeysRect.union(x, y, x + key.getWidth(), y + key.getHeight());
+        if (!mInvalidateKeysPosted) {
+            mInvalidateKeysPosted = true;
+            // This runs on the next vsync, before the views are drawn.
+            postOnAnimation(mInvalidateKeysRunnable);
+        }
     }
 
     @Override
     protected void onDetachedFromWindow() {
         super.onDetachedFromWindow();
+        removeCallbacks(mInvalidateKeysRunnable);
+        mInvalidateKeysPosted = false;
+        mInvalidatedKeysRect.setEmpty();
         freeOffscreenBuffer();
+        clearKeyVisualCache();
     }
 
     public void deallocateMemory() {
         freeOffscreenBuffer();
+        clearKeyVisualCache();
+    }
+
+    private void clearKeyVisualCache() {
+        if (mKeyVisualCache != null) {
+            mKeyVisualCache.clear();
+        }
     }
 }
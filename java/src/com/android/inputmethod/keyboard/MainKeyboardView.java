@@ -60,8 +60,8 @@ import com.android.inputmethod.latin.settings.DebugSettings;
 import com.android.inputmethod.latin.utils.LanguageOnSpacebarUtils;
 import com.android.inputmethod.latin.utils.TypefaceUtils;
 
+import java.util.ArrayList;
 import java.util.Locale;
-import java.util.WeakHashMap;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -153,7 +153,8 @@ public final class MainKeyboardView extends KeyboardView implements DrawingProxy
     private final Paint mBackgroundDimAlphaPaint = new Paint();
     private final View mMoreKeysKeyboardContainer;
     private final View mMoreKeysKeyboardForActionContainer;
-    private final WeakHashMap<Key, Keyboard> mMoreKeysKeyboardCache = new WeakHashMap<>();
+    private final MoreKeysKeyboardCache mMoreKeysKeyboardCache =
+            MoreKeysKeyboardCache.getInstance();
     private final boolean mConfigShowMoreKeysKeyboardAtTouchedPoint;
     // More keys panel (used by both more keys keyboard and more suggestions view)
     // TODO: Consider extending to support multiple more keys panels
@@ -273,6 +274,8 @@ public final class MainKeyboardView extends KeyboardView implements DrawingProxy
 
         mLanguageOnSpacebarHorizontalMargin = (int)getResources().getDimension(
                 R.dimen.config_language_on_spacebar_horizontal_margin);
+        // The main keyboard is redrawn on every key press with mostly the same keys.
+        setKeyVisualCacheEnabled(true);
     }
 
     @Override
@@ -394,7 +397,8 @@ public final class MainKeyboardView extends KeyboardView implements DrawingProxy
         mKeyDetector.setKeyboard(
                 keyboard, -getPaddingLeft(), -getPaddingTop() + getVerticalCorrection());
         PointerTracker.setKeyDetector(mKeyDetector);
-        mMoreKeysKeyboardCache.clear();
+        mKeyPreviewChoreographer.setKeyboard(keyboard);
+        prefetchMoreKeysKeyboards(keyboard);
 
         mSpaceKey = keyboard.getKey(Constants.CODE_SPACE);
         final int keyHeight = keyboard.mMostCommonKeyHeight - keyboard.mVerticalGap;
@@ -599,23 +603,8 @@ public final class MainKeyboardView extends KeyboardView implements DrawingProxy
         if (moreKeys == null) {
             return null;
         }
-        Keyboard moreKeysKeyboard = mMoreKeysKeyboardCache.get(key);
-        if (moreKeysKeyboard == null) {
-            // {@link KeyPreviewDrawParams#mPreviewVisibleWidth} should have been set at
-            // {@link KeyPreviewChoreographer#placeKeyPreview(Key,TextView,KeyboardIconsSet,KeyDrawParams,int,int[]},
-            // though there may be some chances that the value is zero. <code>width == 0</code>
-            // will cause zero-division error at
-            // {@link MoreKeysKeyboardParams#setParameters(int,int,int,int,int,int,boolean,int)}.
-            final boolean isSingleMoreKeyWithPreview = mKeyPreviewDrawParams.isPopupEnabled()
-                    && !key.noKeyPreview() && moreKeys.length == 1
-                    && mKeyPreviewDrawParams.getVisibleWidth() > 0;
-            final MoreKeysKeyboard.Builder builder = new MoreKeysKeyboard.Builder(
-                    getContext(), key, getKeyboard(), isSingleMoreKeyWithPreview,
-                    mKeyPreviewDrawParams.getVisibleWidth(),
-                    mKeyPreviewDrawParams.getVisibleHeight(), newLabelPaint(key));
-            moreKeysKeyboard = builder.build();
-            mMoreKeysKeyboardCache.put(key, moreKeysKeyboard);
-        }
+        final Keyboard moreKeysKeyboard = mMoreKeysKeyboardCache.getMoreKeysKeyboard(
+                newMoreKeysKeyboardRequest(key, getKeyboard()));
 
         final View container = key.isActionKey() ? mMoreKeysKeyboardForActionContainer
                 : mMoreKeysKeyboardContainer;
@@ -644,6 +633,45 @@ public final class MainKeyboardView extends KeyboardView implements DrawingProxy
         return moreKeysKeyboardView;
     }
 
+    private MoreKeysKeyboardCache.Request newMoreKeysKeyboardRequest(@Nonnull final Key key,
+            @Nonnull final Keyboard keyboard) {
+        // {@link KeyPreviewDrawParams#mPreviewVisibleWidth} should have been set at
+        // {@link KeyPreviewChoreographer#placeKeyPreview(Key,TextView,KeyboardIconsSet,KeyDrawParams,int,int[]},
+        // though there may be some chances that the value is zero. <code>width == 0</code>
+        // will cause zero-division error at
+        // {@link MoreKeysKeyboardParams#setParameters(int,int,int,int,int,int,boolean,int)}.
+        final boolean isSingleMoreKeyWithPreview = mKeyPreviewDrawParams.isPopupEnabled()
+                && !key.noKeyPreview() && key.getMoreKeys().length == 1
+                && mKeyPreviewDrawParams.getVisibleWidth() > 0;
+        return new MoreKeysKeyboardCache.Request(getContext(), key, keyboard,
+                isSingleMoreKeyWithPreview, mKeyPreviewDrawParams.getVisibleWidth(),
+                mKeyPreviewDrawParams.getVisibleHeight(), newLabelPaint(key));
+    }
+
+    // Builds the more keys keyboards of the letter keys of an alphabet keyboard in the background,
+    // as they are the most likely to be long pressed, for instance to type accented letters.
+    private void prefetchMoreKeysKeyboards(@Nonnull final Keyboard keyboard) {
+        if (!keyboard.mId.isAlphabetKeyboard()) {
+            return;
+        }
+        final boolean isPreviewEnabled = mKeyPreviewDrawParams.isPopupEnabled();
+        final ArrayList<MoreKeysKeyboardCache.Request> requests = new ArrayList<>();
+        for (final Key key : keyboard.getSortedKeys()) {
+            final MoreKeySpec[] moreKeys = key.getMoreKeys();
+            if (moreKeys == null || !Character.isLetter(key.getCode())) {
+                continue;
+            }
+            // The key preview hasn't been measured yet, so a single more key with preview would
+            // be built with another geometry than the one it is shown with.
+            if (isPreviewEnabled && !key.noKeyPreview() && moreKeys.length == 1
+                    && mKeyPreviewDrawParams.getVisibleWidth() <= 0) {
+                continue;
+            }
+            requests.add(newMoreKeysKeyboardRequest(key, keyboard));
+        }
+        mMoreKeysKeyboardCache.prefetchMoreKeysKeyboards(requests);
+    }
+
     public boolean isInDraggingFinger() {
         if (isShowingMoreKeysPanel()) {
             return true;
@@ -735,7 +763,6 @@ public final class MainKeyboardView extends KeyboardView implements DrawingProxy
 
     public void closing() {
         cancelAllOngoingEvents();
-        mMoreKeysKeyboardCache.clear();
     }
 
     public void onHideWindow() {
@@ -778,6 +805,7 @@ public final class MainKeyboardView extends KeyboardView implements DrawingProxy
             final boolean hasMultipleEnabledIMEsOrSubtypes) {
         if (subtypeChanged) {
             KeyPreviewView.clearTextCache();
+            mKeyPreviewChoreographer.clearPlacements();
         }
         mLanguageOnSpacebarFormatType = languageOnSpacebarFormatType;
         mHasMultipleEnabledIMEsOrSubtypes = hasMultipleEnabledIMEsOrSubtypes;
@@ -801,6 +829,13 @@ public final class MainKeyboardView extends KeyboardView implements DrawingProxy
         invalidateKey(mSpaceKey);
     }
 
+    @Override
+    protected boolean isKeyVisualCacheable(final Key key) {
+        // The space key shows the fading language name and the alt code keys fade while typing.
+        return super.isKeyVisualCacheable(key) && key.getCode() != Constants.CODE_SPACE
+                && !key.altCodeWhileTyping();
+    }
+
     @Override
     protected void onDrawKeyTopVisuals(final Key key, final Canvas canvas, final Paint paint,
             final KeyDrawParams params) {
@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.inputmethod.keyboard;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Paint;
+import android.util.LruCache;
+
+import com.android.inputmethod.annotations.UsedForTesting;
+import com.android.inputmethod.latin.utils.ExecutorUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+
+/**
+ * The process-wide cache of the more keys keyboards.
+ *
+ * A more keys keyboard only depends on its parent key, on the geometry of the parent keyboard and
+ * on the theme it is built with, so the more keys keyboards are shared by all the keyboards that
+ * have the same parent key, and survive the keyboard switches. They can also be built on the
+ * keyboard background executor ahead of the long press that shows them.
+ */
+final class MoreKeysKeyboardCache {
+    private static final int MAX_KEYBOARD_COUNT = 64;
+
+    private static final MoreKeysKeyboardCache sInstance = new MoreKeysKeyboardCache();
+
+    /**
+     * The parameters of a {@link MoreKeysKeyboard.Builder}.
+     */
+    static final class Request {
+        final Context mContext;
+        final Key mParentKey;
+        final Keyboard mParentKeyboard;
+        final boolean mIsSingleMoreKeyWithPreview;
+        final int mKeyPreviewVisibleWidth;
+        final int mKeyPreviewVisibleHeight;
+        final Paint mPaintToMeasure;
+
+        /**
+         * @see MoreKeysKeyboard.Builder#Builder(Context,Key,Keyboard,boolean,int,int,Paint)
+         */
+        public Request(final Context context, final Key key, final Keyboard keyboard,
+                final boolean isSingleMoreKeyWithPreview, final int keyPreviewVisibleWidth,
+                final int keyPreviewVisibleHeight, final Paint paintToMeasure) {
+            mContext = context;
+            mParentKey = key;
+            mParentKeyboard = keyboard;
+            mIsSingleMoreKeyWithPreview = isSingleMoreKeyWithPreview;
+            mKeyPreviewVisibleWidth = keyPreviewVisibleWidth;
+            mKeyPreviewVisibleHeight = keyPreviewVisibleHeight;
+            mPaintToMeasure = paintToMeasure;
+        }
+
+        MoreKeysKeyboard build() {
+            return new MoreKeysKeyboard.Builder(mContext, mParentKey, mParentKeyboard,
+                    mIsSingleMoreKeyWithPreview, mKeyPreviewVisibleWidth,
+                    mKeyPreviewVisibleHeight, mPaintToMeasure).build();
+        }
+    }
+
+    private static final class CacheKey {
+        // {@link Key} and {@link KeyboardId} are compared by value: the keyboards of a keyboard
+        // layout set are rebuilt once they have been garbage collected, and the same key may
+        // appear in several keyboards.
+        private final Key mParentKey;
+        private final KeyboardId mParentKeyboardId;
+        // The theme is compared by identity. The theme context is created again when the keyboard
+        // theme changes.
+        private final Resources.Theme mTheme;
+        private final boolean mIsSingleMoreKeyWithPreview;
+        private final int mKeyPreviewVisibleWidth;
+        private final int mKeyPreviewVisibleHeight;
+        private final int mHashCode;
+
+        CacheKey(final Request request) {
+            mParentKey = request.mParentKey;
+            mParentKeyboardId = request.mParentKeyboard.mId;
+            mTheme = request.mContext.getTheme();
+            mIsSingleMoreKeyWithPreview = request.mIsSingleMoreKeyWithPreview;
+            // The size of the key preview is only used by a single more key with preview.
+            mKeyPreviewVisibleWidth = mIsSingleMoreKeyWithPreview
+                    ? request.mKeyPreviewVisibleWidth : 0;
+            mKeyPreviewVisibleHeight = mIsSingleMoreKeyWithPreview
+                    ? request.mKeyPreviewVisibleHeight : 0;
+            mHashCode = Arrays.hashCode(new Object[] {
+                    mParentKey,
+                    mParentKeyboardId,
+                    System.identityHashCode(mTheme),
+                    mIsSingleMoreKeyWithPreview,
+                    mKeyPreviewVisibleWidth,
+                    mKeyPreviewVisibleHeight
+            });
+        }
+
+        @Override
+        public int hashCode() {
+            return mHashCode;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (!(o instanceof CacheKey)) {
+                return false;
+            }
+            final CacheKey other = (CacheKey)o;
+            return mHashCode == other.mHashCode
+                    && mParentKey.equals(other.mParentKey)
+                    && mParentKeyboardId.equals(other.mParentKeyboardId)
+                    && mTheme == other.mTheme
+                    && mIsSingleMoreKeyWithPreview == other.mIsSingleMoreKeyWithPreview
+                    && mKeyPreviewVisibleWidth == other.mKeyPreviewVisibleWidth
+                    && mKeyPreviewVisibleHeight == other.mKeyPreviewVisibleHeight;
+        }
+    }
+
+    // {@link LruCache} is thread-safe.
+    private final LruCache<CacheKey, MoreKeysKeyboard> mKeyboards =
+            new LruCache<>(MAX_KEYBOARD_COUNT);
+    private int mBuildCount;
+
+    public static MoreKeysKeyboardCache getInstance() {
+        return sInstance;
+    }
+
+    @UsedForTesting
+    MoreKeysKeyboardCache() {}
+
+    /**
+     * Gets the more keys keyboard of a request, building it if it isn't cached.
+     * @param request the parameters of the more keys keyboard.
+     * @return the more keys keyboard.
+     */
+    @Nonnull
+    public MoreKeysKeyboard getMoreKeysKeyboard(@Nonnull final Request request) {
+        final CacheKey cacheKey = new CacheKey(request);
+        final MoreKeysKeyboard cachedKeyboard = mKeyboards.get(cacheKey);
+        if (cachedKeyboard != null) {
+            return cachedKeyboard;
+        }
+        final MoreKeysKeyboard keyboard = request.build();
+        synchronized (this) {
+            mBuildCount++;
+        }
+        mKeyboards.put(cacheKey, keyboard);
+        return keyboard;
+    }
+
+    /**
+     * Builds the more keys keyboards of requests on the keyboard background executor, unless they
+     * are already cached.
+     * @param requests the parameters of the more keys keyboards.
+     */
+    public void prefetchMoreKeysKeyboards(@Nonnull final List<Request> requests) {
+        if (requests.isEmpty()) {
+            return;
+        }
+        final ArrayList<Request> requestsToBuild = new ArrayList<>(requests);
+        ExecutorUtils.getBackgroundExecutor(ExecutorUtils.KEYBOARD).execute(new Runnable() {
+            @Override
+            public void run() {
+                for (final Request request : requestsToBuild) {
+                    getMoreKeysKeyboard(request);
+                }
+            }
+        });
+    }
+
+    public void clear() {
+        mKeyboards.evictAll();
+    }
+
+    @UsedForTesting
+    boolean isCached(@Nonnull final Request request) {
+        return mKeyboards.get(new CacheKey(request)) != null;
+    }
+
+    @UsedForTesting
+    synchronized int getBuildCount() {
+        return mBuildCount;
+    }
+}
@@ -40,6 +40,8 @@ public class ProximityInfo {
     private static final float SEARCH_DISTANCE = 1.2f;
     @Nonnull
     private static final List<Key> EMPTY_KEY_LIST = Collections.emptyList();
+    @Nonnull
+    private static final Key[] EMPTY_KEY_ARRAY = new Key[0];
     private static final float DEFAULT_TOUCH_POSITION_CORRECTION_RADIUS = 0.15f;
 
     private final int mGridWidth;
@@ -56,6 +58,10 @@ public class ProximityInfo {
     private final List<Key> mSortedKeys;
     @Nonnull
     private final List<Key>[] mGridNeighbors;
+    // The keys whose hit box intersects the area that is mapped to each grid cell. Most cells
+    // have only one candidate, so that a hit test inside a key needs no iteration at all.
+    @Nonnull
+    private final Key[][] mGridHitCandidates;
 
     @SuppressWarnings("unchecked")
     ProximityInfo(final int gridWidth, final int gridHeight, final int minWidth, final int height,
@@ -73,6 +79,7 @@ public class ProximityInfo {
         mMostCommonKeyWidth = mostCommonKeyWidth;
         mSortedKeys = sortedKeys;
         mGridNeighbors = new List[mGridSize];
+        mGridHitCandidates = new Key[mGridSize][];
         if (minWidth == 0 || height == 0) {
             // No proximity required. Keyboard might be more keys keyboard.
             return;
@@ -364,6 +371,41 @@ y |---+---+---+---+-v-+-|-+---+---+---+---+---|          | thresholdBase and get
             }
             mGridNeighbors[i] = Collections.unmodifiableList(neighbors);
         }
+        computeHitCandidates();
+    }
+
+    private void computeHitCandidates() {
+        // A point out of the keyboard is mapped to the nearest edge cell by
+        // {@link Keyboard#getNearestKeys(int,int)}, so that the area of an edge cell extends to
+        // infinity in the direction of the edge. An edge key has an enlarged hit box to respond
+        // to such a point.
+        final int lastColumn = (mKeyboardMinWidth - 1) / mCellWidth;
+        final int lastRow = (mKeyboardHeight - 1) / mCellHeight;
+        final ArrayList<Key> candidates = new ArrayList<>();
+        for (int i = 0; i < mGridSize; ++i) {
+            final int column = i % mGridWidth;
+            final int row = i / mGridWidth;
+            final int left = (column == 0) ? Integer.MIN_VALUE : column * mCellWidth;
+            final int right = (column == lastColumn) ? Integer.MAX_VALUE
+                    : (column + 1) * mCellWidth;
+            final int top = (row == 0) ? Integer.MIN_VALUE : row * mCellHeight;
+            final int bottom = (row == lastRow) ? Integer.MAX_VALUE : (row + 1) * mCellHeight;
+            candidates.clear();
+            // Keep the order of the neighbors, which is used to break ties in
+            // {@link KeyDetector#detectHitKey(int,int)}.
+            final List<Key> neighbors = mGridNeighbors[i];
+            final int neighborsCount = neighbors.size();
+            for (int j = 0; j < neighborsCount; ++j) {
+                final Key key = neighbors.get(j);
+                final Rect hitBox = key.getHitBox();
+                if (hitBox.left < right && left < hitBox.right
+                        && hitBox.top < bottom && top < hitBox.bottom) {
+                    candidates.add(key);
+                }
+            }
+            mGridHitCandidates[i] = candidates.isEmpty() ? EMPTY_KEY_ARRAY
+                    : candidates.toArray(new Key[candidates.size()]);
+        }
     }
 
     public void fillArrayWithNearestKeyCodes(final int x, final int y, final int primaryKeyCode,
@@ -377,10 +419,12 @@ y |---+---+---+---+-v-+-|-+---+---+---+---+---|          | thresholdBase and get
             dest[index++] = primaryKeyCode;
         }
         final List<Key> nearestKeys = getNearestKeys(x, y);
-        for (Key key : nearestKeys) {
+        final int nearestKeysCount = nearestKeys.size();
+        for (int i = 0; i < nearestKeysCount; i++) {
             if (index >= destLength) {
                 break;
             }
+            final Key key = nearestKeys.get(i);
             final int code = key.getCode();
             if (code <= Constants.CODE_SPACE) {
                 break;
@@ -402,4 +446,23 @@ y |---+---+---+---+-v-+-|-+---+---+---+---+---|          | thresholdBase and get
         }
         return EMPTY_KEY_LIST;
     }
+
+    /**
+     * Returns the keys whose hit box may contain a point of the grid cell of the given point.
+     * The returned array is shared and must not be modified.
+     * @param x the x-coordinate of the point, that must be in the keyboard.
+     * @param y the y-coordinate of the point, that must be in the keyboard.
+     * @return the candidate keys of the given point. If the given point is out of range, then an
+     * array of size zero is returned.
+     */
+    @Nonnull
+    public Key[] getHitCandidateKeys(final int x, final int y) {
+        if (x >= 0 && x < mKeyboardMinWidth && y >= 0 && y < mKeyboardHeight) {
+            int index = (y / mCellHeight) * mGridWidth + (x / mCellWidth);
+            if (index < mGridSize) {
+                return mGridHitCandidates[index];
+            }
+        }
+        return EMPTY_KEY_ARRAY;
+    }
 }
@@ -16,20 +16,18 @@
 
 package com.android.inputmethod.keyboard.emoji;
 
-import android.content.SharedPreferences;
 import android.text.TextUtils;
 import android.util.Log;
 
 import com.android.inputmethod.keyboard.Key;
 import com.android.inputmethod.keyboard.Keyboard;
-import com.android.inputmethod.latin.settings.Settings;
-import com.android.inputmethod.latin.utils.JsonUtils;
+import com.android.inputmethod.latin.common.Constants;
 
 import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 /**
  * This is a Keyboard class where you can add keys dynamically shown in a grid layout
@@ -40,7 +38,8 @@ final class DynamicGridKeyboard extends Keyboard {
     private static final int TEMPLATE_KEY_CODE_1 = 0x31;
     private final Object mLock = new Object();
 
-    private final SharedPreferences mPrefs;
+    private final EmojiRecentsStore mRecentsStore;
+    private final Key mTemplateKey;
     private final int mHorizontalStep;
     private final int mVerticalStep;
     private final int mColumnsNum;
@@ -50,18 +49,20 @@ final class DynamicGridKeyboard extends Keyboard {
     private final ArrayDeque<Key> mPendingKeys = new ArrayDeque<>();
 
     private List<Key> mCachedGridKeys;
+    private Key[] mCachedGridKeysArray;
 
-    public DynamicGridKeyboard(final SharedPreferences prefs, final Keyboard templateKeyboard,
-            final int maxKeyCount, final int categoryId) {
+    public DynamicGridKeyboard(final EmojiRecentsStore recentsStore,
+            final Keyboard templateKeyboard, final int maxKeyCount, final int categoryId) {
         super(templateKeyboard);
         final Key key0 = getTemplateKey(TEMPLATE_KEY_CODE_0);
         final Key key1 = getTemplateKey(TEMPLATE_KEY_CODE_1);
+        mTemplateKey = key0;
         mHorizontalStep = Math.abs(key1.getX() - key0.getX());
         mVerticalStep = key0.getHeight() + mVerticalGap;
         mColumnsNum = mBaseWidth / mHorizontalStep;
         mMaxKeyCount = maxKeyCount;
         mIsRecents = categoryId == EmojiCategory.ID_RECENTS;
-        mPrefs = prefs;
+        mRecentsStore = recentsStore;
     }
 
     private Key getTemplateKey(final int code) {
@@ -105,6 +106,7 @@ final class DynamicGridKeyboard extends Keyboard {
         }
         synchronized (mLock) {
             mCachedGridKeys = null;
+            mCachedGridKeysArray = null;
             final GridKey key = new GridKey(usedKey);
             while (mGridKeys.remove(key)) {
                 // Remove duplicate keys.
@@ -138,50 +140,32 @@ final class DynamicGridKeyboard extends Keyboard {
                 keys.add(key.getCode());
             }
         }
-        final String jsonStr = JsonUtils.listToJsonStr(keys);
-        Settings.writeEmojiRecentKeys(mPrefs, jsonStr);
+        mRecentsStore.save(keys);
     }
 
-    private static Key getKeyByCode(final Collection<DynamicGridKeyboard> keyboards,
-            final int code) {
-        for (final DynamicGridKeyboard keyboard : keyboards) {
-            for (final Key key : keyboard.getSortedKeys()) {
-                if (key.getCode() == code) {
-                    return key;
-                }
-            }
-        }
-        return null;
-    }
-
-    private static Key getKeyByOutputText(final Collection<DynamicGridKeyboard> keyboards,
-            final String outputText) {
-        for (final DynamicGridKeyboard keyboard : keyboards) {
-            for (final Key key : keyboard.getSortedKeys()) {
-                if (outputText.equals(key.getOutputText())) {
-                    return key;
-                }
-            }
-        }
-        return null;
-    }
-
-    public void loadRecentKeys(final Collection<DynamicGridKeyboard> keyboards) {
-        final String str = Settings.readEmojiRecentKeys(mPrefs);
-        final List<Object> keys = JsonUtils.jsonStrToList(str);
-        for (final Object o : keys) {
-            final Key key;
+    /**
+     * Loads the recent keys from the store, without building the keyboards they come from.
+     * @param keySpecs the labels of the keys, keyed by the codes and the output texts of the keys
+     * as they are stored. The stored keys that aren't in there are skipped.
+     */
+    public void loadRecentKeys(final Map<Object, String> keySpecs) {
+        for (final Object o : mRecentsStore.load()) {
+            final int code;
+            final String outputText;
             if (o instanceof Integer) {
-                final int code = (Integer)o;
-                key = getKeyByCode(keyboards, code);
+                code = (Integer)o;
+                outputText = null;
             } else if (o instanceof String) {
-                final String outputText = (String)o;
-                key = getKeyByOutputText(keyboards, outputText);
+                code = Constants.CODE_OUTPUT_TEXT;
+                outputText = (String)o;
             } else {
                 Log.w(TAG, "Invalid object: " + o);
                 continue;
             }
-            addKeyLast(key);
+            final String label = keySpecs.get(o);
+            if (label != null) {
+                addKeyLast(new GridKey(mTemplateKey, label, code, outputText));
+            }
         }
     }
 
@@ -223,6 +207,18 @@ final class DynamicGridKeyboard extends Keyboard {
         return getSortedKeys();
     }
 
+    @Override
+    public Key[] getHitCandidateKeys(final int x, final int y) {
+        synchronized (mLock) {
+            if (mCachedGridKeysArray != null) {
+                return mCachedGridKeysArray;
+            }
+            final List<Key> sortedKeys = getSortedKeys();
+            mCachedGridKeysArray = sortedKeys.toArray(new Key[sortedKeys.size()]);
+            return mCachedGridKeysArray;
+        }
+    }
+
     static final class GridKey extends Key {
         private int mCurrentX;
         private int mCurrentY;
@@ -231,6 +227,11 @@ final class DynamicGridKeyboard extends Keyboard {
             super(originalKey);
         }
 
+        public GridKey(final Key templateKey, final String label, final int code,
+                final String outputText) {
+            super(templateKey, label, code, outputText);
+        }
+
         public void updateCoordinates(final int x0, final int y0, final int x1, final int y1) {
             mCurrentX = x0;
             mCurrentY = y0;
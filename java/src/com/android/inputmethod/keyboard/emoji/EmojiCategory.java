@@ -19,7 +19,6 @@ package com.android.inputmethod.keyboard.emoji;
 import android.content.SharedPreferences;
 import android.content.res.Resources;
 import android.content.res.TypedArray;
-import android.graphics.Paint;
 import android.graphics.Rect;
 import android.os.Build;
 import android.util.Log;
@@ -30,14 +29,17 @@ import com.android.inputmethod.keyboard.Key;
 import com.android.inputmethod.keyboard.Keyboard;
 import com.android.inputmethod.keyboard.KeyboardId;
 import com.android.inputmethod.keyboard.KeyboardLayoutSet;
+import com.android.inputmethod.keyboard.internal.CodesArrayParser;
 import com.android.inputmethod.latin.R;
+import com.android.inputmethod.latin.common.Constants;
 import com.android.inputmethod.latin.settings.Settings;
+import com.android.inputmethod.latin.utils.ExecutorUtils;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
-import java.util.List;
+import java.util.HashSet;
 import java.util.concurrent.ConcurrentHashMap;
 
 final class EmojiCategory {
@@ -147,35 +149,104 @@ final class EmojiCategory {
             KeyboardId.ELEMENT_EMOJI_CATEGORY15,
             KeyboardId.ELEMENT_EMOJI_CATEGORY16 };
 
+    // The arrays of the codes or texts the keyboard of each category is built from. They have to
+    // match the GridRows of the kbd_emoji_* keyboard layouts, so that the page count of each
+    // category can be computed without building its keyboard.
+    private static final int[] sCategoryKeysArrayId = {
+            R.array.emoji_recents,
+            R.array.emoji_faces,
+            R.array.emoji_objects,
+            R.array.emoji_nature,
+            R.array.emoji_places,
+            R.array.emoji_symbols,
+            R.array.emoji_emoticons,
+            R.array.emoji_flags,
+            R.array.emoji_eight_smiley_people,
+            R.array.emoji_eight_animals_nature,
+            R.array.emoji_eight_food_drink,
+            R.array.emoji_eight_travel_places,
+            R.array.emoji_eight_activity,
+            R.array.emoji_eight_objects,
+            R.array.emoji_eight_symbols,
+            R.array.emoji_eight_flags,
+            R.array.emoji_eight_smiley_people_boring };
+
+    // The pages of the view pager that are prefetched on each side of the current page. The view
+    // pager itself instantiates the adjacent pages, so the prefetched pages are ready by the time
+    // the user swipes to them.
+    private static final int PREFETCH_PAGE_DISTANCE = 2;
+
     private final SharedPreferences mPrefs;
+    private final EmojiRecentsStore mRecentsStore;
     private final Resources mRes;
     private final int mMaxPageKeyCount;
     private final KeyboardLayoutSet mLayoutSet;
+    // The index the categories are laid out with. It is provisional until the index of the
+    // process is ready.
+    private final EmojiGlyphSupport mGlyphSupport;
     private final HashMap<String, Integer> mCategoryNameToIdMap = new HashMap<>();
     private final int[] mCategoryTabIconId = new int[sCategoryName.length];
     private final ArrayList<CategoryProperties> mShownCategories = new ArrayList<>();
     private final ConcurrentHashMap<Long, DynamicGridKeyboard> mCategoryKeyboardMap =
             new ConcurrentHashMap<>();
+    // The keys of each category sorted into pages, indexed by category id.
+    private final ConcurrentHashMap<Integer, Key[][]> mCategoryPagesMap = new ConcurrentHashMap<>();
 
     private int mCurrentCategoryId = EmojiCategory.ID_UNSPECIFIED;
     private int mCurrentCategoryPageId = 0;
 
-    public EmojiCategory(final SharedPreferences prefs, final Resources res,
-            final KeyboardLayoutSet layoutSet, final TypedArray emojiPaletteViewAttr) {
+    public EmojiCategory(final SharedPreferences prefs, final EmojiRecentsStore recentsStore,
+            final Resources res, final KeyboardLayoutSet layoutSet,
+            final TypedArray emojiPaletteViewAttr) {
         mPrefs = prefs;
+        mRecentsStore = recentsStore;
         mRes = res;
         mMaxPageKeyCount = res.getInteger(R.integer.config_emoji_keyboard_max_page_key_count);
         mLayoutSet = layoutSet;
+        mGlyphSupport = EmojiGlyphSupport.getInstance(prefs, res, getCodesArrayIds());
         for (int i = 0; i < sCategoryName.length; ++i) {
             mCategoryNameToIdMap.put(sCategoryName[i], i);
             mCategoryTabIconId[i] = emojiPaletteViewAttr.getResourceId(
                     sCategoryTabIconAttr[i], 0);
         }
+        addShownCategories();
+    }
+
+    private EmojiCategory(final EmojiCategory category, final EmojiGlyphSupport glyphSupport) {
+        mPrefs = category.mPrefs;
+        mRecentsStore = category.mRecentsStore;
+        mRes = category.mRes;
+        mMaxPageKeyCount = category.mMaxPageKeyCount;
+        mLayoutSet = category.mLayoutSet;
+        mGlyphSupport = glyphSupport;
+        mCategoryNameToIdMap.putAll(category.mCategoryNameToIdMap);
+        System.arraycopy(category.mCategoryTabIconId, 0, mCategoryTabIconId, 0,
+                mCategoryTabIconId.length);
+        addShownCategories();
+    }
+
+    /**
+     * Returns the categories laid out with the index of the emoji glyphs of the process, if they
+     * are laid out with a provisional index and the index of the process has become ready since.
+     * The keyboards of the returned categories are built again.
+     * @return the new categories, or this if they don't need to be laid out again.
+     */
+    public EmojiCategory withLoadedGlyphSupport() {
+        if (!mGlyphSupport.isProvisional()) {
+            return this;
+        }
+        final EmojiGlyphSupport glyphSupport = EmojiGlyphSupport.getLoadedInstance();
+        if (glyphSupport == null) {
+            return this;
+        }
+        return new EmojiCategory(this, glyphSupport);
+    }
 
+    private void addShownCategories() {
         int defaultCategoryId = EmojiCategory.ID_SYMBOLS;
         addShownCategoryId(EmojiCategory.ID_RECENTS);
         if (BuildCompatUtils.EFFECTIVE_SDK_INT >= Build.VERSION_CODES.KITKAT) {
-            if (canShowUnicodeEightEmoji()) {
+            if (mGlyphSupport.canShowUnicodeEightEmoji()) {
                 defaultCategoryId = EmojiCategory.ID_EIGHT_SMILEY_PEOPLE;
                 addShownCategoryId(EmojiCategory.ID_EIGHT_SMILEY_PEOPLE);
                 addShownCategoryId(EmojiCategory.ID_EIGHT_ANIMALS_NATURE);
@@ -192,7 +263,7 @@ final class EmojiCategory {
                 addShownCategoryId(EmojiCategory.ID_NATURE);
                 addShownCategoryId(EmojiCategory.ID_PLACES);
                 addShownCategoryId(EmojiCategory.ID_SYMBOLS);
-                if (canShowFlagEmoji()) {
+                if (mGlyphSupport.canShowFlagEmoji()) {
                     addShownCategoryId(EmojiCategory.ID_FLAGS);
                 }
             }
@@ -201,10 +272,6 @@ final class EmojiCategory {
         }
         addShownCategoryId(EmojiCategory.ID_EMOTICONS);
 
-        DynamicGridKeyboard recentsKbd =
-                getKeyboard(EmojiCategory.ID_RECENTS, 0 /* categoryPageId */);
-        recentsKbd.loadRecentKeys(mCategoryKeyboardMap.values());
-
         mCurrentCategoryId = Settings.readLastShownEmojiCategoryId(mPrefs, defaultCategoryId);
         Log.i(TAG, "Last Emoji category id is " + mCurrentCategoryId);
         if (!isShownCategoryId(mCurrentCategoryId)) {
@@ -212,15 +279,14 @@ final class EmojiCategory {
                     " is invalid, starting in " + defaultCategoryId);
             mCurrentCategoryId = defaultCategoryId;
         } else if (mCurrentCategoryId == EmojiCategory.ID_RECENTS &&
-                recentsKbd.getSortedKeys().isEmpty()) {
+                mRecentsStore.load().isEmpty()) {
             Log.i(TAG, "No recent emojis found, starting in category " + defaultCategoryId);
             mCurrentCategoryId = defaultCategoryId;
         }
     }
 
     private void addShownCategoryId(final int categoryId) {
-        // Load a keyboard of categoryId
-        getKeyboard(categoryId, 0 /* categoryPageId */);
+        // The keyboards of the category are built when the view pager approaches its pages.
         final CategoryProperties properties =
                 new CategoryProperties(categoryId, getCategoryPageCount(categoryId));
         mShownCategories.add(properties);
@@ -328,8 +394,28 @@ final class EmojiCategory {
     }
 
     private int getCategoryPageCount(final int categoryId) {
-        final Keyboard keyboard = mLayoutSet.getKeyboard(sCategoryElementId[categoryId]);
-        return (keyboard.getSortedKeys().size() - 1) / mMaxPageKeyCount + 1;
+        return (getCategoryKeyCount(categoryId) - 1) / mMaxPageKeyCount + 1;
+    }
+
+    // Counts the keys of a category that are shown, without building its keyboard.
+    private int getCategoryKeyCount(final int categoryId) {
+        final int keysArrayId = sCategoryKeysArrayId[categoryId];
+        if (categoryId == EmojiCategory.ID_EMOTICONS) {
+            // The emoticons are a texts array of plain text that is always shown.
+            return mRes.getStringArray(keysArrayId).length;
+        }
+        return mGlyphSupport.getRenderableKeyCount(keysArrayId);
+    }
+
+    private static int[] getCodesArrayIds() {
+        final int[] codesArrayIds = new int[sCategoryKeysArrayId.length - 1];
+        int index = 0;
+        for (int categoryId = 0; categoryId < sCategoryKeysArrayId.length; categoryId++) {
+            if (categoryId != EmojiCategory.ID_EMOTICONS) {
+                codesArrayIds[index++] = sCategoryKeysArrayId[categoryId];
+            }
+        }
+        return codesArrayIds;
     }
 
     // Returns a pair of the category id and the category page id from the view pager's page
@@ -363,38 +449,136 @@ final class EmojiCategory {
     }
 
     public DynamicGridKeyboard getKeyboard(final int categoryId, final int id) {
-        synchronized (mCategoryKeyboardMap) {
-            final Long categoryKeyboardMapKey = getCategoryKeyboardMapKey(categoryId, id);
-            if (mCategoryKeyboardMap.containsKey(categoryKeyboardMapKey)) {
-                return mCategoryKeyboardMap.get(categoryKeyboardMapKey);
+        final Long categoryKeyboardMapKey = getCategoryKeyboardMapKey(categoryId, id);
+        final DynamicGridKeyboard cachedKeyboard = mCategoryKeyboardMap.get(categoryKeyboardMapKey);
+        if (cachedKeyboard != null) {
+            return cachedKeyboard;
+        }
+        // The keyboards may be built concurrently by the UI thread and by a prefetch. Only the
+        // keyboard that is put first is used.
+        final DynamicGridKeyboard kbd;
+        if (categoryId == EmojiCategory.ID_RECENTS) {
+            kbd = new DynamicGridKeyboard(mRecentsStore,
+                    mLayoutSet.getKeyboard(KeyboardId.ELEMENT_EMOJI_RECENTS),
+                    mMaxPageKeyCount, categoryId);
+            kbd.loadRecentKeys(getRecentKeyLabels());
+        } else {
+            final Key[][] sortedKeys = getCategoryPages(categoryId);
+            kbd = new DynamicGridKeyboard(mRecentsStore,
+                    mLayoutSet.getKeyboard(KeyboardId.ELEMENT_EMOJI_RECENTS),
+                    mMaxPageKeyCount, categoryId);
+            if (id >= 0 && id < sortedKeys.length) {
+                for (final Key emojiKey : sortedKeys[id]) {
+                    if (emojiKey == null) {
+                        break;
+                    }
+                    kbd.addKeyLast(emojiKey);
+                }
+            } else {
+                // The page count of the category has been computed from its codes array, that
+                // doesn't match its keyboard layout. The view pager still needs a keyboard for
+                // each page it has been told about, so the page is left empty.
+                Log.w(TAG, "Invalid page " + id + " of category " + categoryId);
             }
+        }
+        final DynamicGridKeyboard racingKeyboard =
+                mCategoryKeyboardMap.putIfAbsent(categoryKeyboardMapKey, kbd);
+        return (racingKeyboard != null) ? racingKeyboard : kbd;
+    }
 
-            if (categoryId == EmojiCategory.ID_RECENTS) {
-                final DynamicGridKeyboard kbd = new DynamicGridKeyboard(mPrefs,
-                        mLayoutSet.getKeyboard(KeyboardId.ELEMENT_EMOJI_RECENTS),
-                        mMaxPageKeyCount, categoryId);
-                mCategoryKeyboardMap.put(categoryKeyboardMapKey, kbd);
-                return kbd;
+    private Key[][] getCategoryPages(final int categoryId) {
+        final Key[][] cachedPages = mCategoryPagesMap.get(categoryId);
+        if (cachedPages != null) {
+            return cachedPages;
+        }
+        final Keyboard keyboard = mLayoutSet.getKeyboard(sCategoryElementId[categoryId]);
+        // Only the keys the system font can render are laid out in the pages.
+        final ArrayList<Key> renderableKeys = new ArrayList<>();
+        for (final Key key : keyboard.getSortedKeys()) {
+            if (mGlyphSupport.canShow(key.getLabel())) {
+                renderableKeys.add(key);
             }
+        }
+        final Key[][] sortedKeys = sortKeysIntoPages(renderableKeys, mMaxPageKeyCount);
+        if (sortedKeys.length != getCategoryPageSize(categoryId)) {
+            Log.w(TAG, "Category " + categoryId + " has " + sortedKeys.length
+                    + " pages instead of " + getCategoryPageSize(categoryId));
+        }
+        final Key[][] racingPages = mCategoryPagesMap.putIfAbsent(categoryId, sortedKeys);
+        return (racingPages != null) ? racingPages : sortedKeys;
+    }
 
-            final Keyboard keyboard = mLayoutSet.getKeyboard(sCategoryElementId[categoryId]);
-            final Key[][] sortedKeys = sortKeysIntoPages(
-                    keyboard.getSortedKeys(), mMaxPageKeyCount);
-            for (int pageId = 0; pageId < sortedKeys.length; ++pageId) {
-                final DynamicGridKeyboard tempKeyboard = new DynamicGridKeyboard(mPrefs,
-                        mLayoutSet.getKeyboard(KeyboardId.ELEMENT_EMOJI_RECENTS),
-                        mMaxPageKeyCount, categoryId);
-                for (final Key emojiKey : sortedKeys[pageId]) {
-                    if (emojiKey == null) {
-                        break;
+    // Returns the labels of the recent keys, keyed by the codes and the output texts of the keys
+    // as they are stored. They are looked up in the arrays of the shown categories rather than in
+    // their keyboards, so that the recents keyboard doesn't need to build every category keyboard.
+    private HashMap<Object, String> getRecentKeyLabels() {
+        final HashSet<Object> recentKeys = new HashSet<>(mRecentsStore.load());
+        final HashMap<Object, String> labels = new HashMap<>();
+        for (final CategoryProperties properties : mShownCategories) {
+            if (labels.size() == recentKeys.size()) {
+                break;
+            }
+            final int categoryId = properties.mCategoryId;
+            if (categoryId == EmojiCategory.ID_RECENTS) {
+                continue;
+            }
+            for (final String spec : mRes.getStringArray(sCategoryKeysArrayId[categoryId])) {
+                final Object key;
+                final String label;
+                if (categoryId == EmojiCategory.ID_EMOTICONS) {
+                    // The keys of a texts array output their text followed by a space.
+                    key = spec + (char)Constants.CODE_SPACE;
+                    label = spec;
+                } else {
+                    if (Build.VERSION.SDK_INT < CodesArrayParser.getMinSupportSdkVersion(spec)) {
+                        continue;
                     }
-                    tempKeyboard.addKeyLast(emojiKey);
+                    final String outputText = CodesArrayParser.parseOutputText(spec);
+                    key = (outputText != null) ? outputText : CodesArrayParser.parseCode(spec);
+                    label = CodesArrayParser.parseLabel(spec);
+                }
+                // The first key wins, as the categories are in display order.
+                if (recentKeys.contains(key) && !labels.containsKey(key)) {
+                    labels.put(key, label);
                 }
-                mCategoryKeyboardMap.put(
-                        getCategoryKeyboardMapKey(categoryId, pageId), tempKeyboard);
             }
-            return mCategoryKeyboardMap.get(categoryKeyboardMapKey);
         }
+        return labels;
+    }
+
+    /**
+     * Builds the keyboards of the pages around a page of the view pager, and the recents keyboard,
+     * in the background.
+     * @param position the page position in the view pager.
+     */
+    public void prefetchKeyboardsAround(final int position) {
+        final int firstPosition = Math.max(0, position - PREFETCH_PAGE_DISTANCE);
+        final int lastPosition = Math.min(getTotalPageCountOfAllCategories() - 1,
+                position + PREFETCH_PAGE_DISTANCE);
+        boolean hasMissingKeyboards = !mCategoryKeyboardMap.containsKey(
+                getCategoryKeyboardMapKey(EmojiCategory.ID_RECENTS, 0));
+        for (int pos = firstPosition; pos <= lastPosition && !hasMissingKeyboards; pos++) {
+            final Pair<Integer, Integer> categoryAndId =
+                    getCategoryIdAndPageIdFromPagePosition(pos);
+            hasMissingKeyboards = categoryAndId != null && !mCategoryKeyboardMap.containsKey(
+                    getCategoryKeyboardMapKey(categoryAndId.first, categoryAndId.second));
+        }
+        if (!hasMissingKeyboards) {
+            return;
+        }
+        ExecutorUtils.getBackgroundExecutor(ExecutorUtils.KEYBOARD).execute(new Runnable() {
+            @Override
+            public void run() {
+                getKeyboard(EmojiCategory.ID_RECENTS, 0 /* categoryPageId */);
+                for (int pos = firstPosition; pos <= lastPosition; pos++) {
+                    getKeyboardFromPagePosition(pos);
+                }
+            }
+        });
+    }
+
+    public boolean isKeyboardBuilt(final int categoryId, final int id) {
+        return mCategoryKeyboardMap.containsKey(getCategoryKeyboardMapKey(categoryId, id));
     }
 
     public int getTotalPageCountOfAllCategories() {
@@ -427,8 +611,7 @@ final class EmojiCategory {
         }
     };
 
-    private static Key[][] sortKeysIntoPages(final List<Key> inKeys, final int maxPageCount) {
-        final ArrayList<Key> keys = new ArrayList<>(inKeys);
+    private static Key[][] sortKeysIntoPages(final ArrayList<Key> keys, final int maxPageCount) {
         Collections.sort(keys, EMOJI_KEY_COMPARATOR);
         final int pageCount = (keys.size() - 1) / maxPageCount + 1;
         final Key[][] retval = new Key[pageCount][maxPageCount];
@@ -437,34 +620,4 @@ final class EmojiCategory {
         }
         return retval;
     }
-
-    private static boolean canShowFlagEmoji() {
-        Paint paint = new Paint();
-        String switzerland = "\uD83C\uDDE8\uD83C\uDDED"; //  U+1F1E8 U+1F1ED Flag for Switzerland
-        try {
-            return paint.hasGlyph(switzerland);
-        } catch (NoSuchMethodError e) {
-            // Compare display width of single-codepoint emoji to width of flag emoji to determine
-            // whether flag is rendered as single glyph or two adjacent regional indicator symbols.
-            float flagWidth = paint.measureText(switzerland);
-            float standardWidth = paint.measureText("\uD83D\uDC27"); //  U+1F427 Penguin
-            return flagWidth < standardWidth * 1.25;
-            // This assumes that a valid glyph for the flag emoji must be less than 1.25 times
-            // the width of the penguin.
-        }
-    }
-
-    private static boolean canShowUnicodeEightEmoji() {
-        Paint paint = new Paint();
-        String cheese = "\uD83E\uDDC0"; //  U+1F9C0 Cheese wedge
-        try {
-            return paint.hasGlyph(cheese);
-        } catch (NoSuchMethodError e) {
-            float cheeseWidth = paint.measureText(cheese);
-            float tofuWidth = paint.measureText("\uFFFE");
-            return cheeseWidth > tofuWidth;
-            // This assumes that a valid glyph for the cheese wedge must be greater than the width
-            // of the noncharacter.
-        }
-    }
 }
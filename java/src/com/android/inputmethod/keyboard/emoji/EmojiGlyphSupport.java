@@ -0,0 +1,278 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.inputmethod.keyboard.emoji;
+
+import android.content.SharedPreferences;
+import android.content.res.Resources;
+import android.graphics.Paint;
+import android.os.Build;
+import android.text.TextUtils;
+import android.util.Log;
+import android.util.SparseIntArray;
+
+import com.android.inputmethod.annotations.UsedForTesting;
+import com.android.inputmethod.keyboard.internal.CodesArrayParser;
+import com.android.inputmethod.latin.settings.Settings;
+import com.android.inputmethod.latin.utils.ExecutorUtils;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * An index of the emoji of the bundled keyboard layouts that the system font can't render.
+ *
+ * Probing a glyph is slow, so every emoji of the codes arrays is probed only once, and the
+ * result is persisted along with a fingerprint of the system build and of the probed emoji. The
+ * index is probed again only when either of them changes, for instance after a system update
+ * that brings new fonts.
+ *
+ * The index is loaded or probed on the keyboard background executor. Until it is ready, a
+ * provisional index shows all the emoji, and only knows whether flags and Unicode 8 emoji can be
+ * shown.
+ */
+final class EmojiGlyphSupport {
+    private static final String TAG = EmojiGlyphSupport.class.getSimpleName();
+
+    // U+1F1E8 U+1F1ED Flag for Switzerland
+    private static final String FLAG_PROBE = "\uD83C\uDDE8\uD83C\uDDED";
+    // U+1F427 Penguin
+    private static final String FLAG_REFERENCE = "\uD83D\uDC27";
+    // U+1F9C0 Cheese wedge
+    private static final String UNICODE_EIGHT_PROBE = "\uD83E\uDDC0";
+    private static final String TOFU_REFERENCE = "\uFFFE";
+
+    private static EmojiGlyphSupport sInstance;
+    private static boolean sIsLoading;
+
+    private final Paint mPaint = new Paint();
+    private final boolean mIsProvisional;
+    private final HashSet<String> mUnsupportedGlyphs = new HashSet<>();
+    // The number of keys of each codes array that are supported on this SDK version and that the
+    // system font can render.
+    private final SparseIntArray mRenderableKeyCounts = new SparseIntArray();
+    private int mProbeCount;
+
+    /**
+     * Gets the index of the process. The first call starts loading or probing it in the
+     * background, and a provisional index is returned until it is ready.
+     * @param prefs the preferences the index is persisted in.
+     * @param res the resources the codes arrays are read from.
+     * @param codesArrayIds the codes arrays of the bundled emoji keyboard layouts.
+     */
+    public static synchronized EmojiGlyphSupport getInstance(final SharedPreferences prefs,
+            final Resources res, final int[] codesArrayIds) {
+        if (sInstance != null) {
+            return sInstance;
+        }
+        if (!sIsLoading) {
+            sIsLoading = true;
+            ExecutorUtils.getBackgroundExecutor(ExecutorUtils.KEYBOARD).execute(new Runnable() {
+                @Override
+                public void run() {
+                    final EmojiGlyphSupport instance =
+                            new EmojiGlyphSupport(prefs, res, codesArrayIds);
+                    synchronized (EmojiGlyphSupport.class) {
+                        sInstance = instance;
+                    }
+                }
+            });
+        }
+        return newProvisionalInstance(prefs, res, codesArrayIds);
+    }
+
+    /**
+     * Gets the index of the process if it is ready.
+     * @return the index, or null if it is still being loaded or probed.
+     */
+    public static synchronized EmojiGlyphSupport getLoadedInstance() {
+        return sInstance;
+    }
+
+    /**
+     * Creates an index that shows all the emoji supported on this SDK version, without reading
+     * the labels of the codes arrays. Whether flags and Unicode 8 emoji can be shown is taken from
+     * the persisted index if there is one, even if it is outdated, or else probed.
+     */
+    @UsedForTesting
+    static EmojiGlyphSupport newProvisionalInstance(final SharedPreferences prefs,
+            final Resources res, final int[] codesArrayIds) {
+        return new EmojiGlyphSupport(prefs, res, codesArrayIds, true /* isProvisional */);
+    }
+
+    private EmojiGlyphSupport(final SharedPreferences prefs, final Resources res,
+            final int[] codesArrayIds, final boolean isProvisional) {
+        mIsProvisional = isProvisional;
+        if (!TextUtils.isEmpty(Settings.readEmojiGlyphSupportFingerprint(prefs))) {
+            final Set<String> unsupportedGlyphs = Settings.readEmojiUnsupportedGlyphs(prefs);
+            if (unsupportedGlyphs.contains(FLAG_PROBE)) {
+                mUnsupportedGlyphs.add(FLAG_PROBE);
+            }
+            if (unsupportedGlyphs.contains(UNICODE_EIGHT_PROBE)) {
+                mUnsupportedGlyphs.add(UNICODE_EIGHT_PROBE);
+            }
+        } else {
+            if (!probeFlag()) {
+                mUnsupportedGlyphs.add(FLAG_PROBE);
+            }
+            if (!probeUnicodeEight()) {
+                mUnsupportedGlyphs.add(UNICODE_EIGHT_PROBE);
+            }
+        }
+        for (final int codesArrayId : codesArrayIds) {
+            int count = 0;
+            for (final String spec : res.getStringArray(codesArrayId)) {
+                if (isSupportedOnThisSdk(spec)) {
+                    count++;
+                }
+            }
+            mRenderableKeyCounts.put(codesArrayId, count);
+        }
+    }
+
+    // Leaves out the keys that {@link KeyboardBuilder} doesn't build on this SDK.
+    private static boolean isSupportedOnThisSdk(final String spec) {
+        return spec.indexOf('|') < 0
+                || Build.VERSION.SDK_INT >= CodesArrayParser.getMinSupportSdkVersion(spec);
+    }
+
+    EmojiGlyphSupport(final SharedPreferences prefs, final Resources res,
+            final int[] codesArrayIds) {
+        mIsProvisional = false;
+        final ArrayList<String[]> labelsArrays = new ArrayList<>(codesArrayIds.length);
+        int hashCode = 0;
+        for (final int codesArrayId : codesArrayIds) {
+            final String[] specs = res.getStringArray(codesArrayId);
+            final String[] labels = new String[specs.length];
+            for (int i = 0; i < specs.length; i++) {
+                final String spec = specs[i];
+                hashCode = hashCode * 31 + spec.hashCode();
+                if (!isSupportedOnThisSdk(spec)) {
+                    continue;
+                }
+                labels[i] = CodesArrayParser.parseLabel(spec);
+            }
+            labelsArrays.add(labels);
+        }
+        final String fingerprint = Build.FINGERPRINT + "/" + Integer.toHexString(hashCode);
+
+        if (fingerprint.equals(Settings.readEmojiGlyphSupportFingerprint(prefs))) {
+            mUnsupportedGlyphs.addAll(Settings.readEmojiUnsupportedGlyphs(prefs));
+        } else {
+            Log.i(TAG, "Probing emoji glyphs for " + fingerprint);
+            if (!probeFlag()) {
+                mUnsupportedGlyphs.add(FLAG_PROBE);
+            }
+            if (!probeUnicodeEight()) {
+                mUnsupportedGlyphs.add(UNICODE_EIGHT_PROBE);
+            }
+            for (final String[] labels : labelsArrays) {
+                for (final String label : labels) {
+                    if (label != null && !mUnsupportedGlyphs.contains(label)
+                            && !probeGlyph(label)) {
+                        mUnsupportedGlyphs.add(label);
+                    }
+                }
+            }
+            Settings.writeEmojiGlyphSupport(prefs, fingerprint, mUnsupportedGlyphs);
+        }
+
+        for (int index = 0; index < codesArrayIds.length; index++) {
+            int count = 0;
+            for (final String label : labelsArrays.get(index)) {
+                if (label != null && !mUnsupportedGlyphs.contains(label)) {
+                    count++;
+                }
+            }
+            mRenderableKeyCounts.put(codesArrayIds[index], count);
+        }
+    }
+
+    private boolean probeGlyph(final String glyph) {
+        mProbeCount++;
+        try {
+            return mPaint.hasGlyph(glyph);
+        } catch (NoSuchMethodError e) {
+            // Without {@link Paint#hasGlyph(String)}, all the emoji are assumed to be renderable.
+            return true;
+        }
+    }
+
+    private boolean probeFlag() {
+        mProbeCount++;
+        try {
+            return mPaint.hasGlyph(FLAG_PROBE);
+        } catch (NoSuchMethodError e) {
+            // Compare display width of single-codepoint emoji to width of flag emoji to determine
+            // whether flag is rendered as single glyph or two adjacent regional indicator symbols.
+            final float flagWidth = mPaint.measureText(FLAG_PROBE);
+            final float standardWidth = mPaint.measureText(FLAG_REFERENCE);
+            return flagWidth < standardWidth * 1.25;
+            // This assumes that a valid glyph for the flag emoji must be less than 1.25 times
+            // the width of the penguin.
+        }
+    }
+
+    private boolean probeUnicodeEight() {
+        mProbeCount++;
+        try {
+            return mPaint.hasGlyph(UNICODE_EIGHT_PROBE);
+        } catch (NoSuchMethodError e) {
+            final float cheeseWidth = mPaint.measureText(UNICODE_EIGHT_PROBE);
+            final float tofuWidth = mPaint.measureText(TOFU_REFERENCE);
+            return cheeseWidth > tofuWidth;
+            // This assumes that a valid glyph for the cheese wedge must be greater than the width
+            // of the noncharacter.
+        }
+    }
+
+    public boolean canShowFlagEmoji() {
+        return !mUnsupportedGlyphs.contains(FLAG_PROBE);
+    }
+
+    public boolean canShowUnicodeEightEmoji() {
+        return !mUnsupportedGlyphs.contains(UNICODE_EIGHT_PROBE);
+    }
+
+    /**
+     * Returns whether the system font can render the label of an emoji key.
+     * @param label the label of the key.
+     */
+    public boolean canShow(final String label) {
+        return mIsProvisional || !mUnsupportedGlyphs.contains(label);
+    }
+
+    /**
+     * Returns whether this is the provisional index used until the index of the process is ready.
+     */
+    public boolean isProvisional() {
+        return mIsProvisional;
+    }
+
+    /**
+     * Returns the number of keys built from a codes array that the system font can render.
+     * @param codesArrayId the resource id of the codes array.
+     */
+    public int getRenderableKeyCount(final int codesArrayId) {
+        return mRenderableKeyCounts.get(codesArrayId);
+    }
+
+    @UsedForTesting
+    int getProbeCount() {
+        return mProbeCount;
+    }
+}
@@ -33,7 +33,6 @@ final class EmojiPalettesAdapter extends PagerAdapter {
     private static final boolean DEBUG_PAGER = false;
 
     private final EmojiPageKeyboardView.OnKeyEventListener mListener;
-    private final DynamicGridKeyboard mRecentsKeyboard;
     private final SparseArray<EmojiPageKeyboardView> mActiveKeyboardViews = new SparseArray<>();
     private final EmojiCategory mEmojiCategory;
     private int mActivePosition = 0;
@@ -42,11 +41,18 @@ final class EmojiPalettesAdapter extends PagerAdapter {
             final EmojiPageKeyboardView.OnKeyEventListener listener) {
         mEmojiCategory = emojiCategory;
         mListener = listener;
-        mRecentsKeyboard = mEmojiCategory.getKeyboard(EmojiCategory.ID_RECENTS, 0);
+    }
+
+    private DynamicGridKeyboard getRecentsKeyboard() {
+        return mEmojiCategory.getKeyboard(EmojiCategory.ID_RECENTS, 0 /* categoryPageId */);
     }
 
     public void flushPendingRecentKeys() {
-        mRecentsKeyboard.flushPendingRecentKeys();
+        if (!mEmojiCategory.isKeyboardBuilt(EmojiCategory.ID_RECENTS, 0 /* categoryPageId */)) {
+            // No recent key can be pending before the recents keyboard is built.
+            return;
+        }
+        getRecentsKeyboard().flushPendingRecentKeys();
         final KeyboardView recentKeyboardView =
                 mActiveKeyboardViews.get(mEmojiCategory.getRecentTabId());
         if (recentKeyboardView != null) {
@@ -56,10 +62,10 @@ final class EmojiPalettesAdapter extends PagerAdapter {
 
     public void addRecentKey(final Key key) {
         if (mEmojiCategory.isInRecentTab()) {
-            mRecentsKeyboard.addPendingKey(key);
+            getRecentsKeyboard().addPendingKey(key);
             return;
         }
-        mRecentsKeyboard.addKeyFirst(key);
+        getRecentsKeyboard().addKeyFirst(key);
         final KeyboardView recentKeyboardView =
                 mActiveKeyboardViews.get(mEmojiCategory.getRecentTabId());
         if (recentKeyboardView != null) {
@@ -90,6 +96,7 @@ final class EmojiPalettesAdapter extends PagerAdapter {
     @Override
     public void setPrimaryItem(final ViewGroup container, final int position,
             final Object object) {
+        mEmojiCategory.prefetchKeyboardsAround(position);
         if (mActivePosition == position) {
             return;
         }
@@ -117,7 +124,11 @@ final class EmojiPalettesAdapter extends PagerAdapter {
         final LayoutInflater inflater = LayoutInflater.from(container.getContext());
         final EmojiPageKeyboardView keyboardView = (EmojiPageKeyboardView)inflater.inflate(
                 R.layout.emoji_keyboard_page, container, false /* attachToRoot */);
-        keyboardView.setKeyboard(keyboard);
+        if (keyboard != null) {
+            keyboardView.setKeyboard(keyboard);
+        } else {
+            Log.w(TAG, "No keyboard for page " + position);
+        }
         keyboardView.setOnKeyEventListener(mListener);
         container.addView(keyboardView);
         mActiveKeyboardViews.put(position, keyboardView);
@@ -21,7 +21,9 @@ import static com.android.inputmethod.latin.common.Constants.NOT_A_COORDINATE;
 import android.content.Context;
 import android.content.res.Resources;
 import android.content.res.TypedArray;
+import android.graphics.Canvas;
 import android.graphics.Color;
+import android.os.SystemClock;
 import android.preference.PreferenceManager;
 import androidx.viewpager.widget.ViewPager;
 import android.util.AttributeSet;
@@ -49,6 +51,7 @@ import com.android.inputmethod.latin.AudioAndHapticFeedbackManager;
 import com.android.inputmethod.latin.R;
 import com.android.inputmethod.latin.RichInputMethodSubtype;
 import com.android.inputmethod.latin.common.Constants;
+import com.android.inputmethod.latin.utils.LatencyHistogram;
 import com.android.inputmethod.latin.utils.ResourceUtils;
 
 /**
@@ -65,6 +68,11 @@ import com.android.inputmethod.latin.utils.ResourceUtils;
 public final class EmojiPalettesView extends LinearLayout implements OnTabChangeListener,
         ViewPager.OnPageChangeListener, View.OnClickListener, View.OnTouchListener,
         EmojiPageKeyboardView.OnKeyEventListener {
+    // The palettes view is created again with each input view, so the latencies are recorded
+    // for the whole process.
+    private static final LatencyHistogram sFirstFrameLatency =
+            new LatencyHistogram("Emoji palettes start to first frame");
+
     private final int mFunctionalKeyBackgroundId;
     private final int mSpacebarBackgroundId;
     private final boolean mCategoryIndicatorEnabled;
@@ -88,8 +96,11 @@ public final class EmojiPalettesView extends LinearLayout implements OnTabChange
     private EmojiCategoryPageIndicatorView mEmojiCategoryPageIndicatorView;
 
     private KeyboardActionListener mKeyboardActionListener = KeyboardActionListener.EMPTY_LISTENER;
+    // The time {@link #startEmojiPalettes} has been called, until the first frame is drawn.
+    private long mStartEmojiPalettesTime;
 
-    private final EmojiCategory mEmojiCategory;
+    private EmojiCategory mEmojiCategory;
+    private final EmojiRecentsStore mRecentsStore;
 
     public EmojiPalettesView(final Context context, final AttributeSet attrs) {
         this(context, attrs, R.attr.emojiPalettesViewStyle);
@@ -116,8 +127,9 @@ public final class EmojiPalettesView extends LinearLayout implements OnTabChange
         final KeyboardLayoutSet layoutSet = builder.build();
         final TypedArray emojiPalettesViewAttr = context.obtainStyledAttributes(attrs,
                 R.styleable.EmojiPalettesView, defStyle, R.style.EmojiPalettesView);
+        mRecentsStore = EmojiRecentsStore.getInstance(context);
         mEmojiCategory = new EmojiCategory(PreferenceManager.getDefaultSharedPreferences(context),
-                res, layoutSet, emojiPalettesViewAttr);
+                mRecentsStore, res, layoutSet, emojiPalettesViewAttr);
         mCategoryIndicatorEnabled = emojiPalettesViewAttr.getBoolean(
                 R.styleable.EmojiPalettesView_categoryIndicatorEnabled, false);
         mCategoryIndicatorDrawableResId = emojiPalettesViewAttr.getResourceId(
@@ -231,6 +243,19 @@ public final class EmojiPalettesView extends LinearLayout implements OnTabChange
         mSpacebarIcon = findViewById(R.id.emoji_keyboard_space_icon);
     }
 
+    @Override
+    protected void dispatchDraw(final Canvas canvas) {
+        super.dispatchDraw(canvas);
+        if (mStartEmojiPalettesTime != 0) {
+            sFirstFrameLatency.record(SystemClock.uptimeMillis() - mStartEmojiPalettesTime);
+            mStartEmojiPalettesTime = 0;
+        }
+    }
+
+    public static LatencyHistogram getFirstFrameLatency() {
+        return sFirstFrameLatency;
+    }
+
     @Override
     public boolean dispatchTouchEvent(final MotionEvent ev) {
         // Add here to the stack trace to nail down the {@link IllegalArgumentException} exception
@@ -374,6 +399,7 @@ public final class EmojiPalettesView extends LinearLayout implements OnTabChange
     public void startEmojiPalettes(final String switchToAlphaLabel,
                                    final KeyVisualAttributes keyVisualAttr,
                                    final KeyboardIconsSet iconSet) {
+        mStartEmojiPalettesTime = SystemClock.uptimeMillis();
         final int deleteIconResId = iconSet.getIconResourceId(KeyboardIconsSet.NAME_DELETE_KEY);
         if (deleteIconResId != 0) {
             mDeleteKey.setImageResource(deleteIconResId);
@@ -387,13 +413,40 @@ public final class EmojiPalettesView extends LinearLayout implements OnTabChange
         params.updateParams(mEmojiLayoutParams.getActionBarHeight(), keyVisualAttr);
         setupAlphabetKey(mAlphabetKeyLeft, switchToAlphaLabel, params);
         setupAlphabetKey(mAlphabetKeyRight, switchToAlphaLabel, params);
+        updateEmojiCategory();
         mEmojiPager.setAdapter(mEmojiPalettesAdapter);
         mEmojiPager.setCurrentItem(mCurrentPagerPosition);
     }
 
+    // Lays the categories out again once the index of the emoji glyphs of the process is ready,
+    // if they were laid out with a provisional one.
+    private void updateEmojiCategory() {
+        final EmojiCategory emojiCategory = mEmojiCategory.withLoadedGlyphSupport();
+        if (emojiCategory == mEmojiCategory) {
+            return;
+        }
+        mEmojiCategory = emojiCategory;
+        // Adding the first tab selects it, which isn't a choice of the user.
+        mTabHost.setOnTabChangedListener(null);
+        mTabHost.clearAllTabs();
+        for (final EmojiCategory.CategoryProperties properties
+                : mEmojiCategory.getShownCategories()) {
+            addTab(mTabHost, properties.mCategoryId);
+        }
+        mTabHost.setOnTabChangedListener(this);
+        mEmojiPalettesAdapter = new EmojiPalettesAdapter(mEmojiCategory, this);
+        mEmojiPager.setAdapter(mEmojiPalettesAdapter);
+        final int categoryId = mEmojiCategory.getCurrentCategoryId();
+        mCurrentPagerPosition = mEmojiCategory.getPageIdFromCategoryId(categoryId);
+        setCurrentCategoryId(categoryId, true /* force */);
+    }
+
     public void stopEmojiPalettes() {
         mEmojiPalettesAdapter.releaseCurrentKey(true /* withKeyRegistering */);
         mEmojiPalettesAdapter.flushPendingRecentKeys();
+        // Don't wait for the recent keys to settle, the process may be killed once the emoji
+        // palettes are hidden.
+        mRecentsStore.flush();
         mEmojiPager.setAdapter(null);
     }
 
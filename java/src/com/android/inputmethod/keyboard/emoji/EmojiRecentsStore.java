@@ -0,0 +1,254 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.inputmethod.keyboard.emoji;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+import android.text.TextUtils;
+import android.util.AtomicFile;
+import android.util.Log;
+
+import com.android.inputmethod.annotations.UsedForTesting;
+import com.android.inputmethod.latin.settings.Settings;
+import com.android.inputmethod.latin.utils.ExecutorUtils;
+import com.android.inputmethod.latin.utils.JsonUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+
+/**
+ * The persistent store of the recent emoji keys.
+ *
+ * The recent keys are written to a small binary file: a magic number and a format version, the
+ * number of keys, then the keys in order, each as a tag followed by either the code or the
+ * output text of the key. Saving the keys only records them in memory, and the file is written
+ * on the keyboard background executor once the keys have stopped changing for a while, so that
+ * typing emoji doesn't rewrite the file on each press.
+ * The recent keys used to be stored as a JSON string in the preferences; they are migrated to the
+ * file the first time they are loaded.
+ */
+final class EmojiRecentsStore {
+    private static final String TAG = EmojiRecentsStore.class.getSimpleName();
+
+    private static final String FILE_NAME = "emoji_recents";
+    private static final int MAGIC_NUMBER = 0x454D5243;
+    @UsedForTesting
+    static final int FORMAT_VERSION = 1;
+    private static final int TAG_CODE = 0;
+    private static final int TAG_OUTPUT_TEXT = 1;
+    private static final long SAVE_DELAY_MS = 2000;
+
+    private static EmojiRecentsStore sInstance;
+
+    private final SharedPreferences mPrefs;
+    private final AtomicFile mFile;
+    private final Object mLock = new Object();
+    // The last keys that have been loaded or saved, or null if they haven't been loaded yet.
+    private List<Object> mKeys;
+    // True while a write of {@link #mKeys} to the file is pending.
+    private boolean mIsWritePending;
+
+    private final Runnable mWriteRunnable = new Runnable() {
+        @Override
+        public void run() {
+            final List<Object> keys;
+            synchronized (mLock) {
+                if (!mIsWritePending) {
+                    return;
+                }
+                mIsWritePending = false;
+                keys = mKeys;
+            }
+            write(keys);
+        }
+    };
+
+    // The store is shared by the palettes views of the process, so that a view that is created
+    // while the previous one still has a pending write loads the most recent keys.
+    public static synchronized EmojiRecentsStore getInstance(final Context context) {
+        if (sInstance == null) {
+            sInstance = new EmojiRecentsStore(
+                    PreferenceManager.getDefaultSharedPreferences(context),
+                    new File(context.getFilesDir(), FILE_NAME));
+        }
+        return sInstance;
+    }
+
+    @UsedForTesting
+    EmojiRecentsStore(final SharedPreferences prefs, final File file) {
+        mPrefs = prefs;
+        mFile = new AtomicFile(file);
+    }
+
+    /**
+     * Loads the recent keys.
+     * @return the codes of the recent keys as {@link Integer}s, and the output texts of the recent
+     * keys that have one as {@link String}s, the most recent first.
+     */
+    @Nonnull
+    public List<Object> load() {
+        synchronized (mLock) {
+            if (mKeys != null) {
+                return mKeys;
+            }
+        }
+        List<Object> keys = read();
+        if (keys == null) {
+            // Migrate the recent keys from the preferences.
+            keys = JsonUtils.jsonStrToList(Settings.readEmojiRecentKeys(mPrefs));
+            if (!keys.isEmpty()) {
+                save(keys);
+            }
+        }
+        synchronized (mLock) {
+            if (mKeys == null) {
+                mKeys = Collections.unmodifiableList(keys);
+            }
+            return mKeys;
+        }
+    }
+
+    /**
+     * Saves the recent keys. They are written to the file after a delay.
+     * @param keys the keys in the form returned by {@link #load()}.
+     */
+    public void save(@Nonnull final List<Object> keys) {
+        synchronized (mLock) {
+            mKeys = Collections.unmodifiableList(new ArrayList<>(keys));
+            if (mIsWritePending) {
+                return;
+            }
+            mIsWritePending = true;
+        }
+        ExecutorUtils.getBackgroundExecutor(ExecutorUtils.KEYBOARD).schedule(
+                mWriteRunnable, SAVE_DELAY_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Writes the pending keys to the file without waiting for the delay.
+     */
+    public void flush() {
+        synchronized (mLock) {
+            if (!mIsWritePending) {
+                return;
+            }
+        }
+        ExecutorUtils.getBackgroundExecutor(ExecutorUtils.KEYBOARD).execute(mWriteRunnable);
+    }
+
+    // Returns null if there is no file yet.
+    private List<Object> read() {
+        final byte[] data;
+        try {
+            data = mFile.readFully();
+        } catch (final FileNotFoundException e) {
+            return null;
+        } catch (final IOException e) {
+            Log.w(TAG, "Can't read recent emoji keys", e);
+            return new ArrayList<>();
+        }
+        return decode(data);
+    }
+
+    private void write(final List<Object> keys) {
+        FileOutputStream out = null;
+        try {
+            out = mFile.startWrite();
+            out.write(encode(keys));
+            mFile.finishWrite(out);
+        } catch (final IOException e) {
+            Log.w(TAG, "Can't write recent emoji keys", e);
+            mFile.failWrite(out);
+            return;
+        }
+        if (!TextUtils.isEmpty(Settings.readEmojiRecentKeys(mPrefs))) {
+            Settings.removeEmojiRecentKeys(mPrefs);
+        }
+    }
+
+    @UsedForTesting
+    static byte[] encode(final List<Object> keys) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC_NUMBER);
+        out.writeByte(FORMAT_VERSION);
+        int count = 0;
+        for (final Object key : keys) {
+            if (key instanceof Integer || key instanceof String) {
+                count++;
+            }
+        }
+        out.writeShort(count);
+        for (final Object key : keys) {
+            if (key instanceof Integer) {
+                out.writeByte(TAG_CODE);
+                out.writeInt((Integer)key);
+            } else if (key instanceof String) {
+                out.writeByte(TAG_OUTPUT_TEXT);
+                out.writeUTF((String)key);
+            }
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    @UsedForTesting
+    @Nonnull
+    static List<Object> decode(final byte[] data) {
+        final ArrayList<Object> keys = new ArrayList<>();
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        try {
+            if (in.readInt() != MAGIC_NUMBER) {
+                Log.w(TAG, "Invalid recent emoji keys file");
+                return keys;
+            }
+            final int version = in.readUnsignedByte();
+            if (version != FORMAT_VERSION) {
+                Log.w(TAG, "Unknown recent emoji keys format version: " + version);
+                return keys;
+            }
+            final int count = in.readUnsignedShort();
+            for (int i = 0; i < count; i++) {
+                final int tag = in.readUnsignedByte();
+                if (tag == TAG_CODE) {
+                    keys.add(in.readInt());
+                } else if (tag == TAG_OUTPUT_TEXT) {
+                    keys.add(in.readUTF());
+                } else {
+                    Log.w(TAG, "Invalid recent emoji key tag: " + tag);
+                    break;
+                }
+            }
+        } catch (final IOException e) {
+            Log.w(TAG, "Truncated recent emoji keys file", e);
+        }
+        return keys;
+    }
+}
@@ -149,6 +149,12 @@ public class BatchInputArbiter {
             final int size = sAggregatedPointers.getPointerSize();
             if (size > sLastRecognitionPointSize && mRecognitionPoints.hasRecognitionTimePast(
                     moveEventTime, sLastRecognitionTime)) {
+                if (mRecognitionPoints.hasPendingRecognition(moveEventTime)) {
+                    // Don't queue another recognition behind the pending one. The points will be
+                    // recognized by a later move event or by the timer.
+                    listener.onStartUpdateBatchInputTimer();
+                    return;
+                }
                 listener.onUpdateBatchInput(sAggregatedPointers, moveEventTime);
                 listener.onStartUpdateBatchInputTimer();
                 // The listener may change the size of the pointers (when auto-committing
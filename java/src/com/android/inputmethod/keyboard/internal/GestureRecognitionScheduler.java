@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.inputmethod.keyboard.internal;
+
+import com.android.inputmethod.annotations.UsedForTesting;
+
+/**
+ * This class schedules the incremental recognitions of a batch input according to the measured
+ * latency of the gesture decoder.
+ *
+ * The recognition interval follows the average decoding latency within a range around
+ * {@link GestureStrokeRecognitionParams#mRecognitionMinimumTime}, so that slow devices don't
+ * queue up recognitions that are stale by the time they run and fast devices update the
+ * suggestions more often. While an incremental recognition is pending, no other one is requested.
+ *
+ * All times are in milliseconds of {@link android.os.SystemClock#uptimeMillis()}, the time base of
+ * motion events.
+ */
+public final class GestureRecognitionScheduler {
+    public static final int NOT_A_REQUEST_ID = 0;
+
+    private static final int NOT_MEASURED = -1;
+    // The weight of the latest latency in the moving average of the latencies, in percent.
+    private static final int LATENCY_WEIGHT_PERCENT = 25;
+    // The recognition interval leaves this headroom over the average latency, in percent.
+    private static final int INTERVAL_HEADROOM_PERCENT = 125;
+    // The recognition interval is kept between the minimum time of the recognition divided by
+    // {@link #MIN_INTERVAL_DIVISOR} and multiplied by {@link #MAX_INTERVAL_MULTIPLIER}.
+    private static final int MIN_INTERVAL_DIVISOR = 2;
+    private static final int MAX_INTERVAL_MULTIPLIER = 4;
+
+    private static final GestureRecognitionScheduler sInstance = new GestureRecognitionScheduler();
+
+    private int mAverageLatency = NOT_MEASURED; // msec
+    private int mLastRequestId = NOT_A_REQUEST_ID;
+    private int mPendingRequestId = NOT_A_REQUEST_ID;
+    private long mPendingRequestTime;
+
+    public static GestureRecognitionScheduler getInstance() {
+        return sInstance;
+    }
+
+    @UsedForTesting
+    GestureRecognitionScheduler() {
+        // Intentional empty constructor.
+    }
+
+    /**
+     * Get the interval between two incremental recognitions.
+     * @param minimumTime the minimum time of the recognition from
+     *     {@link GestureStrokeRecognitionParams}.
+     * @return the interval in milliseconds.
+     */
+    public synchronized int getRecognitionInterval(final int minimumTime) {
+        if (mAverageLatency == NOT_MEASURED) {
+            return minimumTime;
+        }
+        final int interval = mAverageLatency * INTERVAL_HEADROOM_PERCENT / 100;
+        return Math.max(minimumTime / MIN_INTERVAL_DIVISOR,
+                Math.min(minimumTime * MAX_INTERVAL_MULTIPLIER, interval));
+    }
+
+    /**
+     * Determine whether an incremental recognition is still pending.
+     * A pending recognition that has taken much longer than the longest recognition interval is
+     * regarded as lost, so that the incremental recognitions never stall.
+     * @param currentTime the current time.
+     * @param minimumTime the minimum time of the recognition from
+     *     {@link GestureStrokeRecognitionParams}.
+     * @return true if a new incremental recognition should not be requested yet.
+     */
+    public synchronized boolean hasPendingRecognition(final long currentTime,
+            final int minimumTime) {
+        if (mPendingRequestId == NOT_A_REQUEST_ID) {
+            return false;
+        }
+        return currentTime - mPendingRequestTime <= minimumTime * MAX_INTERVAL_MULTIPLIER;
+    }
+
+    /**
+     * Record a request for a recognition. The new request supersedes all previous ones.
+     * @param requestTime the time of this request.
+     * @param isTailBatchInput true if this is the recognition of the end of a batch input.
+     * @return the id of this request.
+     */
+    public synchronized int onRecognitionRequested(final long requestTime,
+            final boolean isTailBatchInput) {
+        mLastRequestId++;
+        if (mLastRequestId == NOT_A_REQUEST_ID) {
+            mLastRequestId++;
+        }
+        // The recognition of the end of a batch input never blocks incremental recognitions of
+        // the next batch input.
+        mPendingRequestId = isTailBatchInput ? NOT_A_REQUEST_ID : mLastRequestId;
+        mPendingRequestTime = requestTime;
+        return mLastRequestId;
+    }
+
+    /**
+     * Record the completion of a recognition and update the average latency. The latency of a
+     * superseded request is ignored, because the request may have been canceled halfway.
+     * @param requestId the id of the request from {@link #onRecognitionRequested(long,boolean)}.
+     * @param latency the time from the request to the completion of the recognition.
+     * @return true if the request has not been superseded by another request.
+     */
+    public synchronized boolean onRecognitionCompleted(final int requestId, final int latency) {
+        if (requestId == mPendingRequestId) {
+            mPendingRequestId = NOT_A_REQUEST_ID;
+        }
+        if (requestId != mLastRequestId) {
+            return false;
+        }
+        if (mAverageLatency == NOT_MEASURED) {
+            mAverageLatency = latency;
+        } else {
+            mAverageLatency = (latency * LATENCY_WEIGHT_PERCENT
+                    + mAverageLatency * (100 - LATENCY_WEIGHT_PERCENT)) / 100;
+        }
+        return true;
+    }
+
+    /**
+     * Forget the pending recognition, for example when the batch input has been canceled.
+     */
+    public synchronized void onRecognitionCanceled() {
+        mPendingRequestId = NOT_A_REQUEST_ID;
+    }
+
+    @UsedForTesting
+    synchronized int getAverageLatency() {
+        return mAverageLatency;
+    }
+}
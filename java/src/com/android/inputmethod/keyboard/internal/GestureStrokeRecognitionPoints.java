@@ -305,7 +305,14 @@ public final class GestureStrokeRecognitionPoints {
     // TODO: Make this package private
     public final boolean hasRecognitionTimePast(
             final long currentTime, final long lastRecognitionTime) {
-        return currentTime > lastRecognitionTime + mRecognitionParams.mRecognitionMinimumTime;
+        return currentTime > lastRecognitionTime + GestureRecognitionScheduler.getInstance()
+                .getRecognitionInterval(mRecognitionParams.mRecognitionMinimumTime);
+    }
+
+    // TODO: Make this package private
+    public final boolean hasPendingRecognition(final long currentTime) {
+        return GestureRecognitionScheduler.getInstance().hasPendingRecognition(
+                currentTime, mRecognitionParams.mRecognitionMinimumTime);
     }
 
     // TODO: Make this package private
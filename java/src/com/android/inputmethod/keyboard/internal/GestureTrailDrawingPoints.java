@@ -52,6 +52,7 @@ final class GestureTrailDrawingPoints {
     private long mCurrentTimeBase;
     private int mTrailStartIndex;
     private int mLastInterpolatedDrawIndex;
+    private final GestureTrailOutline mOutline = new GestureTrailOutline(DEFAULT_CAPACITY);
 
     // Use this value as imaginary zero because x-coordinates may be zero.
     private static final int DOWN_EVENT_MARKER = -128;
@@ -95,6 +96,8 @@ final class GestureTrailDrawingPoints {
                 ? mLastInterpolatedDrawIndex : trailSize;
         mLastInterpolatedDrawIndex = stroke.interpolateStrokeAndReturnStartIndexOfLastSegment(
                 lastInterpolatedIndex, mEventTimes, mXCoordinates, mYCoordinates, mPointTypes);
+        // The points from the last segment on have been appended or interpolated again.
+        mOutline.invalidateFrom(Math.min(lastInterpolatedIndex, trailSize));
         if (strokeId != mCurrentStrokeId) {
             final int elapsedTime = (int)(downTime - mCurrentTimeBase);
             for (int i = mTrailStartIndex; i < trailSize; i++) {
@@ -129,6 +132,15 @@ final class GestureTrailDrawingPoints {
         return Constants.Color.ALPHA_OPAQUE - decreasingAlpha;
     }
 
+    // The alpha of the fading segments is rounded up to a multiple of this, so that the segments
+    // are drawn with a few paths instead of one path each.
+    private static final int ALPHA_STEP = 8;
+
+    private static int quantizeAlpha(final int alpha) {
+        return Math.min((alpha + ALPHA_STEP - 1) / ALPHA_STEP * ALPHA_STEP,
+                Constants.Color.ALPHA_OPAQUE);
+    }
+
     /**
      * Calculate the width of a gesture trail.
      * A gesture trail starts from the width of mTrailStartWidth and reduces its width in proportion
@@ -143,8 +155,8 @@ final class GestureTrailDrawingPoints {
         return params.mTrailStartWidth - (deltaWidth * elapsedTime) / params.mTrailLingerDuration;
     }
 
-    private final RoundedLine mRoundedLine = new RoundedLine();
-    private final Rect mRoundedLineBounds = new Rect();
+    private final Path mTrailPath = new Path();
+    private final Rect mSegmentBounds = new Rect();
 
     /**
      * Draw gesture trail
@@ -188,7 +200,12 @@ final class GestureTrailDrawingPoints {
         if (startIndex < trailSize) {
             paint.setColor(params.mTrailColor);
             paint.setStyle(Paint.Style.FILL);
-            final RoundedLine roundedLine = mRoundedLine;
+            final GestureTrailOutline outline = mOutline;
+            // The consecutive segments that have the same alpha are drawn as a single path.
+            final Path path = mTrailPath;
+            path.rewind();
+            int pathAlpha = Constants.Color.ALPHA_OPAQUE;
+            float pathShadowRadius = 0.0f;
             int p1x = getXCoordValue(xCoords[startIndex]);
             int p1y = yCoords[startIndex];
             final int lastTime = sinceDown - eventTimes[startIndex];
@@ -200,28 +217,38 @@ final class GestureTrailDrawingPoints {
                 final float r2 = getWidth(elapsedTime, params) / 2.0f;
                 // Draw trail line only when the current point isn't a down point.
                 if (!isDownEventXCoord(xCoords[i])) {
+                    final int alpha = quantizeAlpha(getAlpha(elapsedTime, params));
+                    if (alpha != pathAlpha && !path.isEmpty()) {
+                        drawTrailPath(canvas, paint, path, pathAlpha, pathShadowRadius, params);
+                        path.rewind();
+                        pathShadowRadius = 0.0f;
+                    }
+                    pathAlpha = alpha;
                     final float body1 = r1 * params.mTrailBodyRatio;
                     final float body2 = r2 * params.mTrailBodyRatio;
-                    final Path path = roundedLine.makePath(p1x, p1y, body1, p2x, p2y, body2);
-                    if (!path.isEmpty()) {
-                        roundedLine.getBounds(mRoundedLineBounds);
+                    if (outline.addSegment(path, i, p1x, p1y, body1, p2x, p2y, body2)) {
+                        final Rect bounds = mSegmentBounds;
+                        bounds.set((int)Math.floor(Math.min(p1x - body1, p2x - body2)),
+                                (int)Math.floor(Math.min(p1y - body1, p2y - body2)),
+                                (int)Math.ceil(Math.max(p1x + body1, p2x + body2)),
+                                (int)Math.ceil(Math.max(p1y + body1, p2y + body2)));
                         if (params.mTrailShadowEnabled) {
                             final float shadow2 = r2 * params.mTrailShadowRatio;
-                            paint.setShadowLayer(shadow2, 0.0f, 0.0f, params.mTrailColor);
+                            pathShadowRadius = Math.max(pathShadowRadius, shadow2);
                             final int shadowInset = -(int)Math.ceil(shadow2);
-                            mRoundedLineBounds.inset(shadowInset, shadowInset);
+                            bounds.inset(shadowInset, shadowInset);
                         }
                         // Take union for the bounds.
-                        outBoundsRect.union(mRoundedLineBounds);
-                        final int alpha = getAlpha(elapsedTime, params);
-                        paint.setAlpha(alpha);
-                        canvas.drawPath(path, paint);
+                        outBoundsRect.union(bounds);
                     }
                 }
                 p1x = p2x;
                 p1y = p2y;
                 r1 = r2;
             }
+            if (!path.isEmpty()) {
+                drawTrailPath(canvas, paint, path, pathAlpha, pathShadowRadius, params);
+            }
             if (DEBUG_SHOW_POINTS) {
                 debugDrawPoints(canvas, startIndex, trailSize, paint);
             }
@@ -238,6 +265,7 @@ final class GestureTrailDrawingPoints {
                     System.arraycopy(pointTypes, startIndex, pointTypes, 0, newSize);
                 }
             }
+            mOutline.shift(startIndex);
             mEventTimes.setLength(newSize);
             mXCoordinates.setLength(newSize);
             mYCoordinates.setLength(newSize);
@@ -252,6 +280,15 @@ final class GestureTrailDrawingPoints {
         return newSize > 0;
     }
 
+    private static void drawTrailPath(final Canvas canvas, final Paint paint, final Path path,
+            final int alpha, final float shadowRadius, final GestureTrailDrawingParams params) {
+        if (params.mTrailShadowEnabled) {
+            paint.setShadowLayer(shadowRadius, 0.0f, 0.0f, params.mTrailColor);
+        }
+        paint.setAlpha(alpha);
+        canvas.drawPath(path, paint);
+    }
+
     private void debugDrawPoints(final Canvas canvas, final int startIndex, final int endIndex,
             final Paint paint) {
         final int[] xCoords = mXCoordinates.getPrimitiveArray();
@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.inputmethod.keyboard.internal;
+
+import android.graphics.Path;
+import android.graphics.RectF;
+
+/**
+ * This class builds the outline of the segments of a gesture trail into a single {@link Path}.
+ *
+ * Each segment is shaped like a {@link RoundedLine}: a cap at each end point and two trapezoids
+ * connecting them. The radii of the end points shrink while the trail fades out, but at the same
+ * rate, so the difference of the radii of a segment never changes. Hence the angles of the caps
+ * only depend on the end points of the segment, and they are computed once when the segment is
+ * first drawn instead of on every frame.
+ * Unlike {@link RoundedLine}, all the parts of a segment wind in the same direction, so that
+ * overlapping segments can be filled together as a single path without leaving holes.
+ */
+final class GestureTrailOutline {
+    private static final double RADIAN_TO_DEGREE = 180.0d / Math.PI;
+    private static final double RIGHT_ANGLE = Math.PI / 2.0d;
+
+    // The cap angles of each segment, stored as {@link #FIELD_COUNT} floats.
+    private static final int FIELD_COS_A = 0;
+    private static final int FIELD_SIN_A = 1;
+    private static final int FIELD_COS_B = 2;
+    private static final int FIELD_SIN_B = 3;
+    private static final int FIELD_START_ANGLE = 4;
+    private static final int FIELD_SWEEP_DELTA = 5;
+    private static final int FIELD_COUNT = 6;
+
+    // The cap angles of the segment that ends at each point of the trail.
+    private float[] mAngles;
+    // The number of points of the trail whose segment angles are up to date.
+    private int mValidLength;
+    // Working variable for {@link #addSegment(Path,int,float,float,float,float,float,float)}.
+    private final RectF mArc = new RectF();
+
+    public GestureTrailOutline(final int capacity) {
+        mAngles = new float[capacity * FIELD_COUNT];
+    }
+
+    /**
+     * Forget the segments from a point on, because the points have changed.
+     * @param index the index of the first point that has changed.
+     */
+    public void invalidateFrom(final int index) {
+        mValidLength = Math.min(mValidLength, Math.max(index, 0));
+    }
+
+    /**
+     * Forget the first segments, because the first points have been removed from the trail.
+     * @param count the number of points removed from the start of the trail.
+     */
+    public void shift(final int count) {
+        final int newLength = mValidLength - count;
+        if (newLength > 0) {
+            System.arraycopy(mAngles, count * FIELD_COUNT, mAngles, 0, newLength * FIELD_COUNT);
+        }
+        mValidLength = Math.max(newLength, 0);
+    }
+
+    private void computeAngles(final int offset, final float p1x, final float p1y,
+            final float r1, final float p2x, final float p2y, final float r2) {
+        final float[] angles = mAngles;
+        final double dx = p2x - p1x;
+        final double dy = p2y - p1y;
+        // Distance of the points.
+        final double l = Math.hypot(dx, dy);
+        if (Double.compare(0.0d, l) == 0) {
+            // Mark the segment as empty.
+            angles[offset + FIELD_START_ANGLE] = Float.NaN;
+            return;
+        }
+        // Angle of the line p1-p2
+        final double a = Math.atan2(dy, dx);
+        // Variation of angle at trail cap.
+        final double ar = Math.asin((r2 - r1) / l);
+        // The start angle of trail cap arc at P1.
+        final double aa = a - (RIGHT_ANGLE + ar);
+        // The end angle of trail cap arc at P2.
+        final double ab = a + (RIGHT_ANGLE + ar);
+        angles[offset + FIELD_COS_A] = (float)Math.cos(aa);
+        angles[offset + FIELD_SIN_A] = (float)Math.sin(aa);
+        angles[offset + FIELD_COS_B] = (float)Math.cos(ab);
+        angles[offset + FIELD_SIN_B] = (float)Math.sin(ab);
+        angles[offset + FIELD_START_ANGLE] = (float)(aa * RADIAN_TO_DEGREE);
+        angles[offset + FIELD_SWEEP_DELTA] = (float)(ar * 2.0d * RADIAN_TO_DEGREE);
+    }
+
+    /**
+     * Add the outline of a segment to a path. The segments have to be added in the order of
+     * their points.
+     *
+     * @param path the path to add the segment to.
+     * @param index the index of the end point of the segment in the trail.
+     * @param p1x the x-coordinate of the start point.
+     * @param p1y the y-coordinate of the start point.
+     * @param r1 the radius at the start point
+     * @param p2x the x-coordinate of the end point.
+     * @param p2y the y-coordinate of the end point.
+     * @param r2 the radius at the end point
+     * @return true if the segment has been added, or false if the start and end points are equal.
+     */
+    public boolean addSegment(final Path path, final int index, final float p1x,
+            final float p1y, final float r1, final float p2x, final float p2y, final float r2) {
+        final int offset = index * FIELD_COUNT;
+        if (index >= mValidLength) {
+            if (mAngles.length < offset + FIELD_COUNT) {
+                final float[] angles = new float[Math.max(mAngles.length * 2,
+                        offset + FIELD_COUNT)];
+                System.arraycopy(mAngles, 0, angles, 0, mValidLength * FIELD_COUNT);
+                mAngles = angles;
+            }
+            computeAngles(offset, p1x, p1y, r1, p2x, p2y, r2);
+            mValidLength = index + 1;
+        }
+        final float[] angles = mAngles;
+        // Start angle of the trail arcs.
+        final float angle = angles[offset + FIELD_START_ANGLE];
+        if (Float.isNaN(angle)) {
+            return false;
+        }
+        final float cosa = angles[offset + FIELD_COS_A];
+        final float sina = angles[offset + FIELD_SIN_A];
+        final float cosb = angles[offset + FIELD_COS_B];
+        final float sinb = angles[offset + FIELD_SIN_B];
+        final float ar2degree = angles[offset + FIELD_SWEEP_DELTA];
+        // Sweep angle of the trail arc at P1.
+        final float a1 = -180.0f + ar2degree;
+        // Sweep angle of the trail arc at P2.
+        final float a2 = 180.0f + ar2degree;
+
+        // Trail cap at P1.
+        mArc.set(p1x - r1, p1y - r1, p1x + r1, p1y + r1);
+        path.moveTo(p1x, p1y);
+        path.arcTo(mArc, angle, a1);
+        // Trail cap at P2, swept backwards to wind like the other parts.
+        mArc.set(p2x - r2, p2y - r2, p2x + r2, p2y + r2);
+        path.moveTo(p2x, p2y);
+        path.arcTo(mArc, angle + a2, -a2);
+        // Two trapezoids connecting P1 and P2.
+        path.moveTo(p1x + r1 * cosa, p1y + r1 * sina);
+        path.lineTo(p1x, p1y);
+        path.lineTo(p1x + r1 * cosb, p1y + r1 * sinb);
+        path.lineTo(p2x + r2 * cosb, p2y + r2 * sinb);
+        path.lineTo(p2x, p2y);
+        path.lineTo(p2x + r2 * cosa, p2y + r2 * sina);
+        path.close();
+        return true;
+    }
+}
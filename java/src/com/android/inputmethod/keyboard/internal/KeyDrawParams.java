@@ -53,7 +53,7 @@ public final class KeyDrawParams {
 
     public KeyDrawParams() {}
 
-    private KeyDrawParams(@Nonnull final KeyDrawParams copyFrom) {
+    KeyDrawParams(@Nonnull final KeyDrawParams copyFrom) {
         mTypeface = copyFrom.mTypeface;
 
         mLetterSize = copyFrom.mLetterSize;
@@ -81,6 +81,31 @@ public final class KeyDrawParams {
         mAnimAlpha = copyFrom.mAnimAlpha;
     }
 
+    // Whether the keys are drawn the same with these parameters and with other ones. The
+    // animation alpha is left out, because it is set right before each key is drawn.
+    boolean hasSameValuesAs(@Nonnull final KeyDrawParams o) {
+        return mTypeface.equals(o.mTypeface)
+                && mLetterSize == o.mLetterSize
+                && mLabelSize == o.mLabelSize
+                && mLargeLetterSize == o.mLargeLetterSize
+                && mHintLetterSize == o.mHintLetterSize
+                && mShiftedLetterHintSize == o.mShiftedLetterHintSize
+                && mHintLabelSize == o.mHintLabelSize
+                && mPreviewTextSize == o.mPreviewTextSize
+                && mTextColor == o.mTextColor
+                && mTextInactivatedColor == o.mTextInactivatedColor
+                && mTextShadowColor == o.mTextShadowColor
+                && mFunctionalTextColor == o.mFunctionalTextColor
+                && mHintLetterColor == o.mHintLetterColor
+                && mHintLabelColor == o.mHintLabelColor
+                && mShiftedLetterHintInactivatedColor == o.mShiftedLetterHintInactivatedColor
+                && mShiftedLetterHintActivatedColor == o.mShiftedLetterHintActivatedColor
+                && mPreviewTextColor == o.mPreviewTextColor
+                && mHintLabelVerticalAdjustment == o.mHintLabelVerticalAdjustment
+                && mLabelOffCenterRatio == o.mLabelOffCenterRatio
+                && mHintLabelOffCenterRatio == o.mHintLabelOffCenterRatio;
+    }
+
     public void updateParams(final int keyHeight, @Nullable final KeyVisualAttributes attr) {
         if (attr == null) {
             return;
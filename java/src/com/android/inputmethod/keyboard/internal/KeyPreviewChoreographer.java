@@ -22,95 +22,294 @@ import android.content.Context;
 import android.view.View;
 import android.view.ViewGroup;
 
+import com.android.inputmethod.annotations.UsedForTesting;
 import com.android.inputmethod.keyboard.Key;
+import com.android.inputmethod.keyboard.Keyboard;
 import com.android.inputmethod.latin.common.CoordinateUtils;
 import com.android.inputmethod.latin.utils.ViewLayoutUtils;
 
-import java.util.ArrayDeque;
-import java.util.HashMap;
+import java.util.ArrayList;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 /**
  * This class controls pop up key previews. This class decides:
  * - what kind of key previews should be shown.
  * - where key previews should be placed.
  * - how key previews should be shown and dismissed.
+ *
+ * The key previews are pooled together with their animators, and the width of the preview of each
+ * key is measured only once per keyboard. Once they are warmed up, showing and dismissing key
+ * previews allocate nothing and measure nothing.
  */
 public final class KeyPreviewChoreographer {
-    // Free {@link KeyPreviewView} pool that can be used for key preview.
-    private final ArrayDeque<KeyPreviewView> mFreeKeyPreviewViews = new ArrayDeque<>();
-    // Map from {@link Key} to {@link KeyPreviewView} that is currently being displayed as key
-    // preview.
-    private final HashMap<Key,KeyPreviewView> mShowingKeyPreviewViews = new HashMap<>();
+    // The number of keyboards whose key preview placements are kept, so that switching between a
+    // keyboard and its shifted or symbols states doesn't measure the previews again.
+    private static final int PLACEMENTS_CACHE_SIZE = 4;
+
+    // Free {@link KeyPreview} pool that can be used for key preview.
+    private final ArrayList<KeyPreview> mFreeKeyPreviews = new ArrayList<>();
+    // The {@link KeyPreview}s that are currently being displayed.
+    private final ArrayList<KeyPreview> mShowingKeyPreviews = new ArrayList<>();
+    // The placements of the key previews of the recently set keyboards, the most recent first.
+    private final ArrayList<KeyPreviewPlacements> mPlacementsCache =
+            new ArrayList<>(PLACEMENTS_CACHE_SIZE);
 
     private final KeyPreviewDrawParams mParams;
 
+    // The number of objects allocated to show key previews, and the number of key previews
+    // measured.
+    private int mAllocationCount;
+    private int mMeasureCount;
+
     public KeyPreviewChoreographer(final KeyPreviewDrawParams params) {
         mParams = params;
     }
 
-    public KeyPreviewView getKeyPreviewView(final Key key, final ViewGroup placerView) {
-        KeyPreviewView keyPreviewView = mShowingKeyPreviewViews.remove(key);
-        if (keyPreviewView != null) {
-            return keyPreviewView;
+    /**
+     * The placement of the preview of each key of a keyboard, indexed like
+     * {@link Keyboard#getSortedKeys()}.
+     */
+    private static final class KeyPreviewPlacements {
+        public final Keyboard mKeyboard;
+        // The measured width of each key preview, or 0 if the preview hasn't been measured yet.
+        public final int[] mPreviewWidths;
+        public final float[] mTextScaleXs;
+
+        public KeyPreviewPlacements(final Keyboard keyboard) {
+            mKeyboard = keyboard;
+            final int keyCount = keyboard.getSortedKeys().size();
+            mPreviewWidths = new int[keyCount];
+            mTextScaleXs = new float[keyCount];
+        }
+    }
+
+    /**
+     * A pooled key preview: a view, the animators to show and dismiss it, and the key it shows.
+     */
+    private final class KeyPreview extends AnimatorListenerAdapter {
+        public final KeyPreviewView mView;
+        // The key and the placements the visual of {@link #mView} has been set up for.
+        public Key mVisualKey;
+        public KeyPreviewPlacements mVisualPlacements;
+        // The key being shown, or null if this key preview is free.
+        public Key mKey;
+        // True if this key preview has been shown with animation.
+        public boolean mAnimated;
+
+        private Animator mShowUpAnimator;
+        private Animator mDismissAnimator;
+        private int mAnimatorsGeneration;
+        private boolean mDismissAfterShowUp;
+
+        public KeyPreview(final KeyPreviewView view) {
+            mView = view;
+        }
+
+        private void prepareAnimators() {
+            final int generation = mParams.getAnimatorsGeneration();
+            if (mShowUpAnimator != null && mAnimatorsGeneration == generation) {
+                return;
+            }
+            mShowUpAnimator = mParams.createShowUpAnimator(mView);
+            mShowUpAnimator.addListener(this);
+            mDismissAnimator = mParams.createDismissAnimator(mView);
+            mDismissAnimator.addListener(this);
+            mAnimatorsGeneration = generation;
+            mAllocationCount += 2;
+        }
+
+        public void startShowUp() {
+            prepareAnimators();
+            mAnimated = true;
+            mDismissAfterShowUp = false;
+            mShowUpAnimator.start();
+        }
+
+        public void startDismiss() {
+            if (mShowUpAnimator.isRunning()) {
+                mDismissAfterShowUp = true;
+                return;
+            }
+            mDismissAnimator.start();
+        }
+
+        public void cancelAnimations() {
+            mDismissAfterShowUp = false;
+            if (mShowUpAnimator == null) {
+                return;
+            }
+            // The listener callbacks of the cancelled animators do nothing once the key is reset.
+            if (mShowUpAnimator.isStarted()) {
+                mShowUpAnimator.cancel();
+            }
+            if (mDismissAnimator.isStarted()) {
+                mDismissAnimator.cancel();
+            }
+        }
+
+        @Override
+        public void onAnimationStart(final Animator animator) {
+            if (animator == mShowUpAnimator && mKey != null) {
+                mView.setVisibility(View.VISIBLE);
+            }
+        }
+
+        @Override
+        public void onAnimationEnd(final Animator animator) {
+            if (mKey == null) {
+                return;
+            }
+            if (animator == mShowUpAnimator) {
+                if (mDismissAfterShowUp) {
+                    mDismissAfterShowUp = false;
+                    mDismissAnimator.start();
+                }
+            } else if (animator == mDismissAnimator) {
+                dismissKeyPreview(mKey, false /* withAnimation */);
+            }
+        }
+    }
+
+    /**
+     * Selects the placements of the key previews of a keyboard.
+     * @param keyboard the keyboard whose keys will be previewed.
+     */
+    public void setKeyboard(@Nonnull final Keyboard keyboard) {
+        final int size = mPlacementsCache.size();
+        for (int index = 0; index < size; index++) {
+            final KeyPreviewPlacements placements = mPlacementsCache.get(index);
+            if (placements.mKeyboard == keyboard) {
+                mPlacementsCache.remove(index);
+                mPlacementsCache.add(0, placements);
+                return;
+            }
+        }
+        if (size >= PLACEMENTS_CACHE_SIZE) {
+            mPlacementsCache.remove(size - 1);
+        }
+        mPlacementsCache.add(0, new KeyPreviewPlacements(keyboard));
+        mAllocationCount++;
+    }
+
+    /**
+     * Forgets the placements of the key previews, because their labels may have changed.
+     */
+    public void clearPlacements() {
+        mPlacementsCache.clear();
+        final int size = mFreeKeyPreviews.size();
+        for (int index = 0; index < size; index++) {
+            mFreeKeyPreviews.get(index).mVisualKey = null;
+        }
+    }
+
+    @Nullable
+    private KeyPreviewPlacements getPlacements() {
+        return mPlacementsCache.isEmpty() ? null : mPlacementsCache.get(0);
+    }
+
+    @Nullable
+    private KeyPreview getShowingKeyPreview(final Key key) {
+        final int size = mShowingKeyPreviews.size();
+        for (int index = 0; index < size; index++) {
+            final KeyPreview keyPreview = mShowingKeyPreviews.get(index);
+            if (keyPreview.mKey == key) {
+                return keyPreview;
+            }
+        }
+        return null;
+    }
+
+    private KeyPreview getKeyPreview(final Key key, final ViewGroup placerView) {
+        KeyPreview keyPreview = getShowingKeyPreview(key);
+        if (keyPreview != null) {
+            mShowingKeyPreviews.remove(keyPreview);
+            keyPreview.mKey = null;
+            keyPreview.cancelAnimations();
+            return keyPreview;
         }
-        keyPreviewView = mFreeKeyPreviewViews.poll();
-        if (keyPreviewView != null) {
-            return keyPreviewView;
+        final int freeCount = mFreeKeyPreviews.size();
+        if (freeCount > 0) {
+            // Prefer a free key preview that already shows the key.
+            int index = freeCount - 1;
+            for (int i = 0; i < freeCount; i++) {
+                if (mFreeKeyPreviews.get(i).mVisualKey == key) {
+                    index = i;
+                    break;
+                }
+            }
+            return mFreeKeyPreviews.remove(index);
         }
         final Context context = placerView.getContext();
-        keyPreviewView = new KeyPreviewView(context, null /* attrs */);
+        final KeyPreviewView keyPreviewView = new KeyPreviewView(context, null /* attrs */);
         keyPreviewView.setBackgroundResource(mParams.mPreviewBackgroundResId);
         placerView.addView(keyPreviewView, ViewLayoutUtils.newLayoutParam(placerView, 0, 0));
-        return keyPreviewView;
+        keyPreview = new KeyPreview(keyPreviewView);
+        mAllocationCount++;
+        return keyPreview;
     }
 
     public boolean isShowingKeyPreview(final Key key) {
-        return mShowingKeyPreviewViews.containsKey(key);
+        return getShowingKeyPreview(key) != null;
     }
 
     public void dismissKeyPreview(final Key key, final boolean withAnimation) {
         if (key == null) {
             return;
         }
-        final KeyPreviewView keyPreviewView = mShowingKeyPreviewViews.get(key);
-        if (keyPreviewView == null) {
+        final KeyPreview keyPreview = getShowingKeyPreview(key);
+        if (keyPreview == null) {
             return;
         }
-        final Object tag = keyPreviewView.getTag();
-        if (withAnimation) {
-            if (tag instanceof KeyPreviewAnimators) {
-                final KeyPreviewAnimators animators = (KeyPreviewAnimators)tag;
-                animators.startDismiss();
-                return;
-            }
+        if (withAnimation && keyPreview.mAnimated) {
+            keyPreview.startDismiss();
+            return;
         }
         // Dismiss preview without animation.
-        mShowingKeyPreviewViews.remove(key);
-        if (tag instanceof Animator) {
-            ((Animator)tag).cancel();
-        }
-        keyPreviewView.setTag(null);
-        keyPreviewView.setVisibility(View.INVISIBLE);
-        mFreeKeyPreviewViews.add(keyPreviewView);
+        mShowingKeyPreviews.remove(keyPreview);
+        keyPreview.mKey = null;
+        keyPreview.cancelAnimations();
+        keyPreview.mView.setVisibility(View.INVISIBLE);
+        mFreeKeyPreviews.add(keyPreview);
     }
 
     public void placeAndShowKeyPreview(final Key key, final KeyboardIconsSet iconsSet,
             final KeyDrawParams drawParams, final int keyboardViewWidth, final int[] keyboardOrigin,
             final ViewGroup placerView, final boolean withAnimation) {
-        final KeyPreviewView keyPreviewView = getKeyPreviewView(key, placerView);
+        final KeyPreview keyPreview = getKeyPreview(key, placerView);
         placeKeyPreview(
-                key, keyPreviewView, iconsSet, drawParams, keyboardViewWidth, keyboardOrigin);
-        showKeyPreview(key, keyPreviewView, withAnimation);
+                key, keyPreview, iconsSet, drawParams, keyboardViewWidth, keyboardOrigin);
+        showKeyPreview(key, keyPreview, withAnimation);
     }
 
-    private void placeKeyPreview(final Key key, final KeyPreviewView keyPreviewView,
+    private void placeKeyPreview(final Key key, final KeyPreview keyPreview,
             final KeyboardIconsSet iconsSet, final KeyDrawParams drawParams,
             final int keyboardViewWidth, final int[] originCoords) {
-        keyPreviewView.setPreviewVisual(key, iconsSet, drawParams);
-        keyPreviewView.measure(
-                ViewGroup.LayoutParams.WRAP_CONTENT, ViewGroup.LayoutParams.WRAP_CONTENT);
-        mParams.setGeometry(keyPreviewView);
-        final int previewWidth = keyPreviewView.getMeasuredWidth();
+        final KeyPreviewView keyPreviewView = keyPreview.mView;
+        final KeyPreviewPlacements placements = getPlacements();
+        final int keyIndex = (placements == null) ? -1 : placements.mKeyboard.getKeyIndex(key);
+        int previewWidth = (keyIndex < 0) ? 0 : placements.mPreviewWidths[keyIndex];
+        if (previewWidth > 0) {
+            // The preview of this key has already been measured.
+            if (keyPreview.mVisualKey != key || keyPreview.mVisualPlacements != placements) {
+                keyPreviewView.setPreviewVisual(
+                        key, iconsSet, drawParams, placements.mTextScaleXs[keyIndex]);
+            }
+        } else {
+            keyPreviewView.setPreviewVisual(key, iconsSet, drawParams);
+            keyPreviewView.measure(
+                    ViewGroup.LayoutParams.WRAP_CONTENT, ViewGroup.LayoutParams.WRAP_CONTENT);
+            mMeasureCount++;
+            previewWidth = keyPreviewView.getMeasuredWidth();
+            if (keyIndex >= 0) {
+                placements.mPreviewWidths[keyIndex] = previewWidth;
+                placements.mTextScaleXs[keyIndex] = keyPreviewView.getTextScaleX();
+            }
+        }
+        keyPreview.mVisualKey = key;
+        keyPreview.mVisualPlacements = placements;
+        mParams.setGeometry(keyPreviewView, previewWidth);
         final int previewHeight = mParams.mPreviewHeight;
         final int keyDrawWidth = key.getDrawWidth();
         // The key preview is horizontally aligned with the center of the visible part of the
@@ -135,75 +334,40 @@ public final class KeyPreviewChoreographer {
         final int previewY = key.getY() - previewHeight + mParams.mPreviewOffset
                 + CoordinateUtils.y(originCoords);
 
-        ViewLayoutUtils.placeViewAt(
-                keyPreviewView, previewX, previewY, previewWidth, previewHeight);
+        final ViewGroup.LayoutParams lp = keyPreviewView.getLayoutParams();
+        if (lp instanceof ViewGroup.MarginLayoutParams) {
+            final ViewGroup.MarginLayoutParams mlp = (ViewGroup.MarginLayoutParams)lp;
+            if (mlp.leftMargin != previewX || mlp.topMargin != previewY
+                    || mlp.width != previewWidth || mlp.height != previewHeight) {
+                ViewLayoutUtils.placeViewAt(
+                        keyPreviewView, previewX, previewY, previewWidth, previewHeight);
+                keyPreviewView.requestLayout();
+            }
+        }
         keyPreviewView.setPivotX(previewWidth / 2.0f);
         keyPreviewView.setPivotY(previewHeight);
     }
 
-    void showKeyPreview(final Key key, final KeyPreviewView keyPreviewView,
+    private void showKeyPreview(final Key key, final KeyPreview keyPreview,
             final boolean withAnimation) {
+        keyPreview.mKey = key;
+        mShowingKeyPreviews.add(keyPreview);
         if (!withAnimation) {
-            keyPreviewView.setVisibility(View.VISIBLE);
-            mShowingKeyPreviewViews.put(key, keyPreviewView);
+            keyPreview.mAnimated = false;
+            keyPreview.mView.setVisibility(View.VISIBLE);
             return;
         }
-
         // Show preview with animation.
-        final Animator showUpAnimator = createShowUpAnimator(key, keyPreviewView);
-        final Animator dismissAnimator = createDismissAnimator(key, keyPreviewView);
-        final KeyPreviewAnimators animators = new KeyPreviewAnimators(
-                showUpAnimator, dismissAnimator);
-        keyPreviewView.setTag(animators);
-        animators.startShowUp();
-    }
-
-    public Animator createShowUpAnimator(final Key key, final KeyPreviewView keyPreviewView) {
-        final Animator showUpAnimator = mParams.createShowUpAnimator(keyPreviewView);
-        showUpAnimator.addListener(new AnimatorListenerAdapter() {
-            @Override
-            public void onAnimationStart(final Animator animator) {
-                showKeyPreview(key, keyPreviewView, false /* withAnimation */);
-            }
-        });
-        return showUpAnimator;
+        keyPreview.startShowUp();
     }
 
-    private Animator createDismissAnimator(final Key key, final KeyPreviewView keyPreviewView) {
-        final Animator dismissAnimator = mParams.createDismissAnimator(keyPreviewView);
-        dismissAnimator.addListener(new AnimatorListenerAdapter() {
-            @Override
-            public void onAnimationEnd(final Animator animator) {
-                dismissKeyPreview(key, false /* withAnimation */);
-            }
-        });
-        return dismissAnimator;
+    @UsedForTesting
+    int getAllocationCount() {
+        return mAllocationCount;
     }
 
-    private static class KeyPreviewAnimators extends AnimatorListenerAdapter {
-        private final Animator mShowUpAnimator;
-        private final Animator mDismissAnimator;
-
-        public KeyPreviewAnimators(final Animator showUpAnimator, final Animator dismissAnimator) {
-            mShowUpAnimator = showUpAnimator;
-            mDismissAnimator = dismissAnimator;
-        }
-
-        public void startShowUp() {
-            mShowUpAnimator.start();
-        }
-
-        public void startDismiss() {
-            if (mShowUpAnimator.isRunning()) {
-                mShowUpAnimator.addListener(this);
-                return;
-            }
-            mDismissAnimator.start();
-        }
-
-        @Override
-        public void onAnimationEnd(final Animator animator) {
-            mDismissAnimator.start();
-        }
+    @UsedForTesting
+    int getMeasureCount() {
+        return mMeasureCount;
     }
 }
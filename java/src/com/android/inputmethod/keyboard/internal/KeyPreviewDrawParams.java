@@ -43,6 +43,8 @@ public final class KeyPreviewDrawParams {
     private float mDismissEndYScale;
     private int mLingerTimeout;
     private boolean mShowPopup = true;
+    // Incremented whenever the parameters of the animators change.
+    private int mAnimatorsGeneration;
 
     // The graphical geometry of the key preview.
     // <-width->
@@ -93,7 +95,10 @@ public final class KeyPreviewDrawParams {
     }
 
     public void setGeometry(final View previewTextView) {
-        final int previewWidth = previewTextView.getMeasuredWidth();
+        setGeometry(previewTextView, previewTextView.getMeasuredWidth());
+    }
+
+    public void setGeometry(final View previewTextView, final int previewWidth) {
         final int previewHeight = mPreviewHeight;
         // The width and height of visible part of the key preview background. The content marker
         // of the background 9-patch have to cover the visible part of the background.
@@ -116,7 +121,10 @@ public final class KeyPreviewDrawParams {
 
     public void setPopupEnabled(final boolean enabled, final int lingerTimeout) {
         mShowPopup = enabled;
-        mLingerTimeout = lingerTimeout;
+        if (mLingerTimeout != lingerTimeout) {
+            mLingerTimeout = lingerTimeout;
+            mAnimatorsGeneration++;
+        }
     }
 
     public boolean isPopupEnabled() {
@@ -138,6 +146,16 @@ public final class KeyPreviewDrawParams {
         mDismissEndXScale = dismissEndXScale;
         mDismissEndYScale = dismissEndYScale;
         mDismissDuration = dismissDuration;
+        mAnimatorsGeneration++;
+    }
+
+    /**
+     * Returns the generation of the animation parameters, so that the animators created with
+     * {@link #createShowUpAnimator(View)} and {@link #createDismissAnimator(View)} can be reused
+     * until the parameters change.
+     */
+    public int getAnimatorsGeneration() {
+        return mAnimatorsGeneration;
     }
 
     private static final float KEY_PREVIEW_SHOW_UP_END_SCALE = 1.0f;
@@ -53,20 +53,44 @@ public class KeyPreviewView extends TextView {
 
     public void setPreviewVisual(final Key key, final KeyboardIconsSet iconsSet,
             final KeyDrawParams drawParams) {
+        if (setPreviewStyle(key, iconsSet, drawParams)) {
+            // TODO Should take care of temporaryShiftLabel here.
+            setTextAndScaleX(key.getPreviewLabel());
+        }
+    }
+
+    /**
+     * Sets the visual of a key whose preview has already been laid out, without measuring the
+     * preview label again.
+     * @param key the key to preview.
+     * @param iconsSet the icons set of the keyboard.
+     * @param drawParams the draw parameters of the keyboard.
+     * @param textScaleX the text scale x the preview label has been laid out with.
+     */
+    public void setPreviewVisual(final Key key, final KeyboardIconsSet iconsSet,
+            final KeyDrawParams drawParams, final float textScaleX) {
+        if (setPreviewStyle(key, iconsSet, drawParams)) {
+            setText(key.getPreviewLabel());
+            setTextScaleX(textScaleX);
+        }
+    }
+
+    // Returns true if the key preview shows a label rather than an icon.
+    private boolean setPreviewStyle(final Key key, final KeyboardIconsSet iconsSet,
+            final KeyDrawParams drawParams) {
         // What we show as preview should match what we show on a key top in onDraw().
         final int iconId = key.getIconId();
         if (iconId != KeyboardIconsSet.ICON_UNDEFINED) {
             setCompoundDrawables(null, null, null, key.getPreviewIcon(iconsSet));
             setText(null);
-            return;
+            return false;
         }
 
         setCompoundDrawables(null, null, null, null);
         setTextColor(drawParams.mPreviewTextColor);
         setTextSize(TypedValue.COMPLEX_UNIT_PX, key.selectPreviewTextSize(drawParams));
         setTypeface(key.selectPreviewTypeface(drawParams));
-        // TODO Should take care of temporaryShiftLabel here.
-        setTextAndScaleX(key.getPreviewLabel());
+        return true;
     }
 
     private void setTextAndScaleX(final String text) {
@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.inputmethod.keyboard.internal;
+
+import android.graphics.Bitmap;
+import android.util.LruCache;
+
+import com.android.inputmethod.annotations.UsedForTesting;
+import com.android.inputmethod.keyboard.Key;
+
+import java.util.ArrayList;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * A cache of the rasterized visuals of keys.
+ *
+ * Each tile holds the background and the top visuals of a key in a given pressed and enabled
+ * state. The tiles are looked up by what is drawn rather than by key, so that the keys that look
+ * the same share one tile, whichever keyboard they belong to: the digits, the punctuation and
+ * the functional keys of the alphabet keyboards in each shift state, for instance. A tile is
+ * drawn with some draw parameters, that depend on the keyboard, so the tiles are also looked up
+ * by the values of these parameters, see {@link #internDrawParams(KeyDrawParams)}.
+ * The tiles are evicted in least recently used order once their total size exceeds the limit.
+ * This class is not thread-safe: it is only used from the UI thread.
+ */
+public final class KeyVisualCache {
+    // The number of distinct draw parameters that are kept, the oldest ones being dropped. The
+    // keyboards of a view are drawn with very few of them.
+    private static final int MAX_DRAW_PARAMS_COUNT = 8;
+
+    private static final class TileKey {
+        KeyDrawParams mDrawParams;
+        // A key drawn like this tile, when it is in the state below.
+        Key mKey;
+        boolean mPressed;
+        boolean mEnabled;
+        int mHashCode;
+
+        TileKey() {}
+
+        TileKey(@Nonnull final TileKey copyFrom) {
+            mDrawParams = copyFrom.mDrawParams;
+            mKey = copyFrom.mKey;
+            mPressed = copyFrom.mPressed;
+            mEnabled = copyFrom.mEnabled;
+            mHashCode = copyFrom.mHashCode;
+        }
+
+        void set(@Nonnull final KeyDrawParams drawParams, @Nonnull final Key key) {
+            mDrawParams = drawParams;
+            mKey = key;
+            // The key may change its state later on, so the state of the tile is kept apart.
+            mPressed = key.isPressed();
+            mEnabled = key.isEnabled();
+            mHashCode = ((System.identityHashCode(drawParams) * 31 + key.getVisualsHashCode()) * 4)
+                    + (mPressed ? 2 : 0) + (mEnabled ? 1 : 0);
+        }
+
+        void reset() {
+            mDrawParams = null;
+            mKey = null;
+        }
+
+        @Override
+        public int hashCode() {
+            return mHashCode;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (!(o instanceof TileKey)) {
+                return false;
+            }
+            final TileKey other = (TileKey)o;
+            return mHashCode == other.mHashCode && mDrawParams == other.mDrawParams
+                    && mPressed == other.mPressed && mEnabled == other.mEnabled
+                    && mKey.hasSameVisualsAs(other.mKey);
+        }
+    }
+
+    @Nonnull
+    private final LruCache<TileKey, Bitmap> mTiles;
+    // Reused to look up the tiles without allocating.
+    @Nonnull
+    private final TileKey mLookupKey = new TileKey();
+    // The distinct draw parameters the tiles have been drawn with, the most recent last.
+    @Nonnull
+    private final ArrayList<KeyDrawParams> mDrawParams = new ArrayList<>();
+
+    public KeyVisualCache(final int maxBytes) {
+        mTiles = new LruCache<TileKey, Bitmap>(Math.max(1, maxBytes)) {
+            @Override
+            protected int sizeOf(final TileKey key, final Bitmap tile) {
+                return tile.getByteCount();
+            }
+        };
+    }
+
+    public void setMaxBytes(final int maxBytes) {
+        if (maxBytes != mTiles.maxSize()) {
+            mTiles.resize(Math.max(1, maxBytes));
+        }
+    }
+
+    /**
+     * Get the draw parameters to look the tiles up with. The same object is returned for all the
+     * parameters that have the same values, so that the tiles drawn with them are shared.
+     * @param params the draw parameters of the view. They may be changed afterwards.
+     * @return a copy of the parameters, that must not be changed.
+     */
+    @Nonnull
+    public KeyDrawParams internDrawParams(@Nonnull final KeyDrawParams params) {
+        for (int i = mDrawParams.size() - 1; i >= 0; i--) {
+            final KeyDrawParams drawParams = mDrawParams.get(i);
+            if (drawParams.hasSameValuesAs(params)) {
+                return drawParams;
+            }
+        }
+        if (mDrawParams.size() >= MAX_DRAW_PARAMS_COUNT) {
+            // The tiles drawn with the dropped parameters are still found with them, but they
+            // aren't shared with the tiles of new parameters of the same values.
+            mDrawParams.remove(0);
+        }
+        final KeyDrawParams drawParams = new KeyDrawParams(params);
+        mDrawParams.add(drawParams);
+        return drawParams;
+    }
+
+    /**
+     * Get the tile of a key in its current state.
+     * @param drawParams the draw parameters returned by {@link #internDrawParams(KeyDrawParams)}.
+     * @param key the key.
+     * @return the tile of the key, or null if it is not cached.
+     */
+    @Nullable
+    public Bitmap get(@Nonnull final KeyDrawParams drawParams, @Nonnull final Key key) {
+        mLookupKey.set(drawParams, key);
+        final Bitmap tile = mTiles.get(mLookupKey);
+        // Don't keep the key alive through the lookup key.
+        mLookupKey.reset();
+        return tile;
+    }
+
+    /**
+     * Cache the tile of a key in its current state.
+     * @param drawParams the draw parameters returned by {@link #internDrawParams(KeyDrawParams)}.
+     * @param key the key.
+     * @param tile the tile. It is never recycled by the cache, because a hardware accelerated
+     * canvas may still reference it after it has been evicted.
+     */
+    public void put(@Nonnull final KeyDrawParams drawParams, @Nonnull final Key key,
+            @Nonnull final Bitmap tile) {
+        mLookupKey.set(drawParams, key);
+        mTiles.put(new TileKey(mLookupKey), tile);
+        mLookupKey.reset();
+    }
+
+    public void clear() {
+        mTiles.evictAll();
+    }
+
+    @UsedForTesting
+    public int getTileCount() {
+        return mTiles.snapshot().size();
+    }
+
+    @UsedForTesting
+    public int getByteCount() {
+        return mTiles.size();
+    }
+
+    @UsedForTesting
+    public int getMaxBytes() {
+        return mTiles.maxSize();
+    }
+}
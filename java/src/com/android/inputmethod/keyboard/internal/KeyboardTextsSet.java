@@ -63,6 +63,10 @@ public final class KeyboardTextsSet {
         return KeyboardTextsTable.getText(name, mTextsTable);
     }
 
+    public String getText(final int id) {
+        return KeyboardTextsTable.getText(id, mTextsTable);
+    }
+
     private static int searchTextNameEnd(final String text, final int start) {
         final int size = text.length();
         for (int pos = start; pos < size; pos++) {
@@ -76,11 +80,21 @@ public final class KeyboardTextsSet {
         return size;
     }
 
-    // TODO: Resolve text reference when creating {@link KeyboardTextsTable} class.
     public String resolveTextReference(final String rawText) {
         if (TextUtils.isEmpty(rawText)) {
             return null;
         }
+        // Fast path for the most common reference form, such as "!text/morekeys_a". The texts of
+        // {@link KeyboardTextsTable} have all "!text/" references already expanded by
+        // tools/make-keyboard-text, so the resolved text needs no further scanning unless it
+        // contains a "!string/" reference.
+        if (rawText.startsWith(PREFIX_TEXT)
+                && searchTextNameEnd(rawText, PREFIX_TEXT.length()) == rawText.length()) {
+            final String text = getText(rawText.substring(PREFIX_TEXT.length()));
+            if (!text.contains(PREFIX_RESOURCE)) {
+                return TextUtils.isEmpty(text) ? null : text;
+            }
+        }
         int level = 0;
         String text = rawText;
         StringBuilder sb;
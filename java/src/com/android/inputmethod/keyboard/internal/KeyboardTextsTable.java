@@ -16,6 +16,8 @@
 
 package com.android.inputmethod.keyboard.internal;
 
+import com.android.inputmethod.annotations.UsedForTesting;
+
 import java.util.HashMap;
 import java.util.Locale;
 
@@ -41,34 +43,237 @@ import java.util.Locale;
  *   KeyboardTextsTable.java
  */
 public final class KeyboardTextsTable {
-    // Name to index map.
-    private static final HashMap<String, Integer> sNameToIndexesMap = new HashMap<>();
+    public static final int NO_TEXT_ID = -1;
+
     // Locale to texts table map.
     private static final HashMap<String, String[]> sLocaleToTextsTableMap = new HashMap<>();
     // TODO: Remove this variable after debugging.
     // Texts table to locale maps.
     private static final HashMap<String[], String> sTextsTableToLocaleMap = new HashMap<>();
 
+    /**
+     * Returns the text id of the specified name. All "!text/" references in the texts of this
+     * table are already expanded, so the text of the id never contains another "!text/"
+     * reference.
+     * @param name the text name.
+     * @return the text id, or {@link #NO_TEXT_ID} if there is no text of the name.
+     */
+    public static int getTextId(final String name) {
+        switch (name) {
+        case "morekeys_a": return 0;
+        case "morekeys_o": return 1;
+        case "morekeys_e": return 2;
+        case "morekeys_u": return 3;
+        case "keylabel_to_alpha": return 4;
+        case "morekeys_i": return 5;
+        case "morekeys_n": return 6;
+        case "morekeys_c": return 7;
+        case "double_quotes": return 8;
+        case "morekeys_s": return 9;
+        case "single_quotes": return 10;
+        case "keyspec_currency": return 11;
+        case "morekeys_y": return 12;
+        case "morekeys_z": return 13;
+        case "morekeys_d": return 14;
+        case "morekeys_t": return 15;
+        case "morekeys_l": return 16;
+        case "morekeys_g": return 17;
+        case "single_angle_quotes": return 18;
+        case "double_angle_quotes": return 19;
+        case "morekeys_r": return 20;
+        case "morekeys_k": return 21;
+        case "morekeys_cyrillic_ie": return 22;
+        case "keyspec_nordic_row1_11": return 23;
+        case "keyspec_nordic_row2_10": return 24;
+        case "keyspec_nordic_row2_11": return 25;
+        case "morekeys_nordic_row2_10": return 26;
+        case "keyspec_east_slavic_row1_9": return 27;
+        case "keyspec_east_slavic_row2_2": return 28;
+        case "keyspec_east_slavic_row2_11": return 29;
+        case "keyspec_east_slavic_row3_5": return 30;
+        case "morekeys_cyrillic_soft_sign": return 31;
+        case "keyspec_symbols_1": return 32;
+        case "keyspec_symbols_2": return 33;
+        case "keyspec_symbols_3": return 34;
+        case "keyspec_symbols_4": return 35;
+        case "keyspec_symbols_5": return 36;
+        case "keyspec_symbols_6": return 37;
+        case "keyspec_symbols_7": return 38;
+        case "keyspec_symbols_8": return 39;
+        case "keyspec_symbols_9": return 40;
+        case "keyspec_symbols_0": return 41;
+        case "keylabel_to_symbol": return 42;
+        case "additional_morekeys_symbols_1": return 43;
+        case "additional_morekeys_symbols_2": return 44;
+        case "additional_morekeys_symbols_3": return 45;
+        case "additional_morekeys_symbols_4": return 46;
+        case "additional_morekeys_symbols_5": return 47;
+        case "additional_morekeys_symbols_6": return 48;
+        case "additional_morekeys_symbols_7": return 49;
+        case "additional_morekeys_symbols_8": return 50;
+        case "additional_morekeys_symbols_9": return 51;
+        case "additional_morekeys_symbols_0": return 52;
+        case "morekeys_tablet_period": return 53;
+        case "morekeys_nordic_row2_11": return 54;
+        case "morekeys_punctuation": return 55;
+        case "keyspec_tablet_comma": return 56;
+        case "keyspec_period": return 57;
+        case "morekeys_period": return 58;
+        case "keyspec_tablet_period": return 59;
+        case "keyspec_swiss_row1_11": return 60;
+        case "keyspec_swiss_row2_10": return 61;
+        case "keyspec_swiss_row2_11": return 62;
+        case "morekeys_swiss_row1_11": return 63;
+        case "morekeys_swiss_row2_10": return 64;
+        case "morekeys_swiss_row2_11": return 65;
+        case "morekeys_star": return 66;
+        case "keyspec_left_parenthesis": return 67;
+        case "keyspec_right_parenthesis": return 68;
+        case "keyspec_left_square_bracket": return 69;
+        case "keyspec_right_square_bracket": return 70;
+        case "keyspec_left_curly_bracket": return 71;
+        case "keyspec_right_curly_bracket": return 72;
+        case "keyspec_less_than": return 73;
+        case "keyspec_greater_than": return 74;
+        case "keyspec_less_than_equal": return 75;
+        case "keyspec_greater_than_equal": return 76;
+        case "keyspec_left_double_angle_quote": return 77;
+        case "keyspec_right_double_angle_quote": return 78;
+        case "keyspec_left_single_angle_quote": return 79;
+        case "keyspec_right_single_angle_quote": return 80;
+        case "keyspec_comma": return 81;
+        case "morekeys_tablet_comma": return 82;
+        case "keyhintlabel_period": return 83;
+        case "morekeys_question": return 84;
+        case "morekeys_h": return 85;
+        case "morekeys_w": return 86;
+        case "morekeys_east_slavic_row2_2": return 87;
+        case "morekeys_cyrillic_u": return 88;
+        case "morekeys_cyrillic_en": return 89;
+        case "morekeys_cyrillic_ghe": return 90;
+        case "morekeys_cyrillic_o": return 91;
+        case "morekeys_cyrillic_i": return 92;
+        case "keyspec_south_slavic_row1_6": return 93;
+        case "keyspec_south_slavic_row2_11": return 94;
+        case "keyspec_south_slavic_row3_1": return 95;
+        case "keyspec_south_slavic_row3_8": return 96;
+        case "morekeys_tablet_punctuation": return 97;
+        case "keyspec_spanish_row2_10": return 98;
+        case "morekeys_bullet": return 99;
+        case "morekeys_left_parenthesis": return 100;
+        case "morekeys_right_parenthesis": return 101;
+        case "morekeys_arabic_diacritics": return 102;
+        case "keyhintlabel_tablet_comma": return 103;
+        case "keyhintlabel_tablet_period": return 104;
+        case "keyspec_symbols_question": return 105;
+        case "keyspec_symbols_semicolon": return 106;
+        case "keyspec_symbols_percent": return 107;
+        case "morekeys_symbols_semicolon": return 108;
+        case "morekeys_symbols_percent": return 109;
+        case "label_go_key": return 110;
+        case "label_send_key": return 111;
+        case "label_next_key": return 112;
+        case "label_done_key": return 113;
+        case "label_search_key": return 114;
+        case "label_previous_key": return 115;
+        case "label_pause_key": return 116;
+        case "label_wait_key": return 117;
+        case "morekeys_v": return 118;
+        case "morekeys_j": return 119;
+        case "morekeys_q": return 120;
+        case "morekeys_x": return 121;
+        case "keyspec_q": return 122;
+        case "keyspec_w": return 123;
+        case "keyspec_y": return 124;
+        case "keyspec_x": return 125;
+        case "morekeys_east_slavic_row2_11": return 126;
+        case "morekeys_cyrillic_ka": return 127;
+        case "morekeys_cyrillic_a": return 128;
+        case "morekeys_currency_dollar": return 129;
+        case "morekeys_plus": return 130;
+        case "morekeys_less_than": return 131;
+        case "morekeys_greater_than": return 132;
+        case "morekeys_exclamation": return 133;
+        case "morekeys_currency_generic": return 134;
+        case "morekeys_symbols_1": return 135;
+        case "morekeys_symbols_2": return 136;
+        case "morekeys_symbols_3": return 137;
+        case "morekeys_symbols_4": return 138;
+        case "morekeys_symbols_5": return 139;
+        case "morekeys_symbols_6": return 140;
+        case "morekeys_symbols_7": return 141;
+        case "morekeys_symbols_8": return 142;
+        case "morekeys_symbols_9": return 143;
+        case "morekeys_symbols_0": return 144;
+        case "morekeys_am_pm": return 145;
+        case "keyspec_settings": return 146;
+        case "keyspec_shortcut": return 147;
+        case "keyspec_action_next": return 148;
+        case "keyspec_action_previous": return 149;
+        case "keylabel_to_more_symbol": return 150;
+        case "keylabel_tablet_to_more_symbol": return 151;
+        case "keylabel_to_phone_numeric": return 152;
+        case "keylabel_to_phone_symbols": return 153;
+        case "keylabel_time_am": return 154;
+        case "keylabel_time_pm": return 155;
+        case "keyspec_popular_domain": return 156;
+        case "morekeys_popular_domain": return 157;
+        case "keyspecs_left_parenthesis_more_keys": return 158;
+        case "keyspecs_right_parenthesis_more_keys": return 159;
+        case "single_laqm_raqm": return 160;
+        case "single_raqm_laqm": return 161;
+        case "double_laqm_raqm": return 162;
+        case "double_raqm_laqm": return 163;
+        case "single_lqm_rqm": return 164;
+        case "single_9qm_lqm": return 165;
+        case "single_9qm_rqm": return 166;
+        case "single_rqm_9qm": return 167;
+        case "double_lqm_rqm": return 168;
+        case "double_9qm_lqm": return 169;
+        case "double_9qm_rqm": return 170;
+        case "double_rqm_9qm": return 171;
+        case "morekeys_single_quote": return 172;
+        case "morekeys_double_quote": return 173;
+        case "morekeys_tablet_double_quote": return 174;
+        case "keyspec_emoji_action_key": return 175;
+        default: return NO_TEXT_ID;
+        }
+    }
+
     public static String getText(final String name, final String[] textsTable) {
-        final Integer indexObj = sNameToIndexesMap.get(name);
-        if (indexObj == null) {
+        final int id = getTextId(name);
+        if (id == NO_TEXT_ID) {
             throw new RuntimeException("Unknown text name=" + name + " locale="
                     + sTextsTableToLocaleMap.get(textsTable));
         }
-        final int index = indexObj;
-        final String text = (index < textsTable.length) ? textsTable[index] : null;
+        return getText(id, textsTable);
+    }
+
+    public static String getText(final int id, final String[] textsTable) {
+        final String text = (id >= 0 && id < textsTable.length) ? textsTable[id] : null;
         if (text != null) {
             return text;
         }
         // Validity check.
-        if (index >= 0 && index < TEXTS_DEFAULT.length) {
-            return TEXTS_DEFAULT[index];
+        if (id >= 0 && id < TEXTS_DEFAULT.length) {
+            return TEXTS_DEFAULT[id];
         }
         // Throw exception for debugging purpose.
-        throw new RuntimeException("Illegal index=" + index + " for name=" + name
+        throw new RuntimeException("Illegal index=" + id + " for name="
+                + ((id >= 0 && id < NAMES.length) ? NAMES[id] : null)
                 + " locale=" + sTextsTableToLocaleMap.get(textsTable));
     }
 
+    @UsedForTesting
+    public static int getTextsCount() {
+        return NAMES.length;
+    }
+
+    @UsedForTesting
+    public static String getTextName(final int id) {
+        return NAMES[id];
+    }
+
     public static String[] getTextsTable(final Locale locale) {
         final String localeKey = locale.toString();
         if (sLocaleToTextsTableMap.containsKey(localeKey)) {
@@ -273,15 +478,15 @@ public final class KeyboardTextsTable {
         /* morekeys_i ~ */
         EMPTY, EMPTY, EMPTY,
         /* ~ morekeys_c */
-        /* double_quotes */ "!text/double_lqm_rqm",
+        /* double_quotes */ "\u201E,\u201C,\u201D",
         /* morekeys_s */ EMPTY,
-        /* single_quotes */ "!text/single_lqm_rqm",
+        /* single_quotes */ "\u201A,\u2018,\u2019",
         /* keyspec_currency */ "$",
         /* morekeys_y ~ */
         EMPTY, EMPTY, EMPTY, EMPTY, EMPTY, EMPTY,
         /* ~ morekeys_g */
-        /* single_angle_quotes */ "!text/single_laqm_raqm",
-        /* double_angle_quotes */ "!text/double_laqm_raqm",
+        /* single_angle_quotes */ "\u2039,\u203A",
+        /* double_angle_quotes */ "\u00AB,\u00BB",
         /* morekeys_r ~ */
         EMPTY, EMPTY, EMPTY, EMPTY, EMPTY, EMPTY, EMPTY, EMPTY, EMPTY, EMPTY, EMPTY, EMPTY,
         /* ~ morekeys_cyrillic_soft_sign */
@@ -300,13 +505,13 @@ public final class KeyboardTextsTable {
         /* additional_morekeys_symbols_1 ~ */
         EMPTY, EMPTY, EMPTY, EMPTY, EMPTY, EMPTY, EMPTY, EMPTY, EMPTY, EMPTY,
         /* ~ additional_morekeys_symbols_0 */
-        /* morekeys_tablet_period */ "!text/morekeys_tablet_punctuation",
+        /* morekeys_tablet_period */ "!autoColumnOrder!7,\\,,',#,),(,/,;,@,:,-,\",+,\\%,&",
         /* morekeys_nordic_row2_11 */ EMPTY,
-        /* morekeys_punctuation */ "!autoColumnOrder!8,\\,,?,!,#,!text/keyspec_right_parenthesis,!text/keyspec_left_parenthesis,/,;,',@,:,-,\",+,\\%,&",
+        /* morekeys_punctuation */ "!autoColumnOrder!8,\\,,?,!,#,),(,/,;,',@,:,-,\",+,\\%,&",
         /* keyspec_tablet_comma */ ",",
         // Period key
         /* keyspec_period */ ".",
-        /* morekeys_period */ "!text/morekeys_punctuation",
+        /* morekeys_period */ "!autoColumnOrder!8,\\,,?,!,#,),(,/,;,',@,:,-,\",+,\\%,&",
         /* keyspec_tablet_period */ ".",
         /* keyspec_swiss_row1_11 ~ */
         EMPTY, EMPTY, EMPTY, EMPTY, EMPTY, EMPTY,
@@ -346,7 +551,7 @@ public final class KeyboardTextsTable {
         /* morekeys_h ~ */
         EMPTY, EMPTY, EMPTY, EMPTY, EMPTY, EMPTY, EMPTY, EMPTY, EMPTY, EMPTY, EMPTY, EMPTY,
         /* ~ keyspec_south_slavic_row3_8 */
-        /* morekeys_tablet_punctuation */ "!autoColumnOrder!7,\\,,',#,!text/keyspec_right_parenthesis,!text/keyspec_left_parenthesis,/,;,@,:,-,\",+,\\%,&",
+        /* morekeys_tablet_punctuation */ "!autoColumnOrder!7,\\,,',#,),(,/,;,@,:,-,\",+,\\%,&",
         // U+00F1: "ñ" LATIN SMALL LETTER N WITH TILDE
         /* keyspec_spanish_row2_10 */ "\u00F1",
         // U+266A: "♪" EIGHTH NOTE
@@ -355,8 +560,8 @@ public final class KeyboardTextsTable {
         // U+2666: "♦" BLACK DIAMOND SUIT
         // U+2663: "♣" BLACK CLUB SUIT
         /* morekeys_bullet */ "\u266A,\u2665,\u2660,\u2666,\u2663",
-        /* morekeys_left_parenthesis */ "!fixedColumnOrder!3,!text/keyspecs_left_parenthesis_more_keys",
-        /* morekeys_right_parenthesis */ "!fixedColumnOrder!3,!text/keyspecs_right_parenthesis_more_keys",
+        /* morekeys_left_parenthesis */ "!fixedColumnOrder!3,<,{,[",
+        /* morekeys_right_parenthesis */ "!fixedColumnOrder!3,>,},]",
         /* morekeys_arabic_diacritics ~ */
         EMPTY, EMPTY, EMPTY,
         /* ~ keyhintlabel_tablet_period */
@@ -392,8 +597,8 @@ public final class KeyboardTextsTable {
         /* morekeys_currency_dollar */ "\u00A2,\u00A3,\u20AC,\u00A5,\u20B1",
         // U+00B1: "±" PLUS-MINUS SIGN
         /* morekeys_plus */ "\u00B1",
-        /* morekeys_less_than */ "!fixedColumnOrder!3,!text/keyspec_left_single_angle_quote,!text/keyspec_less_than_equal,!text/keyspec_left_double_angle_quote",
-        /* morekeys_greater_than */ "!fixedColumnOrder!3,!text/keyspec_right_single_angle_quote,!text/keyspec_greater_than_equal,!text/keyspec_right_double_angle_quote",
+        /* morekeys_less_than */ "!fixedColumnOrder!3,\u2039,\u2264,\u00AB",
+        /* morekeys_greater_than */ "!fixedColumnOrder!3,\u203A,\u2265,\u00BB",
         // U+00A1: "¡" INVERTED EXCLAMATION MARK
         /* morekeys_exclamation */ "\u00A1",
         /* morekeys_currency_generic */ "$,\u00A2,\u20AC,\u00A3,\u00A5,\u20B1",
@@ -422,11 +627,11 @@ public final class KeyboardTextsTable {
         // U+207F: "ⁿ" SUPERSCRIPT LATIN SMALL LETTER N
         // U+2205: "∅" EMPTY SET
         /* morekeys_symbols_0 */ "\u207F,\u2205",
-        /* morekeys_am_pm */ "!fixedColumnOrder!2,!hasLabels!,!text/keylabel_time_am,!text/keylabel_time_pm",
+        /* morekeys_am_pm */ "!fixedColumnOrder!2,!hasLabels!,AM,PM",
         /* keyspec_settings */ "!icon/settings_key|!code/key_settings",
         /* keyspec_shortcut */ "!icon/shortcut_key|!code/key_shortcut",
-        /* keyspec_action_next */ "!hasLabels!,!text/label_next_key|!code/key_action_next",
-        /* keyspec_action_previous */ "!hasLabels!,!text/label_previous_key|!code/key_action_previous",
+        /* keyspec_action_next */ "!hasLabels!,!string/label_next_key|!code/key_action_next",
+        /* keyspec_action_previous */ "!hasLabels!,!string/label_previous_key|!code/key_action_previous",
         // Label for "switch to more symbol" modifier key ("= \ <"). Must be short to fit on key!
         /* keylabel_to_more_symbol */ "= \\\\ <",
         // Label for "switch to more symbol" modifier key on tablets.  Must be short to fit on key!
@@ -444,8 +649,8 @@ public final class KeyboardTextsTable {
         /* keyspec_popular_domain */ ".com",
         // popular web domains for the locale - most popular, displayed on the keyboard
         /* morekeys_popular_domain */ "!hasLabels!,.net,.org,.gov,.edu",
-        /* keyspecs_left_parenthesis_more_keys */ "!text/keyspec_less_than,!text/keyspec_left_curly_bracket,!text/keyspec_left_square_bracket",
-        /* keyspecs_right_parenthesis_more_keys */ "!text/keyspec_greater_than,!text/keyspec_right_curly_bracket,!text/keyspec_right_square_bracket",
+        /* keyspecs_left_parenthesis_more_keys */ "<,{,[",
+        /* keyspecs_right_parenthesis_more_keys */ ">,},]",
         // The following characters don't need BIDI mirroring.
         // U+2018: "‘" LEFT SINGLE QUOTATION MARK
         // U+2019: "’" RIGHT SINGLE QUOTATION MARK
@@ -462,10 +667,10 @@ public final class KeyboardTextsTable {
         // The following each quotation mark pair consist of
         // <opening quotation mark>, <closing quotation mark>
         // and is named after (single|double)_<opening quotation mark>_<closing quotation mark>.
-        /* single_laqm_raqm */ "!text/keyspec_left_single_angle_quote,!text/keyspec_right_single_angle_quote",
-        /* single_raqm_laqm */ "!text/keyspec_right_single_angle_quote,!text/keyspec_left_single_angle_quote",
-        /* double_laqm_raqm */ "!text/keyspec_left_double_angle_quote,!text/keyspec_right_double_angle_quote",
-        /* double_raqm_laqm */ "!text/keyspec_right_double_angle_quote,!text/keyspec_left_double_angle_quote",
+        /* single_laqm_raqm */ "\u2039,\u203A",
+        /* single_raqm_laqm */ "\u203A,\u2039",
+        /* double_laqm_raqm */ "\u00AB,\u00BB",
+        /* double_raqm_laqm */ "\u00BB,\u00AB",
         // The following each quotation mark triplet consists of
         // <another quotation mark>, <opening quotation mark>, <closing quotation mark>
         // and is named after (single|double)_<opening quotation mark>_<closing quotation mark>.
@@ -477,9 +682,9 @@ public final class KeyboardTextsTable {
         /* double_9qm_lqm */ "\u201D,\u201E,\u201C",
         /* double_9qm_rqm */ "\u201C,\u201E,\u201D",
         /* double_rqm_9qm */ "\u201C,\u201D,\u201E",
-        /* morekeys_single_quote */ "!fixedColumnOrder!5,!text/single_quotes,!text/single_angle_quotes",
-        /* morekeys_double_quote */ "!fixedColumnOrder!5,!text/double_quotes,!text/double_angle_quotes",
-        /* morekeys_tablet_double_quote */ "!fixedColumnOrder!6,!text/double_quotes,!text/single_quotes,!text/double_angle_quotes,!text/single_angle_quotes",
+        /* morekeys_single_quote */ "!fixedColumnOrder!5,\u201A,\u2018,\u2019,\u2039,\u203A",
+        /* morekeys_double_quote */ "!fixedColumnOrder!5,\u201E,\u201C,\u201D,\u00AB,\u00BB",
+        /* morekeys_tablet_double_quote */ "!fixedColumnOrder!6,\u201E,\u201C,\u201D,\u201A,\u2018,\u2019,\u00AB,\u00BB,\u2039,\u203A",
         /* keyspec_emoji_action_key */ "!icon/emoji_action_key|!code/key_emoji",
     };
 
@@ -550,7 +755,11 @@ public final class KeyboardTextsTable {
         // U+062C: "ج" ARABIC LETTER JEEM
         /* keylabel_to_alpha */ "\u0623\u200C\u0628\u200C\u062C",
         /* morekeys_i ~ */
-        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null,
+        /* ~ morekeys_g */
+        /* single_angle_quotes */ "\u2039|\u203A,\u203A|\u2039",
+        /* double_angle_quotes */ "\u00AB|\u00BB,\u00BB|\u00AB",
+        /* morekeys_r ~ */
         null, null, null, null, null, null, null, null, null, null, null, null,
         /* ~ morekeys_cyrillic_soft_sign */
         // U+0661: "١" ARABIC-INDIC DIGIT ONE
@@ -588,15 +797,15 @@ public final class KeyboardTextsTable {
         // U+066B: "٫" ARABIC DECIMAL SEPARATOR
         // U+066C: "٬" ARABIC THOUSANDS SEPARATOR
         /* additional_morekeys_symbols_0 */ "0,\u066B,\u066C",
-        /* morekeys_tablet_period */ "!text/morekeys_arabic_diacritics",
+        /* morekeys_tablet_period */ "!fixedColumnOrder!7, \u0655|\u0655, \u0654|\u0654, \u0652|\u0652, \u064D|\u064D, \u064C|\u064C, \u064B|\u064B, \u0651|\u0651, \u0656|\u0656, \u0670|\u0670, \u0653|\u0653, \u0650|\u0650, \u064F|\u064F, \u064E|\u064E,\u0640\u0640\u0640|\u0640",
         /* morekeys_nordic_row2_11 */ null,
-        /* morekeys_punctuation */ null,
+        /* morekeys_punctuation */ "!autoColumnOrder!8,\\,,?,!,#,)|(,(|),/,;,',@,:,-,\",+,\\%,&",
         // U+061F: "؟" ARABIC QUESTION MARK
         // U+060C: "،" ARABIC COMMA
         // U+061B: "؛" ARABIC SEMICOLON
         /* keyspec_tablet_comma */ "\u060C",
         /* keyspec_period */ null,
-        /* morekeys_period */ "!text/morekeys_arabic_diacritics",
+        /* morekeys_period */ "!fixedColumnOrder!7, \u0655|\u0655, \u0654|\u0654, \u0652|\u0652, \u064D|\u064D, \u064C|\u064C, \u064B|\u064B, \u0651|\u0651, \u0656|\u0656, \u0670|\u0670, \u0653|\u0653, \u0650|\u0650, \u064F|\u064F, \u064E|\u064E,\u0640\u0640\u0640|\u0640",
         /* keyspec_tablet_period ~ */
         null, null, null, null, null, null, null,
         /* ~ morekeys_swiss_row2_11 */
@@ -631,16 +840,18 @@ public final class KeyboardTextsTable {
         // U+00BF: "¿" INVERTED QUESTION MARK
         /* morekeys_question */ "?,\u00BF",
         /* morekeys_h ~ */
-        null, null, null, null, null, null, null, null, null, null, null, null, null, null,
-        /* ~ keyspec_spanish_row2_10 */
+        null, null, null, null, null, null, null, null, null, null, null, null,
+        /* ~ keyspec_south_slavic_row3_8 */
+        /* morekeys_tablet_punctuation */ "!autoColumnOrder!7,\\,,',#,)|(,(|),/,;,@,:,-,\",+,\\%,&",
+        /* keyspec_spanish_row2_10 */ null,
         // U+266A: "♪" EIGHTH NOTE
         /* morekeys_bullet */ "\u266A",
         // The all letters need to be mirrored are found at
         // http://www.unicode.org/Public/6.1.0/ucd/BidiMirroring.txt
         // U+FD3E: "﴾" ORNATE LEFT PARENTHESIS
         // U+FD3F: "﴿" ORNATE RIGHT PARENTHESIS
-        /* morekeys_left_parenthesis */ "!fixedColumnOrder!4,\uFD3E|\uFD3F,!text/keyspecs_left_parenthesis_more_keys",
-        /* morekeys_right_parenthesis */ "!fixedColumnOrder!4,\uFD3F|\uFD3E,!text/keyspecs_right_parenthesis_more_keys",
+        /* morekeys_left_parenthesis */ "!fixedColumnOrder!4,\uFD3E|\uFD3F,<|>,{|},[|]",
+        /* morekeys_right_parenthesis */ "!fixedColumnOrder!4,\uFD3F|\uFD3E,>|<,}|{,]|[",
         // U+0655: "ٕ" ARABIC HAMZA BELOW
         // U+0654: "ٔ" ARABIC HAMZA ABOVE
         // U+0652: "ْ" ARABIC SUKUN
@@ -667,10 +878,32 @@ public final class KeyboardTextsTable {
         /* morekeys_symbols_semicolon */ ";",
         // U+2030: "‰" PER MILLE SIGN
         /* morekeys_symbols_percent */ "\\%,\u2030",
+        /* label_go_key ~ */
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null,
+        /* ~ morekeys_plus */
+        /* morekeys_less_than */ "!fixedColumnOrder!3,\u2039|\u203A,\u2264|\u2265,\u00AB|\u00BB",
+        /* morekeys_greater_than */ "!fixedColumnOrder!3,\u203A|\u2039,\u2265|\u2264,\u00BB|\u00AB",
+        /* morekeys_exclamation ~ */
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null,
+        /* ~ morekeys_popular_domain */
+        /* keyspecs_left_parenthesis_more_keys */ "<|>,{|},[|]",
+        /* keyspecs_right_parenthesis_more_keys */ ">|<,}|{,]|[",
+        /* single_laqm_raqm */ "\u2039|\u203A,\u203A|\u2039",
+        /* single_raqm_laqm */ "\u203A|\u2039,\u2039|\u203A",
+        /* double_laqm_raqm */ "\u00AB|\u00BB,\u00BB|\u00AB",
+        /* double_raqm_laqm */ "\u00BB|\u00AB,\u00AB|\u00BB",
+        /* single_lqm_rqm ~ */
+        null, null, null, null, null, null, null, null,
+        /* ~ double_rqm_9qm */
+        /* morekeys_single_quote */ "!fixedColumnOrder!5,\u201A,\u2018,\u2019,\u2039|\u203A,\u203A|\u2039",
+        /* morekeys_double_quote */ "!fixedColumnOrder!5,\u201E,\u201C,\u201D,\u00AB|\u00BB,\u00BB|\u00AB",
+        /* morekeys_tablet_double_quote */ "!fixedColumnOrder!6,\u201E,\u201C,\u201D,\u201A,\u2018,\u2019,\u00AB|\u00BB,\u00BB|\u00AB,\u2039|\u203A,\u203A|\u2039",
     };
 
-    /* Locale az_AZ: Azerbaijani (Azerbaijan) */
-    private static final String[] TEXTS_az_AZ = {
+    /* Locale az: Azerbaijani */
+    private static final String[] TEXTS_az = {
         // This is the same as Turkish
         // U+00E2: "â" LATIN SMALL LETTER A WITH CIRCUMFLEX
         // U+00E4: "ä" LATIN SMALL LETTER A WITH DIAERESIS
@@ -729,8 +962,8 @@ public final class KeyboardTextsTable {
         /* morekeys_g */ "\u011F",
     };
 
-    /* Locale be_BY: Belarusian (Belarus) */
-    private static final String[] TEXTS_be_BY = {
+    /* Locale be: Belarusian */
+    private static final String[] TEXTS_be = {
         /* morekeys_a ~ */
         null, null, null, null,
         /* ~ morekeys_u */
@@ -742,9 +975,9 @@ public final class KeyboardTextsTable {
         /* morekeys_i ~ */
         null, null, null,
         /* ~ morekeys_c */
-        /* double_quotes */ "!text/double_9qm_lqm",
+        /* double_quotes */ "\u201D,\u201E,\u201C",
         /* morekeys_s */ null,
-        /* single_quotes */ "!text/single_9qm_lqm",
+        /* single_quotes */ "\u2019,\u201A,\u2018",
         /* keyspec_currency ~ */
         null, null, null, null, null, null, null, null, null, null, null,
         /* ~ morekeys_k */
@@ -763,6 +996,21 @@ public final class KeyboardTextsTable {
         /* keyspec_east_slavic_row3_5 */ "\u0456",
         // U+044A: "ъ" CYRILLIC SMALL LETTER HARD SIGN
         /* morekeys_cyrillic_soft_sign */ "\u044A",
+        /* keyspec_symbols_1 ~ */
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null,
+        /* ~ double_rqm_9qm */
+        /* morekeys_single_quote */ "!fixedColumnOrder!5,\u2019,\u201A,\u2018,\u2039,\u203A",
+        /* morekeys_double_quote */ "!fixedColumnOrder!5,\u201D,\u201E,\u201C,\u00AB,\u00BB",
+        /* morekeys_tablet_double_quote */ "!fixedColumnOrder!6,\u201D,\u201E,\u201C,\u2019,\u201A,\u2018,\u00AB,\u00BB,\u2039,\u203A",
     };
 
     /* Locale bg: Bulgarian */
@@ -779,10 +1027,25 @@ public final class KeyboardTextsTable {
         null, null, null,
         /* ~ morekeys_c */
         // single_quotes of Bulgarian is default single_quotes_right_left.
-        /* double_quotes */ "!text/double_9qm_lqm",
+        /* double_quotes */ "\u201D,\u201E,\u201C",
+        /* morekeys_s ~ */
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        /* ~ morekeys_single_quote */
+        /* morekeys_double_quote */ "!fixedColumnOrder!5,\u201D,\u201E,\u201C,\u00AB,\u00BB",
+        /* morekeys_tablet_double_quote */ "!fixedColumnOrder!6,\u201D,\u201E,\u201C,\u201A,\u2018,\u2019,\u00AB,\u00BB,\u2039,\u203A",
     };
 
-    /* Locale bn_BD: Bengali (Bangladesh) */
+    /* Locale bn_BD: Bangla (Bangladesh) */
     private static final String[] TEXTS_bn_BD = {
         /* morekeys_a ~ */
         null, null, null, null,
@@ -799,7 +1062,7 @@ public final class KeyboardTextsTable {
         /* keyspec_currency */ "\u09F3",
     };
 
-    /* Locale bn_IN: Bengali (India) */
+    /* Locale bn_IN: Bangla (India) */
     private static final String[] TEXTS_bn_IN = {
         /* morekeys_a ~ */
         null, null, null, null,
@@ -877,14 +1140,19 @@ public final class KeyboardTextsTable {
         /* morekeys_g ~ */
         null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
         null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
-        null, null, null, null, null, null, null, null,
-        /* ~ morekeys_nordic_row2_11 */
+        null, null, null, null, null, null,
+        /* ~ additional_morekeys_symbols_0 */
+        /* morekeys_tablet_period */ "!autoColumnOrder!8,\\,,',\u00B7,#,),(,/,;,@,:,-,\",+,\\%,&",
+        /* morekeys_nordic_row2_11 */ null,
         // U+00B7: "·" MIDDLE DOT
         /* morekeys_punctuation */ "!autoColumnOrder!9,\\,,?,!,\u00B7,#,),(,/,;,',@,:,-,\",+,\\%,&",
-        /* keyspec_tablet_comma ~ */
+        /* keyspec_tablet_comma */ null,
+        /* keyspec_period */ null,
+        /* morekeys_period */ "!autoColumnOrder!9,\\,,?,!,\u00B7,#,),(,/,;,',@,:,-,\",+,\\%,&",
+        /* keyspec_tablet_period ~ */
         null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
         null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
-        null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null,
         /* ~ keyspec_south_slavic_row3_8 */
         /* morekeys_tablet_punctuation */ "!autoColumnOrder!8,\\,,',\u00B7,#,),(,/,;,@,:,-,\",+,\\%,&",
         // U+00E7: "ç" LATIN SMALL LETTER C WITH CEDILLA
@@ -943,12 +1211,12 @@ public final class KeyboardTextsTable {
         // U+00E7: "ç" LATIN SMALL LETTER C WITH CEDILLA
         // U+0107: "ć" LATIN SMALL LETTER C WITH ACUTE
         /* morekeys_c */ "\u010D,\u00E7,\u0107",
-        /* double_quotes */ "!text/double_9qm_lqm",
+        /* double_quotes */ "\u201D,\u201E,\u201C",
         // U+0161: "š" LATIN SMALL LETTER S WITH CARON
         // U+00DF: "ß" LATIN SMALL LETTER SHARP S
         // U+015B: "ś" LATIN SMALL LETTER S WITH ACUTE
         /* morekeys_s */ "\u0161,\u00DF,\u015B",
-        /* single_quotes */ "!text/single_9qm_lqm",
+        /* single_quotes */ "\u2019,\u201A,\u2018",
         /* keyspec_currency */ null,
         // U+00FD: "ý" LATIN SMALL LETTER Y WITH ACUTE
         // U+00FF: "ÿ" LATIN SMALL LETTER Y WITH DIAERESIS
@@ -963,10 +1231,26 @@ public final class KeyboardTextsTable {
         /* morekeys_t */ "\u0165",
         /* morekeys_l */ null,
         /* morekeys_g */ null,
-        /* single_angle_quotes */ "!text/single_raqm_laqm",
-        /* double_angle_quotes */ "!text/double_raqm_laqm",
+        /* single_angle_quotes */ "\u203A,\u2039",
+        /* double_angle_quotes */ "\u00BB,\u00AB",
         // U+0159: "ř" LATIN SMALL LETTER R WITH CARON
         /* morekeys_r */ "\u0159",
+        /* morekeys_k ~ */
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null,
+        /* ~ double_rqm_9qm */
+        /* morekeys_single_quote */ "!fixedColumnOrder!5,\u2019,\u201A,\u2018,\u203A,\u2039",
+        /* morekeys_double_quote */ "!fixedColumnOrder!5,\u201D,\u201E,\u201C,\u00BB,\u00AB",
+        /* morekeys_tablet_double_quote */ "!fixedColumnOrder!6,\u201D,\u201E,\u201C,\u2019,\u201A,\u2018,\u00BB,\u00AB,\u203A,\u2039",
     };
 
     /* Locale da: Danish */
@@ -1006,12 +1290,12 @@ public final class KeyboardTextsTable {
         // U+0144: "ń" LATIN SMALL LETTER N WITH ACUTE
         /* morekeys_n */ "\u00F1,\u0144",
         /* morekeys_c */ null,
-        /* double_quotes */ "!text/double_9qm_lqm",
+        /* double_quotes */ "\u201D,\u201E,\u201C",
         // U+00DF: "ß" LATIN SMALL LETTER SHARP S
         // U+015B: "ś" LATIN SMALL LETTER S WITH ACUTE
         // U+0161: "š" LATIN SMALL LETTER S WITH CARON
         /* morekeys_s */ "\u00DF,\u015B,\u0161",
-        /* single_quotes */ "!text/single_9qm_lqm",
+        /* single_quotes */ "\u2019,\u201A,\u2018",
         /* keyspec_currency */ null,
         // U+00FD: "ý" LATIN SMALL LETTER Y WITH ACUTE
         // U+00FF: "ÿ" LATIN SMALL LETTER Y WITH DIAERESIS
@@ -1023,8 +1307,8 @@ public final class KeyboardTextsTable {
         // U+0142: "ł" LATIN SMALL LETTER L WITH STROKE
         /* morekeys_l */ "\u0142",
         /* morekeys_g */ null,
-        /* single_angle_quotes */ "!text/single_raqm_laqm",
-        /* double_angle_quotes */ "!text/double_raqm_laqm",
+        /* single_angle_quotes */ "\u203A,\u2039",
+        /* double_angle_quotes */ "\u00BB,\u00AB",
         /* morekeys_r ~ */
         null, null, null,
         /* ~ morekeys_cyrillic_ie */
@@ -1042,6 +1326,19 @@ public final class KeyboardTextsTable {
         /* ~ morekeys_tablet_period */
         // U+00F6: "ö" LATIN SMALL LETTER O WITH DIAERESIS
         /* morekeys_nordic_row2_11 */ "\u00F6",
+        /* morekeys_punctuation ~ */
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null,
+        /* ~ double_rqm_9qm */
+        /* morekeys_single_quote */ "!fixedColumnOrder!5,\u2019,\u201A,\u2018,\u203A,\u2039",
+        /* morekeys_double_quote */ "!fixedColumnOrder!5,\u201D,\u201E,\u201C,\u00BB,\u00AB",
+        /* morekeys_tablet_double_quote */ "!fixedColumnOrder!6,\u201D,\u201E,\u201C,\u2019,\u201A,\u2018,\u00BB,\u00AB,\u203A,\u2039",
     };
 
     /* Locale de: German */
@@ -1082,17 +1379,17 @@ public final class KeyboardTextsTable {
         // U+0144: "ń" LATIN SMALL LETTER N WITH ACUTE
         /* morekeys_n */ "\u00F1,\u0144",
         /* morekeys_c */ null,
-        /* double_quotes */ "!text/double_9qm_lqm",
+        /* double_quotes */ "\u201D,\u201E,\u201C",
         // U+00DF: "ß" LATIN SMALL LETTER SHARP S
         // U+015B: "ś" LATIN SMALL LETTER S WITH ACUTE
         // U+0161: "š" LATIN SMALL LETTER S WITH CARON
         /* morekeys_s */ "\u00DF,\u015B,\u0161",
-        /* single_quotes */ "!text/single_9qm_lqm",
+        /* single_quotes */ "\u2019,\u201A,\u2018",
         /* keyspec_currency ~ */
         null, null, null, null, null, null, null,
         /* ~ morekeys_g */
-        /* single_angle_quotes */ "!text/single_raqm_laqm",
-        /* double_angle_quotes */ "!text/double_raqm_laqm",
+        /* single_angle_quotes */ "\u203A,\u2039",
+        /* double_angle_quotes */ "\u00BB,\u00AB",
         /* morekeys_r ~ */
         null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
         null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
@@ -1110,6 +1407,19 @@ public final class KeyboardTextsTable {
         /* morekeys_swiss_row2_10 */ "\u00E9",
         // U+00E0: "à" LATIN SMALL LETTER A WITH GRAVE
         /* morekeys_swiss_row2_11 */ "\u00E0",
+        /* morekeys_star ~ */
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null,
+        /* ~ double_rqm_9qm */
+        /* morekeys_single_quote */ "!fixedColumnOrder!5,\u2019,\u201A,\u2018,\u203A,\u2039",
+        /* morekeys_double_quote */ "!fixedColumnOrder!5,\u201D,\u201E,\u201C,\u00BB,\u00AB",
+        /* morekeys_tablet_double_quote */ "!fixedColumnOrder!6,\u201D,\u201E,\u201C,\u2019,\u201A,\u2018,\u00BB,\u00AB,\u203A,\u2039",
     };
 
     /* Locale el: Greek */
@@ -1383,10 +1693,13 @@ public final class KeyboardTextsTable {
         // U+00A1: "¡" INVERTED EXCLAMATION MARK
         // U+00BF: "¿" INVERTED QUESTION MARK
         /* morekeys_punctuation */ "!autoColumnOrder!9,\\,,?,!,#,),(,/,;,\u00A1,',@,:,-,\",+,\\%,&,\u00BF",
+        /* keyspec_tablet_comma */ null,
+        /* keyspec_period */ null,
+        /* morekeys_period */ "!autoColumnOrder!9,\\,,?,!,#,),(,/,;,\u00A1,',@,:,-,\",+,\\%,&,\u00BF",
     };
 
-    /* Locale et_EE: Estonian (Estonia) */
-    private static final String[] TEXTS_et_EE = {
+    /* Locale et: Estonian */
+    private static final String[] TEXTS_et = {
         // U+00E4: "ä" LATIN SMALL LETTER A WITH DIAERESIS
         // U+0101: "ā" LATIN SMALL LETTER A WITH MACRON
         // U+00E0: "à" LATIN SMALL LETTER A WITH GRAVE
@@ -1441,13 +1754,13 @@ public final class KeyboardTextsTable {
         // U+00E7: "ç" LATIN SMALL LETTER C WITH CEDILLA
         // U+0107: "ć" LATIN SMALL LETTER C WITH ACUTE
         /* morekeys_c */ "\u010D,\u00E7,\u0107",
-        /* double_quotes */ "!text/double_9qm_lqm",
+        /* double_quotes */ "\u201D,\u201E,\u201C",
         // U+0161: "š" LATIN SMALL LETTER S WITH CARON
         // U+00DF: "ß" LATIN SMALL LETTER SHARP S
         // U+015B: "ś" LATIN SMALL LETTER S WITH ACUTE
         // U+015F: "ş" LATIN SMALL LETTER S WITH CEDILLA
         /* morekeys_s */ "\u0161,\u00DF,\u015B,\u015F",
-        /* single_quotes */ "!text/single_9qm_lqm",
+        /* single_quotes */ "\u2019,\u201A,\u2018",
         /* keyspec_currency */ null,
         // U+00FD: "ý" LATIN SMALL LETTER Y WITH ACUTE
         // U+00FF: "ÿ" LATIN SMALL LETTER Y WITH DIAERESIS
@@ -1486,10 +1799,25 @@ public final class KeyboardTextsTable {
         /* keyspec_nordic_row2_11 */ "\u00E4",
         // U+00F5: "õ" LATIN SMALL LETTER O WITH TILDE
         /* morekeys_nordic_row2_10 */ "\u00F5",
+        /* keyspec_east_slavic_row1_9 ~ */
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null,
+        /* ~ double_rqm_9qm */
+        /* morekeys_single_quote */ "!fixedColumnOrder!5,\u2019,\u201A,\u2018,\u2039,\u203A",
+        /* morekeys_double_quote */ "!fixedColumnOrder!5,\u201D,\u201E,\u201C,\u00AB,\u00BB",
+        /* morekeys_tablet_double_quote */ "!fixedColumnOrder!6,\u201D,\u201E,\u201C,\u2019,\u201A,\u2018,\u00AB,\u00BB,\u2039,\u203A",
     };
 
-    /* Locale eu_ES: Basque (Spain) */
-    private static final String[] TEXTS_eu_ES = {
+    /* Locale eu: Basque */
+    private static final String[] TEXTS_eu = {
         // U+00E1: "á" LATIN SMALL LETTER A WITH ACUTE
         // U+00E0: "à" LATIN SMALL LETTER A WITH GRAVE
         // U+00E4: "ä" LATIN SMALL LETTER A WITH DIAERESIS
@@ -1559,8 +1887,12 @@ public final class KeyboardTextsTable {
         // U+FDFC: "﷼" RIAL SIGN
         /* keyspec_currency */ "\uFDFC",
         /* morekeys_y ~ */
-        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
-        null, null, null, null, null,
+        null, null, null, null, null, null,
+        /* ~ morekeys_g */
+        /* single_angle_quotes */ "\u2039|\u203A,\u203A|\u2039",
+        /* double_angle_quotes */ "\u00AB|\u00BB,\u00BB|\u00AB",
+        /* morekeys_r ~ */
+        null, null, null, null, null, null, null, null, null, null, null, null,
         /* ~ morekeys_cyrillic_soft_sign */
         // U+06F1: "۱" EXTENDED ARABIC-INDIC DIGIT ONE
         /* keyspec_symbols_1 */ "\u06F1",
@@ -1597,9 +1929,9 @@ public final class KeyboardTextsTable {
         // U+066B: "٫" ARABIC DECIMAL SEPARATOR
         // U+066C: "٬" ARABIC THOUSANDS SEPARATOR
         /* additional_morekeys_symbols_0 */ "0,\u066B,\u066C",
-        /* morekeys_tablet_period */ "!text/morekeys_arabic_diacritics",
+        /* morekeys_tablet_period */ "!fixedColumnOrder!7, \u0655|\u0655, \u0652|\u0652, \u0651|\u0651, \u064C|\u064C, \u064D|\u064D, \u064B|\u064B, \u0654|\u0654, \u0656|\u0656, \u0670|\u0670, \u0653|\u0653, \u064F|\u064F, \u0650|\u0650, \u064E|\u064E,\u0640\u0640\u0640|\u0640",
         /* morekeys_nordic_row2_11 */ null,
-        /* morekeys_punctuation */ null,
+        /* morekeys_punctuation */ "!autoColumnOrder!8,\\,,?,!,#,)|(,(|),/,;,',@,:,-,\",+,\\%,&",
         // U+060C: "،" ARABIC COMMA
         // U+061B: "؛" ARABIC SEMICOLON
         // U+061F: "؟" ARABIC QUESTION MARK
@@ -1607,7 +1939,7 @@ public final class KeyboardTextsTable {
         // U+00BB: "»" RIGHT-POINTING DOUBLE ANGLE QUOTATION MARK
         /* keyspec_tablet_comma */ "\u060C",
         /* keyspec_period */ null,
-        /* morekeys_period */ "!text/morekeys_arabic_diacritics",
+        /* morekeys_period */ "!fixedColumnOrder!7, \u0655|\u0655, \u0652|\u0652, \u0651|\u0651, \u064C|\u064C, \u064D|\u064D, \u064B|\u064B, \u0654|\u0654, \u0656|\u0656, \u0670|\u0670, \u0653|\u0653, \u064F|\u064F, \u0650|\u0650, \u064E|\u064E,\u0640\u0640\u0640|\u0640",
         /* keyspec_tablet_period ~ */
         null, null, null, null, null, null, null,
         /* ~ morekeys_swiss_row2_11 */
@@ -1630,22 +1962,24 @@ public final class KeyboardTextsTable {
         /* keyspec_right_single_angle_quote */ "\u203A|\u2039",
         // U+060C: "،" ARABIC COMMA
         /* keyspec_comma */ "\u060C",
-        /* morekeys_tablet_comma */ "!fixedColumnOrder!4,:,!,\u061F,\u061B,-,!text/keyspec_left_double_angle_quote,!text/keyspec_right_double_angle_quote",
+        /* morekeys_tablet_comma */ "!fixedColumnOrder!4,:,!,\u061F,\u061B,-,\u00AB|\u00BB,\u00BB|\u00AB",
         // U+064B: "ً" ARABIC FATHATAN
         /* keyhintlabel_period */ "\u064B",
         // U+00BF: "¿" INVERTED QUESTION MARK
         /* morekeys_question */ "?,\u00BF",
         /* morekeys_h ~ */
-        null, null, null, null, null, null, null, null, null, null, null, null, null, null,
-        /* ~ keyspec_spanish_row2_10 */
+        null, null, null, null, null, null, null, null, null, null, null, null,
+        /* ~ keyspec_south_slavic_row3_8 */
+        /* morekeys_tablet_punctuation */ "!autoColumnOrder!7,\\,,',#,)|(,(|),/,;,@,:,-,\",+,\\%,&",
+        /* keyspec_spanish_row2_10 */ null,
         // U+266A: "♪" EIGHTH NOTE
         /* morekeys_bullet */ "\u266A",
         // The all letters need to be mirrored are found at
         // http://www.unicode.org/Public/6.1.0/ucd/BidiMirroring.txt
         // U+FD3E: "﴾" ORNATE LEFT PARENTHESIS
         // U+FD3F: "﴿" ORNATE RIGHT PARENTHESIS
-        /* morekeys_left_parenthesis */ "!fixedColumnOrder!4,\uFD3E|\uFD3F,!text/keyspecs_left_parenthesis_more_keys",
-        /* morekeys_right_parenthesis */ "!fixedColumnOrder!4,\uFD3F|\uFD3E,!text/keyspecs_right_parenthesis_more_keys",
+        /* morekeys_left_parenthesis */ "!fixedColumnOrder!4,\uFD3E|\uFD3F,<|>,{|},[|]",
+        /* morekeys_right_parenthesis */ "!fixedColumnOrder!4,\uFD3F|\uFD3E,>|<,}|{,]|[",
         // U+0655: "ٕ" ARABIC HAMZA BELOW
         // U+0652: "ْ" ARABIC SUKUN
         // U+0651: "ّ" ARABIC SHADDA
@@ -1682,8 +2016,24 @@ public final class KeyboardTextsTable {
         // U+00BB: "»" RIGHT-POINTING DOUBLE ANGLE QUOTATION MARK
         // U+2039: "‹" SINGLE LEFT-POINTING ANGLE QUOTATION MARK
         // U+203A: "›" SINGLE RIGHT-POINTING ANGLE QUOTATION MARK
-        /* morekeys_less_than */ "!fixedColumnOrder!3,!text/keyspec_left_single_angle_quote,!text/keyspec_less_than_equal,!text/keyspec_less_than",
-        /* morekeys_greater_than */ "!fixedColumnOrder!3,!text/keyspec_right_single_angle_quote,!text/keyspec_greater_than_equal,!text/keyspec_greater_than",
+        /* morekeys_less_than */ "!fixedColumnOrder!3,\u2039|\u203A,\u2264|\u2265,<|>",
+        /* morekeys_greater_than */ "!fixedColumnOrder!3,\u203A|\u2039,\u2265|\u2264,>|<",
+        /* morekeys_exclamation ~ */
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null,
+        /* ~ morekeys_popular_domain */
+        /* keyspecs_left_parenthesis_more_keys */ "<|>,{|},[|]",
+        /* keyspecs_right_parenthesis_more_keys */ ">|<,}|{,]|[",
+        /* single_laqm_raqm */ "\u2039|\u203A,\u203A|\u2039",
+        /* single_raqm_laqm */ "\u203A|\u2039,\u2039|\u203A",
+        /* double_laqm_raqm */ "\u00AB|\u00BB,\u00BB|\u00AB",
+        /* double_raqm_laqm */ "\u00BB|\u00AB,\u00AB|\u00BB",
+        /* single_lqm_rqm ~ */
+        null, null, null, null, null, null, null, null,
+        /* ~ double_rqm_9qm */
+        /* morekeys_single_quote */ "!fixedColumnOrder!5,\u201A,\u2018,\u2019,\u2039|\u203A,\u203A|\u2039",
+        /* morekeys_double_quote */ "!fixedColumnOrder!5,\u201E,\u201C,\u201D,\u00AB|\u00BB,\u00BB|\u00AB",
+        /* morekeys_tablet_double_quote */ "!fixedColumnOrder!6,\u201E,\u201C,\u201D,\u201A,\u2018,\u2019,\u00AB|\u00BB,\u00BB|\u00AB,\u2039|\u203A,\u203A|\u2039",
     };
 
     /* Locale fi: Finnish */
@@ -1816,8 +2166,8 @@ public final class KeyboardTextsTable {
         /* morekeys_swiss_row2_11 */ "\u00E4",
     };
 
-    /* Locale gl_ES: Gallegan (Spain) */
-    private static final String[] TEXTS_gl_ES = {
+    /* Locale gl: Galician */
+    private static final String[] TEXTS_gl = {
         // U+00E1: "á" LATIN SMALL LETTER A WITH ACUTE
         // U+00E0: "à" LATIN SMALL LETTER A WITH GRAVE
         // U+00E4: "ä" LATIN SMALL LETTER A WITH DIAERESIS
@@ -1955,6 +2305,12 @@ public final class KeyboardTextsTable {
         /* label_previous_key */ "Prev",
         /* label_pause_key */ "Pause",
         /* label_wait_key */ "Wait",
+        /* morekeys_v ~ */
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        /* ~ keyspec_shortcut */
+        /* keyspec_action_next */ "!hasLabels!,Next|!code/key_action_next",
+        /* keyspec_action_previous */ "!hasLabels!,Prev|!code/key_action_previous",
     };
 
     /* Locale hr: Croatian */
@@ -1969,12 +2325,12 @@ public final class KeyboardTextsTable {
         // U+0107: "ć" LATIN SMALL LETTER C WITH ACUTE
         // U+00E7: "ç" LATIN SMALL LETTER C WITH CEDILLA
         /* morekeys_c */ "\u010D,\u0107,\u00E7",
-        /* double_quotes */ "!text/double_9qm_rqm",
+        /* double_quotes */ "\u201C,\u201E,\u201D",
         // U+0161: "š" LATIN SMALL LETTER S WITH CARON
         // U+015B: "ś" LATIN SMALL LETTER S WITH ACUTE
         // U+00DF: "ß" LATIN SMALL LETTER SHARP S
         /* morekeys_s */ "\u0161,\u015B,\u00DF",
-        /* single_quotes */ "!text/single_9qm_rqm",
+        /* single_quotes */ "\u2018,\u201A,\u2019",
         /* keyspec_currency */ null,
         /* morekeys_y */ null,
         // U+017E: "ž" LATIN SMALL LETTER Z WITH CARON
@@ -1986,8 +2342,24 @@ public final class KeyboardTextsTable {
         /* morekeys_t ~ */
         null, null, null,
         /* ~ morekeys_g */
-        /* single_angle_quotes */ "!text/single_raqm_laqm",
-        /* double_angle_quotes */ "!text/double_raqm_laqm",
+        /* single_angle_quotes */ "\u203A,\u2039",
+        /* double_angle_quotes */ "\u00BB,\u00AB",
+        /* morekeys_r ~ */
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null,
+        /* ~ double_rqm_9qm */
+        /* morekeys_single_quote */ "!fixedColumnOrder!5,\u2018,\u201A,\u2019,\u203A,\u2039",
+        /* morekeys_double_quote */ "!fixedColumnOrder!5,\u201C,\u201E,\u201D,\u00BB,\u00AB",
+        /* morekeys_tablet_double_quote */ "!fixedColumnOrder!6,\u201C,\u201E,\u201D,\u2018,\u201A,\u2019,\u00BB,\u00AB,\u203A,\u2039",
     };
 
     /* Locale hu: Hungarian */
@@ -2036,18 +2408,34 @@ public final class KeyboardTextsTable {
         /* morekeys_i */ "\u00ED,\u00EE,\u00EF,\u00EC,\u012F,\u012B",
         /* morekeys_n */ null,
         /* morekeys_c */ null,
-        /* double_quotes */ "!text/double_9qm_rqm",
+        /* double_quotes */ "\u201C,\u201E,\u201D",
         /* morekeys_s */ null,
-        /* single_quotes */ "!text/single_9qm_rqm",
+        /* single_quotes */ "\u2018,\u201A,\u2019",
         /* keyspec_currency ~ */
         null, null, null, null, null, null, null,
         /* ~ morekeys_g */
-        /* single_angle_quotes */ "!text/single_raqm_laqm",
-        /* double_angle_quotes */ "!text/double_raqm_laqm",
+        /* single_angle_quotes */ "\u203A,\u2039",
+        /* double_angle_quotes */ "\u00BB,\u00AB",
+        /* morekeys_r ~ */
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null,
+        /* ~ double_rqm_9qm */
+        /* morekeys_single_quote */ "!fixedColumnOrder!5,\u2018,\u201A,\u2019,\u203A,\u2039",
+        /* morekeys_double_quote */ "!fixedColumnOrder!5,\u201C,\u201E,\u201D,\u00BB,\u00AB",
+        /* morekeys_tablet_double_quote */ "!fixedColumnOrder!6,\u201C,\u201E,\u201D,\u2018,\u201A,\u2019,\u00BB,\u00AB,\u203A,\u2039",
     };
 
-    /* Locale hy_AM: Armenian (Armenia) */
-    private static final String[] TEXTS_hy_AM = {
+    /* Locale hy: Armenian */
+    private static final String[] TEXTS_hy = {
         /* morekeys_a ~ */
         null, null, null, null,
         /* ~ morekeys_u */
@@ -2062,7 +2450,7 @@ public final class KeyboardTextsTable {
         null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
         null, null, null,
         /* ~ additional_morekeys_symbols_0 */
-        /* morekeys_tablet_period */ "!text/morekeys_punctuation",
+        /* morekeys_tablet_period */ "!autoColumnOrder!8,\\,,\u055E,\u055C,.,\u055A,\u0559,?,!,\u055D,\u055B,\u058A,\u00BB,\u00AB,\u055F,;,:",
         /* morekeys_nordic_row2_11 */ null,
         // U+055E: "՞" ARMENIAN QUESTION MARK
         // U+055C: "՜" ARMENIAN EXCLAMATION MARK
@@ -2078,7 +2466,7 @@ public final class KeyboardTextsTable {
         /* keyspec_tablet_comma */ "\u055D",
         // U+0589: "։" ARMENIAN FULL STOP
         /* keyspec_period */ "\u0589",
-        /* morekeys_period */ null,
+        /* morekeys_period */ "!autoColumnOrder!8,\\,,\u055E,\u055C,.,\u055A,\u0559,?,!,\u055D,\u055B,\u058A,\u00BB,\u00AB,\u055F,;,:",
         /* keyspec_tablet_period */ "\u0589",
         /* keyspec_swiss_row1_11 ~ */
         null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
@@ -2150,9 +2538,9 @@ public final class KeyboardTextsTable {
         /* morekeys_i */ "\u00ED,\u00EF,\u00EE,\u00EC,\u012F,\u012B",
         /* morekeys_n */ null,
         /* morekeys_c */ null,
-        /* double_quotes */ "!text/double_9qm_lqm",
+        /* double_quotes */ "\u201D,\u201E,\u201C",
         /* morekeys_s */ null,
-        /* single_quotes */ "!text/single_9qm_lqm",
+        /* single_quotes */ "\u2019,\u201A,\u2018",
         /* keyspec_currency */ null,
         // U+00FD: "ý" LATIN SMALL LETTER Y WITH ACUTE
         // U+00FF: "ÿ" LATIN SMALL LETTER Y WITH DIAERESIS
@@ -2162,6 +2550,22 @@ public final class KeyboardTextsTable {
         /* morekeys_d */ "\u00F0",
         // U+00FE: "þ" LATIN SMALL LETTER THORN
         /* morekeys_t */ "\u00FE",
+        /* morekeys_l ~ */
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null,
+        /* ~ double_rqm_9qm */
+        /* morekeys_single_quote */ "!fixedColumnOrder!5,\u2019,\u201A,\u2018,\u2039,\u203A",
+        /* morekeys_double_quote */ "!fixedColumnOrder!5,\u201D,\u201E,\u201C,\u00AB,\u00BB",
+        /* morekeys_tablet_double_quote */ "!fixedColumnOrder!6,\u201D,\u201E,\u201C,\u2019,\u201A,\u2018,\u00AB,\u00BB,\u2039,\u203A",
     };
 
     /* Locale it: Italian */
@@ -2241,16 +2645,29 @@ public final class KeyboardTextsTable {
         /* morekeys_i ~ */
         null, null, null,
         /* ~ morekeys_c */
-        /* double_quotes */ "!text/double_rqm_9qm",
+        /* double_quotes */ "\u201C,\u201D,\u201E",
         /* morekeys_s */ null,
-        /* single_quotes */ "!text/single_rqm_9qm",
+        /* single_quotes */ "\u2018,\u2019,\u201A",
         // U+20AA: "₪" NEW SHEQEL SIGN
         /* keyspec_currency */ "\u20AA",
         /* morekeys_y ~ */
+        null, null, null, null, null, null,
+        /* ~ morekeys_g */
+        /* single_angle_quotes */ "\u2039|\u203A,\u203A|\u2039",
+        /* double_angle_quotes */ "\u00AB|\u00BB,\u00BB|\u00AB",
+        /* morekeys_r ~ */
         null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
         null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
-        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
-        null, null, null, null, null, null, null, null, null,
+        null, null, null,
+        /* ~ additional_morekeys_symbols_0 */
+        /* morekeys_tablet_period */ "!autoColumnOrder!7,\\,,',#,)|(,(|),/,;,@,:,-,\",+,\\%,&",
+        /* morekeys_nordic_row2_11 */ null,
+        /* morekeys_punctuation */ "!autoColumnOrder!8,\\,,?,!,#,)|(,(|),/,;,',@,:,-,\",+,\\%,&",
+        /* keyspec_tablet_comma */ null,
+        /* keyspec_period */ null,
+        /* morekeys_period */ "!autoColumnOrder!8,\\,,?,!,#,)|(,(|),/,;,',@,:,-,\",+,\\%,&",
+        /* keyspec_tablet_period ~ */
+        null, null, null, null, null, null, null,
         /* ~ morekeys_swiss_row2_11 */
         // U+2605: "★" BLACK STAR
         /* morekeys_star */ "\u2605",
@@ -2278,17 +2695,42 @@ public final class KeyboardTextsTable {
         /* keyspec_right_single_angle_quote */ "\u203A|\u2039",
         /* keyspec_comma ~ */
         null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null,
+        /* ~ keyspec_south_slavic_row3_8 */
+        /* morekeys_tablet_punctuation */ "!autoColumnOrder!7,\\,,',#,)|(,(|),/,;,@,:,-,\",+,\\%,&",
+        /* keyspec_spanish_row2_10 */ null,
+        /* morekeys_bullet */ null,
+        /* morekeys_left_parenthesis */ "!fixedColumnOrder!3,<|>,{|},[|]",
+        /* morekeys_right_parenthesis */ "!fixedColumnOrder!3,>|<,}|{,]|[",
+        /* morekeys_arabic_diacritics ~ */
         null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
-        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
-        null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null,
         /* ~ morekeys_currency_dollar */
         // U+00B1: "±" PLUS-MINUS SIGN
         // U+FB29: "﬩" HEBREW LETTER ALTERNATIVE PLUS SIGN
         /* morekeys_plus */ "\u00B1,\uFB29",
+        /* morekeys_less_than */ "!fixedColumnOrder!3,\u2039|\u203A,\u2264|\u2265,\u00AB|\u00BB",
+        /* morekeys_greater_than */ "!fixedColumnOrder!3,\u203A|\u2039,\u2265|\u2264,\u00BB|\u00AB",
+        /* morekeys_exclamation ~ */
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null,
+        /* ~ morekeys_popular_domain */
+        /* keyspecs_left_parenthesis_more_keys */ "<|>,{|},[|]",
+        /* keyspecs_right_parenthesis_more_keys */ ">|<,}|{,]|[",
+        /* single_laqm_raqm */ "\u2039|\u203A,\u203A|\u2039",
+        /* single_raqm_laqm */ "\u203A|\u2039,\u2039|\u203A",
+        /* double_laqm_raqm */ "\u00AB|\u00BB,\u00BB|\u00AB",
+        /* double_raqm_laqm */ "\u00BB|\u00AB,\u00AB|\u00BB",
+        /* single_lqm_rqm ~ */
+        null, null, null, null, null, null, null, null,
+        /* ~ double_rqm_9qm */
+        /* morekeys_single_quote */ "!fixedColumnOrder!5,\u2018,\u2019,\u201A,\u2039|\u203A,\u203A|\u2039",
+        /* morekeys_double_quote */ "!fixedColumnOrder!5,\u201C,\u201D,\u201E,\u00AB|\u00BB,\u00BB|\u00AB",
+        /* morekeys_tablet_double_quote */ "!fixedColumnOrder!6,\u201C,\u201D,\u201E,\u2018,\u2019,\u201A,\u00AB|\u00BB,\u00BB|\u00AB,\u2039|\u203A,\u203A|\u2039",
     };
 
-    /* Locale ka_GE: Georgian (Georgia) */
-    private static final String[] TEXTS_ka_GE = {
+    /* Locale ka: Georgian */
+    private static final String[] TEXTS_ka = {
         /* morekeys_a ~ */
         null, null, null, null,
         /* ~ morekeys_u */
@@ -2300,9 +2742,25 @@ public final class KeyboardTextsTable {
         /* morekeys_i ~ */
         null, null, null,
         /* ~ morekeys_c */
-        /* double_quotes */ "!text/double_9qm_lqm",
+        /* double_quotes */ "\u201D,\u201E,\u201C",
         /* morekeys_s */ null,
-        /* single_quotes */ "!text/single_9qm_lqm",
+        /* single_quotes */ "\u2019,\u201A,\u2018",
+        /* keyspec_currency ~ */
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null,
+        /* ~ double_rqm_9qm */
+        /* morekeys_single_quote */ "!fixedColumnOrder!5,\u2019,\u201A,\u2018,\u2039,\u203A",
+        /* morekeys_double_quote */ "!fixedColumnOrder!5,\u201D,\u201E,\u201C,\u00AB,\u00BB",
+        /* morekeys_tablet_double_quote */ "!fixedColumnOrder!6,\u201D,\u201E,\u201C,\u2019,\u201A,\u2018,\u00AB,\u00BB,\u2039,\u203A",
     };
 
     /* Locale kk: Kazakh */
@@ -2364,8 +2822,8 @@ public final class KeyboardTextsTable {
         /* morekeys_cyrillic_a */ "\u04D9",
     };
 
-    /* Locale km_KH: Khmer (Cambodia) */
-    private static final String[] TEXTS_km_KH = {
+    /* Locale km: Khmer */
+    private static final String[] TEXTS_km = {
         /* morekeys_a ~ */
         null, null, null, null,
         /* ~ morekeys_u */
@@ -2389,8 +2847,8 @@ public final class KeyboardTextsTable {
         /* morekeys_currency_dollar */ "\u17DB,\u00A2,\u00A3,\u20AC,\u00A5,\u20B1",
     };
 
-    /* Locale kn_IN: Kannada (India) */
-    private static final String[] TEXTS_kn_IN = {
+    /* Locale kn: Kannada */
+    private static final String[] TEXTS_kn = {
         /* morekeys_a ~ */
         null, null, null, null,
         /* ~ morekeys_u */
@@ -2406,7 +2864,7 @@ public final class KeyboardTextsTable {
         /* keyspec_currency */ "\u20B9",
     };
 
-    /* Locale ky: Kirghiz */
+    /* Locale ky: Kyrgyz */
     private static final String[] TEXTS_ky = {
         /* morekeys_a ~ */
         null, null, null, null,
@@ -2450,8 +2908,8 @@ public final class KeyboardTextsTable {
         /* morekeys_cyrillic_o */ "\u04E9",
     };
 
-    /* Locale lo_LA: Lao (Laos) */
-    private static final String[] TEXTS_lo_LA = {
+    /* Locale lo: Lao */
+    private static final String[] TEXTS_lo = {
         /* morekeys_a ~ */
         null, null, null, null,
         /* ~ morekeys_u */
@@ -2524,13 +2982,13 @@ public final class KeyboardTextsTable {
         // U+00E7: "ç" LATIN SMALL LETTER C WITH CEDILLA
         // U+0107: "ć" LATIN SMALL LETTER C WITH ACUTE
         /* morekeys_c */ "\u010D,\u00E7,\u0107",
-        /* double_quotes */ "!text/double_9qm_lqm",
+        /* double_quotes */ "\u201D,\u201E,\u201C",
         // U+0161: "š" LATIN SMALL LETTER S WITH CARON
         // U+00DF: "ß" LATIN SMALL LETTER SHARP S
         // U+015B: "ś" LATIN SMALL LETTER S WITH ACUTE
         // U+015F: "ş" LATIN SMALL LETTER S WITH CEDILLA
         /* morekeys_s */ "\u0161,\u00DF,\u015B,\u015F",
-        /* single_quotes */ "!text/single_9qm_lqm",
+        /* single_quotes */ "\u2019,\u201A,\u2018",
         /* keyspec_currency */ null,
         // U+00FD: "ý" LATIN SMALL LETTER Y WITH ACUTE
         // U+00FF: "ÿ" LATIN SMALL LETTER Y WITH DIAERESIS
@@ -2560,6 +3018,21 @@ public final class KeyboardTextsTable {
         /* morekeys_r */ "\u0157,\u0159,\u0155",
         // U+0137: "ķ" LATIN SMALL LETTER K WITH CEDILLA
         /* morekeys_k */ "\u0137",
+        /* morekeys_cyrillic_ie ~ */
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        /* ~ double_rqm_9qm */
+        /* morekeys_single_quote */ "!fixedColumnOrder!5,\u2019,\u201A,\u2018,\u2039,\u203A",
+        /* morekeys_double_quote */ "!fixedColumnOrder!5,\u201D,\u201E,\u201C,\u00AB,\u00BB",
+        /* morekeys_tablet_double_quote */ "!fixedColumnOrder!6,\u201D,\u201E,\u201C,\u2019,\u201A,\u2018,\u00AB,\u00BB,\u2039,\u203A",
     };
 
     /* Locale lv: Latvian */
@@ -2618,13 +3091,13 @@ public final class KeyboardTextsTable {
         // U+00E7: "ç" LATIN SMALL LETTER C WITH CEDILLA
         // U+0107: "ć" LATIN SMALL LETTER C WITH ACUTE
         /* morekeys_c */ "\u010D,\u00E7,\u0107",
-        /* double_quotes */ "!text/double_9qm_lqm",
+        /* double_quotes */ "\u201D,\u201E,\u201C",
         // U+0161: "š" LATIN SMALL LETTER S WITH CARON
         // U+00DF: "ß" LATIN SMALL LETTER SHARP S
         // U+015B: "ś" LATIN SMALL LETTER S WITH ACUTE
         // U+015F: "ş" LATIN SMALL LETTER S WITH CEDILLA
         /* morekeys_s */ "\u0161,\u00DF,\u015B,\u015F",
-        /* single_quotes */ "!text/single_9qm_lqm",
+        /* single_quotes */ "\u2019,\u201A,\u2018",
         /* keyspec_currency */ null,
         // U+00FD: "ý" LATIN SMALL LETTER Y WITH ACUTE
         // U+00FF: "ÿ" LATIN SMALL LETTER Y WITH DIAERESIS
@@ -2654,6 +3127,21 @@ public final class KeyboardTextsTable {
         /* morekeys_r */ "\u0157,\u0159,\u0155",
         // U+0137: "ķ" LATIN SMALL LETTER K WITH CEDILLA
         /* morekeys_k */ "\u0137",
+        /* morekeys_cyrillic_ie ~ */
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        /* ~ double_rqm_9qm */
+        /* morekeys_single_quote */ "!fixedColumnOrder!5,\u2019,\u201A,\u2018,\u2039,\u203A",
+        /* morekeys_double_quote */ "!fixedColumnOrder!5,\u201D,\u201E,\u201C,\u00AB,\u00BB",
+        /* morekeys_tablet_double_quote */ "!fixedColumnOrder!6,\u201D,\u201E,\u201C,\u2019,\u201A,\u2018,\u00AB,\u00BB,\u2039,\u203A",
     };
 
     /* Locale mk: Macedonian */
@@ -2669,9 +3157,9 @@ public final class KeyboardTextsTable {
         /* morekeys_i ~ */
         null, null, null,
         /* ~ morekeys_c */
-        /* double_quotes */ "!text/double_9qm_lqm",
+        /* double_quotes */ "\u201D,\u201E,\u201C",
         /* morekeys_s */ null,
-        /* single_quotes */ "!text/single_9qm_lqm",
+        /* single_quotes */ "\u2019,\u201A,\u2018",
         /* keyspec_currency ~ */
         null, null, null, null, null, null, null, null, null, null, null,
         /* ~ morekeys_k */
@@ -2694,10 +3182,20 @@ public final class KeyboardTextsTable {
         /* keyspec_south_slavic_row3_1 */ "\u0437",
         // U+0453: "ѓ" CYRILLIC SMALL LETTER GJE
         /* keyspec_south_slavic_row3_8 */ "\u0453",
+        /* morekeys_tablet_punctuation ~ */
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        /* ~ double_rqm_9qm */
+        /* morekeys_single_quote */ "!fixedColumnOrder!5,\u2019,\u201A,\u2018,\u2039,\u203A",
+        /* morekeys_double_quote */ "!fixedColumnOrder!5,\u201D,\u201E,\u201C,\u00AB,\u00BB",
+        /* morekeys_tablet_double_quote */ "!fixedColumnOrder!6,\u201D,\u201E,\u201C,\u2019,\u201A,\u2018,\u00AB,\u00BB,\u2039,\u203A",
     };
 
-    /* Locale ml_IN: Malayalam (India) */
-    private static final String[] TEXTS_ml_IN = {
+    /* Locale ml: Malayalam */
+    private static final String[] TEXTS_ml = {
         /* morekeys_a ~ */
         null, null, null, null,
         /* ~ morekeys_u */
@@ -2711,8 +3209,8 @@ public final class KeyboardTextsTable {
         /* keyspec_currency */ "\u20B9",
     };
 
-    /* Locale mn_MN: Mongolian (Mongolia) */
-    private static final String[] TEXTS_mn_MN = {
+    /* Locale mn: Mongolian */
+    private static final String[] TEXTS_mn = {
         /* morekeys_a ~ */
         null, null, null, null,
         /* ~ morekeys_u */
@@ -2728,8 +3226,8 @@ public final class KeyboardTextsTable {
         /* keyspec_currency */ "\u20AE",
     };
 
-    /* Locale mr_IN: Marathi (India) */
-    private static final String[] TEXTS_mr_IN = {
+    /* Locale mr: Marathi */
+    private static final String[] TEXTS_mr = {
         /* morekeys_a ~ */
         null, null, null, null,
         /* ~ morekeys_u */
@@ -2781,6 +3279,43 @@ public final class KeyboardTextsTable {
         /* additional_morekeys_symbols_0 */ "0",
     };
 
+    /* Locale my: Burmese */
+    private static final String[] TEXTS_my = {
+        /* morekeys_a ~ */
+        null, null, null, null,
+        /* ~ morekeys_u */
+        // Label for "switch to alphabetic" key.
+        // U+1000: "က" MYANMAR LETTER KA
+        // U+1001: "ခ" MYANMAR LETTER KHA
+        // U+1002: "ဂ" MYANMAR LETTER GA
+        /* keylabel_to_alpha */ "\u1000\u1001\u1002",
+        /* morekeys_i ~ */
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null,
+        /* ~ additional_morekeys_symbols_0 */
+        /* morekeys_tablet_period */ "!autoColumnOrder!8,.,',#,),(,/,;,@,...,:,-,\",+,\\%,&",
+        /* morekeys_nordic_row2_11 */ null,
+        /* morekeys_punctuation */ "!autoColumnOrder!9,\u104A,.,?,!,#,),(,/,;,...,',@,:,-,\",+,\\%,&",
+        // U+104A: "၊" MYANMAR SIGN LITTLE SECTION
+        // U+104B: "။" MYANMAR SIGN SECTION
+        /* keyspec_tablet_comma */ "\u104A",
+        /* keyspec_period */ "\u104B",
+        /* morekeys_period */ "!autoColumnOrder!9,\u104A,.,?,!,#,),(,/,;,...,',@,:,-,\",+,\\%,&",
+        /* keyspec_tablet_period */ "\u104B",
+        /* keyspec_swiss_row1_11 ~ */
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null,
+        /* ~ keyspec_comma */
+        /* morekeys_tablet_comma */ "\\,",
+        /* keyhintlabel_period */ "\u104A",
+        /* morekeys_question ~ */
+        null, null, null, null, null, null, null, null, null, null, null, null, null,
+        /* ~ keyspec_south_slavic_row3_8 */
+        /* morekeys_tablet_punctuation */ "!autoColumnOrder!8,.,',#,),(,/,;,@,...,:,-,\",+,\\%,&",
+    };
+
     /* Locale nb: Norwegian Bokmål */
     private static final String[] TEXTS_nb = {
         // U+00E5: "å" LATIN SMALL LETTER A WITH RING ABOVE
@@ -2818,9 +3353,9 @@ public final class KeyboardTextsTable {
         /* keylabel_to_alpha ~ */
         null, null, null, null,
         /* ~ morekeys_c */
-        /* double_quotes */ "!text/double_9qm_rqm",
+        /* double_quotes */ "\u201C,\u201E,\u201D",
         /* morekeys_s */ null,
-        /* single_quotes */ "!text/single_9qm_rqm",
+        /* single_quotes */ "\u2018,\u201A,\u2019",
         /* keyspec_currency ~ */
         null, null, null, null, null, null, null, null, null, null, null, null,
         /* ~ morekeys_cyrillic_ie */
@@ -2838,10 +3373,23 @@ public final class KeyboardTextsTable {
         /* ~ morekeys_tablet_period */
         // U+00E4: "ä" LATIN SMALL LETTER A WITH DIAERESIS
         /* morekeys_nordic_row2_11 */ "\u00E4",
+        /* morekeys_punctuation ~ */
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null,
+        /* ~ double_rqm_9qm */
+        /* morekeys_single_quote */ "!fixedColumnOrder!5,\u2018,\u201A,\u2019,\u2039,\u203A",
+        /* morekeys_double_quote */ "!fixedColumnOrder!5,\u201C,\u201E,\u201D,\u00AB,\u00BB",
+        /* morekeys_tablet_double_quote */ "!fixedColumnOrder!6,\u201C,\u201E,\u201D,\u2018,\u201A,\u2019,\u00AB,\u00BB,\u2039,\u203A",
     };
 
-    /* Locale ne_NP: Nepali (Nepal) */
-    private static final String[] TEXTS_ne_NP = {
+    /* Locale ne: Nepali */
+    private static final String[] TEXTS_ne = {
         /* morekeys_a ~ */
         null, null, null, null,
         /* ~ morekeys_u */
@@ -2948,12 +3496,28 @@ public final class KeyboardTextsTable {
         // U+0144: "ń" LATIN SMALL LETTER N WITH ACUTE
         /* morekeys_n */ "\u00F1,\u0144",
         /* morekeys_c */ null,
-        /* double_quotes */ "!text/double_9qm_rqm",
+        /* double_quotes */ "\u201C,\u201E,\u201D",
         /* morekeys_s */ null,
-        /* single_quotes */ "!text/single_9qm_rqm",
+        /* single_quotes */ "\u2018,\u201A,\u2019",
         /* keyspec_currency */ null,
         // U+0133: "ĳ" LATIN SMALL LIGATURE IJ
         /* morekeys_y */ "\u0133",
+        /* morekeys_z ~ */
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null,
+        /* ~ double_rqm_9qm */
+        /* morekeys_single_quote */ "!fixedColumnOrder!5,\u2018,\u201A,\u2019,\u2039,\u203A",
+        /* morekeys_double_quote */ "!fixedColumnOrder!5,\u201C,\u201E,\u201D,\u00AB,\u00BB",
+        /* morekeys_tablet_double_quote */ "!fixedColumnOrder!6,\u201C,\u201E,\u201D,\u2018,\u201A,\u2019,\u00AB,\u00BB,\u2039,\u203A",
     };
 
     /* Locale pl: Polish */
@@ -2995,12 +3559,12 @@ public final class KeyboardTextsTable {
         // U+00E7: "ç" LATIN SMALL LETTER C WITH CEDILLA
         // U+010D: "č" LATIN SMALL LETTER C WITH CARON
         /* morekeys_c */ "\u0107,\u00E7,\u010D",
-        /* double_quotes */ "!text/double_9qm_rqm",
+        /* double_quotes */ "\u201C,\u201E,\u201D",
         // U+015B: "ś" LATIN SMALL LETTER S WITH ACUTE
         // U+00DF: "ß" LATIN SMALL LETTER SHARP S
         // U+0161: "š" LATIN SMALL LETTER S WITH CARON
         /* morekeys_s */ "\u015B,\u00DF,\u0161",
-        /* single_quotes */ "!text/single_9qm_rqm",
+        /* single_quotes */ "\u2018,\u201A,\u2019",
         /* keyspec_currency */ null,
         /* morekeys_y */ null,
         // U+017C: "ż" LATIN SMALL LETTER Z WITH DOT ABOVE
@@ -3011,6 +3575,22 @@ public final class KeyboardTextsTable {
         /* morekeys_t */ null,
         // U+0142: "ł" LATIN SMALL LETTER L WITH STROKE
         /* morekeys_l */ "\u0142",
+        /* morekeys_g ~ */
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null,
+        /* ~ double_rqm_9qm */
+        /* morekeys_single_quote */ "!fixedColumnOrder!5,\u2018,\u201A,\u2019,\u2039,\u203A",
+        /* morekeys_double_quote */ "!fixedColumnOrder!5,\u201C,\u201E,\u201D,\u00AB,\u00BB",
+        /* morekeys_tablet_double_quote */ "!fixedColumnOrder!6,\u201C,\u201E,\u201D,\u2018,\u201A,\u2019,\u00AB,\u00BB,\u2039,\u203A",
     };
 
     /* Locale pt: Portuguese */
@@ -3063,7 +3643,7 @@ public final class KeyboardTextsTable {
         /* morekeys_c */ "\u00E7,\u010D,\u0107",
     };
 
-    /* Locale rm: Raeto-Romance */
+    /* Locale rm: Romansh */
     private static final String[] TEXTS_rm = {
         /* morekeys_a */ null,
         // U+00F2: "ò" LATIN SMALL LETTER O WITH GRAVE
@@ -3100,18 +3680,34 @@ public final class KeyboardTextsTable {
         /* morekeys_i */ "\u00EE,\u00EF,\u00EC,\u00ED,\u012F,\u012B",
         /* morekeys_n */ null,
         /* morekeys_c */ null,
-        /* double_quotes */ "!text/double_9qm_rqm",
+        /* double_quotes */ "\u201C,\u201E,\u201D",
         // U+0219: "ș" LATIN SMALL LETTER S WITH COMMA BELOW
         // U+00DF: "ß" LATIN SMALL LETTER SHARP S
         // U+015B: "ś" LATIN SMALL LETTER S WITH ACUTE
         // U+0161: "š" LATIN SMALL LETTER S WITH CARON
         /* morekeys_s */ "\u0219,\u00DF,\u015B,\u0161",
-        /* single_quotes */ "!text/single_9qm_rqm",
+        /* single_quotes */ "\u2018,\u201A,\u2019",
         /* keyspec_currency ~ */
         null, null, null, null,
         /* ~ morekeys_d */
         // U+021B: "ț" LATIN SMALL LETTER T WITH COMMA BELOW
         /* morekeys_t */ "\u021B",
+        /* morekeys_l ~ */
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null,
+        /* ~ double_rqm_9qm */
+        /* morekeys_single_quote */ "!fixedColumnOrder!5,\u2018,\u201A,\u2019,\u2039,\u203A",
+        /* morekeys_double_quote */ "!fixedColumnOrder!5,\u201C,\u201E,\u201D,\u00AB,\u00BB",
+        /* morekeys_tablet_double_quote */ "!fixedColumnOrder!6,\u201C,\u201E,\u201D,\u2018,\u201A,\u2019,\u00AB,\u00BB,\u2039,\u203A",
     };
 
     /* Locale ru: Russian */
@@ -3127,9 +3723,9 @@ public final class KeyboardTextsTable {
         /* morekeys_i ~ */
         null, null, null,
         /* ~ morekeys_c */
-        /* double_quotes */ "!text/double_9qm_lqm",
+        /* double_quotes */ "\u201D,\u201E,\u201C",
         /* morekeys_s */ null,
-        /* single_quotes */ "!text/single_9qm_lqm",
+        /* single_quotes */ "\u2019,\u201A,\u2018",
         /* keyspec_currency ~ */
         null, null, null, null, null, null, null, null, null, null, null,
         /* ~ morekeys_k */
@@ -3148,10 +3744,25 @@ public final class KeyboardTextsTable {
         /* keyspec_east_slavic_row3_5 */ "\u0438",
         // U+044A: "ъ" CYRILLIC SMALL LETTER HARD SIGN
         /* morekeys_cyrillic_soft_sign */ "\u044A",
+        /* keyspec_symbols_1 ~ */
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null,
+        /* ~ double_rqm_9qm */
+        /* morekeys_single_quote */ "!fixedColumnOrder!5,\u2019,\u201A,\u2018,\u2039,\u203A",
+        /* morekeys_double_quote */ "!fixedColumnOrder!5,\u201D,\u201E,\u201C,\u00AB,\u00BB",
+        /* morekeys_tablet_double_quote */ "!fixedColumnOrder!6,\u201D,\u201E,\u201C,\u2019,\u201A,\u2018,\u00AB,\u00BB,\u2039,\u203A",
     };
 
-    /* Locale si_LK: Sinhalese (Sri Lanka) */
-    private static final String[] TEXTS_si_LK = {
+    /* Locale si: Sinhala */
+    private static final String[] TEXTS_si = {
         /* morekeys_a ~ */
         null, null, null, null,
         /* ~ morekeys_u */
@@ -3223,13 +3834,13 @@ public final class KeyboardTextsTable {
         // U+00E7: "ç" LATIN SMALL LETTER C WITH CEDILLA
         // U+0107: "ć" LATIN SMALL LETTER C WITH ACUTE
         /* morekeys_c */ "\u010D,\u00E7,\u0107",
-        /* double_quotes */ "!text/double_9qm_lqm",
+        /* double_quotes */ "\u201D,\u201E,\u201C",
         // U+0161: "š" LATIN SMALL LETTER S WITH CARON
         // U+00DF: "ß" LATIN SMALL LETTER SHARP S
         // U+015B: "ś" LATIN SMALL LETTER S WITH ACUTE
         // U+015F: "ş" LATIN SMALL LETTER S WITH CEDILLA
         /* morekeys_s */ "\u0161,\u00DF,\u015B,\u015F",
-        /* single_quotes */ "!text/single_9qm_lqm",
+        /* single_quotes */ "\u2019,\u201A,\u2018",
         /* keyspec_currency */ null,
         // U+00FD: "ý" LATIN SMALL LETTER Y WITH ACUTE
         // U+00FF: "ÿ" LATIN SMALL LETTER Y WITH DIAERESIS
@@ -3251,14 +3862,29 @@ public final class KeyboardTextsTable {
         // U+0123: "ģ" LATIN SMALL LETTER G WITH CEDILLA
         // U+011F: "ğ" LATIN SMALL LETTER G WITH BREVE
         /* morekeys_g */ "\u0123,\u011F",
-        /* single_angle_quotes */ "!text/single_raqm_laqm",
-        /* double_angle_quotes */ "!text/double_raqm_laqm",
+        /* single_angle_quotes */ "\u203A,\u2039",
+        /* double_angle_quotes */ "\u00BB,\u00AB",
         // U+0155: "ŕ" LATIN SMALL LETTER R WITH ACUTE
         // U+0159: "ř" LATIN SMALL LETTER R WITH CARON
         // U+0157: "ŗ" LATIN SMALL LETTER R WITH CEDILLA
         /* morekeys_r */ "\u0155,\u0159,\u0157",
         // U+0137: "ķ" LATIN SMALL LETTER K WITH CEDILLA
         /* morekeys_k */ "\u0137",
+        /* morekeys_cyrillic_ie ~ */
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        /* ~ double_rqm_9qm */
+        /* morekeys_single_quote */ "!fixedColumnOrder!5,\u2019,\u201A,\u2018,\u203A,\u2039",
+        /* morekeys_double_quote */ "!fixedColumnOrder!5,\u201D,\u201E,\u201C,\u00BB,\u00AB",
+        /* morekeys_tablet_double_quote */ "!fixedColumnOrder!6,\u201D,\u201E,\u201C,\u2019,\u201A,\u2018,\u00BB,\u00AB,\u203A,\u2039",
     };
 
     /* Locale sl: Slovenian */
@@ -3269,10 +3895,10 @@ public final class KeyboardTextsTable {
         // U+010D: "č" LATIN SMALL LETTER C WITH CARON
         // U+0107: "ć" LATIN SMALL LETTER C WITH ACUTE
         /* morekeys_c */ "\u010D,\u0107",
-        /* double_quotes */ "!text/double_9qm_lqm",
+        /* double_quotes */ "\u201D,\u201E,\u201C",
         // U+0161: "š" LATIN SMALL LETTER S WITH CARON
         /* morekeys_s */ "\u0161",
-        /* single_quotes */ "!text/single_9qm_lqm",
+        /* single_quotes */ "\u2019,\u201A,\u2018",
         /* keyspec_currency */ null,
         /* morekeys_y */ null,
         // U+017E: "ž" LATIN SMALL LETTER Z WITH CARON
@@ -3282,8 +3908,24 @@ public final class KeyboardTextsTable {
         /* morekeys_t ~ */
         null, null, null,
         /* ~ morekeys_g */
-        /* single_angle_quotes */ "!text/single_raqm_laqm",
-        /* double_angle_quotes */ "!text/double_raqm_laqm",
+        /* single_angle_quotes */ "\u203A,\u2039",
+        /* double_angle_quotes */ "\u00BB,\u00AB",
+        /* morekeys_r ~ */
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null,
+        /* ~ double_rqm_9qm */
+        /* morekeys_single_quote */ "!fixedColumnOrder!5,\u2019,\u201A,\u2018,\u203A,\u2039",
+        /* morekeys_double_quote */ "!fixedColumnOrder!5,\u201D,\u201E,\u201C,\u00BB,\u00AB",
+        /* morekeys_tablet_double_quote */ "!fixedColumnOrder!6,\u201D,\u201E,\u201C,\u2019,\u201A,\u2018,\u00BB,\u00AB,\u203A,\u2039",
     };
 
     /* Locale sr: Serbian */
@@ -3300,14 +3942,14 @@ public final class KeyboardTextsTable {
         /* morekeys_i ~ */
         null, null, null,
         /* ~ morekeys_c */
-        /* double_quotes */ "!text/double_9qm_lqm",
+        /* double_quotes */ "\u201D,\u201E,\u201C",
         /* morekeys_s */ null,
-        /* single_quotes */ "!text/single_9qm_lqm",
+        /* single_quotes */ "\u2019,\u201A,\u2018",
         /* keyspec_currency ~ */
         null, null, null, null, null, null, null,
         /* ~ morekeys_g */
-        /* single_angle_quotes */ "!text/single_raqm_laqm",
-        /* double_angle_quotes */ "!text/double_raqm_laqm",
+        /* single_angle_quotes */ "\u203A,\u2039",
+        /* double_angle_quotes */ "\u00BB,\u00AB",
         /* morekeys_r */ null,
         /* morekeys_k */ null,
         // U+0450: "ѐ" CYRILLIC SMALL LETTER IE WITH GRAVE
@@ -3347,6 +3989,16 @@ public final class KeyboardTextsTable {
         /* keyspec_south_slavic_row3_1 */ "\u0455",
         // U+0452: "ђ" CYRILLIC SMALL LETTER DJE
         /* keyspec_south_slavic_row3_8 */ "\u0452",
+        /* morekeys_tablet_punctuation ~ */
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        /* ~ double_rqm_9qm */
+        /* morekeys_single_quote */ "!fixedColumnOrder!5,\u2019,\u201A,\u2018,\u203A,\u2039",
+        /* morekeys_double_quote */ "!fixedColumnOrder!5,\u201D,\u201E,\u201C,\u00BB,\u00AB",
+        /* morekeys_tablet_double_quote */ "!fixedColumnOrder!6,\u201D,\u201E,\u201C,\u2019,\u201A,\u2018,\u00BB,\u00AB,\u203A,\u2039",
     };
 
     /* Locale sr_ZZ: Serbian (ZZ) */
@@ -3390,6 +4042,12 @@ public final class KeyboardTextsTable {
         /* label_previous_key */ "Preth",
         /* label_pause_key */ "Pauza",
         /* label_wait_key */ "\u010Cekaj",
+        /* morekeys_v ~ */
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        /* ~ keyspec_shortcut */
+        /* keyspec_action_next */ "!hasLabels!,Sled|!code/key_action_next",
+        /* keyspec_action_previous */ "!hasLabels!,Preth|!code/key_action_previous",
     };
 
     /* Locale sv: Swedish */
@@ -3462,8 +4120,8 @@ public final class KeyboardTextsTable {
         // U+0142: "ł" LATIN SMALL LETTER L WITH STROKE
         /* morekeys_l */ "\u0142",
         /* morekeys_g */ null,
-        /* single_angle_quotes */ "!text/single_raqm_laqm",
-        /* double_angle_quotes */ "!text/double_raqm_laqm",
+        /* single_angle_quotes */ "\u203A,\u2039",
+        /* double_angle_quotes */ "\u00BB,\u00AB",
         // U+0159: "ř" LATIN SMALL LETTER R WITH CARON
         /* morekeys_r */ "\u0159",
         /* morekeys_k */ null,
@@ -3483,6 +4141,19 @@ public final class KeyboardTextsTable {
         /* ~ morekeys_tablet_period */
         // U+00E6: "æ" LATIN SMALL LETTER AE
         /* morekeys_nordic_row2_11 */ "\u00E6",
+        /* morekeys_punctuation ~ */
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null,
+        /* ~ double_rqm_9qm */
+        /* morekeys_single_quote */ "!fixedColumnOrder!5,\u201A,\u2018,\u2019,\u203A,\u2039",
+        /* morekeys_double_quote */ "!fixedColumnOrder!5,\u201E,\u201C,\u201D,\u00BB,\u00AB",
+        /* morekeys_tablet_double_quote */ "!fixedColumnOrder!6,\u201E,\u201C,\u201D,\u201A,\u2018,\u2019,\u00BB,\u00AB,\u203A,\u2039",
     };
 
     /* Locale sw: Swahili */
@@ -3584,8 +4255,8 @@ public final class KeyboardTextsTable {
         /* keylabel_to_alpha */ "\u0BA4\u0BAE\u0BBF\u0BB4\u0BCD",
     };
 
-    /* Locale te_IN: Telugu (India) */
-    private static final String[] TEXTS_te_IN = {
+    /* Locale te: Telugu */
+    private static final String[] TEXTS_te = {
         /* morekeys_a ~ */
         null, null, null, null,
         /* ~ morekeys_u */
@@ -3744,9 +4415,9 @@ public final class KeyboardTextsTable {
         /* morekeys_i ~ */
         null, null, null,
         /* ~ morekeys_c */
-        /* double_quotes */ "!text/double_9qm_lqm",
+        /* double_quotes */ "\u201D,\u201E,\u201C",
         /* morekeys_s */ null,
-        /* single_quotes */ "!text/single_9qm_lqm",
+        /* single_quotes */ "\u2019,\u201A,\u2018",
         // U+20B4: "₴" HRYVNIA SIGN
         /* keyspec_currency */ "\u20B4",
         /* morekeys_y ~ */
@@ -3774,10 +4445,21 @@ public final class KeyboardTextsTable {
         /* morekeys_cyrillic_en */ null,
         // U+0491: "ґ" CYRILLIC SMALL LETTER GHE WITH UPTURN
         /* morekeys_cyrillic_ghe */ "\u0491",
+        /* morekeys_cyrillic_o ~ */
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+        null, null, null, null, null, null,
+        /* ~ double_rqm_9qm */
+        /* morekeys_single_quote */ "!fixedColumnOrder!5,\u2019,\u201A,\u2018,\u2039,\u203A",
+        /* morekeys_double_quote */ "!fixedColumnOrder!5,\u201D,\u201E,\u201C,\u00AB,\u00BB",
+        /* morekeys_tablet_double_quote */ "!fixedColumnOrder!6,\u201D,\u201E,\u201C,\u2019,\u201A,\u2018,\u00AB,\u00BB,\u2039,\u203A",
     };
 
-    /* Locale uz_UZ: Uzbek (Uzbekistan) */
-    private static final String[] TEXTS_uz_UZ = {
+    /* Locale uz: Uzbek */
+    private static final String[] TEXTS_uz = {
         // This is the same as Turkish
         // U+00E2: "â" LATIN SMALL LETTER A WITH CIRCUMFLEX
         // U+00E4: "ä" LATIN SMALL LETTER A WITH DIAERESIS
@@ -4114,80 +4796,77 @@ public final class KeyboardTextsTable {
     // "locale", TEXT_ARRAY,  /* numberOfNonNullText/lengthOf_TEXT_ARRAY localeName */
         "DEFAULT", TEXTS_DEFAULT, /* 176/176 DEFAULT */
         "af"     , TEXTS_af,    /*   7/ 13 Afrikaans */
-        "ar"     , TEXTS_ar,    /*  55/110 Arabic */
-        "az_AZ"  , TEXTS_az_AZ, /*  11/ 18 Azerbaijani (Azerbaijan) */
-        "be_BY"  , TEXTS_be_BY, /*   9/ 32 Belarusian (Belarus) */
-        "bg"     , TEXTS_bg,    /*   2/  9 Bulgarian */
-        "bn_BD"  , TEXTS_bn_BD, /*   2/ 12 Bengali (Bangladesh) */
-        "bn_IN"  , TEXTS_bn_IN, /*   2/ 12 Bengali (India) */
+        "ar"     , TEXTS_ar,    /*  55/175 Arabic */
+        "az"     , TEXTS_az,    /*  11/ 18 Azerbaijani */
+        "be"     , TEXTS_be,    /*   9/175 Belarusian */
+        "bg"     , TEXTS_bg,    /*   2/175 Bulgarian */
+        "bn_BD"  , TEXTS_bn_BD, /*   2/ 12 Bangla (Bangladesh) */
+        "bn_IN"  , TEXTS_bn_IN, /*   2/ 12 Bangla (India) */
         "ca"     , TEXTS_ca,    /*  11/ 99 Catalan */
-        "cs"     , TEXTS_cs,    /*  17/ 21 Czech */
-        "da"     , TEXTS_da,    /*  19/ 55 Danish */
-        "de"     , TEXTS_de,    /*  16/ 66 German */
+        "cs"     , TEXTS_cs,    /*  17/175 Czech */
+        "da"     , TEXTS_da,    /*  19/175 Danish */
+        "de"     , TEXTS_de,    /*  16/175 German */
         "el"     , TEXTS_el,    /*   1/  5 Greek */
         "en"     , TEXTS_en,    /*   8/ 10 English */
         "eo"     , TEXTS_eo,    /*  26/126 Esperanto */
-        "es"     , TEXTS_es,    /*   8/ 56 Spanish */
-        "et_EE"  , TEXTS_et_EE, /*  22/ 27 Estonian (Estonia) */
-        "eu_ES"  , TEXTS_eu_ES, /*   7/  8 Basque (Spain) */
-        "fa"     , TEXTS_fa,    /*  58/133 Persian */
+        "es"     , TEXTS_es,    /*   8/ 59 Spanish */
+        "et"     , TEXTS_et,    /*  22/175 Estonian */
+        "eu"     , TEXTS_eu,    /*   7/  8 Basque */
+        "fa"     , TEXTS_fa,    /*  58/175 Persian */
         "fi"     , TEXTS_fi,    /*  10/ 55 Finnish */
         "fr"     , TEXTS_fr,    /*  13/ 66 French */
-        "gl_ES"  , TEXTS_gl_ES, /*   7/  8 Gallegan (Spain) */
+        "gl"     , TEXTS_gl,    /*   7/  8 Galician */
         "hi"     , TEXTS_hi,    /*  27/ 60 Hindi */
-        "hi_ZZ"  , TEXTS_hi_ZZ, /*   9/118 Hindi (ZZ) */
-        "hr"     , TEXTS_hr,    /*   9/ 20 Croatian */
-        "hu"     , TEXTS_hu,    /*   9/ 20 Hungarian */
-        "hy_AM"  , TEXTS_hy_AM, /*   9/134 Armenian (Armenia) */
-        "is"     , TEXTS_is,    /*  10/ 16 Icelandic */
+        "hi_ZZ"  , TEXTS_hi_ZZ, /*   9/150 Hindi (ZZ) */
+        "hr"     , TEXTS_hr,    /*   9/175 Croatian */
+        "hu"     , TEXTS_hu,    /*   9/175 Hungarian */
+        "hy"     , TEXTS_hy,    /*   9/134 Armenian */
+        "is"     , TEXTS_is,    /*  10/175 Icelandic */
         "it"     , TEXTS_it,    /*  11/ 66 Italian */
-        "iw"     , TEXTS_iw,    /*  20/131 Hebrew */
-        "ka_GE"  , TEXTS_ka_GE, /*   3/ 11 Georgian (Georgia) */
+        "iw"     , TEXTS_iw,    /*  20/175 Hebrew */
+        "ka"     , TEXTS_ka,    /*   3/175 Georgian */
         "kk"     , TEXTS_kk,    /*  15/129 Kazakh */
-        "km_KH"  , TEXTS_km_KH, /*   2/130 Khmer (Cambodia) */
-        "kn_IN"  , TEXTS_kn_IN, /*   2/ 12 Kannada (India) */
-        "ky"     , TEXTS_ky,    /*  10/ 92 Kirghiz */
-        "lo_LA"  , TEXTS_lo_LA, /*   2/ 12 Lao (Laos) */
-        "lt"     , TEXTS_lt,    /*  18/ 22 Lithuanian */
-        "lv"     , TEXTS_lv,    /*  18/ 22 Latvian */
-        "mk"     , TEXTS_mk,    /*   9/ 97 Macedonian */
-        "ml_IN"  , TEXTS_ml_IN, /*   2/ 12 Malayalam (India) */
-        "mn_MN"  , TEXTS_mn_MN, /*   2/ 12 Mongolian (Mongolia) */
-        "mr_IN"  , TEXTS_mr_IN, /*  23/ 53 Marathi (India) */
-        "nb"     , TEXTS_nb,    /*  11/ 55 Norwegian Bokmål */
-        "ne_NP"  , TEXTS_ne_NP, /*  27/ 60 Nepali (Nepal) */
-        "nl"     , TEXTS_nl,    /*   9/ 13 Dutch */
-        "pl"     , TEXTS_pl,    /*  10/ 17 Polish */
+        "km"     , TEXTS_km,    /*   2/130 Khmer */
+        "kn"     , TEXTS_kn,    /*   2/ 12 Kannada */
+        "ky"     , TEXTS_ky,    /*  10/ 92 Kyrgyz */
+        "lo"     , TEXTS_lo,    /*   2/ 12 Lao */
+        "lt"     , TEXTS_lt,    /*  18/175 Lithuanian */
+        "lv"     , TEXTS_lv,    /*  18/175 Latvian */
+        "mk"     , TEXTS_mk,    /*   9/175 Macedonian */
+        "ml"     , TEXTS_ml,    /*   2/ 12 Malayalam */
+        "mn"     , TEXTS_mn,    /*   2/ 12 Mongolian */
+        "mr"     , TEXTS_mr,    /*  23/ 53 Marathi */
+        "my"     , TEXTS_my,    /*   8/ 98 Burmese */
+        "nb"     , TEXTS_nb,    /*  11/175 Norwegian Bokmål */
+        "ne"     , TEXTS_ne,    /*  27/ 60 Nepali */
+        "nl"     , TEXTS_nl,    /*   9/175 Dutch */
+        "pl"     , TEXTS_pl,    /*  10/175 Polish */
         "pt"     , TEXTS_pt,    /*   6/  8 Portuguese */
-        "rm"     , TEXTS_rm,    /*   1/  2 Raeto-Romance */
-        "ro"     , TEXTS_ro,    /*   6/ 16 Romanian */
-        "ru"     , TEXTS_ru,    /*   9/ 32 Russian */
-        "si_LK"  , TEXTS_si_LK, /*   2/ 12 Sinhalese (Sri Lanka) */
-        "sk"     , TEXTS_sk,    /*  20/ 22 Slovak */
-        "sl"     , TEXTS_sl,    /*   8/ 20 Slovenian */
-        "sr"     , TEXTS_sr,    /*  11/ 97 Serbian */
-        "sr_ZZ"  , TEXTS_sr_ZZ, /*  14/118 Serbian (ZZ) */
-        "sv"     , TEXTS_sv,    /*  21/ 55 Swedish */
+        "rm"     , TEXTS_rm,    /*   1/  2 Romansh */
+        "ro"     , TEXTS_ro,    /*   6/175 Romanian */
+        "ru"     , TEXTS_ru,    /*   9/175 Russian */
+        "si"     , TEXTS_si,    /*   2/ 12 Sinhala */
+        "sk"     , TEXTS_sk,    /*  20/175 Slovak */
+        "sl"     , TEXTS_sl,    /*   8/175 Slovenian */
+        "sr"     , TEXTS_sr,    /*  11/175 Serbian */
+        "sr_ZZ"  , TEXTS_sr_ZZ, /*  14/150 Serbian (ZZ) */
+        "sv"     , TEXTS_sv,    /*  21/175 Swedish */
         "sw"     , TEXTS_sw,    /*   9/ 18 Swahili */
         "ta_IN"  , TEXTS_ta_IN, /*   2/ 12 Tamil (India) */
         "ta_LK"  , TEXTS_ta_LK, /*   2/ 12 Tamil (Sri Lanka) */
         "ta_SG"  , TEXTS_ta_SG, /*   1/  5 Tamil (Singapore) */
-        "te_IN"  , TEXTS_te_IN, /*   2/ 12 Telugu (India) */
+        "te"     , TEXTS_te,    /*   2/ 12 Telugu */
         "th"     , TEXTS_th,    /*   2/ 12 Thai */
         "tl"     , TEXTS_tl,    /*   7/  8 Tagalog */
         "tr"     , TEXTS_tr,    /*  11/ 18 Turkish */
-        "uk"     , TEXTS_uk,    /*  11/ 91 Ukrainian */
-        "uz_UZ"  , TEXTS_uz_UZ, /*  11/ 18 Uzbek (Uzbekistan) */
+        "uk"     , TEXTS_uk,    /*  11/175 Ukrainian */
+        "uz"     , TEXTS_uz,    /*  11/ 18 Uzbek */
         "vi"     , TEXTS_vi,    /*   8/ 15 Vietnamese */
         "zu"     , TEXTS_zu,    /*   8/ 10 Zulu */
         "zz"     , TEXTS_zz,    /*  19/120 Alphabet */
     };
 
     static {
-        for (int index = 0; index < NAMES.length; index++) {
-            sNameToIndexesMap.put(NAMES[index], index);
-        }
-
         for (int i = 0; i < LOCALES_AND_TEXTS.length; i += 2) {
             final String locale = (String)LOCALES_AND_TEXTS[i];
             final String[] textsTable = (String[])LOCALES_AND_TEXTS[i + 1];
@@ -38,6 +38,7 @@ import com.android.inputmethod.latin.utils.JniUtils;
 import com.android.inputmethod.latin.utils.WordInputEventForPersonalization;
 
 import java.io.File;
+import java.nio.IntBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -191,8 +192,8 @@ public final class BinaryDictionary extends Dictionary {
     private static native int getNextWordNative(long dict, int token, int[] outCodePoints,
             boolean[] outIsBeginningOfSentence);
     private static native void getSuggestionsNative(long dict, long proximityInfo,
-            long traverseSession, int[] xCoordinates, int[] yCoordinates, int[] times,
-            int[] pointerIds, int[] inputCodePoints, int inputSize, int[] suggestOptions,
+            long traverseSession, IntBuffer inputPointers, int[] inputCodePoints, int inputSize,
+            int[] suggestOptions,
             int[][] prevWordCodePointArrays, boolean[] isBeginningOfSentenceArray,
             int prevWordCount, int[] outputSuggestionCount, int[] outputCodePoints,
             int[] outputScores, int[] outputIndices, int[] outputTypes,
@@ -304,9 +305,8 @@ public final class BinaryDictionary extends Dictionary {
         }
         // TOOD: Pass multiple previous words information for n-gram.
         getSuggestionsNative(mNativeDict, proximityInfoHandle,
-                getTraverseSession(sessionId).getSession(), inputPointers.getXCoordinates(),
-                inputPointers.getYCoordinates(), inputPointers.getTimes(),
-                inputPointers.getPointerIds(), session.mInputCodePoints, inputSize,
+                getTraverseSession(sessionId).getSession(),
+                inputPointers.getDirectBuffer(inputSize), session.mInputCodePoints, inputSize,
                 session.mNativeSuggestOptions.getOptions(), session.mPrevWordCodePointArrays,
                 session.mIsBeginningOfSentenceArray, ngramContext.getPrevWordCount(),
                 session.mOutputSuggestionCount, session.mOutputCodePoints, session.mOutputScores,
@@ -348,6 +348,16 @@ public final class BinaryDictionary extends Dictionary {
         return getFormatVersionNative(mNativeDict);
     }
 
+    @Override
+    public void setSuggestionsCancelled(final int sessionId, final boolean isCancelled) {
+        synchronized (mDicTraverseSessions) {
+            final DicTraverseSession traverseSession = mDicTraverseSessions.get(sessionId);
+            if (traverseSession != null) {
+                traverseSession.setCancelled(isCancelled);
+            }
+        }
+    }
+
     @Override
     public boolean isInDictionary(final String word) {
         return getFrequency(word) != NOT_A_PROBABILITY;
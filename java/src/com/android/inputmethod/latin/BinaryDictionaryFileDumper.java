@@ -24,33 +24,39 @@ import android.content.res.AssetFileDescriptor;
 import android.database.Cursor;
 import android.net.Uri;
 import android.os.RemoteException;
+import android.os.SystemClock;
 import android.text.TextUtils;
 import android.util.Log;
 
 import com.android.inputmethod.dictionarypack.DictionaryPackConstants;
 import com.android.inputmethod.dictionarypack.MD5Calculator;
 import com.android.inputmethod.dictionarypack.UpdateHandler;
-import com.android.inputmethod.latin.common.FileUtils;
 import com.android.inputmethod.latin.define.DecoderSpecificConstants;
+import com.android.inputmethod.latin.utils.DictionaryFileCatalog;
 import com.android.inputmethod.latin.utils.DictionaryInfoUtils;
 import com.android.inputmethod.latin.utils.DictionaryInfoUtils.DictionaryInfo;
+import com.android.inputmethod.latin.utils.ExecutorUtils;
 import com.android.inputmethod.latin.utils.FileTransforms;
 import com.android.inputmethod.latin.utils.MetadataFileUriGetter;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.Closeable;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nullable;
 
 /**
  * Group class for static methods to help with creation and getting of the binary dictionary
@@ -61,9 +67,13 @@ public final class BinaryDictionaryFileDumper {
     private static final boolean DEBUG = false;
 
     /**
-     * The size of the temporary buffer to copy files.
+     * The size of the buffers to decode and copy files.
+     */
+    private static final int FILE_READ_BUFFER_SIZE = 64 * 1024;
+    /**
+     * The maximum number of word lists to decode at the same time.
      */
-    private static final int FILE_READ_BUFFER_SIZE = 8192;
+    private static final int MAX_CONCURRENT_DECODES = 4;
     // TODO: make the following data common with the native code
     private static final byte[] MAGIC_NUMBER_VERSION_1 =
             new byte[] { (byte)0x78, (byte)0xB1, (byte)0x00, (byte)0x00 };
@@ -222,149 +232,238 @@ public final class BinaryDictionaryFileDumper {
     }
 
     /**
-     * Stages a word list the id of which is passed as an argument. This will write the file
-     * to the cache file name designated by its id and locale, overwriting it if already present
-     * and creating it (and its containing directory) if necessary.
+     * A word list decoded and verified into a temporary file, ready to be staged.
      */
-    private static void installWordListToStaging(final String wordlistId, final String locale,
-            final String rawChecksum, final ContentProviderClient providerClient,
-            final Context context) {
-        final int COMPRESSED_CRYPTED_COMPRESSED = 0;
-        final int CRYPTED_COMPRESSED = 1;
-        final int COMPRESSED_CRYPTED = 2;
-        final int COMPRESSED_ONLY = 3;
-        final int CRYPTED_ONLY = 4;
-        final int NONE = 5;
-        final int MODE_MIN = COMPRESSED_CRYPTED_COMPRESSED;
-        final int MODE_MAX = NONE;
+    private static final class DecodedWordList {
+        final WordListInfo mWordListInfo;
+        final Uri.Builder mWordListUriBuilder;
+        // Null if the word list could not be decoded.
+        final File mTempFile;
+        final File mStagingFile;
+
+        DecodedWordList(final WordListInfo wordListInfo, final Uri.Builder wordListUriBuilder,
+                final File tempFile, final File stagingFile) {
+            mWordListInfo = wordListInfo;
+            mWordListUriBuilder = wordListUriBuilder;
+            mTempFile = tempFile;
+            mStagingFile = stagingFile;
+        }
+    }
 
-        final String clientId = context.getString(R.string.dictionary_pack_client_id);
+    /**
+     * Decodes a word list the id of which is passed as an argument into a temporary file, to be
+     * moved to the staging file name designated by its id and locale by
+     * {@link #installWordListsToStaging(List,ContentProviderClient,Context)}.
+     *
+     * The word list is read once: the layers of compression are detected from the leading bytes
+     * and the checksum is computed while the file is written.
+     *
+     * @return the decoded word list, which has no temporary file if the word list is broken, or
+     *     null if the word list can't be obtained from the dictionary pack at all.
+     */
+    @Nullable
+    private static DecodedWordList decodeWordList(final WordListInfo wordListInfo,
+            final ContentProviderClient providerClient, final String clientId,
+            final Context context) {
+        final String wordlistId = wordListInfo.mId;
+        final String rawChecksum = wordListInfo.mRawChecksum;
         final Uri.Builder wordListUriBuilder;
         try {
             wordListUriBuilder = getContentUriBuilderForType(clientId,
                     providerClient, QUERY_PATH_DATAFILE, wordlistId /* extraPath */);
         } catch (RemoteException e) {
             Log.e(TAG, "Can't communicate with the dictionary pack", e);
-            return;
+            return null;
         }
-        final String finalFileName =
-                DictionaryInfoUtils.getStagingFileName(wordlistId, locale, context);
+        final File stagingFile = new File(DictionaryInfoUtils.getStagingFileName(
+                wordlistId, wordListInfo.mLocale, context));
         String tempFileName;
         try {
             tempFileName = BinaryDictionaryGetter.getTempFileName(wordlistId, context);
         } catch (IOException e) {
             Log.e(TAG, "Can't open the temporary file", e);
-            return;
+            return null;
         }
 
-        for (int mode = MODE_MIN; mode <= MODE_MAX; ++mode) {
-            final InputStream originalSourceStream;
-            InputStream inputStream = null;
-            InputStream uncompressedStream = null;
-            InputStream decryptedStream = null;
-            BufferedInputStream bufferedInputStream = null;
-            File outputFile = null;
-            BufferedOutputStream bufferedOutputStream = null;
-            AssetFileDescriptor afd = null;
-            final Uri wordListUri = wordListUriBuilder.build();
-            try {
-                // Open input.
-                afd = openAssetFileDescriptor(providerClient, wordListUri);
-                // If we can't open it at all, don't even try a number of times.
-                if (null == afd) return;
-                originalSourceStream = afd.createInputStream();
-                // Open output.
-                outputFile = new File(tempFileName);
-                // Just to be sure, delete the file. This may fail silently, and return false: this
-                // is the right thing to do, as we just want to continue anyway.
-                outputFile.delete();
-                // Get the appropriate decryption method for this try
-                switch (mode) {
-                    case COMPRESSED_CRYPTED_COMPRESSED:
-                        uncompressedStream =
-                                FileTransforms.getUncompressedStream(originalSourceStream);
-                        decryptedStream = FileTransforms.getDecryptedStream(uncompressedStream);
-                        inputStream = FileTransforms.getUncompressedStream(decryptedStream);
-                        break;
-                    case CRYPTED_COMPRESSED:
-                        decryptedStream = FileTransforms.getDecryptedStream(originalSourceStream);
-                        inputStream = FileTransforms.getUncompressedStream(decryptedStream);
-                        break;
-                    case COMPRESSED_CRYPTED:
-                        uncompressedStream =
-                                FileTransforms.getUncompressedStream(originalSourceStream);
-                        inputStream = FileTransforms.getDecryptedStream(uncompressedStream);
-                        break;
-                    case COMPRESSED_ONLY:
-                        inputStream = FileTransforms.getUncompressedStream(originalSourceStream);
-                        break;
-                    case CRYPTED_ONLY:
-                        inputStream = FileTransforms.getDecryptedStream(originalSourceStream);
-                        break;
-                    case NONE:
-                        inputStream = originalSourceStream;
-                        break;
+        final long startTime = SystemClock.uptimeMillis();
+        CountingInputStream originalSourceStream = null;
+        InputStream inputStream = null;
+        OutputStream outputStream = null;
+        final File outputFile = new File(tempFileName);
+        AssetFileDescriptor afd = null;
+        final Uri wordListUri = wordListUriBuilder.build();
+        try {
+            // Open input.
+            afd = openAssetFileDescriptor(providerClient, wordListUri);
+            // If we can't open it at all, there is nothing to report.
+            if (null == afd) return null;
+            originalSourceStream = new CountingInputStream(afd.createInputStream());
+            // Open output.
+            // Just to be sure, delete the file. This may fail silently, and return false: this
+            // is the right thing to do, as we just want to continue anyway.
+            outputFile.delete();
+            inputStream = FileTransforms.getDecodedStream(originalSourceStream,
+                    FILE_READ_BUFFER_SIZE, SHOULD_VERIFY_MAGIC_NUMBER
+                            ? new byte[][] { MAGIC_NUMBER_VERSION_2, MAGIC_NUMBER_VERSION_1 }
+                            : null);
+            final MessageDigest digester =
+                    SHOULD_VERIFY_CHECKSUM ? MD5Calculator.getDigester() : null;
+            outputStream = new FileOutputStream(outputFile);
+            if (null != digester) {
+                outputStream = new DigestOutputStream(outputStream, digester);
+            }
+            final long writtenSize = checkMagicAndCopyFileTo(inputStream, outputStream);
+            outputStream.close();
+
+            if (SHOULD_VERIFY_CHECKSUM) {
+                final String actualRawChecksum =
+                        null == digester ? null : MD5Calculator.toChecksumString(digester.digest());
+                Log.i(TAG, "Computed checksum for downloaded dictionary. Expected = "
+                        + rawChecksum + " ; actual = " + actualRawChecksum);
+                if (!TextUtils.isEmpty(rawChecksum) && !rawChecksum.equals(actualRawChecksum)) {
+                    throw new IOException(
+                            "Could not decode the file correctly : checksum differs");
                 }
-                bufferedInputStream = new BufferedInputStream(inputStream);
-                bufferedOutputStream = new BufferedOutputStream(new FileOutputStream(outputFile));
-                checkMagicAndCopyFileTo(bufferedInputStream, bufferedOutputStream);
-                bufferedOutputStream.flush();
-                bufferedOutputStream.close();
-
-                if (SHOULD_VERIFY_CHECKSUM) {
-                    final String actualRawChecksum = MD5Calculator.checksum(
-                            new BufferedInputStream(new FileInputStream(outputFile)));
-                    Log.i(TAG, "Computed checksum for downloaded dictionary. Expected = "
-                            + rawChecksum + " ; actual = " + actualRawChecksum);
-                    if (!TextUtils.isEmpty(rawChecksum) && !rawChecksum.equals(actualRawChecksum)) {
-                        throw new IOException(
-                                "Could not decode the file correctly : checksum differs");
+            }
+            // Read the header now so that resetting the dictionaries doesn't have to.
+            DictionaryFileCatalog.getInstance(context).onFileInstalled(outputFile);
+
+            Log.i(TAG, String.format(Locale.US,
+                    "Decoded word list %s in %d ms: read %d bytes, wrote %d bytes",
+                    wordlistId, SystemClock.uptimeMillis() - startTime,
+                    originalSourceStream.getCount(), writtenSize));
+            // Success! Close files (through the finally{} clause) and return.
+            return new DecodedWordList(wordListInfo, wordListUriBuilder, outputFile, stagingFile);
+        } catch (Exception e) {
+            if (DEBUG) {
+                Log.e(TAG, "Can't decode word list", e);
+            }
+            // This may or may not fail. The file may not have been created if the exception
+            // was thrown before it could be. Hence, both failure and success are expected
+            // outcomes, so we don't check the return value.
+            outputFile.delete();
+        } finally {
+            // Ignore exceptions while closing files.
+            closeAssetFileDescriptorAndReportAnyException(afd);
+            // Closing the decoded stream closes all the layers under it.
+            closeCloseableAndReportAnyException(inputStream);
+            closeCloseableAndReportAnyException(originalSourceStream);
+            closeCloseableAndReportAnyException(outputStream);
+        }
+        return new DecodedWordList(wordListInfo, wordListUriBuilder, null /* tempFile */,
+                stagingFile);
+    }
+
+    /**
+     * Stages the word lists passed as an argument. This will write each file to the staging
+     * file name designated by its id and locale, overwriting it if already present and creating
+     * it (and its containing directory) if necessary.
+     *
+     * The word lists are decoded concurrently, then all the decoded ones are moved to the
+     * staging directory at once, so that the next reset of the dictionaries picks up the whole
+     * batch together.
+     */
+    private static void installWordListsToStaging(final List<WordListInfo> wordListInfos,
+            final ContentProviderClient providerClient, final Context context) {
+        final int wordListCount = wordListInfos.size();
+        if (0 == wordListCount) {
+            return;
+        }
+        final String clientId = context.getString(R.string.dictionary_pack_client_id);
+        final long startTime = SystemClock.uptimeMillis();
+        final ArrayList<DecodedWordList> decodedWordLists = new ArrayList<>();
+        if (1 == wordListCount) {
+            final DecodedWordList decodedWordList =
+                    decodeWordList(wordListInfos.get(0), providerClient, clientId, context);
+            if (null != decodedWordList) {
+                decodedWordLists.add(decodedWordList);
+            }
+        } else {
+            // A content provider client can't be shared between threads, so each decode acquires
+            // its own.
+            final AtomicInteger decodedCount = new AtomicInteger();
+            final ArrayList<Callable<DecodedWordList>> tasks = new ArrayList<>();
+            for (final WordListInfo wordListInfo : wordListInfos) {
+                tasks.add(new Callable<DecodedWordList>() {
+                    @Override
+                    public DecodedWordList call() {
+                        final ContentProviderClient taskProviderClient =
+                                acquireProviderClient(context);
+                        if (null == taskProviderClient) {
+                            return null;
+                        }
+                        try {
+                            final DecodedWordList decodedWordList = decodeWordList(
+                                    wordListInfo, taskProviderClient, clientId, context);
+                            Log.i(TAG, "Decoded " + decodedCount.incrementAndGet() + " of "
+                                    + wordListCount + " word lists");
+                            return decodedWordList;
+                        } finally {
+                            taskProviderClient.release();
+                        }
                     }
+                });
+            }
+            // This waits for all the decodes, even if this thread is interrupted, so that none
+            // of them leaves a temporary file behind.
+            for (final DecodedWordList decodedWordList : ExecutorUtils.callAll(tasks,
+                    Math.min(MAX_CONCURRENT_DECODES, Runtime.getRuntime().availableProcessors()))) {
+                if (null != decodedWordList) {
+                    decodedWordLists.add(decodedWordList);
                 }
-
-                // move the output file to the final staging file.
-                final File finalFile = new File(finalFileName);
-                if (!FileUtils.renameTo(outputFile, finalFile)) {
-                    Log.e(TAG, String.format("Failed to rename from %s to %s.",
-                            outputFile.getAbsoluteFile(), finalFile.getAbsoluteFile()));
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                Log.e(TAG, "Interrupted while decoding word lists");
+                for (final DecodedWordList decodedWordList : decodedWordLists) {
+                    if (null != decodedWordList.mTempFile) {
+                        decodedWordList.mTempFile.delete();
+                    }
                 }
-
-                wordListUriBuilder.appendQueryParameter(QUERY_PARAMETER_DELETE_RESULT,
-                        QUERY_PARAMETER_SUCCESS);
+                return;
+            }
+        }
+        final long decodedTime = SystemClock.uptimeMillis();
+
+        // Move the decoded word lists to the staging directory in one step.
+        final ArrayList<File> tempFiles = new ArrayList<>();
+        final ArrayList<File> stagingFiles = new ArrayList<>();
+        for (final DecodedWordList decodedWordList : decodedWordLists) {
+            if (null != decodedWordList.mTempFile) {
+                tempFiles.add(decodedWordList.mTempFile);
+                stagingFiles.add(decodedWordList.mStagingFile);
+            }
+        }
+        DictionaryInfoUtils.moveFilesToStaging(context, tempFiles, stagingFiles);
+
+        int installedCount = 0;
+        for (final DecodedWordList decodedWordList : decodedWordLists) {
+            final String wordlistId = decodedWordList.mWordListInfo.mId;
+            if (null == decodedWordList.mTempFile) {
+                // We could not copy the file at all. This is very unexpected.
+                // I'd rather not print the word list ID to the log out of security concerns
+                Log.e(TAG, "Could not copy a word list. Will not be able to use it.");
+                // If we can't copy it we should warn the dictionary provider so that it can mark
+                // it as invalid.
+                reportBrokenFileToDictionaryProvider(providerClient, clientId, wordlistId);
+                continue;
+            }
+            final Uri.Builder wordListUriBuilder = decodedWordList.mWordListUriBuilder;
+            wordListUriBuilder.appendQueryParameter(QUERY_PARAMETER_DELETE_RESULT,
+                    QUERY_PARAMETER_SUCCESS);
+            try {
                 if (0 >= providerClient.delete(wordListUriBuilder.build(), null, null)) {
                     Log.e(TAG, "Could not have the dictionary pack delete a word list");
                 }
-                Log.d(TAG, "Successfully copied file for wordlist ID " + wordlistId);
-                // Success! Close files (through the finally{} clause) and return.
-                return;
-            } catch (Exception e) {
-                if (DEBUG) {
-                    Log.e(TAG, "Can't open word list in mode " + mode, e);
-                }
-                if (null != outputFile) {
-                    // This may or may not fail. The file may not have been created if the
-                    // exception was thrown before it could be. Hence, both failure and
-                    // success are expected outcomes, so we don't check the return value.
-                    outputFile.delete();
-                }
-                // Try the next method.
-            } finally {
-                // Ignore exceptions while closing files.
-                closeAssetFileDescriptorAndReportAnyException(afd);
-                closeCloseableAndReportAnyException(inputStream);
-                closeCloseableAndReportAnyException(uncompressedStream);
-                closeCloseableAndReportAnyException(decryptedStream);
-                closeCloseableAndReportAnyException(bufferedInputStream);
-                closeCloseableAndReportAnyException(bufferedOutputStream);
+            } catch (RemoteException e) {
+                Log.e(TAG, "Communication with the dictionary provider was cut", e);
             }
+            Log.d(TAG, "Successfully copied file for wordlist ID " + wordlistId);
+            installedCount++;
         }
-
-        // We could not copy the file at all. This is very unexpected.
-        // I'd rather not print the word list ID to the log out of security concerns
-        Log.e(TAG, "Could not copy a word list. Will not be able to use it.");
-        // If we can't copy it we should warn the dictionary provider so that it can mark it
-        // as invalid.
-        reportBrokenFileToDictionaryProvider(providerClient, clientId, wordlistId);
+        Log.i(TAG, String.format(Locale.US,
+                "Installed %d of %d word lists in %d ms, of which %d ms to decode",
+                installedCount, wordListCount, SystemClock.uptimeMillis() - startTime,
+                decodedTime - startTime));
     }
 
     public static boolean reportBrokenFileToDictionaryProvider(
@@ -405,6 +504,26 @@ public final class BinaryDictionaryFileDumper {
         }
     }
 
+    /**
+     * Acquires a client of the dictionary provider.
+     * @return the client, to be released by the caller, or null if the provider can't be reached.
+     */
+    @Nullable
+    private static ContentProviderClient acquireProviderClient(final Context context) {
+        final ContentProviderClient providerClient;
+        try {
+            providerClient = context.getContentResolver().
+                acquireContentProviderClient(getProviderUriBuilder("").build());
+        } catch (final SecurityException e) {
+            Log.e(TAG, "No permission to communicate with the dictionary provider", e);
+            return null;
+        }
+        if (null == providerClient) {
+            Log.e(TAG, "Can't establish communication with the dictionary provider");
+        }
+        return providerClient;
+    }
+
     /**
      * Queries a content provider for word list data for some locale and stage the returned files
      *
@@ -416,25 +535,14 @@ public final class BinaryDictionaryFileDumper {
      */
     public static void installDictToStagingFromContentProvider(final Locale locale,
             final Context context, final boolean hasDefaultWordList) {
-        final ContentProviderClient providerClient;
-        try {
-            providerClient = context.getContentResolver().
-                acquireContentProviderClient(getProviderUriBuilder("").build());
-        } catch (final SecurityException e) {
-            Log.e(TAG, "No permission to communicate with the dictionary provider", e);
-            return;
-        }
+        final ContentProviderClient providerClient = acquireProviderClient(context);
         if (null == providerClient) {
-            Log.e(TAG, "Can't establish communication with the dictionary provider");
             return;
         }
         try {
             final List<WordListInfo> idList = getWordListWordListInfos(locale, context,
                     hasDefaultWordList);
-            for (WordListInfo id : idList) {
-                installWordListToStaging(id.mId, id.mLocale, id.mRawChecksum, providerClient,
-                        context);
-            }
+            installWordListsToStaging(idList, providerClient, context);
         } finally {
             providerClient.release();
         }
@@ -461,31 +569,90 @@ public final class BinaryDictionaryFileDumper {
      *
      * @param input the stream to be copied.
      * @param output an output stream to copy the data to.
+     * @return the number of bytes copied.
      */
-    public static void checkMagicAndCopyFileTo(final BufferedInputStream input,
-            final BufferedOutputStream output) throws FileNotFoundException, IOException {
+    public static long checkMagicAndCopyFileTo(final InputStream input,
+            final OutputStream output) throws FileNotFoundException, IOException {
         // Check the magic number
         final int length = MAGIC_NUMBER_VERSION_2.length;
-        final byte[] magicNumberBuffer = new byte[length];
-        final int readMagicNumberSize = input.read(magicNumberBuffer, 0, length);
-        if (readMagicNumberSize < length) {
-            throw new IOException("Less bytes to read than the magic number length");
+        final byte[] buffer = new byte[FILE_READ_BUFFER_SIZE];
+        int readMagicNumberSize = 0;
+        while (readMagicNumberSize < length) {
+            final int readBytes = input.read(buffer, readMagicNumberSize,
+                    length - readMagicNumberSize);
+            if (readBytes < 0) {
+                throw new IOException("Less bytes to read than the magic number length");
+            }
+            readMagicNumberSize += readBytes;
         }
         if (SHOULD_VERIFY_MAGIC_NUMBER) {
-            if (!Arrays.equals(MAGIC_NUMBER_VERSION_2, magicNumberBuffer)) {
-                if (!Arrays.equals(MAGIC_NUMBER_VERSION_1, magicNumberBuffer)) {
+            if (!startsWith(buffer, MAGIC_NUMBER_VERSION_2)) {
+                if (!startsWith(buffer, MAGIC_NUMBER_VERSION_1)) {
                     throw new IOException("Wrong magic number for downloaded file");
                 }
             }
         }
-        output.write(magicNumberBuffer);
+        output.write(buffer, 0, length);
 
-        // Actually copy the file
-        final byte[] buffer = new byte[FILE_READ_BUFFER_SIZE];
+        // Actually copy the file. The buffer is as large as the one of the decoded stream, so
+        // the reads go straight through to the decoder.
+        long copiedSize = length;
         for (int readBytes = input.read(buffer); readBytes >= 0; readBytes = input.read(buffer)) {
             output.write(buffer, 0, readBytes);
+            copiedSize += readBytes;
         }
         input.close();
+        return copiedSize;
+    }
+
+    private static boolean startsWith(final byte[] bytes, final byte[] prefix) {
+        for (int i = 0; i < prefix.length; i++) {
+            if (bytes[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * An input stream that counts the bytes read from the underlying stream.
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+        private long mCount;
+
+        CountingInputStream(final InputStream in) {
+            super(in);
+        }
+
+        public long getCount() {
+            return mCount;
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int result = super.read();
+            if (result >= 0) {
+                mCount++;
+            }
+            return result;
+        }
+
+        @Override
+        public int read(final byte[] buffer, final int offset, final int count)
+                throws IOException {
+            final int result = super.read(buffer, offset, count);
+            if (result > 0) {
+                mCount += result;
+            }
+            return result;
+        }
+
+        @Override
+        public long skip(final long count) throws IOException {
+            final long result = super.skip(count);
+            mCount += result;
+            return result;
+        }
     }
 
     private static void reinitializeClientRecordInDictionaryContentProvider(final Context context,
@@ -23,14 +23,11 @@ import android.util.Log;
 
 import com.android.inputmethod.latin.common.LocaleUtils;
 import com.android.inputmethod.latin.define.DecoderSpecificConstants;
-import com.android.inputmethod.latin.makedict.DictionaryHeader;
-import com.android.inputmethod.latin.makedict.UnsupportedFormatException;
-import com.android.inputmethod.latin.utils.BinaryDictionaryUtils;
+import com.android.inputmethod.latin.utils.DictionaryFileCatalog;
 import com.android.inputmethod.latin.utils.DictionaryInfoUtils;
 
 import java.io.File;
 import java.io.IOException;
-import java.nio.BufferUnderflowException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Locale;
@@ -62,9 +59,6 @@ final public class BinaryDictionaryGetter {
     public static final String MAIN_DICTIONARY_CATEGORY = "main";
     public static final String ID_CATEGORY_SEPARATOR = ":";
 
-    // The key considered to read the version attribute in a dictionary file.
-    private static String VERSION_KEY = "version";
-
     // Prevents this from being instantiated
     private BinaryDictionaryGetter() {}
 
@@ -164,16 +158,17 @@ final public class BinaryDictionaryGetter {
      * @return an array of binary dictionary files, which may be empty but may not be null.
      */
     public static File[] getCachedWordLists(final String locale, final Context context) {
+        final DictionaryFileCatalog catalog = DictionaryFileCatalog.getInstance(context);
         final File[] directoryList = DictionaryInfoUtils.getCachedDirectoryList(context);
         if (null == directoryList) return EMPTY_FILE_ARRAY;
         final HashMap<String, FileAndMatchLevel> cacheFiles = new HashMap<>();
         for (File directory : directoryList) {
-            if (!directory.isDirectory()) continue;
             final String dirLocale =
                     DictionaryInfoUtils.getWordListIdFromFileName(directory.getName());
-            final int matchLevel = LocaleUtils.getMatchLevel(dirLocale, locale);
+            final int matchLevel = catalog.getMatchLevel(dirLocale, locale);
             if (LocaleUtils.isMatch(matchLevel)) {
-                final File[] wordLists = directory.listFiles();
+                // The catalog returns null for anything but directories.
+                final File[] wordLists = catalog.listFiles(directory);
                 if (null != wordLists) {
                     for (File wordList : wordLists) {
                         final String category =
@@ -198,33 +193,20 @@ final public class BinaryDictionaryGetter {
     // ## HACK ## we prevent usage of a dictionary before version 18. The reason for this is, since
     // those do not include allowlist entries, the new code with an old version of the dictionary
     // would lose allowlist functionality.
-    private static boolean hackCanUseDictionaryFile(final File file) {
+    private static boolean hackCanUseDictionaryFile(final DictionaryFileCatalog catalog,
+            final File file) {
         if (!SHOULD_USE_DICT_VERSION) {
             return true;
         }
 
-        try {
-            // Read the version of the file
-            final DictionaryHeader header = BinaryDictionaryUtils.getHeader(file);
-            final String version = header.mDictionaryOptions.mAttributes.get(VERSION_KEY);
-            if (null == version) {
-                // No version in the options : the format is unexpected
-                return false;
-            }
-            // Version 18 is the first one to include the allowlist. 
-            // Obviously this is a big ## HACK ##
-            return Integer.parseInt(version) >= 18;
-        } catch (java.io.FileNotFoundException e) {
-            return false;
-        } catch (java.io.IOException e) {
-            return false;
-        } catch (NumberFormatException e) {
-            return false;
-        } catch (BufferUnderflowException e) {
-            return false;
-        } catch (UnsupportedFormatException e) {
+        // Read the version of the file, from the catalog unless the file has changed.
+        final DictionaryFileCatalog.Entry entry = catalog.getEntry(file);
+        if (null == entry || !entry.hasHeader()) {
             return false;
         }
+        // Version 18 is the first one to include the allowlist.
+        // Obviously this is a big ## HACK ##
+        return entry.getContentVersion() >= 18;
     }
 
     /**
@@ -254,6 +236,7 @@ final public class BinaryDictionaryGetter {
             // Move a staging files to the cache ddirectories if any.
             DictionaryInfoUtils.moveStagingFilesIfExists(context);
         }
+        final DictionaryFileCatalog catalog = DictionaryFileCatalog.getInstance(context);
         final File[] cachedWordLists = getCachedWordLists(locale.toString(), context);
         final String mainDictId = DictionaryInfoUtils.getMainDictId(locale);
         final DictPackSettings dictPackSettings = new DictPackSettings(context);
@@ -263,7 +246,7 @@ final public class BinaryDictionaryGetter {
         // cachedWordLists may not be null, see doc for getCachedDictionaryList
         for (final File f : cachedWordLists) {
             final String wordListId = DictionaryInfoUtils.getWordListIdFromFileName(f.getName());
-            final boolean canUse = f.canRead() && hackCanUseDictionaryFile(f);
+            final boolean canUse = f.canRead() && hackCanUseDictionaryFile(catalog, f);
             if (canUse && DictionaryInfoUtils.isMainWordListId(wordListId)) {
                 foundMainDict = true;
             }
@@ -285,6 +268,7 @@ final public class BinaryDictionaryGetter {
                 fileList.add(fallbackAsset);
             }
         }
+        catalog.saveIfChanged();
 
         return fileList;
     }
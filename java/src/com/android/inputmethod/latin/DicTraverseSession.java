@@ -49,6 +49,8 @@ public final class DicTraverseSession {
     private static native long setDicTraverseSessionNative(String locale, long dictSize);
     private static native void initDicTraverseSessionNative(long nativeDicTraverseSession,
             long dictionary, int[] previousWord, int previousWordLength);
+    private static native void setDicTraverseSessionCancelledNative(
+            long nativeDicTraverseSession, boolean isCancelled);
     private static native void releaseDicTraverseSessionNative(long nativeDicTraverseSession);
 
     private long mNativeDicTraverseSession;
@@ -72,6 +74,15 @@ public final class DicTraverseSession {
                 mNativeDicTraverseSession, dictionary, previousWord, previousWordLength);
     }
 
+    /**
+     * Request a search running on this session to stop early, or allow searches again.
+     * A canceled search doesn't output any suggestions. This can be called from any thread.
+     * @param isCancelled true to cancel the searches on this session.
+     */
+    public void setCancelled(final boolean isCancelled) {
+        setDicTraverseSessionCancelledNative(mNativeDicTraverseSession, isCancelled);
+    }
+
     private static long createNativeDicTraverseSession(String locale, long dictSize) {
         return setDicTraverseSessionNative(locale, dictSize);
     }
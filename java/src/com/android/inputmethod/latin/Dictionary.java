@@ -102,6 +102,16 @@ public abstract class Dictionary {
             final int sessionId, final float weightForLocale,
             final float[] inOutWeightOfLangModelVsSpatialModel);
 
+    /**
+     * Request the searches running on the given session to stop early, or allow searches on the
+     * session again. This can be called from any thread.
+     * @param sessionId the session id.
+     * @param isCancelled true to cancel the searches.
+     */
+    public void setSuggestionsCancelled(final int sessionId, final boolean isCancelled) {
+        // empty base implementation
+    }
+
     /**
      * Checks if the given word has to be treated as a valid word. Please note that some
      * dictionaries have entries that should be treated as invalid words.
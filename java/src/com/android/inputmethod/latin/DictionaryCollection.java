@@ -82,6 +82,13 @@ public final class DictionaryCollection extends Dictionary {
         return suggestions;
     }
 
+    @Override
+    public void setSuggestionsCancelled(final int sessionId, final boolean isCancelled) {
+        for (final Dictionary dict : mDictionaries) {
+            dict.setSuggestionsCancelled(sessionId, isCancelled);
+        }
+    }
+
     @Override
     public boolean isInDictionary(final String word) {
         for (int i = mDictionaries.size() - 1; i >= 0; --i)
@@ -162,6 +162,12 @@ public interface DictionaryFacilitator {
             final SettingsValuesForSuggestion settingsValuesForSuggestion, final int sessionId,
             final int inputStyle);
 
+    /**
+     * Request the searches running on the given session to stop early, or allow searches on the
+     * session again. This can be called from any thread.
+     */
+    void setSuggestionsCancelled(final int sessionId, final boolean isCancelled);
+
     boolean isValidSpellingWord(final String word);
 
     boolean isValidSuggestionWord(final String word);
@@ -642,6 +642,16 @@ public class DictionaryFacilitatorImpl implements DictionaryFacilitator {
         return suggestionResults;
     }
 
+    @Override
+    public void setSuggestionsCancelled(final int sessionId, final boolean isCancelled) {
+        final DictionaryGroup dictionaryGroup = mDictionaryGroup;
+        for (final String dictType : ALL_DICTIONARY_TYPES) {
+            final Dictionary dictionary = dictionaryGroup.getDict(dictType);
+            if (null == dictionary) continue;
+            dictionary.setSuggestionsCancelled(sessionId, isCancelled);
+        }
+    }
+
     public boolean isValidSpellingWord(final String word) {
         if (mValidSpellingWordReadCache != null) {
             final Boolean cachedValue = mValidSpellingWordReadCache.get(word);
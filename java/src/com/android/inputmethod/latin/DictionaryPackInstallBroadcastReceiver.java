@@ -119,7 +119,8 @@ public final class DictionaryPackInstallBroadcastReceiver extends BroadcastRecei
                         + "should never happen");
                 return;
             }
-            mService.resetSuggestMainDict();
+            // Several word lists may be installed in a row: reload the dictionaries once.
+            mService.mHandler.postResetSuggestMainDict();
         } else if (action.equals(DictionaryPackConstants.UNKNOWN_DICTIONARY_PROVIDER_CLIENT)) {
             if (null != mService) {
                 // Careful! This is returning if the service is NOT null. This is because we
@@ -460,6 +460,15 @@ abstract public class ExpandableBinaryDictionary extends Dictionary {
         return null;
     }
 
+    @Override
+    public void setSuggestionsCancelled(final int sessionId, final boolean isCancelled) {
+        // Don't wait for the lock that is held by the search to be canceled.
+        final BinaryDictionary binaryDictionary = mBinaryDictionary;
+        if (binaryDictionary != null) {
+            binaryDictionary.setSuggestionsCancelled(sessionId, isCancelled);
+        }
+    }
+
     @Override
     public boolean isInDictionary(final String word) {
         reloadDictionaryIfRequired();
@@ -40,12 +40,14 @@ import android.os.Build;
 import android.os.Debug;
 import android.os.IBinder;
 import android.os.Message;
+import android.os.SystemClock;
 import android.preference.PreferenceManager;
 import android.text.InputType;
 import android.util.Log;
 import android.util.PrintWriterPrinter;
 import android.util.Printer;
 import android.util.SparseArray;
+import android.view.Choreographer;
 import android.view.Gravity;
 import android.view.KeyEvent;
 import android.view.View;
@@ -74,6 +76,7 @@ import com.android.inputmethod.keyboard.KeyboardActionListener;
 import com.android.inputmethod.keyboard.KeyboardId;
 import com.android.inputmethod.keyboard.KeyboardSwitcher;
 import com.android.inputmethod.keyboard.MainKeyboardView;
+import com.android.inputmethod.keyboard.emoji.EmojiPalettesView;
 import com.android.inputmethod.latin.Suggest.OnGetSuggestedWordsCallback;
 import com.android.inputmethod.latin.SuggestedWords.SuggestedWordInfo;
 import com.android.inputmethod.latin.common.Constants;
@@ -82,6 +85,7 @@ import com.android.inputmethod.latin.common.InputPointers;
 import com.android.inputmethod.latin.define.DebugFlags;
 import com.android.inputmethod.latin.define.ProductionFlags;
 import com.android.inputmethod.latin.inputlogic.InputLogic;
+import com.android.inputmethod.latin.inputlogic.SuggestionStripUpdateScheduler;
 import com.android.inputmethod.latin.permissions.PermissionsManager;
 import com.android.inputmethod.latin.personalization.PersonalizationHelper;
 import com.android.inputmethod.latin.settings.Settings;
@@ -93,6 +97,7 @@ import com.android.inputmethod.latin.touchinputconsumer.GestureConsumer;
 import com.android.inputmethod.latin.utils.ApplicationUtils;
 import com.android.inputmethod.latin.utils.DialogUtils;
 import com.android.inputmethod.latin.utils.ImportantNoticeUtils;
+import com.android.inputmethod.latin.utils.InputLatencyTracer;
 import com.android.inputmethod.latin.utils.IntentUtils;
 import com.android.inputmethod.latin.utils.JniUtils;
 import com.android.inputmethod.latin.utils.LeakGuardHandlerWrapper;
@@ -219,8 +224,14 @@ public class LatinIME extends InputMethodService implements KeyboardActionListen
         private static final int MSG_DEALLOCATE_MEMORY = 9;
         private static final int MSG_RESUME_SUGGESTIONS_FOR_START_INPUT = 10;
         private static final int MSG_SWITCH_LANGUAGE_AUTOMATICALLY = 11;
+        private static final int MSG_RESET_SUGGEST_MAIN_DICT = 12;
+        private static final int MSG_SHOW_SUGGESTIONS_FOR_TYPING = 13;
         // Update this when adding new messages
-        private static final int MSG_LAST = MSG_SWITCH_LANGUAGE_AUTOMATICALLY;
+        private static final int MSG_LAST = MSG_SHOW_SUGGESTIONS_FOR_TYPING;
+
+        // Word lists that are installed together signal new dictionaries in quick succession.
+        // Reloading the main dictionary this long after the last signal reloads it only once.
+        private static final int DELAY_IN_MILLISECONDS_TO_RESET_SUGGEST_MAIN_DICT = 1000;
 
         private static final int ARG1_NOT_GESTURE_INPUT = 0;
         private static final int ARG1_DISMISS_GESTURE_FLOATING_PREVIEW_TEXT = 1;
@@ -257,8 +268,13 @@ public class LatinIME extends InputMethodService implements KeyboardActionListen
             switch (msg.what) {
             case MSG_UPDATE_SUGGESTION_STRIP:
                 cancelUpdateSuggestionStrip();
-                latinIme.mInputLogic.performUpdateSuggestionStripSync(
-                        latinIme.mSettings.getCurrent(), msg.arg1 /* inputStyle */);
+                latinIme.mInputLogic.performUpdateSuggestionStrip(
+                        latinIme.mSettings.getCurrent(), switcher.getKeyboard(),
+                        switcher.getKeyboardShiftMode(), msg.arg1 /* inputStyle */);
+                break;
+            case MSG_SHOW_SUGGESTIONS_FOR_TYPING:
+                showSuggestionsForTypingOnNextFrame((SuggestedWords) msg.obj,
+                        msg.arg1 /* sequenceNumber */, msg.arg2 /* keyStrokeSequenceNumber */);
                 break;
             case MSG_UPDATE_SHIFT_STATE:
                 switcher.requestUpdatingShiftState(latinIme.getCurrentAutoCapsState(),
@@ -317,18 +333,38 @@ public class LatinIME extends InputMethodService implements KeyboardActionListen
             case MSG_SWITCH_LANGUAGE_AUTOMATICALLY:
                 latinIme.switchLanguage((InputMethodSubtype)msg.obj);
                 break;
+            case MSG_RESET_SUGGEST_MAIN_DICT:
+                latinIme.resetSuggestMainDict();
+                break;
             }
         }
 
         public void postUpdateSuggestionStrip(final int inputStyle) {
-            sendMessageDelayed(obtainMessage(MSG_UPDATE_SUGGESTION_STRIP, inputStyle,
-                    0 /* ignored */), mDelayInMillisecondsToUpdateSuggestions);
+            // The update supersedes the pending one, if any: the suggestions it would fetch are
+            // already stale.
+            final boolean isUpdatePending = hasPendingUpdateSuggestions();
+            removeMessages(MSG_UPDATE_SUGGESTION_STRIP);
+            final Message message = obtainMessage(MSG_UPDATE_SUGGESTION_STRIP, inputStyle,
+                    0 /* ignored */);
+            if (inputStyle != SuggestedWords.INPUT_STYLE_TYPING) {
+                sendMessageDelayed(message, mDelayInMillisecondsToUpdateSuggestions);
+                return;
+            }
+            sendMessageAtTime(message, SuggestionStripUpdateScheduler.getInstance().scheduleUpdate(
+                    SystemClock.uptimeMillis(), mDelayInMillisecondsToUpdateSuggestions,
+                    isUpdatePending));
         }
 
         public void postReopenDictionaries() {
             sendMessage(obtainMessage(MSG_REOPEN_DICTIONARIES));
         }
 
+        public void postResetSuggestMainDict() {
+            removeMessages(MSG_RESET_SUGGEST_MAIN_DICT);
+            sendMessageDelayed(obtainMessage(MSG_RESET_SUGGEST_MAIN_DICT),
+                    DELAY_IN_MILLISECONDS_TO_RESET_SUGGEST_MAIN_DICT);
+        }
+
         private void postResumeSuggestionsInternal(final boolean shouldDelay,
                 final boolean forStartInput) {
             final LatinIME latinIme = getOwnerInstance();
@@ -413,6 +449,10 @@ public class LatinIME extends InputMethodService implements KeyboardActionListen
             for (int i = 0; i <= MSG_LAST; ++i) {
                 removeMessages(i);
             }
+            if (null != mSuggestionsForTypingOnNextFrame) {
+                Choreographer.getInstance().removeFrameCallback(mShowSuggestionsForTypingCallback);
+                mSuggestionsForTypingOnNextFrame = null;
+            }
         }
 
         public void showGesturePreviewAndSuggestionStrip(final SuggestedWords suggestedWords,
@@ -431,6 +471,64 @@ public class LatinIME extends InputMethodService implements KeyboardActionListen
                     ARG1_NOT_GESTURE_INPUT, ARG2_UNUSED, suggestedWords).sendToTarget();
         }
 
+        /**
+         * Shows suggestions fetched in the background for the word being typed.
+         * @param suggestedWords the suggestions.
+         * @param sequenceNumber the sequence number of the composer they were fetched for.
+         * @param keyStrokeSequenceNumber the sequence number of the key stroke that requested
+         * them.
+         */
+        // Called on the Non-UI handler thread by InputLogic.
+        public void showSuggestionsForTyping(final SuggestedWords suggestedWords,
+                final int sequenceNumber, final int keyStrokeSequenceNumber) {
+            obtainMessage(MSG_SHOW_SUGGESTIONS_FOR_TYPING, sequenceNumber,
+                    keyStrokeSequenceNumber, suggestedWords).sendToTarget();
+        }
+
+        // The suggestions for typing that wait for the next frame to be shown, if any. The
+        // suggestion strip is laid out at most once per frame: suggestions that come back within
+        // the same frame replace the ones that are waiting, which are already stale.
+        private SuggestedWords mSuggestionsForTypingOnNextFrame;
+        private int mSuggestionsForTypingSequenceNumber;
+        private int mSuggestionsForTypingKeyStrokeSequenceNumber;
+        private final Choreographer.FrameCallback mShowSuggestionsForTypingCallback =
+                new Choreographer.FrameCallback() {
+                    @Override
+                    public void doFrame(final long frameTimeNanos) {
+                        flushSuggestionsForTyping();
+                    }
+                };
+
+        private void showSuggestionsForTypingOnNextFrame(final SuggestedWords suggestedWords,
+                final int sequenceNumber, final int keyStrokeSequenceNumber) {
+            final boolean isFrameCallbackPending = null != mSuggestionsForTypingOnNextFrame;
+            mSuggestionsForTypingOnNextFrame = suggestedWords;
+            mSuggestionsForTypingSequenceNumber = sequenceNumber;
+            mSuggestionsForTypingKeyStrokeSequenceNumber = keyStrokeSequenceNumber;
+            if (!isFrameCallbackPending) {
+                Choreographer.getInstance().postFrameCallback(mShowSuggestionsForTypingCallback);
+            }
+        }
+
+        /**
+         * Shows the suggestions for typing that wait for the next frame right away, if any.
+         */
+        public void flushSuggestionsForTyping() {
+            final SuggestedWords suggestedWords = mSuggestionsForTypingOnNextFrame;
+            if (null == suggestedWords) {
+                return;
+            }
+            Choreographer.getInstance().removeFrameCallback(mShowSuggestionsForTypingCallback);
+            mSuggestionsForTypingOnNextFrame = null;
+            final LatinIME latinIme = getOwnerInstance();
+            if (latinIme == null) {
+                return;
+            }
+            latinIme.mInputLogic.onSuggestedWordsForTypingFetched(suggestedWords,
+                    mSuggestionsForTypingSequenceNumber,
+                    mSuggestionsForTypingKeyStrokeSequenceNumber);
+        }
+
         public void showTailBatchInputResult(final SuggestedWords suggestedWords) {
             obtainMessage(MSG_UPDATE_TAIL_BATCH_INPUT_COMPLETED, suggestedWords).sendToTarget();
         }
@@ -1465,6 +1563,7 @@ public class LatinIME extends InputMethodService implements KeyboardActionListen
                 mInputLogic.onCodeInput(mSettings.getCurrent(), event,
                         mKeyboardSwitcher.getKeyboardShiftMode(),
                         mKeyboardSwitcher.getCurrentKeyboardScriptId(), mHandler);
+        InputLatencyTracer.getInstance().onStage(InputLatencyTracer.STAGE_INPUT_PROCESSED);
         updateStateAfterInputTransaction(completeInputTransaction);
         mKeyboardSwitcher.onEvent(event, getCurrentAutoCapsState(), getCurrentRecapitalizeState());
     }
@@ -1495,6 +1594,7 @@ public class LatinIME extends InputMethodService implements KeyboardActionListen
         final InputTransaction completeInputTransaction =
                 mInputLogic.onTextInput(mSettings.getCurrent(), event,
                         mKeyboardSwitcher.getKeyboardShiftMode(), mHandler);
+        InputLatencyTracer.getInstance().onStage(InputLatencyTracer.STAGE_INPUT_PROCESSED);
         updateStateAfterInputTransaction(completeInputTransaction);
         mKeyboardSwitcher.onEvent(event, getCurrentAutoCapsState(), getCurrentRecapitalizeState());
     }
@@ -1641,6 +1741,15 @@ public class LatinIME extends InputMethodService implements KeyboardActionListen
         AccessibilityUtils.getInstance().setAutoCorrection(suggestedWords);
     }
 
+    @Override
+    public void showSuggestionStrip(final SuggestedWords suggestedWords,
+            final int keyStrokeSequenceNumber) {
+        showSuggestionStrip(suggestedWords);
+        if (hasSuggestionStripView()) {
+            mSuggestionStripView.traceNextLayout(keyStrokeSequenceNumber);
+        }
+    }
+
     // Called from {@link SuggestionStripView} through the {@link SuggestionStripView#Listener}
     // interface
     @Override
@@ -1981,6 +2090,14 @@ public class LatinIME extends InputMethodService implements KeyboardActionListen
         final SettingsValues settingsValues = mSettings.getCurrent();
         p.println(settingsValues.dump());
         p.println(mDictionaryFacilitator.dump(this /* context */));
+        p.println("  " + mInputLogic.getTailBatchInputLatency());
+        p.println("  " + EmojiPalettesView.getFirstFrameLatency());
+        p.println("  " + mInputLogic.mConnection.getTextReadIpcStats());
+        p.println("  " + mInputLogic.getComposingWordContextStats());
+        p.println("  " + mInputLogic.getSuggestionsForTypingStats());
+        p.println("  " + SuggestionStripUpdateScheduler.getInstance().getStats());
+        p.println("  " + mInputLogic.mConnection.getCapsModeStats());
+        InputLatencyTracer.getInstance().dump(p);
         // TODO: Dump all settings values
     }
 
@@ -67,6 +67,11 @@ public final class ReadOnlyBinaryDictionary extends Dictionary {
         return null;
     }
 
+    @Override
+    public void setSuggestionsCancelled(final int sessionId, final boolean isCancelled) {
+        mBinaryDictionary.setSuggestionsCancelled(sessionId, isCancelled);
+    }
+
     @Override
     public boolean isInDictionary(final String word) {
         if (mLock.readLock().tryLock()) {
@@ -32,6 +32,7 @@ import android.view.inputmethod.ExtractedTextRequest;
 import android.view.inputmethod.InputConnection;
 import android.view.inputmethod.InputMethodManager;
 
+import com.android.inputmethod.annotations.UsedForTesting;
 import com.android.inputmethod.compat.InputConnectionCompatUtils;
 import com.android.inputmethod.latin.common.Constants;
 import com.android.inputmethod.latin.common.UnicodeSurrogate;
@@ -46,7 +47,9 @@ import com.android.inputmethod.latin.utils.SpannableStringUtils;
 import com.android.inputmethod.latin.utils.StatsUtils;
 import com.android.inputmethod.latin.utils.TextRange;
 
+import java.util.Locale;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -66,6 +69,9 @@ public final class RichInputConnection implements PrivateCommandPerformer {
     private static final boolean DEBUG_BATCH_NESTING = false;
     private static final int NUM_CHARS_TO_GET_BEFORE_CURSOR = 40;
     private static final int NUM_CHARS_TO_GET_AFTER_CURSOR = 40;
+    // The text cache holds up to twice as many characters as a reload fetches, so that the cursor
+    // can move back over the text typed since the last reload without fetching it again.
+    private static final int TEXT_CACHE_CAPACITY = Constants.EDITOR_CONTENTS_CACHE_SIZE * 2;
     private static final int INVALID_CURSOR_POSITION = -1;
 
     /**
@@ -110,14 +116,23 @@ public final class RichInputConnection implements PrivateCommandPerformer {
      */
     private int mExpectedSelEnd = INVALID_CURSOR_POSITION; // in chars, not code points
     /**
-     * This contains the committed text immediately preceding the cursor and the composing
-     * text, if any. It is refreshed when the cursor moves by calling upon the TextView.
+     * This contains the committed text immediately preceding the cursor followed by the
+     * composing text, if any. It is edited along with the TextView, and it is refreshed when the
+     * cursor moves by calling upon the TextView.
      */
-    private final StringBuilder mCommittedTextBeforeComposingText = new StringBuilder();
+    private final TextWindow mTextBeforeCursor = new TextWindow(TEXT_CACHE_CAPACITY);
     /**
-     * This contains the currently composing text, as LatinIME thinks the TextView is seeing it.
+     * The length of the currently composing text at the end of {@link #mTextBeforeCursor}, as
+     * LatinIME thinks the TextView is seeing it.
      */
-    private final StringBuilder mComposingText = new StringBuilder();
+    private int mComposingTextLength;
+    /**
+     * The last caps mode computed for the committed text in {@link #mTextBeforeCursor}, and the
+     * number of times it was computed and reused.
+     */
+    private volatile CapsModeSnapshot mCapsModeSnapshot;
+    private final AtomicInteger mCapsModeComputationCount = new AtomicInteger();
+    private final AtomicInteger mCapsModeReuseCount = new AtomicInteger();
 
     /**
      * This variable is a temporary object used in {@link #commitText(CharSequence,int)}
@@ -134,6 +149,11 @@ public final class RichInputConnection implements PrivateCommandPerformer {
      */
     private long mLastSlowInputConnectionTime = -SLOW_INPUTCONNECTION_PERSIST_MS;
 
+    // The number of IPC calls made to read the text of the editor, and the number of words
+    // committed in the meantime.
+    private final AtomicInteger mTextReadIpcCount = new AtomicInteger();
+    private int mCommittedWordCount;
+
     public RichInputConnection(final InputMethodService parent) {
         mParent = parent;
         mIC = null;
@@ -166,8 +186,7 @@ public final class RichInputConnection implements PrivateCommandPerformer {
         final ExtractedText et = mIC.getExtractedText(r, 0);
         final CharSequence beforeCursor = getTextBeforeCursor(Constants.EDITOR_CONTENTS_CACHE_SIZE,
                 0);
-        final StringBuilder internal = new StringBuilder(mCommittedTextBeforeComposingText)
-                .append(mComposingText);
+        final StringBuilder internal = new StringBuilder(mTextBeforeCursor.toString());
         if (null == et || null == beforeCursor) return;
         final int actualLength = Math.min(beforeCursor.length(), internal.length());
         if (internal.length() > actualLength) {
@@ -233,7 +252,7 @@ public final class RichInputConnection implements PrivateCommandPerformer {
             final int newSelEnd, final boolean shouldFinishComposition) {
         mExpectedSelStart = newSelStart;
         mExpectedSelEnd = newSelEnd;
-        mComposingText.setLength(0);
+        mComposingTextLength = 0;
         final boolean didReloadTextSuccessfully = reloadTextCache();
         if (!didReloadTextSuccessfully) {
             Log.d(TAG, "Will try to retrieve text later.");
@@ -251,7 +270,10 @@ public final class RichInputConnection implements PrivateCommandPerformer {
      * @return true if successful
      */
     private boolean reloadTextCache() {
-        mCommittedTextBeforeComposingText.setLength(0);
+        // The composing text is kept after the reloaded text.
+        final CharSequence composingText = getComposingText();
+        mTextBeforeCursor.clear();
+        mComposingTextLength = 0;
         mIC = mParent.getCurrentInputConnection();
         // Call upon the inputconnection directly since our own method is using the cache, and
         // we want to refresh it.
@@ -266,12 +288,55 @@ public final class RichInputConnection implements PrivateCommandPerformer {
             mExpectedSelStart = INVALID_CURSOR_POSITION;
             mExpectedSelEnd = INVALID_CURSOR_POSITION;
             Log.e(TAG, "Unable to connect to the editor to retrieve text.");
+            mTextBeforeCursor.append(composingText);
+            mComposingTextLength = composingText.length();
             return false;
         }
-        mCommittedTextBeforeComposingText.append(textBeforeCursor);
+        mTextBeforeCursor.append(textBeforeCursor);
+        mTextBeforeCursor.append(composingText);
+        mComposingTextLength = composingText.length();
         return true;
     }
 
+    private int getCommittedTextLength() {
+        return Math.max(mTextBeforeCursor.length() - mComposingTextLength, 0);
+    }
+
+    /**
+     * Returns a read-only view of the committed text immediately preceding the composing text.
+     */
+    private CharSequence getCommittedTextBeforeComposingText() {
+        return mTextBeforeCursor.view(0, getCommittedTextLength());
+    }
+
+    private CharSequence getComposingText() {
+        final int length = mTextBeforeCursor.length();
+        return mTextBeforeCursor.view(Math.max(length - mComposingTextLength, 0), length);
+    }
+
+    /**
+     * Appends text to the committed text, before the composing text.
+     */
+    private void appendToCommittedText(final CharSequence text) {
+        if (0 == mComposingTextLength) {
+            mTextBeforeCursor.append(text);
+            return;
+        }
+        final CharSequence composingText = getComposingText();
+        mTextBeforeCursor.truncate(getCommittedTextLength());
+        mTextBeforeCursor.append(text);
+        mTextBeforeCursor.append(composingText);
+    }
+
+    /**
+     * Replaces the composing text.
+     */
+    private void replaceComposingText(final CharSequence text, final boolean isComposing) {
+        mTextBeforeCursor.truncate(getCommittedTextLength());
+        mTextBeforeCursor.append(text);
+        mComposingTextLength = isComposing ? text.length() : 0;
+    }
+
     private void checkBatchEdit() {
         if (mNestLevel != 1) {
             // TODO: exception instead
@@ -286,8 +351,7 @@ public final class RichInputConnection implements PrivateCommandPerformer {
         // TODO: this is not correct! The cursor is not necessarily after the composing text.
         // In the practice right now this is only called when input ends so it will be reset so
         // it works, but it's wrong and should be fixed.
-        mCommittedTextBeforeComposingText.append(mComposingText);
-        mComposingText.setLength(0);
+        mComposingTextLength = 0;
         if (isConnected()) {
             mIC.finishComposingText();
         }
@@ -302,13 +366,12 @@ public final class RichInputConnection implements PrivateCommandPerformer {
     public void commitText(final CharSequence text, final int newCursorPosition) {
         if (DEBUG_BATCH_NESTING) checkBatchEdit();
         if (DEBUG_PREVIOUS_TEXT) checkConsistencyForDebug();
-        mCommittedTextBeforeComposingText.append(text);
         // TODO: the following is exceedingly error-prone. Right now when the cursor is in the
-        // middle of the composing word mComposingText only holds the part of the composing text
+        // middle of the composing word the cache only holds the part of the composing text
         // that is before the cursor, so this actually works, but it's terribly confusing. Fix this.
-        mExpectedSelStart += text.length() - mComposingText.length();
+        mExpectedSelStart += text.length() - mComposingTextLength;
         mExpectedSelEnd = mExpectedSelStart;
-        mComposingText.setLength(0);
+        replaceComposingText(text, false /* isComposing */);
         if (isConnected()) {
             mTempObjectForCommitText.clear();
             mTempObjectForCommitText.append(text);
@@ -337,7 +400,11 @@ public final class RichInputConnection implements PrivateCommandPerformer {
 
     @Nullable
     public CharSequence getSelectedText(final int flags) {
-        return isConnected() ?  mIC.getSelectedText(flags) : null;
+        if (!isConnected()) {
+            return null;
+        }
+        mTextReadIpcCount.incrementAndGet();
+        return mIC.getSelectedText(flags);
     }
 
     public boolean canDeleteCharacters() {
@@ -365,7 +432,7 @@ public final class RichInputConnection implements PrivateCommandPerformer {
         if (!isConnected()) {
             return Constants.TextUtils.CAP_MODE_OFF;
         }
-        if (!TextUtils.isEmpty(mComposingText)) {
+        if (0 != mComposingTextLength) {
             if (hasSpaceBefore) {
                 // If we have some composing text and a space before, then we should have
                 // MODE_CHARACTERS and MODE_WORDS on.
@@ -379,29 +446,69 @@ public final class RichInputConnection implements PrivateCommandPerformer {
         // heavy pressing of delete, for example DEFAULT_TEXT_CACHE_SIZE - 5 times or so.
         // getCapsMode should be updated to be able to return a "not enough info" result so that
         // we can get more context only when needed.
-        if (TextUtils.isEmpty(mCommittedTextBeforeComposingText) && 0 != mExpectedSelStart) {
+        if (0 == getCommittedTextLength() && 0 != mExpectedSelStart) {
             if (!reloadTextCache()) {
                 Log.w(TAG, "Unable to connect to the editor. "
                         + "Setting caps mode without knowing text.");
             }
         }
+        // The caps mode is asked for several times per key press, so it's only computed again
+        // when the text before the cursor has changed.
+        final int modificationCount = mTextBeforeCursor.getModificationCount();
+        final CapsModeSnapshot snapshot = mCapsModeSnapshot;
+        if (null != snapshot && snapshot.isFor(modificationCount, inputType,
+                spacingAndPunctuations, hasSpaceBefore)) {
+            mCapsModeReuseCount.incrementAndGet();
+            return snapshot.mCapsMode;
+        }
         // This never calls InputConnection#getCapsMode - in fact, it's a static method that
         // never blocks or initiates IPC.
-        // TODO: don't call #toString() here. Instead, all accesses to
-        // mCommittedTextBeforeComposingText should be done on the main thread.
-        return CapsModeUtils.getCapsMode(mCommittedTextBeforeComposingText.toString(), inputType,
-                spacingAndPunctuations, hasSpaceBefore);
+        final int capsMode = CapsModeUtils.getCapsMode(getCommittedTextBeforeComposingText(),
+                inputType, spacingAndPunctuations, hasSpaceBefore);
+        mCapsModeComputationCount.incrementAndGet();
+        mCapsModeSnapshot = new CapsModeSnapshot(modificationCount, inputType,
+                spacingAndPunctuations, hasSpaceBefore, capsMode);
+        return capsMode;
+    }
+
+    /**
+     * The caps mode computed for a state of the committed text before the cursor.
+     */
+    private static final class CapsModeSnapshot {
+        private final int mModificationCount;
+        private final int mInputType;
+        private final SpacingAndPunctuations mSpacingAndPunctuations;
+        private final boolean mHasSpaceBefore;
+        public final int mCapsMode;
+
+        public CapsModeSnapshot(final int modificationCount, final int inputType,
+                final SpacingAndPunctuations spacingAndPunctuations, final boolean hasSpaceBefore,
+                final int capsMode) {
+            mModificationCount = modificationCount;
+            mInputType = inputType;
+            mSpacingAndPunctuations = spacingAndPunctuations;
+            mHasSpaceBefore = hasSpaceBefore;
+            mCapsMode = capsMode;
+        }
+
+        public boolean isFor(final int modificationCount, final int inputType,
+                final SpacingAndPunctuations spacingAndPunctuations,
+                final boolean hasSpaceBefore) {
+            return mModificationCount == modificationCount && mInputType == inputType
+                    && mSpacingAndPunctuations == spacingAndPunctuations
+                    && mHasSpaceBefore == hasSpaceBefore;
+        }
     }
 
     public int getCodePointBeforeCursor() {
-        final int length = mCommittedTextBeforeComposingText.length();
+        final CharSequence committedText = getCommittedTextBeforeComposingText();
+        final int length = committedText.length();
         if (length < 1) return Constants.NOT_A_CODE;
-        return Character.codePointBefore(mCommittedTextBeforeComposingText, length);
+        return Character.codePointBefore(committedText, length);
     }
 
     public CharSequence getTextBeforeCursor(final int n, final int flags) {
-        final int cachedLength =
-                mCommittedTextBeforeComposingText.length() + mComposingText.length();
+        final int cachedLength = mTextBeforeCursor.length();
         // If we have enough characters to satisfy the request, or if we have all characters in
         // the text field, then we can return the cached version right away.
         // However, if we don't have an expected cursor position, then we should always
@@ -409,19 +516,9 @@ public final class RichInputConnection implements PrivateCommandPerformer {
         // test for this explicitly)
         if (INVALID_CURSOR_POSITION != mExpectedSelStart
                 && (cachedLength >= n || cachedLength >= mExpectedSelStart)) {
-            final StringBuilder s = new StringBuilder(mCommittedTextBeforeComposingText);
-            // We call #toString() here to create a temporary object.
-            // In some situations, this method is called on a worker thread, and it's possible
-            // the main thread touches the contents of mComposingText while this worker thread
-            // is suspended, because mComposingText is a StringBuilder. This may lead to crashes,
-            // so we call #toString() on it. That will result in the return value being strictly
-            // speaking wrong, but since this is used for basing bigram probability off, and
-            // it's only going to matter for one getSuggestions call, it's fine in the practice.
-            s.append(mComposingText.toString());
-            if (s.length() > n) {
-                s.delete(0, s.length() - n);
-            }
-            return s;
+            // In some situations, this method is called on a worker thread. The view doesn't copy
+            // the text, and it keeps showing it even if the main thread edits the cache.
+            return mTextBeforeCursor.tail(n);
         }
         return getTextBeforeCursorAndDetectLaggyConnection(
                 OPERATION_GET_TEXT_BEFORE_CURSOR,
@@ -435,6 +532,7 @@ public final class RichInputConnection implements PrivateCommandPerformer {
         if (!isConnected()) {
             return null;
         }
+        mTextReadIpcCount.incrementAndGet();
         final long startTime = SystemClock.uptimeMillis();
         final CharSequence result = mIC.getTextBeforeCursor(n, flags);
         detectLaggyConnection(operation, timeout, startTime);
@@ -454,6 +552,7 @@ public final class RichInputConnection implements PrivateCommandPerformer {
         if (!isConnected()) {
             return null;
         }
+        mTextReadIpcCount.incrementAndGet();
         final long startTime = SystemClock.uptimeMillis();
         final CharSequence result = mIC.getTextAfterCursor(n, flags);
         detectLaggyConnection(operation, timeout, startTime);
@@ -475,16 +574,9 @@ public final class RichInputConnection implements PrivateCommandPerformer {
         // TODO: the following is incorrect if the cursor is not immediately after the composition.
         // Right now we never come here in this case because we reset the composing state before we
         // come here in this case, but we need to fix this.
-        final int remainingChars = mComposingText.length() - beforeLength;
-        if (remainingChars >= 0) {
-            mComposingText.setLength(remainingChars);
-        } else {
-            mComposingText.setLength(0);
-            // Never cut under 0
-            final int len = Math.max(mCommittedTextBeforeComposingText.length()
-                    + remainingChars, 0);
-            mCommittedTextBeforeComposingText.setLength(len);
-        }
+        // Never cut under 0
+        mComposingTextLength = Math.max(mComposingTextLength - beforeLength, 0);
+        mTextBeforeCursor.truncate(mTextBeforeCursor.length() - beforeLength);
         if (mExpectedSelStart > beforeLength) {
             mExpectedSelStart -= beforeLength;
             mExpectedSelEnd -= beforeLength;
@@ -519,20 +611,15 @@ public final class RichInputConnection implements PrivateCommandPerformer {
             // mistakenly catch them to do some stuff.
             switch (keyEvent.getKeyCode()) {
             case KeyEvent.KEYCODE_ENTER:
-                mCommittedTextBeforeComposingText.append("\n");
+                appendToCommittedText("\n");
                 mExpectedSelStart += 1;
                 mExpectedSelEnd = mExpectedSelStart;
                 break;
             case KeyEvent.KEYCODE_DEL:
-                if (0 == mComposingText.length()) {
-                    if (mCommittedTextBeforeComposingText.length() > 0) {
-                        mCommittedTextBeforeComposingText.delete(
-                                mCommittedTextBeforeComposingText.length() - 1,
-                                mCommittedTextBeforeComposingText.length());
-                    }
-                } else {
-                    mComposingText.delete(mComposingText.length() - 1, mComposingText.length());
-                }
+                // This removes the last character of the composing text if any, or else of the
+                // committed text.
+                mComposingTextLength = Math.max(mComposingTextLength - 1, 0);
+                mTextBeforeCursor.truncate(mTextBeforeCursor.length() - 1);
                 if (mExpectedSelStart > 0 && mExpectedSelStart == mExpectedSelEnd) {
                     // TODO: Handle surrogate pairs.
                     mExpectedSelStart -= 1;
@@ -541,14 +628,14 @@ public final class RichInputConnection implements PrivateCommandPerformer {
                 break;
             case KeyEvent.KEYCODE_UNKNOWN:
                 if (null != keyEvent.getCharacters()) {
-                    mCommittedTextBeforeComposingText.append(keyEvent.getCharacters());
+                    appendToCommittedText(keyEvent.getCharacters());
                     mExpectedSelStart += keyEvent.getCharacters().length();
                     mExpectedSelEnd = mExpectedSelStart;
                 }
                 break;
             default:
                 final String text = StringUtils.newSingleCodePointString(keyEvent.getUnicodeChar());
-                mCommittedTextBeforeComposingText.append(text);
+                appendToCommittedText(text);
                 mExpectedSelStart += text.length();
                 mExpectedSelEnd = mExpectedSelStart;
                 break;
@@ -564,7 +651,8 @@ public final class RichInputConnection implements PrivateCommandPerformer {
         if (DEBUG_PREVIOUS_TEXT) checkConsistencyForDebug();
         final CharSequence textBeforeCursor =
                 getTextBeforeCursor(Constants.EDITOR_CONTENTS_CACHE_SIZE + (end - start), 0);
-        mCommittedTextBeforeComposingText.setLength(0);
+        mTextBeforeCursor.clear();
+        mComposingTextLength = 0;
         if (!TextUtils.isEmpty(textBeforeCursor)) {
             // The cursor is not necessarily at the end of the composing text, but we have its
             // position in mExpectedSelStart and mExpectedSelEnd. In this case we want the start
@@ -572,10 +660,8 @@ public final class RichInputConnection implements PrivateCommandPerformer {
             // text starts (mExpectedSelStart - start) characters before the end of textBeforeCursor
             final int indexOfStartOfComposingText =
                     Math.max(textBeforeCursor.length() - (mExpectedSelStart - start), 0);
-            mComposingText.append(textBeforeCursor.subSequence(indexOfStartOfComposingText,
-                    textBeforeCursor.length()));
-            mCommittedTextBeforeComposingText.append(
-                    textBeforeCursor.subSequence(0, indexOfStartOfComposingText));
+            mTextBeforeCursor.append(textBeforeCursor);
+            mComposingTextLength = textBeforeCursor.length() - indexOfStartOfComposingText;
         }
         if (isConnected()) {
             mIC.setComposingRegion(start, end);
@@ -585,10 +671,9 @@ public final class RichInputConnection implements PrivateCommandPerformer {
     public void setComposingText(final CharSequence text, final int newCursorPosition) {
         if (DEBUG_BATCH_NESTING) checkBatchEdit();
         if (DEBUG_PREVIOUS_TEXT) checkConsistencyForDebug();
-        mExpectedSelStart += text.length() - mComposingText.length();
+        mExpectedSelStart += text.length() - mComposingTextLength;
         mExpectedSelEnd = mExpectedSelStart;
-        mComposingText.setLength(0);
-        mComposingText.append(text);
+        replaceComposingText(text, true /* isComposing */);
         // TODO: support values of newCursorPosition != 1. At this time, this is never called with
         // newCursorPosition != 1.
         if (isConnected()) {
@@ -614,6 +699,7 @@ public final class RichInputConnection implements PrivateCommandPerformer {
         if (start < 0 || end < 0) {
             return false;
         }
+        final int oldSelStart = mExpectedSelStart;
         mExpectedSelStart = start;
         mExpectedSelEnd = end;
         if (isConnected()) {
@@ -622,6 +708,15 @@ public final class RichInputConnection implements PrivateCommandPerformer {
                 return false;
             }
         }
+        // The text doesn't change when we move the cursor ourselves, so when the cursor moves
+        // back, the text before it is the start of the cached text. It only needs to be fetched
+        // again if too little of it would remain.
+        final int remainingLength = mTextBeforeCursor.length() - (oldSelStart - start);
+        if (oldSelStart >= 0 && start <= oldSelStart && 0 == mComposingTextLength
+                && remainingLength >= Math.min(start, NUM_CHARS_TO_GET_BEFORE_CURSOR)) {
+            mTextBeforeCursor.truncate(remainingLength);
+            return true;
+        }
         return reloadTextCache();
     }
 
@@ -642,10 +737,9 @@ public final class RichInputConnection implements PrivateCommandPerformer {
         CharSequence text = completionInfo.getText();
         // text should never be null, but just in case, it's better to insert nothing than to crash
         if (null == text) text = "";
-        mCommittedTextBeforeComposingText.append(text);
-        mExpectedSelStart += text.length() - mComposingText.length();
+        mExpectedSelStart += text.length() - mComposingTextLength;
         mExpectedSelEnd = mExpectedSelStart;
-        mComposingText.setLength(0);
+        replaceComposingText(text, false /* isComposing */);
         if (isConnected()) {
             mIC.commitCompletion(completionInfo);
         }
@@ -665,11 +759,10 @@ public final class RichInputConnection implements PrivateCommandPerformer {
             final int checkLength = NUM_CHARS_TO_GET_BEFORE_CURSOR - 1;
             final String reference = prev.length() <= checkLength ? prev.toString()
                     : prev.subSequence(prev.length() - checkLength, prev.length()).toString();
-            // TODO: right now the following works because mComposingText holds the part of the
+            // TODO: right now the following works because the cache holds the part of the
             // composing text that is before the cursor, but this is very confusing. We should
             // fix it.
-            final StringBuilder internal = new StringBuilder()
-                    .append(mCommittedTextBeforeComposingText).append(mComposingText);
+            final StringBuilder internal = new StringBuilder(mTextBeforeCursor.toString());
             if (internal.length() > checkLength) {
                 internal.delete(0, internal.length() - checkLength);
                 if (!(reference.equals(internal.toString()))) {
@@ -762,15 +855,15 @@ public final class RichInputConnection implements PrivateCommandPerformer {
             // If what's after the cursor is a word character, then we're touching a word.
             return true;
         }
-        final String textBeforeCursor = mCommittedTextBeforeComposingText.toString();
+        final CharSequence textBeforeCursor = getCommittedTextBeforeComposingText();
         int indexOfCodePointInJavaChars = textBeforeCursor.length();
         int consideredCodePoint = 0 == indexOfCodePointInJavaChars ? Constants.NOT_A_CODE
-                : textBeforeCursor.codePointBefore(indexOfCodePointInJavaChars);
+                : Character.codePointBefore(textBeforeCursor, indexOfCodePointInJavaChars);
         // Search for the first non word-connector char
         if (spacingAndPunctuations.isWordConnector(consideredCodePoint)) {
             indexOfCodePointInJavaChars -= Character.charCount(consideredCodePoint);
             consideredCodePoint = 0 == indexOfCodePointInJavaChars ? Constants.NOT_A_CODE
-                    : textBeforeCursor.codePointBefore(indexOfCodePointInJavaChars);
+                    : Character.codePointBefore(textBeforeCursor, indexOfCodePointInJavaChars);
         }
         return !(Constants.NOT_A_CODE == consideredCodePoint
                 || spacingAndPunctuations.isWordSeparator(consideredCodePoint)
@@ -897,7 +990,7 @@ public final class RichInputConnection implements PrivateCommandPerformer {
      * does not matter too much in the practice.
      */
     public boolean textBeforeCursorLooksLikeURL() {
-        return StringUtils.lastPartLooksLikeURL(mCommittedTextBeforeComposingText);
+        return StringUtils.lastPartLooksLikeURL(getCommittedTextBeforeComposingText());
     }
 
     /**
@@ -908,7 +1001,8 @@ public final class RichInputConnection implements PrivateCommandPerformer {
      * long enough for this use.
      */
     public boolean isInsideDoubleQuoteOrAfterDigit() {
-        return StringUtils.isInsideDoubleQuoteOrAfterDigit(mCommittedTextBeforeComposingText);
+        return StringUtils.isInsideDoubleQuoteOrAfterDigit(
+                getCommittedTextBeforeComposingText());
     }
 
     /**
@@ -925,7 +1019,7 @@ public final class RichInputConnection implements PrivateCommandPerformer {
         mIC = mParent.getCurrentInputConnection();
         final CharSequence textBeforeCursor = getTextBeforeCursor(
                 Constants.EDITOR_CONTENTS_CACHE_SIZE, 0);
-        final CharSequence selectedText = isConnected() ? mIC.getSelectedText(0 /* flags */) : null;
+        final CharSequence selectedText = getSelectedText(0 /* flags */);
         if (null == textBeforeCursor ||
                 (!TextUtils.isEmpty(selectedText) && mExpectedSelEnd == mExpectedSelStart)) {
             // If textBeforeCursor is null, we have no idea what kind of text field we have or if
@@ -961,6 +1055,36 @@ public final class RichInputConnection implements PrivateCommandPerformer {
         }
     }
 
+    /**
+     * Notifies that a word has been committed, to report the number of IPC calls per word.
+     */
+    public void onWordCommitted() {
+        mCommittedWordCount++;
+    }
+
+    @UsedForTesting
+    public int getTextReadIpcCount() {
+        return mTextReadIpcCount.get();
+    }
+
+    public String getTextReadIpcStats() {
+        final int ipcCount = mTextReadIpcCount.get();
+        final String ipcCountPerWord = 0 == mCommittedWordCount ? "-"
+                : String.format(Locale.ROOT, "%.2f", (float)ipcCount / mCommittedWordCount);
+        return "Text read IPC calls: count=" + ipcCount + " words=" + mCommittedWordCount
+                + " perWord=" + ipcCountPerWord;
+    }
+
+    @UsedForTesting
+    public int getCapsModeComputationCount() {
+        return mCapsModeComputationCount.get();
+    }
+
+    public String getCapsModeStats() {
+        return "Cursor caps mode: computed=" + mCapsModeComputationCount.get()
+                + " reused=" + mCapsModeReuseCount.get();
+    }
+
     @Override
     public boolean performPrivateCommand(final String action, final Bundle data) {
         mIC = mParent.getCurrentInputConnection();
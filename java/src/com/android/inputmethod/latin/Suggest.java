@@ -46,9 +46,10 @@ public final class Suggest {
 
     // Session id for
     // {@link #getSuggestedWords(WordComposer,String,ProximityInfo,boolean,int)}.
-    // We are sharing the same ID between typing and gesture to save RAM footprint.
+    // Typing and gesture use different IDs because gestures are decoded on their own thread, and
+    // a gesture decoding may be canceled without affecting typing.
     public static final int SESSION_ID_TYPING = 0;
-    public static final int SESSION_ID_GESTURE = 0;
+    public static final int SESSION_ID_GESTURE = 1;
 
     // Close to -2**31
     private static final int SUPPRESS_SUGGEST_THRESHOLD = -2000000000;
@@ -95,6 +96,15 @@ public final class Suggest {
         public void onGetSuggestedWords(final SuggestedWords suggestedWords);
     }
 
+    /**
+     * Request the gesture decoding in progress to stop early, or allow gesture decoding again.
+     * This can be called from any thread.
+     * @param isCancelled true to cancel the gesture decoding in progress.
+     */
+    public void setBatchInputSuggestionsCancelled(final boolean isCancelled) {
+        mDictionaryFacilitator.setSuggestionsCancelled(SESSION_ID_GESTURE, isCancelled);
+    }
+
     public void getSuggestedWords(final WordComposer wordComposer,
             final NgramContext ngramContext, final Keyboard keyboard,
             final SettingsValuesForSuggestion settingsValuesForSuggestion,
@@ -0,0 +1,205 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.inputmethod.latin;
+
+import com.android.inputmethod.annotations.UsedForTesting;
+
+import javax.annotation.Nonnull;
+
+/**
+ * A window on the last characters of a text, backed by a ring buffer.
+ *
+ * The text is only edited at its end: characters are appended, or removed from the end. Once the
+ * window is full, appending characters drops the oldest ones, so no edit ever moves the
+ * characters around.
+ * The window hands out read-only views of its characters that don't copy them. A view keeps
+ * showing the characters it was created with: the first edit that would overwrite a character a
+ * view may be showing moves the window to a new buffer, and the view keeps the old one.
+ * This class is thread-safe, and so are the views.
+ */
+final class TextWindow {
+    // The characters at the absolute positions [mStart, mEnd) of the text appended so far are
+    // stored at the indices (position & mMask) of mBuffer.
+    private char[] mBuffer;
+    private final int mMask;
+    private long mStart;
+    private long mEnd;
+    // The absolute positions [mSharedStart, mSharedEnd) of mBuffer that views may be showing.
+    private long mSharedStart = Long.MAX_VALUE;
+    private long mSharedEnd = Long.MIN_VALUE;
+    private int mBufferCount = 1;
+    // Incremented each time the text of the window changes.
+    private int mModificationCount;
+
+    /**
+     * @param minCapacity the minimum number of characters the window holds.
+     */
+    public TextWindow(final int minCapacity) {
+        final int capacity = Integer.highestOneBit(Math.max(minCapacity, 1) * 2 - 1);
+        mBuffer = new char[capacity];
+        mMask = capacity - 1;
+    }
+
+    public synchronized int length() {
+        return (int)(mEnd - mStart);
+    }
+
+    public synchronized void clear() {
+        mStart = mEnd;
+        mModificationCount++;
+    }
+
+    public synchronized void append(@Nonnull final CharSequence text) {
+        final int capacity = mBuffer.length;
+        final int textLength = text.length();
+        // Only the last characters of a text that is longer than the window are kept.
+        final int textStart = Math.max(textLength - capacity, 0);
+        if (textStart >= textLength) {
+            return;
+        }
+        final long writeStart = mEnd;
+        final long writeEnd = mEnd + textLength - textStart;
+        if (writeStart < mSharedEnd || writeEnd - 1 - capacity >= mSharedStart) {
+            moveToNewBuffer();
+        }
+        for (int index = textStart; index < textLength; index++) {
+            mBuffer[(int)(mEnd & mMask)] = text.charAt(index);
+            mEnd++;
+        }
+        mStart = Math.max(mStart, mEnd - capacity);
+        mModificationCount++;
+    }
+
+    /**
+     * Removes characters from the end of the window.
+     * @param newLength the number of characters to keep. It is clamped to [0, length()].
+     */
+    public synchronized void truncate(final int newLength) {
+        final long end = mStart + Math.max(0, Math.min(newLength, length()));
+        if (end != mEnd) {
+            mEnd = end;
+            mModificationCount++;
+        }
+    }
+
+    /**
+     * Gets the number of times the text of the window has changed. Two states of the window with
+     * the same modification count have the same text.
+     */
+    public synchronized int getModificationCount() {
+        return mModificationCount;
+    }
+
+    /**
+     * Gets a read-only view of characters of the window.
+     * @param start the index of the first character, inclusive.
+     * @param end the index of the last character, exclusive.
+     */
+    @Nonnull
+    public synchronized CharSequence view(final int start, final int end) {
+        if (start < 0 || start > end || end > length()) {
+            throw new IndexOutOfBoundsException(
+                    "view(" + start + ", " + end + ") of length " + length());
+        }
+        final long viewStart = mStart + start;
+        final long viewEnd = mStart + end;
+        if (viewStart < viewEnd) {
+            mSharedStart = Math.min(mSharedStart, viewStart);
+            mSharedEnd = Math.max(mSharedEnd, viewEnd);
+        }
+        return new View(mBuffer, mMask, viewStart, end - start);
+    }
+
+    /**
+     * Gets a read-only view of the last characters of the window.
+     * @param n the maximum number of characters.
+     */
+    @Nonnull
+    public synchronized CharSequence tail(final int n) {
+        final int length = length();
+        return view(Math.max(length - Math.max(n, 0), 0), length);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return view(0, length()).toString();
+    }
+
+    private void moveToNewBuffer() {
+        final char[] buffer = new char[mBuffer.length];
+        for (long position = mStart; position < mEnd; position++) {
+            final int index = (int)(position & mMask);
+            buffer[index] = mBuffer[index];
+        }
+        mBuffer = buffer;
+        mSharedStart = Long.MAX_VALUE;
+        mSharedEnd = Long.MIN_VALUE;
+        mBufferCount++;
+    }
+
+    @UsedForTesting
+    synchronized int getBufferCount() {
+        return mBufferCount;
+    }
+
+    private static final class View implements CharSequence {
+        // The buffer is never written to again at the positions of the view.
+        private final char[] mBuffer;
+        private final int mMask;
+        private final long mStart;
+        private final int mLength;
+
+        View(final char[] buffer, final int mask, final long start, final int length) {
+            mBuffer = buffer;
+            mMask = mask;
+            mStart = start;
+            mLength = length;
+        }
+
+        @Override
+        public int length() {
+            return mLength;
+        }
+
+        @Override
+        public char charAt(final int index) {
+            if (index < 0 || index >= mLength) {
+                throw new IndexOutOfBoundsException("charAt(" + index + ") of length " + mLength);
+            }
+            return mBuffer[(int)((mStart + index) & mMask)];
+        }
+
+        @Override
+        public CharSequence subSequence(final int start, final int end) {
+            if (start < 0 || start > end || end > mLength) {
+                throw new IndexOutOfBoundsException(
+                        "subSequence(" + start + ", " + end + ") of length " + mLength);
+            }
+            return new View(mBuffer, mMask, mStart + start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            final int startIndex = (int)(mStart & mMask);
+            final int firstPartLength = Math.min(mLength, mBuffer.length - startIndex);
+            final StringBuilder sb = new StringBuilder(mLength);
+            sb.append(mBuffer, startIndex, firstPartLength);
+            sb.append(mBuffer, 0, mLength - firstPartLength);
+            return sb.toString();
+        }
+    }
+}
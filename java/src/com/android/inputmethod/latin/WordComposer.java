@@ -82,6 +82,10 @@ public final class WordComposer {
      */
     private boolean mIsOnlyFirstCharCapitalized;
 
+    // Incremented each time the composing word changes, so that the suggestions computed for a
+    // state of the word can be told apart from the ones of a later state.
+    private int mSequenceNumber;
+
     public WordComposer() {
         mCombinerChain = new CombinerChain("");
         mEvents = new ArrayList<>();
@@ -93,6 +97,38 @@ public final class WordComposer {
         refreshTypedWordCache();
     }
 
+    /**
+     * Copies a composer, so that suggestions can be computed for the word on another thread while
+     * the original composer keeps being edited.
+     * The combining state isn't copied: the copy only holds the word as it is displayed.
+     * @param source the composer to copy.
+     */
+    public WordComposer(@Nonnull final WordComposer source) {
+        mCombinerChain = new CombinerChain(source.mTypedWordCache.toString());
+        mCombiningSpec = source.mCombiningSpec;
+        mEvents = new ArrayList<>(source.mEvents);
+        mInputPointers.copy(source.mInputPointers);
+        mAutoCorrection = source.mAutoCorrection;
+        mIsResumed = source.mIsResumed;
+        mIsBatchMode = source.mIsBatchMode;
+        mRejectedBatchModeSuggestion = source.mRejectedBatchModeSuggestion;
+        mCapsCount = source.mCapsCount;
+        mDigitsCount = source.mDigitsCount;
+        mCapitalizedMode = source.mCapitalizedMode;
+        mCursorPositionWithinWord = source.mCursorPositionWithinWord;
+        mIsOnlyFirstCharCapitalized = source.mIsOnlyFirstCharCapitalized;
+        mSequenceNumber = source.mSequenceNumber;
+        refreshTypedWordCache();
+    }
+
+    /**
+     * Gets the sequence number of the current state of the composing word. It changes each time
+     * the word, its caps mode or the cursor position within it changes.
+     */
+    public int getSequenceNumber() {
+        return mSequenceNumber;
+    }
+
     public ComposedData getComposedDataSnapshot() {
         return new ComposedData(getInputPointers(), isBatchMode(), mTypedWordCache.toString());
     }
@@ -107,6 +143,7 @@ public final class WordComposer {
             mCombinerChain = new CombinerChain(
                     mCombinerChain.getComposingWordWithCombiningFeedback().toString());
             mCombiningSpec = nonNullCombiningSpec;
+            mSequenceNumber++;
         }
     }
 
@@ -125,6 +162,7 @@ public final class WordComposer {
         mCursorPositionWithinWord = 0;
         mRejectedBatchModeSuggestion = null;
         refreshTypedWordCache();
+        mSequenceNumber++;
     }
 
     private final void refreshTypedWordCache() {
@@ -164,6 +202,7 @@ public final class WordComposer {
         // so we need to update our cache.
         refreshTypedWordCache();
         mEvents.add(event);
+        mSequenceNumber++;
         return processedEvent;
     }
 
@@ -207,10 +246,12 @@ public final class WordComposer {
             if (Character.isDigit(primaryCode)) mDigitsCount++;
         }
         mAutoCorrection = null;
+        mSequenceNumber++;
     }
 
     public void setCursorPositionWithinWord(final int posWithinWord) {
         mCursorPositionWithinWord = posWithinWord;
+        mSequenceNumber++;
         // TODO: compute where that puts us inside the events
     }
 
@@ -259,12 +300,14 @@ public final class WordComposer {
         mCursorPositionWithinWord = cursorPos;
         mCombinerChain.applyProcessedEvent(mCombinerChain.processEvent(
                 mEvents, Event.createCursorMovedEvent(cursorPos)));
+        mSequenceNumber++;
         return true;
     }
 
     public void setBatchInputPointers(final InputPointers batchPointers) {
         mInputPointers.set(batchPointers);
         mIsBatchMode = true;
+        mSequenceNumber++;
     }
 
     public void setBatchInputWord(final String word) {
@@ -298,6 +341,7 @@ public final class WordComposer {
             applyProcessedEvent(processedEvent);
         }
         mIsResumed = true;
+        mSequenceNumber++;
     }
 
     /**
@@ -367,6 +411,7 @@ public final class WordComposer {
      */
     public void setCapitalizedModeAtStartComposingTime(final int mode) {
         mCapitalizedMode = mode;
+        mSequenceNumber++;
     }
 
     /**
@@ -441,6 +486,7 @@ public final class WordComposer {
         mCursorPositionWithinWord = 0;
         mIsResumed = false;
         mRejectedBatchModeSuggestion = null;
+        mSequenceNumber++;
         return lastComposedWord;
     }
 
@@ -455,6 +501,7 @@ public final class WordComposer {
         mCursorPositionWithinWord = mCodePointSize;
         mRejectedBatchModeSuggestion = null;
         mIsResumed = true;
+        mSequenceNumber++;
     }
 
     public boolean isBatchMode() {
@@ -463,6 +510,7 @@ public final class WordComposer {
 
     public void setRejectedBatchModeSuggestion(final String rejectedSuggestion) {
         mRejectedBatchModeSuggestion = rejectedSuggestion;
+        mSequenceNumber++;
     }
 
     public String getRejectedBatchModeSuggestion() {
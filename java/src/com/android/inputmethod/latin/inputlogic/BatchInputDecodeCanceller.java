@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.inputmethod.latin.inputlogic;
+
+import com.android.inputmethod.annotations.UsedForTesting;
+
+/**
+ * Cancels the intermediate update of a batch input being decoded, and only that decode.
+ *
+ * All the decodes of batch inputs share the cancellation flag of the gesture traverse session.
+ * The flag is only set while the intermediate update to cancel is being decoded and no other
+ * decode uses the session, and it is cleared as soon as that update ends. So the end of a batch
+ * input, that is decoded right after the update it superseded, never starts with the flag set.
+ * This class is thread-safe: the decodes run on the gesture decoder thread and on the Non-UI
+ * handler thread, while the cancellations come from the UI thread.
+ */
+final class BatchInputDecodeCanceller {
+    public interface Listener {
+        /**
+         * Sets the cancellation flag of the gesture traverse session.
+         * @param isCancelled true to cancel the decode in progress.
+         */
+        void setBatchInputSuggestionsCancelled(final boolean isCancelled);
+    }
+
+    public static final int NOT_A_DECODE_ID = 0;
+
+    private final Listener mListener;
+    private int mLastDecodeId = NOT_A_DECODE_ID;
+    // The id of the intermediate update being decoded, if any.
+    private int mUpdateInFlightId = NOT_A_DECODE_ID;
+    // The number of other decodes in progress.
+    private int mOtherDecodeCount;
+    private boolean mIsCancelled;
+
+    public BatchInputDecodeCanceller(final Listener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * Records the start of a decode, and clears the cancellation flag for it.
+     * @param isIntermediateUpdate true if this is an intermediate update of a batch input, that
+     * may be cancelled by {@link #cancelUpdateInFlight()}.
+     * @return the id of the decode, to pass to {@link #onDecodeFinished(int)}.
+     */
+    public synchronized int onDecodeStarted(final boolean isIntermediateUpdate) {
+        mLastDecodeId++;
+        if (mLastDecodeId == NOT_A_DECODE_ID) {
+            mLastDecodeId++;
+        }
+        if (isIntermediateUpdate) {
+            mUpdateInFlightId = mLastDecodeId;
+        } else {
+            mOtherDecodeCount++;
+        }
+        // A decode that starts while the intermediate update is cancelled lets it run to its
+        // end, as its result will be dropped anyway.
+        setCancelled(false);
+        return mLastDecodeId;
+    }
+
+    /**
+     * Records the end of a decode. The cancellation of an intermediate update ends with it.
+     * @param decodeId the id returned by {@link #onDecodeStarted(boolean)}.
+     */
+    public synchronized void onDecodeFinished(final int decodeId) {
+        if (decodeId == mUpdateInFlightId) {
+            mUpdateInFlightId = NOT_A_DECODE_ID;
+            setCancelled(false);
+        } else if (mOtherDecodeCount > 0) {
+            mOtherDecodeCount--;
+        }
+    }
+
+    /**
+     * Cancels the intermediate update being decoded, if any, because it has been superseded.
+     * @return whether an update was cancelled.
+     */
+    public synchronized boolean cancelUpdateInFlight() {
+        if (mUpdateInFlightId == NOT_A_DECODE_ID || mOtherDecodeCount > 0) {
+            return false;
+        }
+        setCancelled(true);
+        return true;
+    }
+
+    private void setCancelled(final boolean isCancelled) {
+        if (mIsCancelled != isCancelled) {
+            mIsCancelled = isCancelled;
+            mListener.setBatchInputSuggestionsCancelled(isCancelled);
+        }
+    }
+
+    @UsedForTesting
+    synchronized boolean isCancelled() {
+        return mIsCancelled;
+    }
+}
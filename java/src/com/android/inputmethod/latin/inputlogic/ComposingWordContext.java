@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.inputmethod.latin.inputlogic;
+
+import com.android.inputmethod.annotations.UsedForTesting;
+import com.android.inputmethod.latin.NgramContext;
+import com.android.inputmethod.latin.RichInputConnection;
+import com.android.inputmethod.latin.settings.SpacingAndPunctuations;
+
+import javax.annotation.Nonnull;
+
+/**
+ * The n-gram context of the word being composed.
+ *
+ * While a word is being composed, only the composing text changes: the words before it stay the
+ * same until a separator, a cursor move or a commit ends the word. So the n-gram context of the
+ * word is computed the first time it's needed after the word starts, and reused until it's
+ * invalidated.
+ * This class is thread-safe: suggestions are computed on the input logic handler thread, while
+ * the word is edited on the UI thread.
+ */
+final class ComposingWordContext {
+    private NgramContext mNgramContext;
+    private SpacingAndPunctuations mSpacingAndPunctuations;
+    // Incremented by each invalidation, so that a context computed concurrently with an
+    // invalidation isn't kept.
+    private int mGeneration;
+    private int mComputationCount;
+    private int mReuseCount;
+
+    /**
+     * Gets the n-gram context of the word being composed, that is the context from the 2nd
+     * previous word before the cursor.
+     * @param connection the connection to the editor, to compute the context if needed.
+     * @param spacingAndPunctuations the current spacing and punctuations settings.
+     * @return the n-gram context of the word being composed.
+     */
+    @Nonnull
+    public NgramContext getNgramContext(@Nonnull final RichInputConnection connection,
+            @Nonnull final SpacingAndPunctuations spacingAndPunctuations) {
+        final int generation;
+        synchronized (this) {
+            if (null != mNgramContext && spacingAndPunctuations == mSpacingAndPunctuations) {
+                mReuseCount++;
+                return mNgramContext;
+            }
+            generation = mGeneration;
+        }
+        // The context isn't computed with the lock held, as this may need to read the text of
+        // the editor.
+        final NgramContext ngramContext = connection.getNgramContextFromNthPreviousWord(
+                spacingAndPunctuations, 2);
+        synchronized (this) {
+            mComputationCount++;
+            if (generation == mGeneration) {
+                mNgramContext = ngramContext;
+                mSpacingAndPunctuations = spacingAndPunctuations;
+            }
+        }
+        return ngramContext;
+    }
+
+    /**
+     * Forgets the context. Call this when a word starts or ends.
+     */
+    public synchronized void invalidate() {
+        mNgramContext = null;
+        mSpacingAndPunctuations = null;
+        mGeneration++;
+    }
+
+    @UsedForTesting
+    synchronized int getComputationCount() {
+        return mComputationCount;
+    }
+
+    @Nonnull
+    public synchronized String getStats() {
+        return "Composing word n-gram context: computed=" + mComputationCount
+                + " reused=" + mReuseCount;
+    }
+}
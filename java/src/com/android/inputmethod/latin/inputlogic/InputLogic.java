@@ -49,12 +49,15 @@ import com.android.inputmethod.latin.common.Constants;
 import com.android.inputmethod.latin.common.InputPointers;
 import com.android.inputmethod.latin.common.StringUtils;
 import com.android.inputmethod.latin.define.DebugFlags;
+import com.android.inputmethod.latin.inputlogic.InputLogicHandler.OnGetSuggestedWordsForTypingCallback;
 import com.android.inputmethod.latin.settings.SettingsValues;
 import com.android.inputmethod.latin.settings.SettingsValuesForSuggestion;
 import com.android.inputmethod.latin.settings.SpacingAndPunctuations;
 import com.android.inputmethod.latin.suggestions.SuggestionStripViewAccessor;
 import com.android.inputmethod.latin.utils.AsyncResultHolder;
+import com.android.inputmethod.latin.utils.InputLatencyTracer;
 import com.android.inputmethod.latin.utils.InputTypeUtils;
+import com.android.inputmethod.latin.utils.LatencyHistogram;
 import com.android.inputmethod.latin.utils.RecapitalizeStatus;
 import com.android.inputmethod.latin.utils.StatsUtils;
 import com.android.inputmethod.latin.utils.TextRange;
@@ -92,6 +95,13 @@ public final class InputLogic {
     /* package */ final WordComposer mWordComposer;
     public final RichInputConnection mConnection;
     private final RecapitalizeStatus mRecapitalizeStatus = new RecapitalizeStatus();
+    private final ComposingWordContext mComposingWordContext = new ComposingWordContext();
+    // The sequence number of the composer state for which suggestions were last requested
+    // without waiting for them, until they come back. Accessed only on the UI thread.
+    private int mSuggestionsForTypingSequenceNumber = SuggestedWords.NOT_A_SEQUENCE_NUMBER;
+    private int mShownSuggestionsForTypingCount;
+    private int mStaleSuggestionsForTypingCount;
+    private int mWaitedSuggestionsForTypingCount;
 
     private int mDeleteCount;
     private long mLastKeyTime;
@@ -163,6 +173,7 @@ public final class InputLogic {
         } else {
             mInputLogicHandler.reset();
         }
+        mSuggestionsForTypingSequenceNumber = SuggestedWords.NOT_A_SEQUENCE_NUMBER;
 
         if (settingsValues.mShouldShowLxxSuggestionUi) {
             mConnection.requestCursorUpdates(true /* enableMonitor */,
@@ -208,6 +219,7 @@ public final class InputLogic {
         }
         resetComposingState(true /* alsoResetLastComposedWord */);
         mInputLogicHandler.reset();
+        mSuggestionsForTypingSequenceNumber = SuggestedWords.NOT_A_SEQUENCE_NUMBER;
     }
 
     // Normally this class just gets out of scope after the process ends, but in unit tests, we
@@ -567,6 +579,30 @@ public final class InputLogic {
         ++mAutoCommitSequenceNumber;
     }
 
+    /**
+     * Get the histogram of the latencies from the end of a batch input to showing its result.
+     */
+    public LatencyHistogram getTailBatchInputLatency() {
+        return mInputLogicHandler.getTailBatchInputLatency();
+    }
+
+    /**
+     * Get the number of times the n-gram context of the composing words was computed and reused.
+     */
+    public String getComposingWordContextStats() {
+        return mComposingWordContext.getStats();
+    }
+
+    /**
+     * Get the number of suggestions for typing that were shown, dropped because the word had
+     * changed, and waited for to auto-correct.
+     */
+    public String getSuggestionsForTypingStats() {
+        return "Suggestions for typing: shown=" + mShownSuggestionsForTypingCount
+                + " stale=" + mStaleSuggestionsForTypingCount
+                + " waited=" + mWaitedSuggestionsForTypingCount;
+    }
+
     public void onCancelBatchInput(final LatinIME.UIHandler handler) {
         mInputLogicHandler.onCancelBatchInput();
         handler.showGesturePreviewAndSuggestionStrip(
@@ -798,7 +834,8 @@ public final class InputLogic {
         // make it shorter (possibly cut into several pieces). Also factor
         // handleNonSpecialCharacterEvent which has the same name as other handle* methods but is
         // not the same.
-        boolean isComposingWord = mWordComposer.isComposingWord();
+        final boolean wasComposingWord = mWordComposer.isComposingWord();
+        boolean isComposingWord = wasComposingWord;
 
         // TODO: remove isWordConnector() and use isUsuallyFollowedBySpace() instead.
         // See onStartBatchInput() to see how to do it.
@@ -853,6 +890,10 @@ public final class InputLogic {
             resetComposingState(false /* alsoResetLastComposedWord */);
         }
         if (isComposingWord) {
+            if (!wasComposingWord) {
+                // A new word starts here; never reuse the context of the previous one.
+                mComposingWordContext.invalidate();
+            }
             mWordComposer.applyProcessedEvent(event);
             // If it's the first letter, make note of auto-caps state
             if (mWordComposer.isSingleLetter()) {
@@ -882,6 +923,8 @@ public final class InputLogic {
         final int codePoint = event.mCodePoint;
         final SettingsValues settingsValues = inputTransaction.mSettingsValues;
         final boolean wasComposingWord = mWordComposer.isComposingWord();
+        // The separator ends the word being composed, if any.
+        mComposingWordContext.invalidate();
         // We avoid sending spaces in languages without spaces if we were composing.
         final boolean shouldAvoidSendingCode = Constants.CODE_SPACE == codePoint
                 && !settingsValues.mSpacingAndPunctuations.mCurrentLanguageHasSpaces
@@ -1032,6 +1075,8 @@ public final class InputLogic {
                 setComposingTextInternal(getTextWithUnderline(mWordComposer.getTypedWord()), 1);
             } else {
                 mConnection.commitText("", 1);
+                // The word was deleted entirely, so its context is gone with it.
+                mComposingWordContext.invalidate();
             }
             inputTransaction.setRequiresUpdateSuggestions();
         } else {
@@ -1443,13 +1488,11 @@ public final class InputLogic {
                 ngramContext, timeStampInSeconds, settingsValues.mBlockPotentiallyOffensive);
     }
 
-    public void performUpdateSuggestionStripSync(final SettingsValues settingsValues,
-            final int inputStyle) {
-        long startTimeMillis = 0;
-        if (DebugFlags.DEBUG_ENABLED) {
-            startTimeMillis = System.currentTimeMillis();
-            Log.d(TAG, "performUpdateSuggestionStripSync()");
-        }
+    /**
+     * Clears the suggestion strip if there are no suggestions to fetch for it.
+     * @return whether the suggestion strip was cleared.
+     */
+    private boolean clearSuggestionStripIfNoSuggestions(final SettingsValues settingsValues) {
         // Check if we have a suggestion engine attached.
         if (!settingsValues.needsToLookupSuggestions()) {
             if (mWordComposer.isComposingWord()) {
@@ -1458,34 +1501,138 @@ public final class InputLogic {
             }
             // Clear the suggestions strip.
             mSuggestionStripViewAccessor.showSuggestionStrip(SuggestedWords.getEmptyInstance());
-            return;
+            return true;
         }
 
         if (!mWordComposer.isComposingWord() && !settingsValues.mBigramPredictionEnabled) {
             mSuggestionStripViewAccessor.setNeutralSuggestionStrip();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Gets the suggestions to show for the word being typed.
+     * @param suggestedWords the suggestions fetched for the word.
+     */
+    private SuggestedWords getSuggestedWordsToShowForTyping(final SuggestedWords suggestedWords) {
+        final String typedWordString = mWordComposer.getTypedWord();
+        final SuggestedWordInfo typedWordInfo = new SuggestedWordInfo(
+                typedWordString, "" /* prevWordsContext */,
+                SuggestedWordInfo.MAX_SCORE,
+                SuggestedWordInfo.KIND_TYPED, Dictionary.DICTIONARY_USER_TYPED,
+                SuggestedWordInfo.NOT_AN_INDEX /* indexOfTouchPointOfSecondWord */,
+                SuggestedWordInfo.NOT_A_CONFIDENCE);
+        // Show new suggestions if we have at least one. Otherwise keep the old
+        // suggestions with the new typed word. Exception: if the length of the
+        // typed word is <= 1 (after a deletion typically) we clear old suggestions.
+        if (suggestedWords.size() > 1 || typedWordString.length() <= 1) {
+            return suggestedWords;
+        }
+        return retrieveOlderSuggestions(typedWordInfo, mSuggestedWords);
+    }
+
+    /**
+     * Updates the suggestion strip without waiting for the suggestions.
+     *
+     * The suggestions are computed on the Non-UI handler thread for a copy of the composer, and
+     * shown by {@link #onSuggestedWordsForTypingFetched} unless the word has changed since.
+     *
+     * @param settingsValues the current values of the settings.
+     * @param keyboard the current keyboard, or null if there is none.
+     * @param keyboardShiftMode the current shift mode of the keyboard.
+     * @param inputStyle the input style of the suggestions.
+     */
+    public void performUpdateSuggestionStrip(final SettingsValues settingsValues,
+            final Keyboard keyboard, final int keyboardShiftMode, final int inputStyle) {
+        if (clearSuggestionStripIfNoSuggestions(settingsValues)) {
+            return;
+        }
+        final InputLatencyTracer latencyTracer = InputLatencyTracer.getInstance();
+        final int keyStrokeSequenceNumber = latencyTracer.getSequenceNumber();
+        latencyTracer.onStage(InputLatencyTracer.STAGE_SUGGESTIONS_REQUESTED,
+                keyStrokeSequenceNumber);
+        final int sequenceNumber = mWordComposer.getSequenceNumber();
+        mSuggestionsForTypingSequenceNumber = sequenceNumber;
+        // The caps mode and the context of the word depend on the editor and on the space state,
+        // that only the UI thread may read.
+        final WordComposer wordComposer = new WordComposer(mWordComposer);
+        wordComposer.adviseCapitalizedModeBeforeFetchingSuggestions(
+                getActualCapsMode(settingsValues, keyboardShiftMode));
+        final NgramContext ngramContext = getNgramContextFromNthPreviousWordForSuggestion(
+                settingsValues.mSpacingAndPunctuations, mWordComposer.isComposingWord() ? 2 : 1);
+        mInputLogicHandler.getSuggestedWordsForTyping(wordComposer, ngramContext, keyboard,
+                settingsValues, inputStyle, new OnGetSuggestedWordsForTypingCallback() {
+                    @Override
+                    public void onGetSuggestedWords(final SuggestedWords suggestedWords,
+                            final long startTime) {
+                        latencyTracer.onStage(InputLatencyTracer.STAGE_SUGGESTIONS_FETCHED,
+                                keyStrokeSequenceNumber);
+                        SuggestionStripUpdateScheduler.getInstance().onSuggestionsFetched(
+                                (int)(SystemClock.uptimeMillis() - startTime));
+                        mLatinIME.mHandler.showSuggestionsForTyping(suggestedWords,
+                                sequenceNumber, keyStrokeSequenceNumber);
+                    }
+                }
+        );
+    }
+
+    /**
+     * Shows the suggestions fetched by {@link #performUpdateSuggestionStrip}. They are dropped if
+     * the word has changed since they were requested: either it is gone, or the suggestions for
+     * its new state are on their way.
+     *
+     * @param suggestedWords the suggestions.
+     * @param sequenceNumber the sequence number of the composer the suggestions were fetched for.
+     * @param keyStrokeSequenceNumber the sequence number of the key stroke that requested them.
+     */
+    // Called on the UI thread by LatinIME.UIHandler.
+    public void onSuggestedWordsForTypingFetched(final SuggestedWords suggestedWords,
+            final int sequenceNumber, final int keyStrokeSequenceNumber) {
+        if (sequenceNumber == mSuggestionsForTypingSequenceNumber) {
+            mSuggestionsForTypingSequenceNumber = SuggestedWords.NOT_A_SEQUENCE_NUMBER;
+        }
+        if (sequenceNumber != mWordComposer.getSequenceNumber()) {
+            mStaleSuggestionsForTypingCount++;
+            return;
+        }
+        mSuggestionStripViewAccessor.showSuggestionStrip(
+                getSuggestedWordsToShowForTyping(suggestedWords), keyStrokeSequenceNumber);
+        mShownSuggestionsForTypingCount++;
+    }
+
+    /**
+     * Whether suggestions requested by {@link #performUpdateSuggestionStrip} for the last state
+     * of the word haven't come back yet.
+     */
+    public boolean hasSuggestionsForTypingInFlight() {
+        return SuggestedWords.NOT_A_SEQUENCE_NUMBER != mSuggestionsForTypingSequenceNumber;
+    }
+
+    public void performUpdateSuggestionStripSync(final SettingsValues settingsValues,
+            final int inputStyle) {
+        long startTimeMillis = 0;
+        if (DebugFlags.DEBUG_ENABLED) {
+            startTimeMillis = System.currentTimeMillis();
+            Log.d(TAG, "performUpdateSuggestionStripSync()");
+        }
+        if (clearSuggestionStripIfNoSuggestions(settingsValues)) {
             return;
         }
 
+        final InputLatencyTracer latencyTracer = InputLatencyTracer.getInstance();
+        final int keyStrokeSequenceNumber = latencyTracer.getSequenceNumber();
+        latencyTracer.onStage(InputLatencyTracer.STAGE_SUGGESTIONS_REQUESTED,
+                keyStrokeSequenceNumber);
         final AsyncResultHolder<SuggestedWords> holder = new AsyncResultHolder<>("Suggest");
         mInputLogicHandler.getSuggestedWords(inputStyle, SuggestedWords.NOT_A_SEQUENCE_NUMBER,
                 new OnGetSuggestedWordsCallback() {
                     @Override
                     public void onGetSuggestedWords(final SuggestedWords suggestedWords) {
-                        final String typedWordString = mWordComposer.getTypedWord();
-                        final SuggestedWordInfo typedWordInfo = new SuggestedWordInfo(
-                                typedWordString, "" /* prevWordsContext */,
-                                SuggestedWordInfo.MAX_SCORE,
-                                SuggestedWordInfo.KIND_TYPED, Dictionary.DICTIONARY_USER_TYPED,
-                                SuggestedWordInfo.NOT_AN_INDEX /* indexOfTouchPointOfSecondWord */,
-                                SuggestedWordInfo.NOT_A_CONFIDENCE);
-                        // Show new suggestions if we have at least one. Otherwise keep the old
-                        // suggestions with the new typed word. Exception: if the length of the
-                        // typed word is <= 1 (after a deletion typically) we clear old suggestions.
-                        if (suggestedWords.size() > 1 || typedWordString.length() <= 1) {
-                            holder.set(suggestedWords);
-                        } else {
-                            holder.set(retrieveOlderSuggestions(typedWordInfo, mSuggestedWords));
-                        }
+                        latencyTracer.onStage(InputLatencyTracer.STAGE_SUGGESTIONS_FETCHED,
+                                keyStrokeSequenceNumber);
+                        // The UI thread is waiting, so the composer can be read here.
+                        holder.set(getSuggestedWordsToShowForTyping(suggestedWords));
                     }
                 }
         );
@@ -1494,7 +1641,8 @@ public final class InputLogic {
         final SuggestedWords suggestedWords = holder.get(null,
                 Constants.GET_SUGGESTED_WORDS_TIMEOUT);
         if (suggestedWords != null) {
-            mSuggestionStripViewAccessor.showSuggestionStrip(suggestedWords);
+            mSuggestionStripViewAccessor.showSuggestionStrip(suggestedWords,
+                    keyStrokeSequenceNumber);
         }
         if (DebugFlags.DEBUG_ENABLED) {
             long runTimeMillis = System.currentTimeMillis() - startTimeMillis;
@@ -1588,6 +1736,7 @@ public final class InputLogic {
         final int[] codePoints = StringUtils.toCodePointArray(typedWordString);
         mWordComposer.setComposingWord(codePoints,
                 mLatinIME.getCoordinatesForCurrentKeyboard(codePoints));
+        mComposingWordContext.invalidate();
         mWordComposer.setCursorPositionWithinWord(
         typedWordString.codePointCount(0, numberOfCharsInWordBeforeCursor));
         if (forStartInput) {
@@ -1713,6 +1862,7 @@ public final class InputLogic {
             final int[] codePoints = StringUtils.toCodePointArray(stringToCommit);
             mWordComposer.setComposingWord(codePoints,
                     mLatinIME.getCoordinatesForCurrentKeyboard(codePoints));
+            mComposingWordContext.invalidate();
             setComposingTextInternal(textToCommit, 1);
         }
         // Don't restart suggestion yet. We'll restart if the user deletes the separator.
@@ -1795,7 +1945,11 @@ public final class InputLogic {
             final SpacingAndPunctuations spacingAndPunctuations, final int nthPreviousWord) {
         if (spacingAndPunctuations.mCurrentLanguageHasSpaces) {
             // If we are typing in a language with spaces we can just look up the previous
-            // word information from textview.
+            // word information from textview. The words before the word being composed don't
+            // change until it ends, so its context is only looked up once.
+            if (2 == nthPreviousWord && mWordComposer.isComposingWord()) {
+                return mComposingWordContext.getNgramContext(mConnection, spacingAndPunctuations);
+            }
             return mConnection.getNgramContextFromNthPreviousWord(
                     spacingAndPunctuations, nthPreviousWord);
         }
@@ -1899,6 +2053,7 @@ public final class InputLogic {
      */
     private void resetComposingState(final boolean alsoResetLastComposedWord) {
         mWordComposer.reset();
+        mComposingWordContext.invalidate();
         if (alsoResetLastComposedWord) {
             mLastComposedWord = LastComposedWord.NOT_A_COMPOSED_WORD;
         }
@@ -2032,6 +2187,7 @@ public final class InputLogic {
      */
     public void onUpdateTailBatchInputCompleted(final SettingsValues settingsValues,
             final SuggestedWords suggestedWords, final KeyboardSwitcher keyboardSwitcher) {
+        mInputLogicHandler.onTailBatchInputResultShown();
         final String batchInputText = suggestedWords.isEmpty() ? null : suggestedWords.getWord(0);
         if (TextUtils.isEmpty(batchInputText)) {
             return;
@@ -2041,6 +2197,7 @@ public final class InputLogic {
             insertAutomaticSpaceIfOptionsAndTextAllow(settingsValues);
         }
         mWordComposer.setBatchInputWord(batchInputText);
+        mComposingWordContext.invalidate();
         setComposingTextInternal(batchInputText, 1);
         mConnection.endBatchEdit();
         // Space state must be updated before calling updateShiftState
@@ -2084,18 +2241,29 @@ public final class InputLogic {
      * by this suggestion at commit time. When it's not confident enough, or when it has no
      * suggestions, or when the settings or environment does not allow for auto-correction, then
      * this method just commits the typed string.
-     * Note that if suggestions are currently being computed in the background, this method will
-     * block until the computation returns. This is necessary for consistency (it would be very
-     * strange if pressing space would commit a different word depending on how fast you press).
+     * Note that if suggestions for the current state of the word are still pending or being
+     * computed in the background, this method will block until the computation returns, for at
+     * most {@link Constants#GET_SUGGESTED_WORDS_TIMEOUT}. This is necessary for consistency (it
+     * would be very strange if pressing space would commit a different word depending on how fast
+     * you press).
      *
      * @param settingsValues the current value of the settings.
      * @param separator the separator that's causing the commit to happen.
      */
     private void commitCurrentAutoCorrection(final SettingsValues settingsValues,
             final String separator, final LatinIME.UIHandler handler) {
-        // Complete any pending suggestions query first
-        if (handler.hasPendingUpdateSuggestions()) {
+        // Complete any pending suggestions query first. The suggestions that are shown are up to
+        // date unless an update is pending or in flight: suggestions are requested after each
+        // change of the word, and the ones for a former state of the word are dropped.
+        // Suggestions that have come back but wait for the next frame are shown right away.
+        handler.flushSuggestionsForTyping();
+        if (handler.hasPendingUpdateSuggestions() || hasSuggestionsForTypingInFlight()) {
             handler.cancelUpdateSuggestionStrip();
+            // Don't wait behind a request that hasn't started yet.
+            mInputLogicHandler.cancelSuggestedWordsForTyping();
+            // The suggestions in flight will be dropped, as committing the word changes it.
+            mSuggestionsForTypingSequenceNumber = SuggestedWords.NOT_A_SEQUENCE_NUMBER;
+            mWaitedSuggestionsForTypingCount++;
             // To know the input style here, we should retrieve the in-flight "update suggestions"
             // message and read its arg1 member here. However, the Handler class does not let
             // us retrieve this message, so we can't do that. But in fact, we notice that
@@ -2171,8 +2339,11 @@ public final class InputLogic {
         // When we are composing word, get n-gram context from the 2nd previous word because the
         // 1st previous word is the word to be committed. Otherwise get n-gram context from the 1st
         // previous word.
-        final NgramContext ngramContext = mConnection.getNgramContextFromNthPreviousWord(
-                settingsValues.mSpacingAndPunctuations, mWordComposer.isComposingWord() ? 2 : 1);
+        final NgramContext ngramContext = mWordComposer.isComposingWord()
+                ? mComposingWordContext.getNgramContext(mConnection,
+                        settingsValues.mSpacingAndPunctuations)
+                : mConnection.getNgramContextFromNthPreviousWord(
+                        settingsValues.mSpacingAndPunctuations, 1);
         if (DebugFlags.DEBUG_ENABLED) {
             long runTimeMillis = System.currentTimeMillis() - startTimeMillis;
             Log.d(TAG, "commitChosenWord() : " + runTimeMillis + " ms to run "
@@ -2181,6 +2352,7 @@ public final class InputLogic {
             startTimeMillis = System.currentTimeMillis();
         }
         mConnection.commitText(chosenWordWithSuggestions, 1);
+        mConnection.onWordCommitted();
         if (DebugFlags.DEBUG_ENABLED) {
             long runTimeMillis = System.currentTimeMillis() - startTimeMillis;
             Log.d(TAG, "commitChosenWord() : " + runTimeMillis + " ms to run "
@@ -2201,6 +2373,7 @@ public final class InputLogic {
         // strings.
         mLastComposedWord = mWordComposer.commitWord(commitType,
                 chosenWordWithSuggestions, separatorString, ngramContext);
+        mComposingWordContext.invalidate();
         if (DebugFlags.DEBUG_ENABLED) {
             long runTimeMillis = System.currentTimeMillis() - startTimeMillis;
             Log.d(TAG, "commitChosenWord() : " + runTimeMillis + " ms to run "
@@ -2259,6 +2432,32 @@ public final class InputLogic {
                 inputStyle, sequenceNumber, callback);
     }
 
+    /**
+     * Gets the suggestions for a copy of the composer of the word being typed. Everything they
+     * depend on has been computed by {@link #performUpdateSuggestionStrip} on the UI thread, so
+     * that this never reads the state of the input logic or of the editor.
+     */
+    // Called on the Non-UI handler thread by InputLogicHandler.
+    public void getSuggestedWordsForTyping(final WordComposer wordComposer,
+            final NgramContext ngramContext, final Keyboard keyboard,
+            final SettingsValues settingsValues, final int inputStyle, final int sequenceNumber,
+            final OnGetSuggestedWordsForTypingCallback callback) {
+        final long startTime = SystemClock.uptimeMillis();
+        if (keyboard == null) {
+            callback.onGetSuggestedWords(SuggestedWords.getEmptyInstance(), startTime);
+            return;
+        }
+        mSuggest.getSuggestedWords(wordComposer, ngramContext, keyboard,
+                new SettingsValuesForSuggestion(settingsValues.mBlockPotentiallyOffensive),
+                settingsValues.mAutoCorrectionEnabledPerUserSettings,
+                inputStyle, sequenceNumber, new OnGetSuggestedWordsCallback() {
+                    @Override
+                    public void onGetSuggestedWords(final SuggestedWords suggestedWords) {
+                        callback.onGetSuggestedWords(suggestedWords, startTime);
+                    }
+                });
+    }
+
     /**
      * Used as an injection point for each call of
      * {@link RichInputConnection#setComposingText(CharSequence, int)}.
@@ -19,25 +19,47 @@ package com.android.inputmethod.latin.inputlogic;
 import android.os.Handler;
 import android.os.HandlerThread;
 import android.os.Message;
+import android.os.Process;
+import android.os.SystemClock;
 
 import com.android.inputmethod.compat.LooperCompatUtils;
+import com.android.inputmethod.keyboard.Keyboard;
+import com.android.inputmethod.keyboard.internal.GestureRecognitionScheduler;
 import com.android.inputmethod.latin.LatinIME;
+import com.android.inputmethod.latin.NgramContext;
 import com.android.inputmethod.latin.SuggestedWords;
+import com.android.inputmethod.latin.WordComposer;
 import com.android.inputmethod.latin.Suggest.OnGetSuggestedWordsCallback;
 import com.android.inputmethod.latin.common.InputPointers;
+import com.android.inputmethod.latin.settings.SettingsValues;
+import com.android.inputmethod.latin.utils.LatencyHistogram;
 
 /**
  * A helper to manage deferred tasks for the input logic.
  */
 class InputLogicHandler implements Handler.Callback {
     final Handler mNonUIThreadHandler;
+    // Decodes batch inputs so that gesture decoding never delays suggestions for typing and vice
+    // versa. The end of a batch input is put at the front of its queue, and an intermediate update
+    // replaces the pending one.
+    final Handler mGestureDecoderHandler;
     // TODO: remove this reference.
     final LatinIME mLatinIME;
     final InputLogic mInputLogic;
     private final Object mLock = new Object();
     private boolean mInBatchInput; // synchronized using {@link #mLock}.
+    private final BatchInputDecodeCanceller mBatchInputDecodeCanceller;
+    private long mTailBatchInputRequestTime; // Accessed only on the UI thread.
+    private final LatencyHistogram mTailBatchInputLatency =
+            new LatencyHistogram("Gesture end to suggestion strip");
 
     private static final int MSG_GET_SUGGESTED_WORDS = 1;
+    // Pulls suggestions for an intermediate update of a batch input. These messages are removed
+    // when they are superseded, and never delay the suggestions for the end of a batch input.
+    private static final int MSG_UPDATE_BATCH_INPUT = 2;
+    private static final int MSG_UPDATE_TAIL_BATCH_INPUT = 3;
+    // Pulls suggestions for a copy of the word being typed, while the UI thread goes on.
+    private static final int MSG_GET_SUGGESTED_WORDS_FOR_TYPING = 4;
 
     // A handler that never does anything. This is used for cases where events come before anything
     // is initialized, though probably only the monkey can actually do this.
@@ -59,12 +81,54 @@ class InputLogicHandler implements Handler.Callback {
         @Override
         public void getSuggestedWords(final int sessionId, final int sequenceNumber,
                 final OnGetSuggestedWordsCallback callback) {}
+        @Override
+        public void getSuggestedWordsForTyping(final WordComposer wordComposer,
+                final NgramContext ngramContext, final Keyboard keyboard,
+                final SettingsValues settingsValues, final int inputStyle,
+                final OnGetSuggestedWordsForTypingCallback callback) {}
+        @Override
+        public void cancelSuggestedWordsForTyping() {}
     };
 
+    public interface OnGetSuggestedWordsForTypingCallback {
+        /**
+         * Called with the suggestions for typing, on the Non-UI handler thread.
+         * @param suggestedWords the suggestions.
+         * @param startTime the time the suggestions started being computed, in milliseconds of
+         * {@link SystemClock#uptimeMillis()}. The time the request waited in the queue of the
+         * Non-UI handler thread isn't part of the latency of the suggestions.
+         */
+        public void onGetSuggestedWords(final SuggestedWords suggestedWords,
+                final long startTime);
+    }
+
+    // Everything the suggestions for typing depend on, computed on the UI thread, so that the
+    // Non-UI handler thread never reads the state of the input logic or of the editor.
+    private static final class TypingSuggestionsRequest {
+        public final WordComposer mWordComposer;
+        public final NgramContext mNgramContext;
+        public final Keyboard mKeyboard;
+        public final SettingsValues mSettingsValues;
+        public final OnGetSuggestedWordsForTypingCallback mCallback;
+
+        public TypingSuggestionsRequest(final WordComposer wordComposer,
+                final NgramContext ngramContext, final Keyboard keyboard,
+                final SettingsValues settingsValues,
+                final OnGetSuggestedWordsForTypingCallback callback) {
+            mWordComposer = wordComposer;
+            mNgramContext = ngramContext;
+            mKeyboard = keyboard;
+            mSettingsValues = settingsValues;
+            mCallback = callback;
+        }
+    }
+
     InputLogicHandler() {
         mNonUIThreadHandler = null;
+        mGestureDecoderHandler = null;
         mLatinIME = null;
         mInputLogic = null;
+        mBatchInputDecodeCanceller = null;
     }
 
     public InputLogicHandler(final LatinIME latinIME, final InputLogic inputLogic) {
@@ -72,36 +136,73 @@ class InputLogicHandler implements Handler.Callback {
                 InputLogicHandler.class.getSimpleName());
         handlerThread.start();
         mNonUIThreadHandler = new Handler(handlerThread.getLooper(), this);
+        final HandlerThread gestureDecoderThread = new HandlerThread(
+                InputLogicHandler.class.getSimpleName() + "GestureDecoder",
+                Process.THREAD_PRIORITY_DISPLAY);
+        gestureDecoderThread.start();
+        mGestureDecoderHandler = new Handler(gestureDecoderThread.getLooper(), this);
         mLatinIME = latinIME;
         mInputLogic = inputLogic;
+        mBatchInputDecodeCanceller = new BatchInputDecodeCanceller(
+                new BatchInputDecodeCanceller.Listener() {
+                    @Override
+                    public void setBatchInputSuggestionsCancelled(final boolean isCancelled) {
+                        inputLogic.mSuggest.setBatchInputSuggestionsCancelled(isCancelled);
+                    }
+                });
     }
 
     public void reset() {
         mNonUIThreadHandler.removeCallbacksAndMessages(null);
+        mGestureDecoderHandler.removeCallbacksAndMessages(null);
+        GestureRecognitionScheduler.getInstance().onRecognitionCanceled();
     }
 
     // In unit tests, we create several instances of LatinIME, which results in several instances
     // of InputLogicHandler. To avoid these handlers lingering, we call this.
     public void destroy() {
         LooperCompatUtils.quitSafely(mNonUIThreadHandler.getLooper());
+        LooperCompatUtils.quitSafely(mGestureDecoderHandler.getLooper());
     }
 
     /**
      * Handle a message.
      * @see android.os.Handler.Callback#handleMessage(android.os.Message)
      */
-    // Called on the Non-UI handler thread by the Handler code.
+    // Called on the Non-UI handler thread or the gesture decoder thread by the Handler code.
     @Override
     public boolean handleMessage(final Message msg) {
-        switch (msg.what) {
-            case MSG_GET_SUGGESTED_WORDS:
-                mLatinIME.getSuggestedWords(msg.arg1 /* inputStyle */,
-                        msg.arg2 /* sequenceNumber */, (OnGetSuggestedWordsCallback) msg.obj);
-                break;
+        // Any of these decodes may use the gesture traverse session. Only an intermediate update
+        // of a batch input may be cancelled, and the cancellation never outlives it.
+        final int decodeId = mBatchInputDecodeCanceller.onDecodeStarted(
+                msg.what == MSG_UPDATE_BATCH_INPUT /* isIntermediateUpdate */);
+        try {
+            switch (msg.what) {
+                case MSG_GET_SUGGESTED_WORDS:
+                case MSG_UPDATE_TAIL_BATCH_INPUT:
+                case MSG_UPDATE_BATCH_INPUT:
+                    mLatinIME.getSuggestedWords(msg.arg1 /* inputStyle */,
+                            msg.arg2 /* sequenceNumber */, (OnGetSuggestedWordsCallback) msg.obj);
+                    break;
+                case MSG_GET_SUGGESTED_WORDS_FOR_TYPING:
+                    final TypingSuggestionsRequest request = (TypingSuggestionsRequest) msg.obj;
+                    mInputLogic.getSuggestedWordsForTyping(request.mWordComposer,
+                            request.mNgramContext, request.mKeyboard, request.mSettingsValues,
+                            msg.arg1 /* inputStyle */, msg.arg2 /* sequenceNumber */,
+                            request.mCallback);
+                    break;
+            }
+        } finally {
+            mBatchInputDecodeCanceller.onDecodeFinished(decodeId);
         }
         return true;
     }
 
+    // Stop the intermediate update being decoded, if any, because it has been superseded.
+    private void cancelBatchInputUpdateInFlight() {
+        mBatchInputDecodeCanceller.cancelUpdateInFlight();
+    }
+
     // Called on the UI thread by InputLogic.
     public void onStartBatchInput() {
         synchronized (mLock) {
@@ -133,14 +234,43 @@ class InputLogicHandler implements Handler.Callback {
                 return;
             }
             mInputLogic.mWordComposer.setBatchInputPointers(batchPointers);
+            final GestureRecognitionScheduler scheduler =
+                    GestureRecognitionScheduler.getInstance();
+            final long requestTime = SystemClock.uptimeMillis();
+            final int requestId = scheduler.onRecognitionRequested(requestTime, isTailBatchInput);
             final OnGetSuggestedWordsCallback callback = new OnGetSuggestedWordsCallback() {
                 @Override
                 public void onGetSuggestedWords(final SuggestedWords suggestedWords) {
+                    final int latency = (int)(SystemClock.uptimeMillis() - requestTime);
+                    if (!scheduler.onRecognitionCompleted(requestId, latency)
+                            && !isTailBatchInput) {
+                        // A newer update or the end of this batch input has been requested while
+                        // this update was being processed. Its suggestions are already stale.
+                        return;
+                    }
+                    if (!isTailBatchInput && !isInBatchInput()) {
+                        // The batch input has been canceled while this update was processed.
+                        return;
+                    }
                     showGestureSuggestionsWithPreviewVisuals(suggestedWords, isTailBatchInput);
                 }
             };
-            getSuggestedWords(isTailBatchInput ? SuggestedWords.INPUT_STYLE_TAIL_BATCH
-                    : SuggestedWords.INPUT_STYLE_UPDATE_BATCH, sequenceNumber, callback);
+            // A pending intermediate update is superseded by this one.
+            mGestureDecoderHandler.removeMessages(MSG_UPDATE_BATCH_INPUT);
+            if (isTailBatchInput) {
+                // The end of a batch input is never queued behind intermediate updates, and
+                // doesn't wait for the one being decoded either.
+                cancelBatchInputUpdateInFlight();
+                mTailBatchInputRequestTime = requestTime;
+                mGestureDecoderHandler.sendMessageAtFrontOfQueue(
+                        mGestureDecoderHandler.obtainMessage(MSG_UPDATE_TAIL_BATCH_INPUT,
+                                SuggestedWords.INPUT_STYLE_TAIL_BATCH, sequenceNumber,
+                                callback));
+            } else {
+                mGestureDecoderHandler.obtainMessage(MSG_UPDATE_BATCH_INPUT,
+                        SuggestedWords.INPUT_STYLE_UPDATE_BATCH, sequenceNumber, callback)
+                        .sendToTarget();
+            }
         }
     }
 
@@ -193,6 +323,9 @@ class InputLogicHandler implements Handler.Callback {
     public void onCancelBatchInput() {
         synchronized (mLock) {
             mInBatchInput = false;
+            mGestureDecoderHandler.removeMessages(MSG_UPDATE_BATCH_INPUT);
+            cancelBatchInputUpdateInFlight();
+            GestureRecognitionScheduler.getInstance().onRecognitionCanceled();
         }
     }
 
@@ -213,9 +346,59 @@ class InputLogicHandler implements Handler.Callback {
         updateBatchInput(batchPointers, sequenceNumber, true /* isTailBatchInput */);
     }
 
+    /**
+     * Record the latency from the end of a batch input to showing its result.
+     */
+    // Called on the UI thread by InputLogic.
+    public void onTailBatchInputResultShown() {
+        if (mTailBatchInputRequestTime <= 0) {
+            return;
+        }
+        mTailBatchInputLatency.record(SystemClock.uptimeMillis() - mTailBatchInputRequestTime);
+        mTailBatchInputRequestTime = 0;
+    }
+
+    public LatencyHistogram getTailBatchInputLatency() {
+        return mTailBatchInputLatency;
+    }
+
     public void getSuggestedWords(final int inputStyle, final int sequenceNumber,
             final OnGetSuggestedWordsCallback callback) {
         mNonUIThreadHandler.obtainMessage(
                 MSG_GET_SUGGESTED_WORDS, inputStyle, sequenceNumber, callback).sendToTarget();
     }
+
+    /**
+     * Fetch suggestions for the word being typed without waiting for them.
+     *
+     * The suggestions are computed for a copy of the composer, so the UI thread can keep editing
+     * the word in the meantime. The callback is called on the Non-UI handler thread.
+     *
+     * @param wordComposer a copy of the composer of the word being typed, with its caps mode
+     * advised. It must not be edited.
+     * @param ngramContext the context of the word being typed.
+     * @param keyboard the current keyboard, or null if there is none.
+     * @param settingsValues the current values of the settings.
+     * @param inputStyle the input style of the suggestions.
+     * @param callback the callback to pass the suggestions to.
+     */
+    // Called on the UI thread by InputLogic.
+    public void getSuggestedWordsForTyping(final WordComposer wordComposer,
+            final NgramContext ngramContext, final Keyboard keyboard,
+            final SettingsValues settingsValues, final int inputStyle,
+            final OnGetSuggestedWordsForTypingCallback callback) {
+        // A request that hasn't started yet is superseded by this one.
+        cancelSuggestedWordsForTyping();
+        mNonUIThreadHandler.obtainMessage(MSG_GET_SUGGESTED_WORDS_FOR_TYPING, inputStyle,
+                SuggestedWords.NOT_A_SEQUENCE_NUMBER, new TypingSuggestionsRequest(wordComposer,
+                        ngramContext, keyboard, settingsValues, callback)).sendToTarget();
+    }
+
+    /**
+     * Cancel the requests for suggestions for typing that haven't started yet.
+     */
+    // Called on the UI thread by InputLogic.
+    public void cancelSuggestedWordsForTyping() {
+        mNonUIThreadHandler.removeMessages(MSG_GET_SUGGESTED_WORDS_FOR_TYPING);
+    }
 }
@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.inputmethod.latin.inputlogic;
+
+import com.android.inputmethod.annotations.UsedForTesting;
+
+/**
+ * This class schedules the updates of the suggestion strip according to the typing rhythm and to
+ * the measured latency of the suggestions.
+ *
+ * An update of the suggestion strip is superseded by the next key stroke: its suggestions are
+ * dropped if the word has changed by the time they come back. When the suggestions usually take
+ * longer than the interval between two key strokes, the update waits for the typing to pause a
+ * bit longer than usual, so that the key strokes coalesce into one update instead of each one
+ * computing suggestions nobody sees. Otherwise the update comes after the default delay. In any
+ * case, an update that keeps being postponed by key strokes doesn't wait longer than a multiple
+ * of the default delay.
+ *
+ * All times are in milliseconds of {@link android.os.SystemClock#uptimeMillis()}.
+ */
+public final class SuggestionStripUpdateScheduler {
+    private static final int NOT_MEASURED = -1;
+    // The weight of the latest measure in the moving averages, in percent.
+    private static final int LATEST_WEIGHT_PERCENT = 25;
+    // The update waits for a pause this much longer than the average interval, in percent.
+    private static final int PAUSE_HEADROOM_PERCENT = 125;
+    // The suggestions are expected to come back this much later than their average latency, in
+    // percent.
+    private static final int LATENCY_HEADROOM_PERCENT = 125;
+    // Two key strokes further apart than this are separated by a pause in the typing, and their
+    // interval isn't part of the typing rhythm.
+    private static final int MAX_KEY_STROKE_INTERVAL = 1000; // msec
+    // An update is never postponed longer than the default delay multiplied by this.
+    private static final int MAX_DELAY_MULTIPLIER = 4;
+
+    private static final SuggestionStripUpdateScheduler sInstance =
+            new SuggestionStripUpdateScheduler();
+
+    private int mAverageKeyStrokeInterval = NOT_MEASURED; // msec
+    private int mAverageLatency = NOT_MEASURED; // msec
+    private long mLastKeyStrokeTime;
+    private boolean mHasKeyStroke;
+    // The time of the first key stroke since the last update of the suggestion strip.
+    private long mFirstPostponingKeyStrokeTime;
+    private int mScheduledUpdateCount;
+    private int mPostponedUpdateCount;
+
+    public static SuggestionStripUpdateScheduler getInstance() {
+        return sInstance;
+    }
+
+    @UsedForTesting
+    SuggestionStripUpdateScheduler() {
+        // Intentional empty constructor.
+    }
+
+    /**
+     * Record a key stroke that changes the suggestions, and schedule the update of the suggestion
+     * strip. The update replaces the pending one, if any.
+     * @param time the time of the key stroke.
+     * @param defaultDelay the default delay to update the suggestion strip.
+     * @param isUpdatePending true if an update of the suggestion strip is already scheduled.
+     * @return the time of the update.
+     */
+    public synchronized long scheduleUpdate(final long time, final int defaultDelay,
+            final boolean isUpdatePending) {
+        if (mHasKeyStroke) {
+            final long interval = time - mLastKeyStrokeTime;
+            if (interval >= 0 && interval <= MAX_KEY_STROKE_INTERVAL) {
+                mAverageKeyStrokeInterval = average(mAverageKeyStrokeInterval, (int)interval);
+            }
+        }
+        mLastKeyStrokeTime = time;
+        mHasKeyStroke = true;
+        mScheduledUpdateCount++;
+        if (isUpdatePending) {
+            mPostponedUpdateCount++;
+        } else {
+            mFirstPostponingKeyStrokeTime = time;
+        }
+        return Math.min(time + getUpdateDelay(defaultDelay),
+                mFirstPostponingKeyStrokeTime + defaultDelay * MAX_DELAY_MULTIPLIER);
+    }
+
+    /**
+     * Get the delay from a key stroke to the update of the suggestion strip.
+     * @param defaultDelay the default delay to update the suggestion strip.
+     * @return the delay in milliseconds.
+     */
+    public synchronized int getUpdateDelay(final int defaultDelay) {
+        if (mAverageKeyStrokeInterval == NOT_MEASURED || mAverageLatency == NOT_MEASURED) {
+            return defaultDelay;
+        }
+        if (mAverageLatency * LATENCY_HEADROOM_PERCENT / 100 < mAverageKeyStrokeInterval) {
+            // The suggestions usually come back before the next key stroke.
+            return defaultDelay;
+        }
+        final int pause = mAverageKeyStrokeInterval * PAUSE_HEADROOM_PERCENT / 100;
+        return Math.max(defaultDelay, Math.min(defaultDelay * MAX_DELAY_MULTIPLIER, pause));
+    }
+
+    /**
+     * Record the time suggestions for typing took to come back, stale or not.
+     * @param latency the time from the request of the suggestions to their result.
+     */
+    public synchronized void onSuggestionsFetched(final int latency) {
+        mAverageLatency = average(mAverageLatency, latency);
+    }
+
+    private static int average(final int average, final int value) {
+        if (average == NOT_MEASURED) {
+            return value;
+        }
+        return (value * LATEST_WEIGHT_PERCENT + average * (100 - LATEST_WEIGHT_PERCENT)) / 100;
+    }
+
+    @UsedForTesting
+    synchronized int getAverageKeyStrokeInterval() {
+        return mAverageKeyStrokeInterval;
+    }
+
+    @UsedForTesting
+    synchronized int getAverageLatency() {
+        return mAverageLatency;
+    }
+
+    public synchronized String getStats() {
+        return "Suggestion strip updates: scheduled=" + mScheduledUpdateCount
+                + " postponed=" + mPostponedUpdateCount
+                + " keyStrokeInterval=" + mAverageKeyStrokeInterval
+                + "ms latency=" + mAverageLatency + "ms";
+    }
+}
@@ -31,6 +31,7 @@ import com.android.inputmethod.latin.DictionaryDumpBroadcastReceiver;
 import com.android.inputmethod.latin.DictionaryFacilitatorImpl;
 import com.android.inputmethod.latin.R;
 import com.android.inputmethod.latin.utils.ApplicationUtils;
+import com.android.inputmethod.latin.utils.InputLatencyTracer;
 import com.android.inputmethod.latin.utils.ResourceUtils;
 
 import java.util.Locale;
@@ -44,9 +45,11 @@ public final class DebugSettingsFragment extends SubScreenFragment
         implements OnPreferenceClickListener {
     private static final String PREF_KEY_DUMP_DICTS = "pref_key_dump_dictionaries";
     private static final String PREF_KEY_DUMP_DICT_PREFIX = "pref_key_dump_dictionaries";
+    private static final String PREF_KEY_INPUT_LATENCY = "pref_key_input_latency";
 
     private boolean mServiceNeedsRestart = false;
     private TwoStatePreference mDebugMode;
+    private Preference mInputLatency;
 
     @Override
     public void onCreate(Bundle icicle) {
@@ -64,6 +67,9 @@ public final class DebugSettingsFragment extends SubScreenFragment
             pref.setOnPreferenceClickListener(this);
             dictDumpPreferenceGroup.addPreference(pref);
         }
+        mInputLatency = findPreference(PREF_KEY_INPUT_LATENCY);
+        mInputLatency.setOnPreferenceClickListener(this);
+        updateInputLatency();
         final Resources res = getResources();
         setupKeyPreviewAnimationDuration(DebugSettings.PREF_KEY_PREVIEW_SHOW_UP_DURATION,
                 res.getInteger(R.integer.config_key_preview_show_up_duration));
@@ -112,9 +118,25 @@ public final class DebugSettingsFragment extends SubScreenFragment
             context.sendBroadcast(intent);
             return true;
         }
+        if (pref == mInputLatency) {
+            updateInputLatency();
+            return true;
+        }
         return true;
     }
 
+    @Override
+    public void onResume() {
+        super.onResume();
+        updateInputLatency();
+    }
+
+    private void updateInputLatency() {
+        // The keyboard runs in the same process, so this shows the latency of the keyboard
+        // since it started.
+        mInputLatency.setSummary(InputLatencyTracer.getInstance().getSummary());
+    }
+
     @Override
     public void onStop() {
         super.onStop();
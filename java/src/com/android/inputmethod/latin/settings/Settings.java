@@ -116,6 +116,9 @@ public final class Settings implements SharedPreferences.OnSharedPreferenceChang
     public static final String PREF_EMOJI_RECENT_KEYS = "emoji_recent_keys";
     public static final String PREF_EMOJI_CATEGORY_LAST_TYPED_ID = "emoji_category_last_typed_id";
     public static final String PREF_LAST_SHOWN_EMOJI_CATEGORY_ID = "last_shown_emoji_category_id";
+    public static final String PREF_EMOJI_GLYPH_SUPPORT_FINGERPRINT =
+            "emoji_glyph_support_fingerprint";
+    public static final String PREF_EMOJI_UNSUPPORTED_GLYPHS = "emoji_unsupported_glyphs";
 
     private static final float UNDEFINED_PREFERENCE_VALUE_FLOAT = -1.0f;
     private static final int UNDEFINED_PREFERENCE_VALUE_INT = -1;
@@ -417,6 +420,10 @@ public final class Settings implements SharedPreferences.OnSharedPreferenceChang
         return prefs.getString(PREF_EMOJI_RECENT_KEYS, "");
     }
 
+    public static void removeEmojiRecentKeys(final SharedPreferences prefs) {
+        prefs.edit().remove(PREF_EMOJI_RECENT_KEYS).apply();
+    }
+
     public static void writeLastTypedEmojiCategoryPageId(
             final SharedPreferences prefs, final int categoryId, final int categoryPageId) {
         final String key = PREF_EMOJI_CATEGORY_LAST_TYPED_ID + categoryId;
@@ -439,6 +446,23 @@ public final class Settings implements SharedPreferences.OnSharedPreferenceChang
         return prefs.getInt(PREF_LAST_SHOWN_EMOJI_CATEGORY_ID, defValue);
     }
 
+    public static void writeEmojiGlyphSupport(final SharedPreferences prefs,
+            final String fingerprint, final Set<String> unsupportedGlyphs) {
+        prefs.edit()
+                .putString(PREF_EMOJI_GLYPH_SUPPORT_FINGERPRINT, fingerprint)
+                .putStringSet(PREF_EMOJI_UNSUPPORTED_GLYPHS, unsupportedGlyphs)
+                .apply();
+    }
+
+    public static String readEmojiGlyphSupportFingerprint(final SharedPreferences prefs) {
+        return prefs.getString(PREF_EMOJI_GLYPH_SUPPORT_FINGERPRINT, "");
+    }
+
+    public static Set<String> readEmojiUnsupportedGlyphs(final SharedPreferences prefs) {
+        final Set<String> emptySet = Collections.emptySet();
+        return prefs.getStringSet(PREF_EMOJI_UNSUPPORTED_GLYPHS, emptySet);
+    }
+
     private void upgradeAutocorrectionSettings(final SharedPreferences prefs, final Resources res) {
         final String thresholdSetting =
                 prefs.getString(PREF_AUTO_CORRECTION_THRESHOLD_OBSOLETE, null);
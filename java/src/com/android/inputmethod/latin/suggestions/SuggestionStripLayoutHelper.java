@@ -52,6 +52,7 @@ import com.android.inputmethod.latin.SuggestedWords.SuggestedWordInfo;
 import com.android.inputmethod.latin.settings.Settings;
 import com.android.inputmethod.latin.settings.SettingsValues;
 import com.android.inputmethod.latin.utils.ResourceUtils;
+import com.android.inputmethod.latin.utils.TypefaceUtils;
 import com.android.inputmethod.latin.utils.ViewLayoutUtils;
 
 import java.util.ArrayList;
@@ -576,8 +577,9 @@ final class SuggestionStripLayoutHelper {
         return maxWidth / (float) width;
     }
 
+    @UsedForTesting
     @Nullable
-    private static CharSequence getEllipsizedTextWithSettingScaleX(
+    static CharSequence getEllipsizedTextWithSettingScaleX(
             @Nullable final CharSequence text, final int maxWidth, @Nonnull final TextPaint paint) {
         if (text == null) {
             return null;
@@ -627,21 +629,13 @@ final class SuggestionStripLayoutHelper {
         if (TextUtils.isEmpty(text)) {
             return 0;
         }
-        final int length = text.length();
-        final float[] widths = new float[length];
-        final int count;
         final Typeface savedTypeface = paint.getTypeface();
         try {
             paint.setTypeface(getTextTypeface(text));
-            count = paint.getTextWidths(text, 0, length, widths);
+            return TypefaceUtils.getRoundedTextWidth(text, paint);
         } finally {
             paint.setTypeface(savedTypeface);
         }
-        int width = 0;
-        for (int i = 0; i < count; i++) {
-            width += Math.round(widths[i] + 0.5f);
-        }
-        return width;
     }
 
     private static Typeface getTextTypeface(@Nullable final CharSequence text) {
@@ -33,6 +33,7 @@ import android.view.View.OnClickListener;
 import android.view.View.OnLongClickListener;
 import android.view.ViewGroup;
 import android.view.ViewParent;
+import android.view.ViewTreeObserver;
 import android.view.accessibility.AccessibilityEvent;
 import android.widget.ImageButton;
 import android.widget.RelativeLayout;
@@ -52,6 +53,7 @@ import com.android.inputmethod.latin.settings.Settings;
 import com.android.inputmethod.latin.settings.SettingsValues;
 import com.android.inputmethod.latin.suggestions.MoreSuggestionsView.MoreSuggestionsListener;
 import com.android.inputmethod.latin.utils.ImportantNoticeUtils;
+import com.android.inputmethod.latin.utils.InputLatencyTracer;
 
 import java.util.ArrayList;
 
@@ -86,6 +88,20 @@ public final class SuggestionStripView extends RelativeLayout implements OnClick
     private final SuggestionStripLayoutHelper mLayoutHelper;
     private final StripVisibilityGroup mStripVisibilityGroup;
 
+    // The key stroke whose suggestions are waiting for the next layout pass of the strip.
+    int mTracedKeyStrokeSequenceNumber;
+    private final ViewTreeObserver.OnPreDrawListener mLatencyTracingListener =
+            new ViewTreeObserver.OnPreDrawListener() {
+                @Override
+                public boolean onPreDraw() {
+                    getViewTreeObserver().removeOnPreDrawListener(this);
+                    InputLatencyTracer.getInstance().onStage(
+                            InputLatencyTracer.STAGE_SUGGESTION_STRIP_LAID_OUT,
+                            mTracedKeyStrokeSequenceNumber);
+                    return true;
+                }
+            };
+
     private static class StripVisibilityGroup {
         private final View mSuggestionStripView;
         private final View mSuggestionsStrip;
@@ -205,6 +221,23 @@ public final class SuggestionStripView extends RelativeLayout implements OnClick
         mStripVisibilityGroup.showSuggestionsStrip();
     }
 
+    /**
+     * Records the {@link InputLatencyTracer#STAGE_SUGGESTION_STRIP_LAID_OUT} stage of a key stroke
+     * once the suggestions just set are laid out, right before the strip is drawn. Only the last
+     * key stroke is traced if several of them are set before the strip is drawn.
+     * @param keyStrokeSequenceNumber the sequence number of the key stroke.
+     */
+    public void traceNextLayout(final int keyStrokeSequenceNumber) {
+        final ViewTreeObserver observer = getViewTreeObserver();
+        observer.removeOnPreDrawListener(mLatencyTracingListener);
+        if (!isShown()) {
+            // The strip won't be drawn until it's shown again, for another key stroke.
+            return;
+        }
+        mTracedKeyStrokeSequenceNumber = keyStrokeSequenceNumber;
+        observer.addOnPreDrawListener(mLatencyTracingListener);
+    }
+
     public void setMoreSuggestionsHeight(final int remainingHeight) {
         mLayoutHelper.setMoreSuggestionsHeight(remainingHeight);
     }
@@ -24,4 +24,6 @@ import com.android.inputmethod.latin.SuggestedWords;
 public interface SuggestionStripViewAccessor {
     public void setNeutralSuggestionStrip();
     public void showSuggestionStrip(final SuggestedWords suggestedWords);
+    public void showSuggestionStrip(final SuggestedWords suggestedWords,
+            final int keyStrokeSequenceNumber);
 }
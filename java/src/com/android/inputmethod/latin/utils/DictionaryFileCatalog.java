@@ -0,0 +1,426 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.inputmethod.latin.utils;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.android.inputmethod.annotations.UsedForTesting;
+import com.android.inputmethod.latin.common.LocaleUtils;
+import com.android.inputmethod.latin.makedict.DictionaryHeader;
+import com.android.inputmethod.latin.makedict.UnsupportedFormatException;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * A persisted catalog of the cached dictionary files.
+ *
+ * The catalog remembers the listings of the dictionary directories, the header fields of the
+ * dictionary files and the locale match levels of the directories, so that resetting the
+ * dictionaries only needs to stat the files instead of listing the directories and opening every
+ * file to read its header. A listing is valid as long as the modification time of its directory
+ * doesn't change, and the header fields of a file as long as its size and modification time
+ * don't change. The installation of new files updates the catalog incrementally through
+ * {@link #onFileInstalled(File)} and {@link #onFileRenamed(File,File)}.
+ *
+ * This class is thread-safe.
+ */
+public class DictionaryFileCatalog {
+    private static final String TAG = DictionaryFileCatalog.class.getSimpleName();
+
+    private static final String CATALOG_FILE_NAME = "dicts.catalog";
+    private static final int CATALOG_FORMAT_VERSION = 1;
+    // A directory modified within this time before it has been listed may be modified again
+    // without changing its modification time, so its listing is not trusted.
+    private static final long MODIFICATION_TIME_RESOLUTION_MS = 2000;
+
+    private static DictionaryFileCatalog sInstance;
+
+    /**
+     * The header fields of a dictionary file, valid for a size and a modification time.
+     */
+    public static final class Entry {
+        public final long mSize;
+        public final long mLastModified;
+        // The following fields are null if the header of the file could not be read.
+        @Nullable public final String mLocaleString;
+        @Nullable public final String mVersionString;
+        @Nullable public final String mIdString;
+
+        public Entry(final long size, final long lastModified,
+                @Nullable final DictionaryHeader header) {
+            this(size, lastModified, null == header ? null : header.mLocaleString,
+                    null == header ? null : header.mVersionString,
+                    null == header ? null : header.mIdString);
+        }
+
+        @UsedForTesting
+        Entry(final long size, final long lastModified, @Nullable final String localeString,
+                @Nullable final String versionString, @Nullable final String idString) {
+            mSize = size;
+            mLastModified = lastModified;
+            mLocaleString = localeString;
+            mVersionString = versionString;
+            mIdString = idString;
+        }
+
+        public boolean hasHeader() {
+            return null != mVersionString;
+        }
+
+        /**
+         * @return the version of the content of the dictionary, or -1 if it is unknown.
+         */
+        public int getContentVersion() {
+            if (null == mVersionString) {
+                return -1;
+            }
+            try {
+                return Integer.parseInt(mVersionString);
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+    }
+
+    private static final class Listing {
+        final long mLastModified;
+        final long mListedTime;
+        // Null if the path is not a directory.
+        @Nullable final String[] mFileNames;
+
+        Listing(final long lastModified, final long listedTime,
+                @Nullable final String[] fileNames) {
+            mLastModified = lastModified;
+            mListedTime = listedTime;
+            mFileNames = fileNames;
+        }
+
+        boolean isValid(final long lastModified) {
+            return mLastModified == lastModified
+                    && mListedTime - mLastModified > MODIFICATION_TIME_RESOLUTION_MS;
+        }
+    }
+
+    @Nonnull private final File mCatalogFile;
+    private final HashMap<String, Listing> mListings = new HashMap<>();
+    private final HashMap<String, Entry> mEntries = new HashMap<>();
+    // The match levels keyed by the locale of a directory and the requested locale.
+    private final HashMap<String, Integer> mMatchLevels = new HashMap<>();
+    private boolean mIsLoaded;
+    private boolean mIsChanged;
+
+    public static synchronized DictionaryFileCatalog getInstance(final Context context) {
+        if (null == sInstance) {
+            sInstance = new DictionaryFileCatalog(
+                    new File(context.getFilesDir(), CATALOG_FILE_NAME));
+        }
+        return sInstance;
+    }
+
+    @UsedForTesting
+    DictionaryFileCatalog(@Nonnull final File catalogFile) {
+        mCatalogFile = catalogFile;
+    }
+
+    /**
+     * Lists the files of a directory like {@link File#listFiles()}, reusing the previous listing
+     * if the directory has not been modified since.
+     * @return the files of the directory, or null if it is not a directory.
+     */
+    @Nullable
+    public synchronized File[] listFiles(@Nonnull final File directory) {
+        loadIfNeeded();
+        final String path = directory.getAbsolutePath();
+        final long lastModified = directory.lastModified();
+        Listing listing = mListings.get(path);
+        if (null == listing || !listing.isValid(lastModified)) {
+            final String[] fileNames = (0 == lastModified) ? null : directory.list();
+            listing = new Listing(lastModified, System.currentTimeMillis(), fileNames);
+            mListings.put(path, listing);
+            if (null != fileNames) {
+                removeEntriesOfRemovedFiles(path, fileNames);
+            }
+            mIsChanged = true;
+        }
+        if (null == listing.mFileNames) {
+            return null;
+        }
+        final File[] files = new File[listing.mFileNames.length];
+        for (int i = 0; i < files.length; i++) {
+            files[i] = new File(directory, listing.mFileNames[i]);
+        }
+        return files;
+    }
+
+    private void removeEntriesOfRemovedFiles(@Nonnull final String directoryPath,
+            @Nonnull final String[] fileNames) {
+        final HashSet<String> paths = new HashSet<>();
+        for (final String fileName : fileNames) {
+            paths.add(directoryPath + File.separator + fileName);
+        }
+        final Iterator<Map.Entry<String, Entry>> iterator = mEntries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final String path = iterator.next().getKey();
+            if (directoryPath.equals(new File(path).getParent()) && !paths.contains(path)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Returns the header fields of a dictionary file, reading its header only if the file has
+     * changed since it was last read.
+     * @return the entry of the file, or null if the file doesn't exist.
+     */
+    @Nullable
+    public synchronized Entry getEntry(@Nonnull final File file) {
+        loadIfNeeded();
+        final String path = file.getAbsolutePath();
+        final long lastModified = file.lastModified();
+        if (0 == lastModified) {
+            if (null != mEntries.remove(path)) {
+                mIsChanged = true;
+            }
+            return null;
+        }
+        final long size = file.length();
+        final Entry entry = mEntries.get(path);
+        if (null != entry && entry.mSize == size && entry.mLastModified == lastModified) {
+            return entry;
+        }
+        final Entry newEntry = readEntry(file, size, lastModified);
+        mEntries.put(path, newEntry);
+        mIsChanged = true;
+        return newEntry;
+    }
+
+    @UsedForTesting
+    Entry readEntry(@Nonnull final File file, final long size, final long lastModified) {
+        DictionaryHeader header = null;
+        try {
+            header = BinaryDictionaryUtils.getHeader(file);
+        } catch (FileNotFoundException e) {
+            Log.e(TAG, "Dictionary file not found", e);
+        } catch (IOException e) {
+            Log.e(TAG, "Cannot read the header of a dictionary file", e);
+        } catch (BufferUnderflowException e) {
+            Log.e(TAG, "Cannot read the header of a dictionary file", e);
+        } catch (UnsupportedFormatException e) {
+            Log.e(TAG, "Unsupported format of a dictionary file", e);
+        }
+        return new Entry(size, lastModified, header);
+    }
+
+    /**
+     * Returns the match level of the locale of a dictionary directory against a locale, as per
+     * {@link LocaleUtils#getMatchLevel(String,String)}.
+     */
+    public synchronized int getMatchLevel(@Nonnull final String directoryLocale,
+            @Nonnull final String locale) {
+        loadIfNeeded();
+        final String key = directoryLocale + ' ' + locale;
+        final Integer cachedMatchLevel = mMatchLevels.get(key);
+        if (null != cachedMatchLevel) {
+            return cachedMatchLevel;
+        }
+        final int matchLevel = LocaleUtils.getMatchLevel(directoryLocale, locale);
+        mMatchLevels.put(key, matchLevel);
+        mIsChanged = true;
+        return matchLevel;
+    }
+
+    /**
+     * Records a dictionary file that has just been written.
+     */
+    public synchronized void onFileInstalled(@Nonnull final File file) {
+        loadIfNeeded();
+        mEntries.remove(file.getAbsolutePath());
+        mListings.remove(file.getAbsoluteFile().getParent());
+        mIsChanged = true;
+        getEntry(file);
+    }
+
+    /**
+     * Records a dictionary file that has been moved. A rename keeps the size and the
+     * modification time of the file, so its header doesn't need to be read again.
+     */
+    public synchronized void onFileRenamed(@Nonnull final File from, @Nonnull final File to) {
+        loadIfNeeded();
+        final Entry entry = mEntries.remove(from.getAbsolutePath());
+        if (null != entry) {
+            mEntries.put(to.getAbsolutePath(), entry);
+        } else {
+            mEntries.remove(to.getAbsolutePath());
+        }
+        mListings.remove(from.getAbsoluteFile().getParent());
+        mListings.remove(to.getAbsoluteFile().getParent());
+        // The cache directory of a new locale is created on the way.
+        mListings.remove(to.getAbsoluteFile().getParentFile().getParent());
+        mIsChanged = true;
+    }
+
+    /**
+     * Writes the catalog to disk if it has changed since it was loaded or last saved.
+     */
+    public synchronized void saveIfChanged() {
+        if (!mIsChanged) {
+            return;
+        }
+        final File tempFile = new File(mCatalogFile.getPath() + ".tmp");
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+            writeCatalog(out);
+            out.close();
+            out = null;
+            if (!tempFile.renameTo(mCatalogFile)) {
+                Log.e(TAG, "Cannot rename the dictionary file catalog");
+                tempFile.delete();
+                return;
+            }
+            mIsChanged = false;
+        } catch (IOException e) {
+            Log.e(TAG, "Cannot write the dictionary file catalog", e);
+            tempFile.delete();
+        } finally {
+            if (null != out) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    // Ignore.
+                }
+            }
+        }
+    }
+
+    private void loadIfNeeded() {
+        if (mIsLoaded) {
+            return;
+        }
+        mIsLoaded = true;
+        if (!mCatalogFile.exists()) {
+            return;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(mCatalogFile)));
+            readCatalog(in);
+        } catch (IOException e) {
+            // A broken catalog is only a cache miss.
+            Log.w(TAG, "Cannot read the dictionary file catalog", e);
+            mListings.clear();
+            mEntries.clear();
+            mMatchLevels.clear();
+        } finally {
+            if (null != in) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    // Ignore.
+                }
+            }
+        }
+    }
+
+    private void writeCatalog(@Nonnull final DataOutputStream out) throws IOException {
+        out.writeInt(CATALOG_FORMAT_VERSION);
+        out.writeInt(mListings.size());
+        for (final Map.Entry<String, Listing> mapEntry : mListings.entrySet()) {
+            final Listing listing = mapEntry.getValue();
+            out.writeUTF(mapEntry.getKey());
+            out.writeLong(listing.mLastModified);
+            out.writeLong(listing.mListedTime);
+            if (null == listing.mFileNames) {
+                out.writeInt(-1);
+                continue;
+            }
+            out.writeInt(listing.mFileNames.length);
+            for (final String fileName : listing.mFileNames) {
+                out.writeUTF(fileName);
+            }
+        }
+        out.writeInt(mEntries.size());
+        for (final Map.Entry<String, Entry> mapEntry : mEntries.entrySet()) {
+            final Entry entry = mapEntry.getValue();
+            out.writeUTF(mapEntry.getKey());
+            out.writeLong(entry.mSize);
+            out.writeLong(entry.mLastModified);
+            out.writeBoolean(entry.hasHeader());
+            if (entry.hasHeader()) {
+                out.writeUTF(entry.mLocaleString);
+                out.writeUTF(entry.mVersionString);
+                out.writeUTF(entry.mIdString);
+            }
+        }
+        out.writeInt(mMatchLevels.size());
+        for (final Map.Entry<String, Integer> mapEntry : mMatchLevels.entrySet()) {
+            out.writeUTF(mapEntry.getKey());
+            out.writeInt(mapEntry.getValue());
+        }
+    }
+
+    private void readCatalog(@Nonnull final DataInputStream in) throws IOException {
+        if (CATALOG_FORMAT_VERSION != in.readInt()) {
+            return;
+        }
+        final int listingCount = in.readInt();
+        for (int i = 0; i < listingCount; i++) {
+            final String path = in.readUTF();
+            final long lastModified = in.readLong();
+            final long listedTime = in.readLong();
+            final int fileCount = in.readInt();
+            final String[] fileNames = fileCount < 0 ? null : new String[fileCount];
+            for (int j = 0; j < fileCount; j++) {
+                fileNames[j] = in.readUTF();
+            }
+            mListings.put(path, new Listing(lastModified, listedTime, fileNames));
+        }
+        final int entryCount = in.readInt();
+        for (int i = 0; i < entryCount; i++) {
+            final String path = in.readUTF();
+            final long size = in.readLong();
+            final long lastModified = in.readLong();
+            if (in.readBoolean()) {
+                mEntries.put(path, new Entry(size, lastModified, in.readUTF() /* localeString */,
+                        in.readUTF() /* versionString */, in.readUTF() /* idString */));
+            } else {
+                mEntries.put(path, new Entry(size, lastModified, null, null, null));
+            }
+        }
+        final int matchLevelCount = in.readInt();
+        for (int i = 0; i < matchLevelCount; i++) {
+            mMatchLevels.put(in.readUTF(), in.readInt());
+        }
+    }
+}
@@ -200,7 +200,8 @@ public class DictionaryInfoUtils {
      * Helper method to the list of cache directories, one for each distinct locale.
      */
     public static File[] getCachedDirectoryList(final Context context) {
-        return new File(DictionaryInfoUtils.getWordListCacheDirectory(context)).listFiles();
+        return DictionaryFileCatalog.getInstance(context).listFiles(
+                new File(DictionaryInfoUtils.getWordListCacheDirectory(context)));
     }
 
     public static File[] getStagingDirectoryList(final Context context) {
@@ -288,9 +289,36 @@ public class DictionaryInfoUtils {
         return stagingDirectory + File.separator + fileName;
     }
 
-    public static void moveStagingFilesIfExists(Context context) {
+    /**
+     * Moves a batch of decoded files to their staging file names in one step.
+     *
+     * This is synchronized with {@link #moveStagingFilesIfExists(Context)}, so that the files of
+     * a batch are moved to the cache directories together.
+     *
+     * @param context the context to find the dictionary file catalog.
+     * @param files the files to move.
+     * @param stagingFiles the staging files to move the files to, in the same order.
+     */
+    public static synchronized void moveFilesToStaging(final Context context,
+            final List<File> files, final List<File> stagingFiles) {
+        final DictionaryFileCatalog catalog = DictionaryFileCatalog.getInstance(context);
+        final int count = files.size();
+        for (int i = 0; i < count; i++) {
+            final File file = files.get(i);
+            final File stagingFile = stagingFiles.get(i);
+            if (!FileUtils.renameTo(file, stagingFile)) {
+                Log.e(TAG, String.format("Failed to rename from %s to %s.",
+                        file.getAbsoluteFile(), stagingFile.getAbsoluteFile()));
+                continue;
+            }
+            catalog.onFileRenamed(file, stagingFile);
+        }
+    }
+
+    public static synchronized void moveStagingFilesIfExists(Context context) {
         final File[] stagingFiles = DictionaryInfoUtils.getStagingDirectoryList(context);
         if (stagingFiles != null && stagingFiles.length > 0) {
+            final DictionaryFileCatalog catalog = DictionaryFileCatalog.getInstance(context);
             for (final File stagingFile : stagingFiles) {
                 final String fileName = stagingFile.getName();
                 final int index = fileName.indexOf(TEMP_DICT_FILE_SUB);
@@ -317,7 +345,9 @@ public class DictionaryInfoUtils {
                 if (!FileUtils.renameTo(stagingFile, cacheFile)) {
                     Log.e(TAG, String.format("Failed to rename from %s to %s.",
                             stagingFile.getAbsoluteFile(), cacheFile.getAbsoluteFile()));
+                    continue;
                 }
+                catalog.onFileRenamed(stagingFile, cacheFile);
             }
         }
     }
@@ -437,6 +467,31 @@ public class DictionaryInfoUtils {
                 fileAddress.mLength, new File(fileAddress.mFilename).lastModified(), version);
     }
 
+    /**
+     * Returns information of a cached dictionary file from the dictionary file catalog.
+     *
+     * @param catalog the dictionary file catalog.
+     * @param file the cached dictionary file.
+     * @param locale Locale for this file.
+     * @return information of the specified dictionary, or null if its header can't be read.
+     */
+    @Nullable
+    private static DictionaryInfo createDictionaryInfoFromCatalog(
+            @Nonnull final DictionaryFileCatalog catalog, @Nonnull final File file,
+            final Locale locale) {
+        final DictionaryFileCatalog.Entry entry = catalog.getEntry(file);
+        if (null == entry || !entry.hasHeader()) {
+            return null;
+        }
+        final String id = getMainDictId(locale);
+        final String description = SubtypeLocaleUtils
+                .getSubtypeLocaleDisplayName(locale.toString());
+        // Do not store the filename on db, see createDictionaryInfoFromFileAddress.
+        final String filenameToStoreOnDb = null;
+        return new DictionaryInfo(id, locale, description, filenameToStoreOnDb,
+                entry.mSize, entry.mLastModified, entry.getContentVersion());
+    }
+
     /**
      * Returns the information of the dictionary for the given {@link AssetFileAddress}.
      * If the file is corrupted or a pre-fava file, then the file gets deleted and the null
@@ -495,6 +550,7 @@ public class DictionaryInfoUtils {
         final ArrayList<DictionaryInfo> dictList = new ArrayList<>();
 
         // Retrieve downloaded dictionaries from cached directories
+        final DictionaryFileCatalog catalog = DictionaryFileCatalog.getInstance(context);
         final File[] directoryList = getCachedDirectoryList(context);
         if (null != directoryList) {
             for (final File directory : directoryList) {
@@ -507,9 +563,8 @@ public class DictionaryInfoUtils {
                         continue;
                     }
                     final Locale locale = LocaleUtils.constructLocaleFromString(localeString);
-                    final AssetFileAddress fileAddress = AssetFileAddress.makeFromFile(dict);
                     final DictionaryInfo dictionaryInfo =
-                            createDictionaryInfoFromFileAddress(fileAddress, locale);
+                            createDictionaryInfoFromCatalog(catalog, dict, locale);
                     // Protect against cases of a less-specific dictionary being found, like an
                     // en dictionary being used for an en_US locale. In this case, the en dictionary
                     // should be used for en_US but discounted for listing purposes.
@@ -521,6 +576,8 @@ public class DictionaryInfoUtils {
             }
         }
 
+        catalog.saveIfChanged();
+
         // Retrieve downloaded dictionaries from the unused dictionaries.
         File[] unusedDictionaryList = getUnusedDictionaryList(context);
         if (unusedDictionaryList != null) {
@@ -21,7 +21,14 @@ import android.util.Log;
 import com.android.inputmethod.annotations.UsedForTesting;
 
 import java.lang.Thread.UncaughtExceptionHandler;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
@@ -118,6 +125,58 @@ public class ExecutorUtils {
         }
     }
 
+    /**
+     * Runs tasks on a pool of threads, and waits for all of them to end.
+     *
+     * If the calling thread is interrupted, the tasks that haven't started yet are dropped and the
+     * running ones are interrupted, but they are still waited for so that the caller can clean up
+     * after all of them. The interrupted status of the calling thread is then restored.
+     *
+     * @param tasks the tasks to run.
+     * @param threadCount the maximum number of tasks to run at the same time.
+     * @return the results of the tasks, in the order of the tasks. The result of a task that threw
+     *     or that was dropped is null.
+     */
+    public static <T> ArrayList<T> callAll(final List<? extends Callable<T>> tasks,
+            final int threadCount) {
+        final ExecutorService executor = Executors.newFixedThreadPool(
+                Math.max(1, Math.min(threadCount, tasks.size())));
+        final ArrayList<Future<T>> futures = new ArrayList<>();
+        for (final Callable<T> task : tasks) {
+            futures.add(executor.submit(task));
+        }
+        executor.shutdown();
+        final ArrayList<T> results = new ArrayList<>();
+        boolean isInterrupted = false;
+        for (final Future<T> future : futures) {
+            T result = null;
+            while (true) {
+                try {
+                    result = future.get();
+                    break;
+                } catch (InterruptedException e) {
+                    if (!isInterrupted) {
+                        isInterrupted = true;
+                        // The futures of the tasks that are dropped would never be done.
+                        for (final Runnable droppedTask : executor.shutdownNow()) {
+                            ((Future<?>) droppedTask).cancel(false /* mayInterruptIfRunning */);
+                        }
+                    }
+                } catch (CancellationException e) {
+                    break;
+                } catch (ExecutionException e) {
+                    Log.e(TAG, "Exception in a task", e.getCause());
+                    break;
+                }
+            }
+            results.add(result);
+        }
+        if (isInterrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return results;
+    }
+
     @UsedForTesting
     public static Runnable chain(final Runnable... runnables) {
         return new RunnableChain(runnables);
@@ -16,12 +16,20 @@
 
 package com.android.inputmethod.latin.utils;
 
+import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.zip.GZIPInputStream;
 
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
 public final class FileTransforms {
+    private static final byte[] GZIP_MAGIC_NUMBER = new byte[] { (byte)0x1F, (byte)0x8B };
+    // A container is compressed at most twice, once outside and once inside the encryption.
+    private static final int MAX_COMPRESSION_LAYERS = 2;
+
     public static OutputStream getCryptedStream(OutputStream out) {
         // Crypt the stream.
         return out;
@@ -35,4 +43,92 @@ public final class FileTransforms {
     public static InputStream getUncompressedStream(InputStream in) throws IOException {
         return new GZIPInputStream(in);
     }
+
+    public static InputStream getUncompressedStream(InputStream in, int bufferSize)
+            throws IOException {
+        return new GZIPInputStream(in, bufferSize);
+    }
+
+    /**
+     * Returns a stream of the payload of a container in a single pass over the data.
+     *
+     * The compression layers are detected from the leading bytes of each layer. The stream is
+     * decrypted when the leading bytes are neither a compression layer nor a magic number of
+     * the payload, since encryption can't be told from its leading bytes.
+     *
+     * @param in the stream of the container.
+     * @param bufferSize the size of the buffer of each layer.
+     * @param payloadMagicNumbers the magic numbers the payload starts with, or null to accept
+     *     any payload after the compression layers.
+     * @return a buffered stream of the payload, starting with its magic number.
+     * @throws IOException if the container can't be read or the payload has no expected magic
+     *     number.
+     */
+    @Nonnull
+    public static InputStream getDecodedStream(@Nonnull final InputStream in,
+            final int bufferSize, @Nullable final byte[][] payloadMagicNumbers)
+            throws IOException {
+        int maxMagicNumberLength = GZIP_MAGIC_NUMBER.length;
+        if (null != payloadMagicNumbers) {
+            for (final byte[] magicNumber : payloadMagicNumbers) {
+                maxMagicNumberLength = Math.max(maxMagicNumberLength, magicNumber.length);
+            }
+        }
+        final byte[] leadingBytes = new byte[maxMagicNumberLength];
+        InputStream stream = in;
+        int compressionLayerCount = 0;
+        boolean isDecrypted = false;
+        while (true) {
+            final BufferedInputStream bufferedStream = new BufferedInputStream(stream, bufferSize);
+            final int leadingByteCount = peek(bufferedStream, leadingBytes);
+            if (compressionLayerCount < MAX_COMPRESSION_LAYERS
+                    && startsWith(leadingBytes, leadingByteCount, GZIP_MAGIC_NUMBER)) {
+                stream = getUncompressedStream(bufferedStream, bufferSize);
+                compressionLayerCount++;
+                continue;
+            }
+            if (null == payloadMagicNumbers) {
+                return bufferedStream;
+            }
+            for (final byte[] magicNumber : payloadMagicNumbers) {
+                if (startsWith(leadingBytes, leadingByteCount, magicNumber)) {
+                    return bufferedStream;
+                }
+            }
+            if (isDecrypted) {
+                throw new IOException("Wrong magic number for the payload");
+            }
+            stream = getDecryptedStream(bufferedStream);
+            isDecrypted = true;
+        }
+    }
+
+    // Reads the leading bytes of a stream without consuming them.
+    private static int peek(@Nonnull final BufferedInputStream in, @Nonnull final byte[] out)
+            throws IOException {
+        in.mark(out.length);
+        int count = 0;
+        while (count < out.length) {
+            final int readCount = in.read(out, count, out.length - count);
+            if (readCount < 0) {
+                break;
+            }
+            count += readCount;
+        }
+        in.reset();
+        return count;
+    }
+
+    private static boolean startsWith(@Nonnull final byte[] bytes, final int length,
+            @Nonnull final byte[] prefix) {
+        if (length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (bytes[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
 }
@@ -0,0 +1,238 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.inputmethod.latin.utils;
+
+import android.os.SystemClock;
+import android.util.Printer;
+
+import com.android.inputmethod.annotations.UsedForTesting;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Traces the latency of the key strokes, from the touch event to the suggestion strip.
+ *
+ * Each key stroke detected by the keyboard gets a sequence number, and the time at which it goes
+ * through each of the stages below is recorded, in order. The time spent in each stage and the
+ * total time are recorded in {@link LatencyHistogram}s, and the last stage boundaries are kept in
+ * a ring buffer of preallocated events, so tracing doesn't allocate anything.
+ * A key stroke that doesn't go through some stages, for example because its suggestions were
+ * superseded by the ones of the next key stroke, just doesn't record them.
+ * This class is thread-safe: suggestions are fetched on the input logic handler thread.
+ */
+public final class InputLatencyTracer {
+    /** From the touch event to the key detected by the keyboard. */
+    public static final int STAGE_KEY_DETECTED = 0;
+    /** From the key detected to the event processed by the input logic. */
+    public static final int STAGE_INPUT_PROCESSED = 1;
+    /** From the event processed to the suggestion strip update starting. */
+    public static final int STAGE_SUGGESTIONS_REQUESTED = 2;
+    /** From the suggestion strip update starting to the suggestions fetched. */
+    public static final int STAGE_SUGGESTIONS_FETCHED = 3;
+    /**
+     * From the suggestions fetched to the suggestion strip laid out, right before it's drawn.
+     * See {@link com.android.inputmethod.latin.suggestions.SuggestionStripView#traceNextLayout}.
+     */
+    public static final int STAGE_SUGGESTION_STRIP_LAID_OUT = 4;
+    private static final int STAGE_COUNT = 5;
+    private static final String[] STAGE_NAMES = {
+        "Key detected",
+        "Input processed",
+        "Suggestions requested",
+        "Suggestions fetched",
+        "Suggestion strip laid out"
+    };
+
+    // The number of key strokes that can still record their stages. Must be a power of two.
+    private static final int KEY_STROKE_COUNT = 16;
+    // The number of stage boundaries kept in the ring buffer. Must be a power of two.
+    private static final int EVENT_COUNT = 256;
+    private static final int EVENT_COUNT_TO_DUMP = 32;
+    private static final int NOT_A_STAGE = -1;
+
+    private static final InputLatencyTracer sInstance = new InputLatencyTracer();
+
+    private final LatencyHistogram[] mStageLatencies = new LatencyHistogram[STAGE_COUNT];
+    private final LatencyHistogram mTotalLatency = new LatencyHistogram("Key stroke total");
+
+    // The key strokes, indexed by (sequence number & (KEY_STROKE_COUNT - 1)).
+    private final int[] mKeyStrokeSequenceNumbers = new int[KEY_STROKE_COUNT];
+    private final long[] mKeyStrokeStartTimes = new long[KEY_STROKE_COUNT];
+    private final long[] mKeyStrokeLastStageTimes = new long[KEY_STROKE_COUNT];
+    private final int[] mKeyStrokeLastStages = new int[KEY_STROKE_COUNT];
+    private int mSequenceNumber;
+
+    // The ring buffer of the stage boundaries. The times are in nanoseconds.
+    private final int[] mEventSequenceNumbers = new int[EVENT_COUNT];
+    private final int[] mEventStages = new int[EVENT_COUNT];
+    private final long[] mEventTimes = new long[EVENT_COUNT];
+    private long mEventCount;
+
+    public static InputLatencyTracer getInstance() {
+        return sInstance;
+    }
+
+    @UsedForTesting
+    InputLatencyTracer() {
+        for (int stage = 0; stage < STAGE_COUNT; stage++) {
+            mStageLatencies[stage] = new LatencyHistogram(STAGE_NAMES[stage]);
+        }
+        resetKeyStrokes();
+    }
+
+    /**
+     * Starts tracing a key stroke detected by the keyboard.
+     * @param eventTime the time of the touch event, in the {@link SystemClock#uptimeMillis()}
+     * time base.
+     * @return the sequence number of the key stroke.
+     */
+    public int onKeyDetected(final long eventTime) {
+        final long now = System.nanoTime();
+        // The touch event is timestamped with the uptime clock, that has a coarser resolution.
+        final long startTime = now - TimeUnit.MILLISECONDS.toNanos(
+                Math.max(0, SystemClock.uptimeMillis() - eventTime));
+        synchronized (this) {
+            final int sequenceNumber = ++mSequenceNumber;
+            final int index = sequenceNumber & (KEY_STROKE_COUNT - 1);
+            mKeyStrokeSequenceNumbers[index] = sequenceNumber;
+            mKeyStrokeStartTimes[index] = startTime;
+            mKeyStrokeLastStageTimes[index] = startTime;
+            mKeyStrokeLastStages[index] = NOT_A_STAGE;
+            recordStage(index, STAGE_KEY_DETECTED, now);
+            return sequenceNumber;
+        }
+    }
+
+    /**
+     * Gets the sequence number of the last key stroke, to record its stages from another thread.
+     */
+    public synchronized int getSequenceNumber() {
+        return mSequenceNumber;
+    }
+
+    /**
+     * Records that the last key stroke has gone through a stage.
+     * @param stage one of the STAGE_* constants.
+     */
+    public void onStage(final int stage) {
+        onStage(stage, getSequenceNumber());
+    }
+
+    /**
+     * Records that a key stroke has gone through a stage. This is ignored if the key stroke is too
+     * old, or if it has already gone through this stage or a later one.
+     * @param stage one of the STAGE_* constants.
+     * @param sequenceNumber the sequence number of the key stroke.
+     */
+    public void onStage(final int stage, final int sequenceNumber) {
+        final long now = System.nanoTime();
+        synchronized (this) {
+            final int index = sequenceNumber & (KEY_STROKE_COUNT - 1);
+            if (mKeyStrokeSequenceNumbers[index] != sequenceNumber
+                    || mKeyStrokeLastStages[index] >= stage) {
+                return;
+            }
+            recordStage(index, stage, now);
+        }
+    }
+
+    private void recordStage(final int index, final int stage, final long time) {
+        final int sequenceNumber = mKeyStrokeSequenceNumbers[index];
+        mStageLatencies[stage].record(
+                TimeUnit.NANOSECONDS.toMillis(time - mKeyStrokeLastStageTimes[index]));
+        if (stage == STAGE_COUNT - 1) {
+            mTotalLatency.record(TimeUnit.NANOSECONDS.toMillis(time - mKeyStrokeStartTimes[index]));
+        }
+        mKeyStrokeLastStageTimes[index] = time;
+        mKeyStrokeLastStages[index] = stage;
+        final int eventIndex = (int)(mEventCount & (EVENT_COUNT - 1));
+        mEventSequenceNumbers[eventIndex] = sequenceNumber;
+        mEventStages[eventIndex] = stage;
+        mEventTimes[eventIndex] = time;
+        mEventCount++;
+    }
+
+    @UsedForTesting
+    LatencyHistogram getStageLatency(final int stage) {
+        return mStageLatencies[stage];
+    }
+
+    @UsedForTesting
+    LatencyHistogram getTotalLatency() {
+        return mTotalLatency;
+    }
+
+    public synchronized void reset() {
+        for (final LatencyHistogram histogram : mStageLatencies) {
+            histogram.reset();
+        }
+        mTotalLatency.reset();
+        resetKeyStrokes();
+        mEventCount = 0;
+    }
+
+    private void resetKeyStrokes() {
+        for (int index = 0; index < KEY_STROKE_COUNT; index++) {
+            // No key stroke has this sequence number: the first one is 1.
+            mKeyStrokeSequenceNumbers[index] = 0;
+            mKeyStrokeLastStages[index] = STAGE_COUNT;
+        }
+    }
+
+    /**
+     * Gets the latency percentiles of each stage, one stage per line.
+     */
+    @Nonnull
+    public String getSummary() {
+        final StringBuilder sb = new StringBuilder();
+        for (final LatencyHistogram histogram : mStageLatencies) {
+            appendSummary(sb, histogram);
+        }
+        appendSummary(sb, mTotalLatency);
+        return sb.toString();
+    }
+
+    private static void appendSummary(final StringBuilder sb, final LatencyHistogram histogram) {
+        if (sb.length() > 0) {
+            sb.append('\n');
+        }
+        sb.append(histogram.getName()).append(": p50<=").append(histogram.getPercentile(50))
+                .append(" p95<=").append(histogram.getPercentile(95))
+                .append(" p99<=").append(histogram.getPercentile(99)).append(" ms");
+    }
+
+    /**
+     * Dumps the latency histograms and the last stage boundaries.
+     */
+    public synchronized void dump(@Nonnull final Printer p) {
+        p.println("  Key stroke latency:");
+        for (final LatencyHistogram histogram : mStageLatencies) {
+            p.println("    " + histogram);
+        }
+        p.println("    " + mTotalLatency);
+        final long firstEvent = Math.max(0, mEventCount - EVENT_COUNT_TO_DUMP);
+        for (long event = firstEvent; event < mEventCount; event++) {
+            final int eventIndex = (int)(event & (EVENT_COUNT - 1));
+            p.println(String.format(Locale.ROOT, "    #%d %s at %.3f ms",
+                    mEventSequenceNumbers[eventIndex], STAGE_NAMES[mEventStages[eventIndex]],
+                    mEventTimes[eventIndex] / 1e6));
+        }
+    }
+}
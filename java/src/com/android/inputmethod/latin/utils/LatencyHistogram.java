@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.inputmethod.latin.utils;
+
+import java.util.Arrays;
+
+/**
+ * A histogram of latencies in milliseconds with power-of-two buckets.
+ * The bucket {@code i} counts the latencies in [2^(i-1), 2^i), and the bucket 0 counts the
+ * latencies under 1 millisecond. The last bucket counts all latencies beyond the previous one.
+ * This class is thread-safe.
+ */
+public final class LatencyHistogram {
+    private static final int BUCKET_COUNT = 16;
+
+    private final String mName;
+    private final int[] mBuckets = new int[BUCKET_COUNT];
+    private int mCount;
+    private long mMaxLatency;
+
+    public LatencyHistogram(final String name) {
+        mName = name;
+    }
+
+    private static int getBucketIndex(final long latency) {
+        if (latency <= 0) {
+            return 0;
+        }
+        final int index = Long.SIZE - Long.numberOfLeadingZeros(latency);
+        return Math.min(index, BUCKET_COUNT - 1);
+    }
+
+    // The exclusive upper bound of the bucket in milliseconds.
+    private static long getBucketUpperBound(final int index) {
+        return 1L << index;
+    }
+
+    public synchronized void record(final long latency) {
+        mBuckets[getBucketIndex(latency)]++;
+        mCount++;
+        mMaxLatency = Math.max(mMaxLatency, latency);
+    }
+
+    public String getName() {
+        return mName;
+    }
+
+    public synchronized int getCount() {
+        return mCount;
+    }
+
+    /**
+     * Get an upper bound of the given percentile of the recorded latencies.
+     * @param percentile the percentile between 0 and 100.
+     * @return the upper bound of the bucket the percentile falls in, capped at the maximum recorded
+     * latency, or 0 if nothing has been recorded.
+     */
+    public synchronized long getPercentile(final int percentile) {
+        if (mCount == 0) {
+            return 0;
+        }
+        // The rank of the percentile, rounded up and at least 1.
+        final long rank = Math.max(1, ((long)mCount * percentile + 99) / 100);
+        long accumulated = 0;
+        for (int index = 0; index < BUCKET_COUNT; index++) {
+            accumulated += mBuckets[index];
+            if (accumulated >= rank) {
+                // The last bucket has no upper bound.
+                return index == BUCKET_COUNT - 1 ? mMaxLatency
+                        : Math.min(getBucketUpperBound(index), mMaxLatency);
+            }
+        }
+        return mMaxLatency;
+    }
+
+    public synchronized void reset() {
+        Arrays.fill(mBuckets, 0);
+        mCount = 0;
+        mMaxLatency = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        final StringBuilder sb = new StringBuilder(mName);
+        sb.append(": count=").append(mCount);
+        if (mCount == 0) {
+            return sb.toString();
+        }
+        sb.append(" p50<=").append(getPercentile(50))
+                .append(" p95<=").append(getPercentile(95))
+                .append(" p99<=").append(getPercentile(99))
+                .append(" max=").append(mMaxLatency).append(" ms [");
+        boolean isFirst = true;
+        for (int index = 0; index < BUCKET_COUNT; index++) {
+            if (mBuckets[index] == 0) {
+                continue;
+            }
+            if (!isFirst) {
+                sb.append(", ");
+            }
+            isFirst = false;
+            sb.append('<').append(index == BUCKET_COUNT - 1 ? "inf"
+                    : String.valueOf(getBucketUpperBound(index)));
+            sb.append(':').append(mBuckets[index]);
+        }
+        return sb.append(']').toString();
+    }
+}
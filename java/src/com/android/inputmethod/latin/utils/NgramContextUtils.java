@@ -22,7 +22,6 @@ import com.android.inputmethod.latin.define.DecoderSpecificConstants;
 import com.android.inputmethod.latin.settings.SpacingAndPunctuations;
 
 import java.util.Arrays;
-import java.util.regex.Pattern;
 
 import javax.annotation.Nonnull;
 
@@ -31,8 +30,15 @@ public final class NgramContextUtils {
         // Intentional empty constructor for utility class.
     }
 
-    private static final Pattern NEWLINE_REGEX = Pattern.compile("[\\r\\n]+");
-    private static final Pattern SPACE_REGEX = Pattern.compile("\\s+");
+    // The characters matched by \s in a regular expression.
+    private static boolean isWhitespace(final char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    private static boolean isLineBreak(final char c) {
+        return c == '\n' || c == '\r';
+    }
+
     // Get context information from nth word before the cursor. n = 1 retrieves the words
     // immediately before the cursor, n = 2 retrieves the words before that, and so on. This splits
     // on whitespace only.
@@ -59,43 +65,90 @@ public final class NgramContextUtils {
     public static NgramContext getNgramContextFromNthPreviousWord(final CharSequence prev,
             final SpacingAndPunctuations spacingAndPunctuations, final int n) {
         if (prev == null) return NgramContext.EMPTY_PREV_WORDS_INFO;
-        final String[] lines = NEWLINE_REGEX.split(prev);
-        if (lines.length == 0) {
+        // The words are looked for in the last line that isn't empty, scanning the text backwards
+        // from the cursor. This doesn't split the text: the words are the ranges between
+        // whitespaces, and only the words that go to the context are copied.
+        int lineEnd = prev.length();
+        while (lineEnd > 0 && isLineBreak(prev.charAt(lineEnd - 1))) {
+            lineEnd--;
+        }
+        if (lineEnd == 0 && prev.length() > 0) {
+            // The text only contains line breaks.
             return new NgramContext(WordInfo.BEGINNING_OF_SENTENCE_WORD_INFO);
         }
-        final String[] w = SPACE_REGEX.split(lines[lines.length - 1]);
+        int lineStart = lineEnd;
+        while (lineStart > 0 && !isLineBreak(prev.charAt(lineStart - 1))) {
+            lineStart--;
+        }
+        // An empty line has a single empty word, and a line that starts with a whitespace has an
+        // empty word before its first word, as if the line was split on whitespaces.
+        final boolean hasLeadingEmptyWord = lineStart == lineEnd
+                || (isWhitespace(prev.charAt(lineStart))
+                        && hasNonWhitespace(prev, lineStart, lineEnd));
+
         final WordInfo[] prevWordsInfo =
                 new WordInfo[DecoderSpecificConstants.MAX_PREV_WORD_COUNT_FOR_N_GRAM];
         Arrays.fill(prevWordsInfo, WordInfo.EMPTY_WORD_INFO);
+        // The words are counted from the end of the line: the word [wordStart, wordEnd) is the
+        // (wordIndex + 1)th word before the cursor, and [followingWordStart, followingWordEnd) is
+        // the word after it. A start of -1 means there is no such word.
+        int wordIndex = -1;
+        int wordStart = lineEnd;
+        int wordEnd = lineEnd;
+        int followingWordStart = -1;
+        int followingWordEnd = -1;
+        boolean hasReachedLeadingEmptyWord = false;
         for (int i = 0; i < prevWordsInfo.length; i++) {
-            final int focusedWordIndex = w.length - n - i;
-            // Referring to the word after the focused word.
-            if ((focusedWordIndex + 1) >= 0 && (focusedWordIndex + 1) < w.length) {
-                final String wordFollowingTheNthPrevWord = w[focusedWordIndex + 1];
-                if (!wordFollowingTheNthPrevWord.isEmpty()) {
-                    final char firstChar = wordFollowingTheNthPrevWord.charAt(0);
-                    if (spacingAndPunctuations.isWordConnector(firstChar)) {
-                        // The word following the focused word is starting with a word connector.
-                        // TODO: Return meaningful context for this case.
-                        break;
+            final int focusedWordIndex = n + i - 1;
+            while (wordIndex < focusedWordIndex) {
+                followingWordStart = wordStart;
+                followingWordEnd = wordEnd;
+                wordIndex++;
+                if (wordStart < 0) {
+                    continue;
+                }
+                int position = wordStart;
+                while (position > lineStart && isWhitespace(prev.charAt(position - 1))) {
+                    position--;
+                }
+                if (position > lineStart) {
+                    wordEnd = position;
+                    while (position > lineStart && !isWhitespace(prev.charAt(position - 1))) {
+                        position--;
                     }
+                    wordStart = position;
+                } else if (hasLeadingEmptyWord && !hasReachedLeadingEmptyWord) {
+                    hasReachedLeadingEmptyWord = true;
+                    wordStart = lineStart;
+                    wordEnd = lineStart;
+                } else {
+                    wordStart = -1;
+                    wordEnd = -1;
+                }
+            }
+            // Referring to the word after the focused word.
+            if (focusedWordIndex > 0 && followingWordStart >= 0
+                    && followingWordEnd > followingWordStart) {
+                final char firstChar = prev.charAt(followingWordStart);
+                if (spacingAndPunctuations.isWordConnector(firstChar)) {
+                    // The word following the focused word is starting with a word connector.
+                    // TODO: Return meaningful context for this case.
+                    break;
                 }
             }
             // If we can't find (n + i) words, the context is beginning-of-sentence.
-            if (focusedWordIndex < 0) {
+            if (wordStart < 0) {
                 prevWordsInfo[i] = WordInfo.BEGINNING_OF_SENTENCE_WORD_INFO;
                 break;
             }
 
-            final String focusedWord = w[focusedWordIndex];
             // If the word is empty, the context is beginning-of-sentence.
-            final int length = focusedWord.length();
-            if (length <= 0) {
+            if (wordEnd <= wordStart) {
                 prevWordsInfo[i] = WordInfo.BEGINNING_OF_SENTENCE_WORD_INFO;
                 break;
             }
             // If the word ends in a sentence terminator, the context is beginning-of-sentence.
-            final char lastChar = focusedWord.charAt(length - 1);
+            final char lastChar = prev.charAt(wordEnd - 1);
             if (spacingAndPunctuations.isSentenceTerminator(lastChar)) {
                 prevWordsInfo[i] = WordInfo.BEGINNING_OF_SENTENCE_WORD_INFO;
                 break;
@@ -106,8 +159,18 @@ public final class NgramContextUtils {
                     || spacingAndPunctuations.isWordConnector(lastChar)) {
                 break;
             }
-            prevWordsInfo[i] = new WordInfo(focusedWord);
+            prevWordsInfo[i] = new WordInfo(prev.subSequence(wordStart, wordEnd).toString());
         }
         return new NgramContext(prevWordsInfo);
     }
+
+    private static boolean hasNonWhitespace(final CharSequence text, final int start,
+            final int end) {
+        for (int i = start; i < end; i++) {
+            if (!isWhitespace(text.charAt(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
 }
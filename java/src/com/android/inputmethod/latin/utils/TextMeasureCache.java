@@ -0,0 +1,245 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.inputmethod.latin.utils;
+
+import android.graphics.Typeface;
+
+import com.android.inputmethod.annotations.UsedForTesting;
+
+import java.util.Arrays;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * A bounded cache of text measurements, evicted in least recently used order.
+ *
+ * A measurement is looked up by its kind, the typeface, the text size and the text scale x it
+ * was made with, and the text. The entries live in parallel arrays that are linked into hash
+ * chains and into a recency list by index, so that looking up a measurement neither allocates
+ * nor boxes it. The typefaces are compared by identity.
+ * This class is not thread-safe.
+ */
+public final class TextMeasureCache {
+    private static final int NO_ENTRY = -1;
+
+    private final int mCapacity;
+    private int mSize;
+    // The first entry of each hash chain.
+    private final int[] mBuckets;
+    private final int[] mNextInBucket;
+    // The recency list, from the newest entry to the oldest one.
+    private final int[] mNewer;
+    private final int[] mOlder;
+    private int mNewest = NO_ENTRY;
+    private int mOldest = NO_ENTRY;
+
+    private final int[] mHashes;
+    private final int[] mKinds;
+    private final Typeface[] mTypefaces;
+    private final int[] mTextSizeBits;
+    private final int[] mTextScaleXBits;
+    private final String[] mTexts;
+    private final float[] mValues;
+
+    public TextMeasureCache(final int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        mCapacity = capacity;
+        // A power of two that keeps the hash chains short.
+        mBuckets = new int[Integer.highestOneBit(capacity * 2 - 1) << 1];
+        Arrays.fill(mBuckets, NO_ENTRY);
+        mNextInBucket = new int[capacity];
+        mNewer = new int[capacity];
+        mOlder = new int[capacity];
+        mHashes = new int[capacity];
+        mKinds = new int[capacity];
+        mTypefaces = new Typeface[capacity];
+        mTextSizeBits = new int[capacity];
+        mTextScaleXBits = new int[capacity];
+        mTexts = new String[capacity];
+        mValues = new float[capacity];
+    }
+
+    private static int hash(final int kind, @Nullable final Typeface typeface,
+            final int textSizeBits, final int textScaleXBits, @Nonnull final CharSequence text) {
+        int hash = kind;
+        hash = hash * 31 + System.identityHashCode(typeface);
+        hash = hash * 31 + textSizeBits;
+        hash = hash * 31 + textScaleXBits;
+        final int length = text.length();
+        for (int i = 0; i < length; i++) {
+            hash = hash * 31 + text.charAt(i);
+        }
+        return hash;
+    }
+
+    private int getBucket(final int hash) {
+        return (hash ^ (hash >>> 16)) & (mBuckets.length - 1);
+    }
+
+    private static boolean contentEquals(@Nonnull final String cached,
+            @Nonnull final CharSequence text) {
+        final int length = text.length();
+        if (cached.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (cached.charAt(i) != text.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int findEntry(final int hash, final int kind, @Nullable final Typeface typeface,
+            final int textSizeBits, final int textScaleXBits, @Nonnull final CharSequence text) {
+        for (int entry = mBuckets[getBucket(hash)]; entry != NO_ENTRY;
+                entry = mNextInBucket[entry]) {
+            if (mHashes[entry] == hash && mKinds[entry] == kind && mTypefaces[entry] == typeface
+                    && mTextSizeBits[entry] == textSizeBits
+                    && mTextScaleXBits[entry] == textScaleXBits
+                    && contentEquals(mTexts[entry], text)) {
+                return entry;
+            }
+        }
+        return NO_ENTRY;
+    }
+
+    private void unlinkFromRecencyList(final int entry) {
+        final int newer = mNewer[entry];
+        final int older = mOlder[entry];
+        if (newer != NO_ENTRY) {
+            mOlder[newer] = older;
+        } else {
+            mNewest = older;
+        }
+        if (older != NO_ENTRY) {
+            mNewer[older] = newer;
+        } else {
+            mOldest = newer;
+        }
+    }
+
+    private void linkAsNewest(final int entry) {
+        mNewer[entry] = NO_ENTRY;
+        mOlder[entry] = mNewest;
+        if (mNewest != NO_ENTRY) {
+            mNewer[mNewest] = entry;
+        }
+        mNewest = entry;
+        if (mOldest == NO_ENTRY) {
+            mOldest = entry;
+        }
+    }
+
+    private void unlinkFromBucket(final int entry) {
+        final int bucket = getBucket(mHashes[entry]);
+        int previous = NO_ENTRY;
+        for (int current = mBuckets[bucket]; current != NO_ENTRY;
+                current = mNextInBucket[current]) {
+            if (current == entry) {
+                if (previous == NO_ENTRY) {
+                    mBuckets[bucket] = mNextInBucket[entry];
+                } else {
+                    mNextInBucket[previous] = mNextInBucket[entry];
+                }
+                return;
+            }
+            previous = current;
+        }
+    }
+
+    /**
+     * Gets a measurement and marks it as the most recently used one.
+     * @param kind the kind of measurement, defined by the caller.
+     * @param typeface the typeface the text is measured with.
+     * @param textSize the text size the text is measured with.
+     * @param textScaleX the text scale x the text is measured with.
+     * @param text the text.
+     * @return the measurement, or {@link Float#NaN} if it is not cached.
+     */
+    public float get(final int kind, @Nullable final Typeface typeface, final float textSize,
+            final float textScaleX, @Nonnull final CharSequence text) {
+        final int textSizeBits = Float.floatToIntBits(textSize);
+        final int textScaleXBits = Float.floatToIntBits(textScaleX);
+        final int hash = hash(kind, typeface, textSizeBits, textScaleXBits, text);
+        final int entry = findEntry(hash, kind, typeface, textSizeBits, textScaleXBits, text);
+        if (entry == NO_ENTRY) {
+            return Float.NaN;
+        }
+        if (entry != mNewest) {
+            unlinkFromRecencyList(entry);
+            linkAsNewest(entry);
+        }
+        return mValues[entry];
+    }
+
+    /**
+     * Caches a measurement, evicting the least recently used one if the cache is full.
+     * @param kind the kind of measurement, defined by the caller.
+     * @param typeface the typeface the text is measured with.
+     * @param textSize the text size the text is measured with.
+     * @param textScaleX the text scale x the text is measured with.
+     * @param text the text.
+     * @param value the measurement.
+     */
+    public void put(final int kind, @Nullable final Typeface typeface, final float textSize,
+            final float textScaleX, @Nonnull final CharSequence text, final float value) {
+        final int textSizeBits = Float.floatToIntBits(textSize);
+        final int textScaleXBits = Float.floatToIntBits(textScaleX);
+        final int hash = hash(kind, typeface, textSizeBits, textScaleXBits, text);
+        int entry = findEntry(hash, kind, typeface, textSizeBits, textScaleXBits, text);
+        if (entry != NO_ENTRY) {
+            unlinkFromRecencyList(entry);
+        } else {
+            if (mSize < mCapacity) {
+                entry = mSize++;
+            } else {
+                entry = mOldest;
+                unlinkFromRecencyList(entry);
+                unlinkFromBucket(entry);
+            }
+            mHashes[entry] = hash;
+            mKinds[entry] = kind;
+            mTypefaces[entry] = typeface;
+            mTextSizeBits[entry] = textSizeBits;
+            mTextScaleXBits[entry] = textScaleXBits;
+            mTexts[entry] = text.toString();
+            final int bucket = getBucket(hash);
+            mNextInBucket[entry] = mBuckets[bucket];
+            mBuckets[bucket] = entry;
+        }
+        mValues[entry] = value;
+        linkAsNewest(entry);
+    }
+
+    public void clear() {
+        Arrays.fill(mBuckets, NO_ENTRY);
+        Arrays.fill(mTypefaces, null);
+        Arrays.fill(mTexts, null);
+        mNewest = NO_ENTRY;
+        mOldest = NO_ENTRY;
+        mSize = 0;
+    }
+
+    @UsedForTesting
+    public int size() {
+        return mSize;
+    }
+}
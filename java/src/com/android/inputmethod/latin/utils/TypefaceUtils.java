@@ -18,91 +18,100 @@ package com.android.inputmethod.latin.utils;
 
 import android.graphics.Paint;
 import android.graphics.Rect;
-import android.graphics.Typeface;
-import android.util.SparseArray;
 
-public final class TypefaceUtils {
-    private static final char[] KEY_LABEL_REFERENCE_CHAR = { 'M' };
-    private static final char[] KEY_NUMERIC_HINT_LABEL_REFERENCE_CHAR = { '8' };
+import javax.annotation.Nonnull;
 
-    private TypefaceUtils() {
-        // This utility class is not publicly instantiable.
-    }
+public final class TypefaceUtils {
+    private static final String KEY_LABEL_REFERENCE_CHAR = "M";
+    private static final String KEY_NUMERIC_HINT_LABEL_REFERENCE_CHAR = "8";
 
-    // This sparse array caches key label text height in pixel indexed by key label text size.
-    private static final SparseArray<Float> sTextHeightCache = new SparseArray<>();
-    // Working variable for the following method.
-    private static final Rect sTextHeightBounds = new Rect();
+    // The kinds of measurements in {@link #sTextMeasureCache}.
+    private static final int MEASURE_BOUNDS_WIDTH = 0;
+    private static final int MEASURE_BOUNDS_HEIGHT = 1;
+    private static final int MEASURE_ROUNDED_WIDTH = 2;
 
-    private static float getCharHeight(final char[] referenceChar, final Paint paint) {
-        final int key = getCharGeometryCacheKey(referenceChar[0], paint);
-        synchronized (sTextHeightCache) {
-            final Float cachedValue = sTextHeightCache.get(key);
-            if (cachedValue != null) {
-                return cachedValue;
-            }
+    // The key labels of a few keyboards, and the words of a few suggestion strips.
+    private static final int TEXT_MEASURE_CACHE_CAPACITY = 512;
 
-            paint.getTextBounds(referenceChar, 0, 1, sTextHeightBounds);
-            final float height = sTextHeightBounds.height();
-            sTextHeightCache.put(key, height);
-            return height;
-        }
+    private TypefaceUtils() {
+        // This utility class is not publicly instantiable.
     }
 
-    // This sparse array caches key label text width in pixel indexed by key label text size.
-    private static final SparseArray<Float> sTextWidthCache = new SparseArray<>();
+    // This cache is shared by the key labels and the suggestion strip. It is also the lock for
+    // the working variables below.
+    private static final TextMeasureCache sTextMeasureCache =
+            new TextMeasureCache(TEXT_MEASURE_CACHE_CAPACITY);
     // Working variable for the following method.
-    private static final Rect sTextWidthBounds = new Rect();
-
-    private static float getCharWidth(final char[] referenceChar, final Paint paint) {
-        final int key = getCharGeometryCacheKey(referenceChar[0], paint);
-        synchronized (sTextWidthCache) {
-            final Float cachedValue = sTextWidthCache.get(key);
-            if (cachedValue != null) {
+    private static final Rect sTextBounds = new Rect();
+
+    private static float getTextBoundsMeasure(final int kind, @Nonnull final String text,
+            @Nonnull final Paint paint) {
+        synchronized (sTextMeasureCache) {
+            final float cachedValue = sTextMeasureCache.get(kind, paint.getTypeface(),
+                    paint.getTextSize(), paint.getTextScaleX(), text);
+            if (!Float.isNaN(cachedValue)) {
                 return cachedValue;
             }
 
-            paint.getTextBounds(referenceChar, 0, 1, sTextWidthBounds);
-            final float width = sTextWidthBounds.width();
-            sTextWidthCache.put(key, width);
-            return width;
-        }
-    }
-
-    private static int getCharGeometryCacheKey(final char referenceChar, final Paint paint) {
-        final int labelSize = (int)paint.getTextSize();
-        final Typeface face = paint.getTypeface();
-        final int codePointOffset = referenceChar << 15;
-        if (face == Typeface.DEFAULT) {
-            return codePointOffset + labelSize;
-        } else if (face == Typeface.DEFAULT_BOLD) {
-            return codePointOffset + labelSize + 0x1000;
-        } else if (face == Typeface.MONOSPACE) {
-            return codePointOffset + labelSize + 0x2000;
-        } else {
-            return codePointOffset + labelSize;
+            paint.getTextBounds(text, 0, text.length(), sTextBounds);
+            final float width = sTextBounds.width();
+            final float height = sTextBounds.height();
+            sTextMeasureCache.put(MEASURE_BOUNDS_WIDTH, paint.getTypeface(), paint.getTextSize(),
+                    paint.getTextScaleX(), text, width);
+            sTextMeasureCache.put(MEASURE_BOUNDS_HEIGHT, paint.getTypeface(),
+                    paint.getTextSize(), paint.getTextScaleX(), text, height);
+            return kind == MEASURE_BOUNDS_WIDTH ? width : height;
         }
     }
 
     public static float getReferenceCharHeight(final Paint paint) {
-        return getCharHeight(KEY_LABEL_REFERENCE_CHAR, paint);
+        return getTextBoundsMeasure(MEASURE_BOUNDS_HEIGHT, KEY_LABEL_REFERENCE_CHAR, paint);
     }
 
     public static float getReferenceCharWidth(final Paint paint) {
-        return getCharWidth(KEY_LABEL_REFERENCE_CHAR, paint);
+        return getTextBoundsMeasure(MEASURE_BOUNDS_WIDTH, KEY_LABEL_REFERENCE_CHAR, paint);
     }
 
     public static float getReferenceDigitWidth(final Paint paint) {
-        return getCharWidth(KEY_NUMERIC_HINT_LABEL_REFERENCE_CHAR, paint);
+        return getTextBoundsMeasure(
+                MEASURE_BOUNDS_WIDTH, KEY_NUMERIC_HINT_LABEL_REFERENCE_CHAR, paint);
+    }
+
+    public static float getStringWidth(final String string, final Paint paint) {
+        return getTextBoundsMeasure(MEASURE_BOUNDS_WIDTH, string, paint);
     }
 
     // Working variable for the following method.
-    private static final Rect sStringWidthBounds = new Rect();
+    private static float[] sCharWidths = new float[0];
+
+    /**
+     * Gets the width of a text as the sum of the advances of its characters, each one rounded
+     * up to a whole pixel.
+     * @param text the text.
+     * @param paint the paint to measure the text with.
+     * @return the width of the text in pixels.
+     */
+    public static int getRoundedTextWidth(@Nonnull final CharSequence text,
+            @Nonnull final Paint paint) {
+        synchronized (sTextMeasureCache) {
+            final float cachedValue = sTextMeasureCache.get(MEASURE_ROUNDED_WIDTH,
+                    paint.getTypeface(), paint.getTextSize(), paint.getTextScaleX(), text);
+            if (!Float.isNaN(cachedValue)) {
+                return (int)cachedValue;
+            }
 
-    public static float getStringWidth(final String string, final Paint paint) {
-        synchronized (sStringWidthBounds) {
-            paint.getTextBounds(string, 0, string.length(), sStringWidthBounds);
-            return sStringWidthBounds.width();
+            final int length = text.length();
+            if (sCharWidths.length < length) {
+                sCharWidths = new float[length];
+            }
+            final int count = paint.getTextWidths(text, 0, length, sCharWidths);
+            int width = 0;
+            for (int i = 0; i < count; i++) {
+                width += Math.round(sCharWidths[i] + 0.5f);
+            }
+            sTextMeasureCache.put(MEASURE_ROUNDED_WIDTH, paint.getTypeface(),
+                    paint.getTextSize(), paint.getTextScaleX(), text, width);
+            return width;
         }
     }
 }
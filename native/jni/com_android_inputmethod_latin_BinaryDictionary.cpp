@@ -42,6 +42,10 @@ namespace latinime {
 
 class ProximityInfo;
 
+// The number of planes in the input pointers buffer. This should be synchronized with
+// InputPointers.DIRECT_BUFFER_PLANE_COUNT.
+static const int INPUT_POINTERS_PLANE_COUNT = 4;
+
 static jlong latinime_BinaryDictionary_open(JNIEnv *env, jclass clazz, jstring sourceDir,
         jlong dictOffset, jlong dictSize, jboolean isUpdatable) {
     PROF_INIT;
@@ -176,8 +180,7 @@ static int latinime_BinaryDictionary_getFormatVersion(JNIEnv *env, jclass clazz,
 }
 
 static void latinime_BinaryDictionary_getSuggestions(JNIEnv *env, jclass clazz, jlong dict,
-        jlong proximityInfo, jlong dicTraverseSession, jintArray xCoordinatesArray,
-        jintArray yCoordinatesArray, jintArray timesArray, jintArray pointerIdsArray,
+        jlong proximityInfo, jlong dicTraverseSession, jobject inputPointersBuffer,
         jintArray inputCodePointsArray, jint inputSize, jintArray suggestOptions,
         jobjectArray prevWordCodePointArrays, jbooleanArray isBeginningOfSentenceArray,
         jint prevWordCount, jintArray outSuggestionCount, jintArray outCodePointsArray,
@@ -197,16 +200,24 @@ static void latinime_BinaryDictionary_getSuggestions(JNIEnv *env, jclass clazz,
         return;
     }
     // Input values
-    int xCoordinates[inputSize];
-    int yCoordinates[inputSize];
-    int times[inputSize];
-    int pointerIds[inputSize];
+    // The input pointers are directly read from the direct buffer that consists of the
+    // x-coordinate, y-coordinate, pointer id and time planes. See InputPointers.getDirectBuffer().
+    int *const inputPointers =
+            static_cast<int *>(env->GetDirectBufferAddress(inputPointersBuffer));
+    const jlong inputPointersStride = env->GetDirectBufferCapacity(inputPointersBuffer)
+            / INPUT_POINTERS_PLANE_COUNT;
+    if (!inputPointers || inputPointersStride < inputSize) {
+        AKLOGE("Invalid inputPointersBuffer: stride %lld, inputSize %d",
+                static_cast<long long>(inputPointersStride), inputSize);
+        ASSERT(false);
+        return;
+    }
+    int *const xCoordinates = inputPointers;
+    int *const yCoordinates = inputPointers + inputPointersStride;
+    int *const pointerIds = inputPointers + inputPointersStride * 2;
+    int *const times = inputPointers + inputPointersStride * 3;
     const jsize inputCodePointsLength = env->GetArrayLength(inputCodePointsArray);
     int inputCodePoints[inputCodePointsLength];
-    env->GetIntArrayRegion(xCoordinatesArray, 0, inputSize, xCoordinates);
-    env->GetIntArrayRegion(yCoordinatesArray, 0, inputSize, yCoordinates);
-    env->GetIntArrayRegion(timesArray, 0, inputSize, times);
-    env->GetIntArrayRegion(pointerIdsArray, 0, inputSize, pointerIds);
     env->GetIntArrayRegion(inputCodePointsArray, 0, inputCodePointsLength, inputCodePoints);
 
     const jsize numberOfOptions = env->GetArrayLength(suggestOptions);
@@ -659,7 +670,7 @@ static const JNINativeMethod sMethods[] = {
     },
     {
         const_cast<char *>("getSuggestionsNative"),
-        const_cast<char *>("(JJJ[I[I[I[I[II[I[[I[ZI[I[I[I[I[I[I[F)V"),
+        const_cast<char *>("(JJJLjava/nio/IntBuffer;[II[I[[I[ZI[I[I[I[I[I[I[F)V"),
         reinterpret_cast<void *>(latinime_BinaryDictionary_getSuggestions)
     },
     {
@@ -50,6 +50,15 @@ static void latinime_initDicTraverseSession(JNIEnv *env, jclass clazz, jlong tra
     ts->init(dict, &ngramContext, 0 /* suggestOptions */);
 }
 
+static void latinime_setDicTraverseSessionCancelled(JNIEnv *env, jclass clazz,
+        jlong traverseSession, jboolean isCancelled) {
+    DicTraverseSession *ts = reinterpret_cast<DicTraverseSession *>(traverseSession);
+    if (!ts) {
+        return;
+    }
+    ts->setCancelled(isCancelled == JNI_TRUE);
+}
+
 static void latinime_releaseDicTraverseSession(JNIEnv *env, jclass clazz, jlong traverseSession) {
     DicTraverseSession *ts = reinterpret_cast<DicTraverseSession *>(traverseSession);
     DicTraverseSession::releaseSessionInstance(ts);
@@ -66,6 +75,11 @@ static const JNINativeMethod sMethods[] = {
         const_cast<char *>("(JJ[II)V"),
         reinterpret_cast<void *>(latinime_initDicTraverseSession)
     },
+    {
+        const_cast<char *>("setDicTraverseSessionCancelledNative"),
+        const_cast<char *>("(JZ)V"),
+        reinterpret_cast<void *>(latinime_setDicTraverseSessionCancelled)
+    },
     {
         const_cast<char *>("releaseDicTraverseSessionNative"),
         const_cast<char *>("(J)V"),
@@ -17,6 +17,7 @@
 #ifndef LATINIME_DIC_TRAVERSE_SESSION_H
 #define LATINIME_DIC_TRAVERSE_SESSION_H
 
+#include <atomic>
 #include <vector>
 
 #include "defines.h"
@@ -53,7 +54,8 @@ class DicTraverseSession {
     AK_FORCE_INLINE DicTraverseSession(JNIEnv *env, jstring localeStr, bool usesLargeCache)
             : mPrevWordIdCount(0), mProximityInfo(nullptr), mDictionary(nullptr),
               mSuggestOptions(nullptr), mDicNodesCache(usesLargeCache), mMultiBigramMap(),
-              mInputSize(0), mMaxPointerCount(1), mMultiWordCostMultiplier(1.0f) {
+              mInputSize(0), mMaxPointerCount(1), mMultiWordCostMultiplier(1.0f),
+              mIsCancelled(false) {
         // NOTE: mProximityInfoStates is an array of instances.
         // No need to initialize it explicitly here.
     }
@@ -157,6 +159,16 @@ class DicTraverseSession {
         return mMultiWordCostMultiplier;
     }
 
+    // The cancellation may be requested from another thread while a search is running on this
+    // session. The search checks it between input indices and stops early.
+    void setCancelled(const bool isCancelled) {
+        mIsCancelled.store(isCancelled, std::memory_order_relaxed);
+    }
+
+    bool isCancelled() const {
+        return mIsCancelled.load(std::memory_order_relaxed);
+    }
+
  private:
     DISALLOW_IMPLICIT_CONSTRUCTORS(DicTraverseSession);
     // threshold to start caching
@@ -184,6 +196,8 @@ class DicTraverseSession {
     // Configuration per dictionary
     float mMultiWordCostMultiplier;
 
+    std::atomic<bool> mIsCancelled;
+
 };
 } // namespace latinime
 #endif // LATINIME_DIC_TRAVERSE_SESSION_H
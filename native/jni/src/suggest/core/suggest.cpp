@@ -63,6 +63,15 @@ void Suggest::getSuggestions(ProximityInfo *pInfo, void *traverseSession,
 
     // keep expanding search dicNodes until all have terminated.
     while (tSession->getDicTraverseCache()->activeSize() > 0) {
+        if (tSession->isCancelled()) {
+            // The search has been abandoned. Don't leave the partial search in the cache for
+            // continuous suggestion, and don't output partial suggestions.
+            tSession->resetCache(TRAVERSAL->getMaxCacheSize(inputSize,
+                    tSession->getSuggestOptions()->weightForLocale()),
+                    TRAVERSAL->getTerminalCacheSize());
+            PROF_TIMER_END(1);
+            return;
+        }
         expandCurrentDicNodes(tSession);
         tSession->getDicTraverseCache()->advanceActiveDicNodes();
         tSession->getDicTraverseCache()->advanceInputIndex(inputSize);
@@ -0,0 +1,287 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.inputmethod.dictionarypack;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteCursor;
+import android.database.sqlite.SQLiteCursorDriver;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteQuery;
+import android.util.Log;
+
+import androidx.test.InstrumentationRegistry;
+import androidx.test.filters.MediumTest;
+import androidx.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+@MediumTest
+@RunWith(AndroidJUnit4.class)
+public class MetadataDbHelperTests {
+    private static final String TAG = MetadataDbHelperTests.class.getSimpleName();
+    private static final String CLIENT_ID = "MetadataDbHelperTests";
+    private static final int LOCALE_COUNT = 100;
+    private static final int WORD_LISTS_PER_LOCALE = 4;
+    private static final int WORD_LIST_COUNT = LOCALE_COUNT * WORD_LISTS_PER_LOCALE;
+
+    private Context mContext;
+    private SQLiteDatabase mDb;
+
+    @Before
+    public void setUp() {
+        mContext = InstrumentationRegistry.getTargetContext();
+        mDb = MetadataDbHelper.getDb(mContext, CLIENT_ID);
+        mDb.delete(MetadataDbHelper.METADATA_TABLE_NAME, null, null);
+        // A synthetic metadata set : a few word lists for each of many locales.
+        mDb.beginTransaction();
+        try {
+            for (int i = 0; i < WORD_LIST_COUNT; i++) {
+                mDb.insert(MetadataDbHelper.METADATA_TABLE_NAME, null, makeContentValues(i));
+            }
+            mDb.setTransactionSuccessful();
+        } finally {
+            mDb.endTransaction();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        mDb.delete(MetadataDbHelper.METADATA_TABLE_NAME, null, null);
+    }
+
+    private static String getLocale(final int index) {
+        return "xx_" + (index % LOCALE_COUNT);
+    }
+
+    private static String getWordListId(final int index) {
+        return "main:" + getLocale(index) + "_" + (index / LOCALE_COUNT);
+    }
+
+    // Download ids start at 1, because 0 means "no download".
+    private static int getPendingId(final int index) {
+        return index + 1;
+    }
+
+    private static ContentValues makeContentValues(final int index) {
+        return MetadataDbHelper.makeContentValues(getPendingId(index),
+                MetadataDbHelper.TYPE_BULK, MetadataDbHelper.STATUS_INSTALLED,
+                getWordListId(index), getLocale(index), "description " + index,
+                "filename" + index, "url" + index, 0 /* date */, "" /* rawChecksum */,
+                "" /* checksum */, MetadataDbHelper.DICTIONARY_RETRY_THRESHOLD,
+                1000 /* filesize */, 1 /* version */, 2 /* formatVersion */);
+    }
+
+    private static WordListMetadata makeWordListMetadata(final int index) {
+        return new WordListMetadata(getWordListId(index), MetadataDbHelper.TYPE_BULK,
+                "description " + index, 0 /* lastUpdate */, 1000 /* fileSize */,
+                "" /* rawChecksum */, "" /* checksum */,
+                MetadataDbHelper.DICTIONARY_RETRY_THRESHOLD, "filename" + index, "url" + index,
+                1 /* version */, 2 /* formatVersion */, 0 /* flags */, getLocale(index));
+    }
+
+    private String getQueryPlan(final String selection) {
+        final Cursor cursor = mDb.rawQuery("EXPLAIN QUERY PLAN SELECT * FROM "
+                + MetadataDbHelper.METADATA_TABLE_NAME + " WHERE " + selection, null);
+        try {
+            final StringBuilder sb = new StringBuilder();
+            final int detailIndex = cursor.getColumnIndex("detail");
+            while (cursor.moveToNext()) {
+                sb.append(cursor.getString(detailIndex)).append('\n');
+            }
+            return sb.toString();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    // The number of rows changed by all the statements run on the connection so far.
+    private long getTotalChanges() {
+        final Cursor cursor = mDb.rawQuery("SELECT total_changes()", null);
+        try {
+            assertTrue(cursor.moveToFirst());
+            return cursor.getLong(0);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static String getLatencySummary(final String name, final long[] latenciesUs) {
+        final long[] sorted = latenciesUs.clone();
+        Arrays.sort(sorted);
+        return name + ": count=" + sorted.length
+                + " p50=" + sorted[sorted.length / 2]
+                + " p99=" + sorted[sorted.length * 99 / 100]
+                + " max=" + sorted[sorted.length - 1] + " us";
+    }
+
+    private int getStatus(final int index) {
+        final ContentValues values = MetadataDbHelper.getContentValuesByWordListId(mDb,
+                getWordListId(index), 1 /* version */);
+        return values.getAsInteger(MetadataDbHelper.STATUS_COLUMN);
+    }
+
+    @Test
+    public void testHotQueriesUseIndices() {
+        for (final String column : new String[] { MetadataDbHelper.PENDINGID_COLUMN,
+                MetadataDbHelper.LOCALE_COLUMN, MetadataDbHelper.STATUS_COLUMN }) {
+            final String plan = getQueryPlan(column + " = 1");
+            assertTrue(plan, plan.contains(MetadataDbHelper.METADATA_TABLE_NAME + "_" + column));
+        }
+    }
+
+    @Test
+    public void testLookupByPendingId() {
+        // A second connection to the same database that counts the queries run through it.
+        final int[] queryCount = new int[1];
+        final SQLiteDatabase countingDb = SQLiteDatabase.openDatabase(
+                mDb.getPath(), new SQLiteDatabase.CursorFactory() {
+                    @Override
+                    public Cursor newCursor(final SQLiteDatabase db,
+                            final SQLiteCursorDriver driver, final String editTable,
+                            final SQLiteQuery query) {
+                        queryCount[0]++;
+                        return new SQLiteCursor(driver, editTable, query);
+                    }
+                }, SQLiteDatabase.OPEN_READONLY);
+        final long[] latenciesUs = new long[WORD_LIST_COUNT];
+        long totalLatencyUs = 0;
+        try {
+            for (int i = 0; i < WORD_LIST_COUNT; i++) {
+                final long startTime = System.nanoTime();
+                final ContentValues values =
+                        MetadataDbHelper.getContentValuesByPendingId(countingDb, getPendingId(i));
+                latenciesUs[i] = (System.nanoTime() - startTime) / 1000;
+                totalLatencyUs += latenciesUs[i];
+                assertNotNull(values);
+                assertEquals(getWordListId(i),
+                        values.getAsString(MetadataDbHelper.WORDLISTID_COLUMN));
+            }
+        } finally {
+            countingDb.close();
+        }
+        // Each lookup is exactly one query.
+        assertEquals(WORD_LIST_COUNT, queryCount[0]);
+        // Sub-millisecond lookups must still show up in the measurement.
+        assertTrue(totalLatencyUs > 0);
+        Log.i(TAG, getLatencySummary("getContentValuesByPendingId", latenciesUs));
+    }
+
+    @Test
+    public void testQueryDictionaries() {
+        final long startTime = System.nanoTime();
+        final Cursor cursor = MetadataDbHelper.queryDictionaries(mContext, CLIENT_ID);
+        try {
+            assertEquals(WORD_LIST_COUNT, cursor.getCount());
+            final int localeIndex = cursor.getColumnIndex(MetadataDbHelper.LOCALE_COLUMN);
+            String previousLocale = "";
+            while (cursor.moveToNext()) {
+                final String locale = cursor.getString(localeIndex);
+                assertTrue(previousLocale.compareTo(locale) <= 0);
+                previousLocale = locale;
+            }
+        } finally {
+            cursor.close();
+        }
+        Log.i(TAG, "queryDictionaries : " + (System.nanoTime() - startTime) / 1000 + " us");
+    }
+
+    @Test
+    public void testMarkEntry() {
+        MetadataDbHelper.markEntryAsDisabled(mDb, getWordListId(0), 1 /* version */);
+        assertEquals(MetadataDbHelper.STATUS_DISABLED, getStatus(0));
+        MetadataDbHelper.markEntryAsDownloading(mDb, getWordListId(0), 1 /* version */, 1234);
+        final ContentValues values = MetadataDbHelper.getContentValuesByPendingId(mDb, 1234);
+        assertEquals(MetadataDbHelper.STATUS_DOWNLOADING,
+                (int)values.getAsInteger(MetadataDbHelper.STATUS_COLUMN));
+        assertEquals(getWordListId(0), values.getAsString(MetadataDbHelper.WORDLISTID_COLUMN));
+        // The other columns are kept.
+        assertEquals("filename0", values.getAsString(MetadataDbHelper.LOCAL_FILENAME_COLUMN));
+        // Marking a missing entry does nothing.
+        MetadataDbHelper.markEntryAsEnabled(mDb, "main:missing", 1 /* version */);
+    }
+
+    @Test
+    public void testMaybeMarkEntryAsRetrying() {
+        int retries = 0;
+        while (MetadataDbHelper.maybeMarkEntryAsRetrying(mDb, getWordListId(0), 1)) {
+            retries++;
+        }
+        assertEquals(MetadataDbHelper.DICTIONARY_RETRY_THRESHOLD - 1, retries);
+        assertEquals(MetadataDbHelper.STATUS_RETRYING, getStatus(0));
+        assertFalse(MetadataDbHelper.maybeMarkEntryAsRetrying(mDb, "main:missing", 1));
+    }
+
+    @Test
+    public void testActionBatchRunsInOneTransaction() {
+        final ArrayList<Boolean> inTransaction = new ArrayList<>();
+        final ActionBatch batch = new ActionBatch();
+        for (int i = 0; i < WORD_LIST_COUNT; i++) {
+            batch.add(new ActionBatch.DisableAction(CLIENT_ID, makeWordListMetadata(i)));
+        }
+        batch.add(new ActionBatch.DatabaseAction() {
+            @Override
+            public String getClientId() {
+                return CLIENT_ID;
+            }
+
+            @Override
+            public void execute(final Context context) {
+                inTransaction.add(mDb.inTransaction());
+                throw new RuntimeException("A failing action doesn't roll back the others");
+            }
+        });
+        batch.add(new ActionBatch.Action() {
+            @Override
+            public void execute(final Context context) {
+                inTransaction.add(mDb.inTransaction());
+            }
+        });
+        final ArrayList<Exception> problems = new ArrayList<>();
+        final long changesBefore = getTotalChanges();
+        final long startTime = System.nanoTime();
+        batch.execute(mContext, new ProblemReporter() {
+            @Override
+            public void report(final Exception e) {
+                problems.add(e);
+            }
+        });
+        Log.i(TAG, "Executed " + WORD_LIST_COUNT + " actions in "
+                + (System.nanoTime() - startTime) / 1000 + " us");
+        // Each disable action writes its own row once, and the failing action writes nothing.
+        assertEquals(WORD_LIST_COUNT, getTotalChanges() - changesBefore);
+        assertEquals(1, problems.size());
+        assertTrue(inTransaction.get(0));
+        assertFalse(inTransaction.get(1));
+        assertFalse(mDb.inTransaction());
+        for (int i = 0; i < WORD_LIST_COUNT; i++) {
+            assertEquals(MetadataDbHelper.STATUS_DISABLED, getStatus(i));
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.inputmethod.dictionarypack;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import android.util.Log;
+
+import androidx.test.filters.SmallTest;
+import androidx.test.runner.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class MetadataDiffTests {
+    private static final String TAG = MetadataDiffTests.class.getSimpleName();
+    private static final int MAXIMUM_FORMAT_VERSION = 2;
+
+    // Records the changes as strings like "added:main:en_us".
+    private static class RecordingListener implements MetadataDiff.Listener {
+        final ArrayList<String> mChanges = new ArrayList<>();
+        final ArrayList<WordListMetadata> mNewInfos = new ArrayList<>();
+
+        @Override
+        public void onWordListAdded(final WordListMetadata newInfo) {
+            mChanges.add("added:" + newInfo.mId);
+            mNewInfos.add(newInfo);
+        }
+
+        @Override
+        public void onWordListRemoved(final WordListMetadata currentInfo) {
+            mChanges.add("removed:" + currentInfo.mId);
+        }
+
+        @Override
+        public void onWordListChanged(final WordListMetadata currentInfo,
+                final WordListMetadata newInfo) {
+            mChanges.add("changed:" + newInfo.mId);
+            mNewInfos.add(newInfo);
+        }
+
+        @Override
+        public void onWordListUpgraded(final WordListMetadata currentInfo,
+                final WordListMetadata newInfo) {
+            mChanges.add("upgraded:" + newInfo.mId + ":" + currentInfo.mVersion + "->"
+                    + newInfo.mVersion);
+            mNewInfos.add(newInfo);
+        }
+    }
+
+    private static WordListMetadata makeWordList(final String id, final int version,
+            final int formatVersion, final String description, final String url,
+            final int retryCount) {
+        return new WordListMetadata(id, MetadataDbHelper.TYPE_BULK, description,
+                1000 /* lastUpdate */, 2000 /* fileSize */, "rawChecksum", "checksum",
+                retryCount, "" /* localFilename */, url, version, formatVersion, 0 /* flags */,
+                "en_US" /* locale */);
+    }
+
+    private static WordListMetadata makeWordList(final String id, final int version) {
+        return makeWordList(id, version, 1 /* formatVersion */, "description", "url:" + id,
+                2 /* retryCount */);
+    }
+
+    @Test
+    public void testChanges() {
+        final List<WordListMetadata> from = new ArrayList<>();
+        from.add(makeWordList("main:fr", 3));
+        from.add(makeWordList("main:de", 1));
+        from.add(makeWordList("main:en", 1));
+        from.add(makeWordList("main:es", 5));
+        from.add(makeWordList("main:it", 2));
+        final List<WordListMetadata> to = new ArrayList<>();
+        to.add(makeWordList("main:en", 1));
+        to.add(makeWordList("main:fr", 4));
+        to.add(makeWordList("main:es", 5, 1, "new description", "url:main:es", 2));
+        to.add(makeWordList("main:it", 1));
+        to.add(makeWordList("main:pt", 1));
+        final RecordingListener listener = new RecordingListener();
+        // main:en didn't change, and the older version of main:it is ignored.
+        assertEquals(2, MetadataDiff.compare(from, to, MAXIMUM_FORMAT_VERSION, listener));
+        assertEquals("[removed:main:de, changed:main:es, upgraded:main:fr:3->4,"
+                + " added:main:pt]", listener.mChanges.toString());
+    }
+
+    @Test
+    public void testRetryCountIsPreserved() {
+        final List<WordListMetadata> from = Collections.singletonList(
+                makeWordList("main:en", 1, 1, "description", "url", 1 /* retryCount */));
+        final List<WordListMetadata> to = Collections.singletonList(
+                makeWordList("main:en", 1, 1, "description", "url", 2 /* retryCount */));
+        final RecordingListener listener = new RecordingListener();
+        assertEquals(1, MetadataDiff.compare(from, to, MAXIMUM_FORMAT_VERSION, listener));
+        assertEquals(1, to.get(0).mRetryCount);
+
+        // A new url resets the retry count.
+        final List<WordListMetadata> newUrl = Collections.singletonList(
+                makeWordList("main:en", 1, 1, "description", "new url", 2 /* retryCount */));
+        assertEquals(0, MetadataDiff.compare(from, newUrl, MAXIMUM_FORMAT_VERSION, listener));
+        assertEquals("[changed:main:en]", listener.mChanges.toString());
+        assertEquals(2, newUrl.get(0).mRetryCount);
+    }
+
+    @Test
+    public void testFormatVersions() {
+        final WordListMetadata supported = makeWordList("main:en", 2, 2, "2", "url", 2);
+        final List<WordListMetadata> to = new ArrayList<>();
+        to.add(makeWordList("main:en", 3, 3, "3", "url", 2));
+        to.add(makeWordList("main:en", 1, 1, "1", "url", 2));
+        to.add(supported);
+        to.add(makeWordList("main:en", 2, 2, "2 again", "url", 2));
+        to.add(makeWordList("main:fr", 1, 3, "unsupported", "url", 2));
+        final RecordingListener listener = new RecordingListener();
+        MetadataDiff.compare(null, to, MAXIMUM_FORMAT_VERSION, listener);
+        // Like MetadataHandler#findWordListById, this picks the first of the word lists with
+        // the highest supported format version.
+        assertEquals("[added:main:en]", listener.mChanges.toString());
+        assertSame(supported, listener.mNewInfos.get(0));
+    }
+
+    @Test
+    public void testLargeMetadataWithFewChanges() {
+        final int wordListCount = 5000;
+        final int changeCount = 10;
+        final List<WordListMetadata> from = new ArrayList<>();
+        final List<WordListMetadata> to = new ArrayList<>();
+        for (int i = 0; i < wordListCount; i++) {
+            final String id = "main:" + i;
+            from.add(makeWordList(id, 1));
+            to.add(makeWordList(id, i % (wordListCount / changeCount) == 0 ? 2 : 1));
+        }
+        // The metadata from the server isn't sorted like the database.
+        Collections.reverse(to);
+        final RecordingListener listener = new RecordingListener();
+        final long startTime = System.nanoTime();
+        final int unchangedCount =
+                MetadataDiff.compare(from, to, MAXIMUM_FORMAT_VERSION, listener);
+        Log.i(TAG, "Compared " + wordListCount + " word lists in "
+                + (System.nanoTime() - startTime) / 1000 + " us");
+        assertEquals(wordListCount - changeCount, unchangedCount);
+        assertEquals(changeCount, listener.mChanges.size());
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.inputmethod.keyboard;
+
+import android.os.Debug;
+import android.test.suitebuilder.annotation.MediumTest;
+import android.text.InputType;
+import android.util.Log;
+import android.view.inputmethod.EditorInfo;
+
+import com.android.inputmethod.latin.utils.SubtypeLocaleUtils;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+@MediumTest
+public class KeyDetectorTests extends KeyboardLayoutSetTestsBase {
+    private static final String TAG = KeyDetectorTests.class.getSimpleName();
+    // The step of the synthetic touch trace in pixels.
+    private static final int TRACE_STEP = 3;
+    // The margin of the synthetic touch trace around the keyboard in pixels.
+    private static final int TRACE_MARGIN = 30;
+
+    private Keyboard mKeyboard;
+    private KeyDetector mKeyDetector;
+    private int[] mTraceXs;
+    private int[] mTraceYs;
+
+    @Override
+    protected int getKeyboardThemeForTests() {
+        return KeyboardTheme.THEME_ID_LXX_LIGHT;
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        final EditorInfo editorInfo = new EditorInfo();
+        editorInfo.inputType = InputType.TYPE_CLASS_TEXT;
+        final KeyboardLayoutSet layoutSet = createKeyboardLayoutSet(
+                getSubtype(Locale.US, SubtypeLocaleUtils.QWERTY), editorInfo);
+        mKeyboard = layoutSet.getKeyboard(KeyboardId.ELEMENT_ALPHABET);
+        mKeyDetector = new KeyDetector();
+        mKeyDetector.setKeyboard(mKeyboard, 0.0f /* correctionX */, 0.0f /* correctionY */);
+
+        // Sweep the whole keyboard row by row, alternating the direction like a finger that
+        // slides back and forth, including the area around the keyboard.
+        final int width = mKeyboard.mOccupiedWidth + TRACE_MARGIN * 2;
+        final int height = mKeyboard.mOccupiedHeight + TRACE_MARGIN * 2;
+        final int columns = width / TRACE_STEP;
+        final int rows = height / TRACE_STEP;
+        mTraceXs = new int[columns * rows];
+        mTraceYs = new int[columns * rows];
+        int index = 0;
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) {
+                final int c = (row % 2 == 0) ? column : columns - 1 - column;
+                mTraceXs[index] = c * TRACE_STEP - TRACE_MARGIN;
+                mTraceYs[index] = row * TRACE_STEP - TRACE_MARGIN;
+                index++;
+            }
+        }
+    }
+
+    // The key detection that scans all nearest keys of the point.
+    private Key detectHitKeyByNearestKeys(final int x, final int y) {
+        int minDistance = Integer.MAX_VALUE;
+        Key primaryKey = null;
+        for (final Key key : mKeyboard.getNearestKeys(x, y)) {
+            if (!key.isOnKey(x, y)) {
+                continue;
+            }
+            final int distance = key.squaredDistanceToEdge(x, y);
+            if (distance > minDistance) {
+                continue;
+            }
+            if (primaryKey == null || distance < minDistance
+                    || key.getCode() > primaryKey.getCode()) {
+                minDistance = distance;
+                primaryKey = key;
+            }
+        }
+        return primaryKey;
+    }
+
+    public void testDetectHitKey() {
+        for (int i = 0; i < mTraceXs.length; i++) {
+            final int x = mTraceXs[i];
+            final int y = mTraceYs[i];
+            assertSame("x=" + x + " y=" + y, detectHitKeyByNearestKeys(x, y),
+                    mKeyDetector.detectHitKey(x, y));
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    public void testDetectHitKeyAllocation() {
+        final KeyDetector keyDetector = mKeyDetector;
+        final int[] xs = mTraceXs;
+        final int[] ys = mTraceYs;
+        // Warm up.
+        for (int i = 0; i < xs.length; i++) {
+            keyDetector.detectHitKey(xs[i], ys[i]);
+        }
+        Debug.resetThreadAllocCount();
+        Debug.startAllocCounting();
+        for (int i = 0; i < xs.length; i++) {
+            keyDetector.detectHitKey(xs[i], ys[i]);
+        }
+        Debug.stopAllocCounting();
+        assertEquals("allocations", 0, Debug.getThreadAllocCount());
+    }
+
+    public void testDetectHitKeyLatency() {
+        final int count = mTraceXs.length;
+        final long[] nearestKeysTimes = new long[count];
+        final long[] detectorTimes = new long[count];
+        for (int i = 0; i < count; i++) {
+            final int x = mTraceXs[i];
+            final int y = mTraceYs[i];
+            final long start = System.nanoTime();
+            detectHitKeyByNearestKeys(x, y);
+            final long middle = System.nanoTime();
+            mKeyDetector.detectHitKey(x, y);
+            detectorTimes[i] = System.nanoTime() - middle;
+            nearestKeysTimes[i] = middle - start;
+        }
+        Arrays.sort(nearestKeysTimes);
+        Arrays.sort(detectorTimes);
+        Log.d(TAG, String.format(Locale.US, "%d points: nearest keys p50/p99=%d/%d ns,"
+                + " hit candidates p50/p99=%d/%d ns", count,
+                nearestKeysTimes[count / 2], nearestKeysTimes[count * 99 / 100],
+                detectorTimes[count / 2], detectorTimes[count * 99 / 100]));
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.inputmethod.keyboard;
+
+import android.test.suitebuilder.annotation.MediumTest;
+import android.util.Log;
+import android.view.inputmethod.EditorInfo;
+import android.view.inputmethod.InputMethodSubtype;
+
+import com.android.inputmethod.keyboard.internal.KeyboardTextsSet;
+import com.android.inputmethod.keyboard.internal.MoreKeySpec;
+import com.android.inputmethod.latin.utils.SubtypeLocaleUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Measures the time to load the keyboards of all subtypes from their XML layouts, which resolves
+ * every "!text/" reference of their keys.
+ */
+@MediumTest
+public class KeyboardLayoutSetLoadingTests extends KeyboardLayoutSetTestsBase {
+    private static final String TAG = KeyboardLayoutSetLoadingTests.class.getSimpleName();
+    private static final int[] ELEMENT_IDS = {
+        KeyboardId.ELEMENT_ALPHABET, KeyboardId.ELEMENT_SYMBOLS
+    };
+
+    @Override
+    protected int getKeyboardThemeForTests() {
+        return KeyboardTheme.THEME_ID_LXX_LIGHT;
+    }
+
+    private static void assertResolved(final String message, final String text) {
+        if (text != null) {
+            assertFalse(message + ": " + text, text.contains(KeyboardTextsSet.PREFIX_TEXT));
+        }
+    }
+
+    private static void assertAllTextsResolved(final String message, final Keyboard keyboard) {
+        for (final Key key : keyboard.getSortedKeys()) {
+            assertResolved(message, key.getLabel());
+            assertResolved(message, key.getHintLabel());
+            assertResolved(message, key.getOutputText());
+            final MoreKeySpec[] moreKeys = key.getMoreKeys();
+            if (moreKeys == null) {
+                continue;
+            }
+            for (final MoreKeySpec moreKey : moreKeys) {
+                assertResolved(message, moreKey.mLabel);
+                assertResolved(message, moreKey.mOutputText);
+            }
+        }
+    }
+
+    public void testLoadAllLayouts() {
+        final ArrayList<InputMethodSubtype> subtypes = getAllSubtypesList();
+        final long[] loadTimes = new long[subtypes.size()];
+        String slowestSubtype = null;
+        long slowestLoadTime = -1;
+        for (int index = 0; index < subtypes.size(); index++) {
+            final InputMethodSubtype subtype = subtypes.get(index);
+            final String subtypeName = SubtypeLocaleUtils.getSubtypeLocale(subtype) + "/"
+                    + SubtypeLocaleUtils.getKeyboardLayoutSetName(subtype);
+            // Each subtype is loaded from its XML layout, not from the keyboard cache.
+            KeyboardLayoutSet.onKeyboardThemeChanged();
+            final KeyboardLayoutSet layoutSet = createKeyboardLayoutSet(subtype, new EditorInfo());
+            final Keyboard[] keyboards = new Keyboard[ELEMENT_IDS.length];
+            final long startTime = System.nanoTime();
+            for (int i = 0; i < ELEMENT_IDS.length; i++) {
+                keyboards[i] = layoutSet.getKeyboard(ELEMENT_IDS[i]);
+            }
+            loadTimes[index] = (System.nanoTime() - startTime) / 1000;
+            for (final Keyboard keyboard : keyboards) {
+                assertFalse(subtypeName, keyboard.getSortedKeys().isEmpty());
+                assertAllTextsResolved(subtypeName, keyboard);
+            }
+            if (loadTimes[index] > slowestLoadTime) {
+                slowestLoadTime = loadTimes[index];
+                slowestSubtype = subtypeName;
+            }
+        }
+        Arrays.sort(loadTimes);
+        Log.i(TAG, "Loaded the alphabet and symbols keyboards of " + loadTimes.length
+                + " subtypes: p50=" + loadTimes[loadTimes.length / 2] + "us max="
+                + slowestLoadTime + "us (" + slowestSubtype + ")");
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.inputmethod.keyboard;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.test.suitebuilder.annotation.MediumTest;
+import android.util.Log;
+import android.view.View.MeasureSpec;
+import android.view.inputmethod.EditorInfo;
+import android.view.inputmethod.InputMethodSubtype;
+
+import com.android.inputmethod.keyboard.internal.KeyVisualCache;
+import com.android.inputmethod.latin.utils.SubtypeLocaleUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Measures the frame time of redrawing a full QWERTY keyboard with and without the key visual
+ * cache, and the memory the cache takes.
+ */
+@MediumTest
+public class KeyboardViewDrawingTests extends KeyboardLayoutSetTestsBase {
+    private static final String TAG = KeyboardViewDrawingTests.class.getSimpleName();
+    private static final int FRAME_COUNT = 50;
+
+    private KeyboardView mKeyboardView;
+    private Keyboard mKeyboard;
+    private Canvas mCanvas;
+
+    @Override
+    protected int getKeyboardThemeForTests() {
+        return KeyboardTheme.THEME_ID_LXX_LIGHT;
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        final InputMethodSubtype subtype = getSubtype(Locale.US, SubtypeLocaleUtils.QWERTY);
+        final KeyboardLayoutSet layoutSet = createKeyboardLayoutSet(subtype, new EditorInfo());
+        mKeyboard = layoutSet.getKeyboard(KeyboardId.ELEMENT_ALPHABET);
+        mKeyboardView = new KeyboardView(getContext(), null /* attrs */);
+        mKeyboardView.setKeyboard(mKeyboard);
+        mKeyboardView.measure(
+                MeasureSpec.makeMeasureSpec(0, MeasureSpec.UNSPECIFIED),
+                MeasureSpec.makeMeasureSpec(0, MeasureSpec.UNSPECIFIED));
+        final int width = mKeyboardView.getMeasuredWidth();
+        final int height = mKeyboardView.getMeasuredHeight();
+        mKeyboardView.layout(0, 0, width, height);
+        mCanvas = new Canvas(Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888));
+    }
+
+    // Returns the keys of the keyboards that look different, the ones the cache has tiles for.
+    private static List<Key> getDistinctVisualKeys(final Keyboard ... keyboards) {
+        final ArrayList<Key> distinctKeys = new ArrayList<>();
+        for (final Keyboard keyboard : keyboards) {
+            for (final Key key : keyboard.getSortedKeys()) {
+                if (key.isSpacer()) {
+                    continue;
+                }
+                boolean isDistinct = true;
+                for (final Key distinctKey : distinctKeys) {
+                    if (distinctKey.hasSameVisualsAs(key)) {
+                        isDistinct = false;
+                        break;
+                    }
+                }
+                if (isDistinct) {
+                    distinctKeys.add(key);
+                }
+            }
+        }
+        return distinctKeys;
+    }
+
+    // Returns the median frame time in microseconds.
+    private long measureFullRedraws() {
+        final long[] frameTimes = new long[FRAME_COUNT];
+        for (int i = 0; i < FRAME_COUNT; i++) {
+            final long startTime = System.nanoTime();
+            mKeyboardView.invalidateAllKeys();
+            mKeyboardView.draw(mCanvas);
+            frameTimes[i] = (System.nanoTime() - startTime) / 1000;
+        }
+        Arrays.sort(frameTimes);
+        return frameTimes[FRAME_COUNT / 2];
+    }
+
+    public void testFullRedrawFrameTime() {
+        // Warm up the typefaces and the drawables.
+        mKeyboardView.draw(mCanvas);
+        final long uncachedFrameTime = measureFullRedraws();
+
+        mKeyboardView.setKeyVisualCacheEnabled(true);
+        final long firstFrameStartTime = System.nanoTime();
+        mKeyboardView.draw(mCanvas);
+        final long firstFrameTime = (System.nanoTime() - firstFrameStartTime) / 1000;
+        final int tileCount = getDistinctVisualKeys(mKeyboard).size();
+        assertEquals(tileCount, mKeyboardView.getKeyVisualCache().getTileCount());
+        final long cachedFrameTime = measureFullRedraws();
+        // Redraws only composite the tiles that have already been rasterized.
+        assertEquals(tileCount, mKeyboardView.getKeyVisualCache().getTileCount());
+
+        Log.i(TAG, "Full redraw of " + mKeyboard.getSortedKeys().size() + " keys from "
+                + tileCount + " tiles: uncached=" + uncachedFrameTime + "us, rasterizing="
+                + firstFrameTime + "us, cached=" + cachedFrameTime + "us");
+        assertTrue("Cached redraw " + cachedFrameTime + "us isn't faster than uncached redraw "
+                + uncachedFrameTime + "us", cachedFrameTime < uncachedFrameTime);
+    }
+
+    public void testKeysThatLookTheSameShareTiles() {
+        final Keyboard shiftedKeyboard = createKeyboardLayoutSet(
+                getSubtype(Locale.US, SubtypeLocaleUtils.QWERTY), new EditorInfo())
+                .getKeyboard(KeyboardId.ELEMENT_ALPHABET_AUTOMATIC_SHIFTED);
+        mKeyboardView.setKeyVisualCacheEnabled(true);
+        mKeyboardView.draw(mCanvas);
+        final KeyVisualCache cache = mKeyboardView.getKeyVisualCache();
+        assertEquals(getDistinctVisualKeys(mKeyboard).size(), cache.getTileCount());
+
+        // Only the keys that look different in the shifted keyboard, the letters, get new tiles.
+        mKeyboardView.setKeyboard(shiftedKeyboard);
+        mKeyboardView.draw(mCanvas);
+        final int tileCount = getDistinctVisualKeys(mKeyboard, shiftedKeyboard).size();
+        assertEquals(tileCount, cache.getTileCount());
+        assertTrue(tileCount < mKeyboard.getSortedKeys().size()
+                + shiftedKeyboard.getSortedKeys().size());
+        // Both keyboards are drawn from tiles that take less than two keyboard bitmaps.
+        final int keyboardBytes = mKeyboard.mOccupiedWidth * mKeyboard.mOccupiedHeight * 4;
+        Log.i(TAG, "Tiles of the keyboard and its shifted letters: " + tileCount + " tiles, "
+                + cache.getByteCount() + " bytes out of " + cache.getMaxBytes()
+                + " bytes, keyboard bitmap " + keyboardBytes + " bytes");
+        assertTrue(cache.getByteCount() <= cache.getMaxBytes());
+        assertTrue(cache.getByteCount() < keyboardBytes * 2);
+        mKeyboardView.setKeyboard(mKeyboard);
+        mKeyboardView.draw(mCanvas);
+        assertEquals(tileCount, cache.getTileCount());
+    }
+
+    public void testPartialRedrawFrameTime() {
+        mKeyboardView.draw(mCanvas);
+        // Two fingers typing on both sides of the keyboard.
+        final Key leftKey = mKeyboard.getKey('q');
+        final Key rightKey = mKeyboard.getKey('p');
+        assertNotNull(leftKey);
+        assertNotNull(rightKey);
+        final long startTime = System.nanoTime();
+        for (int i = 0; i < FRAME_COUNT; i++) {
+            leftKey.onPressed();
+            rightKey.onPressed();
+            mKeyboardView.invalidateKey(leftKey);
+            mKeyboardView.invalidateKey(rightKey);
+            mKeyboardView.draw(mCanvas);
+            leftKey.onReleased();
+            rightKey.onReleased();
+            mKeyboardView.invalidateKey(leftKey);
+            mKeyboardView.invalidateKey(rightKey);
+            mKeyboardView.draw(mCanvas);
+        }
+        final long frameTime = (System.nanoTime() - startTime) / 1000 / (FRAME_COUNT * 2);
+        Log.i(TAG, "Partial redraw of two keys: " + frameTime + "us");
+    }
+
+    public void testKeyIndices() {
+        final List<Key> sortedKeys = mKeyboard.getSortedKeys();
+        for (int index = 0; index < sortedKeys.size(); index++) {
+            assertEquals(index, mKeyboard.getKeyIndex(sortedKeys.get(index)));
+        }
+        final Keyboard symbolsKeyboard = createKeyboardLayoutSet(
+                getSubtype(Locale.US, SubtypeLocaleUtils.QWERTY), new EditorInfo())
+                .getKeyboard(KeyboardId.ELEMENT_SYMBOLS);
+        assertEquals(-1, mKeyboard.getKeyIndex(symbolsKeyboard.getKey('1')));
+    }
+
+    public void testPressedKeyHasItsOwnTile() {
+        mKeyboardView.setKeyVisualCacheEnabled(true);
+        mKeyboardView.draw(mCanvas);
+        final int tileCount = mKeyboardView.getKeyVisualCache().getTileCount();
+        final Key key = mKeyboard.getKey('a');
+        assertNotNull(key);
+
+        key.onPressed();
+        mKeyboardView.invalidateKey(key);
+        mKeyboardView.draw(mCanvas);
+        assertEquals(tileCount + 1, mKeyboardView.getKeyVisualCache().getTileCount());
+
+        // Both states of the key are now drawn from the cache.
+        key.onReleased();
+        mKeyboardView.invalidateKey(key);
+        mKeyboardView.draw(mCanvas);
+        key.onPressed();
+        mKeyboardView.invalidateKey(key);
+        mKeyboardView.draw(mCanvas);
+        key.onReleased();
+        assertEquals(tileCount + 1, mKeyboardView.getKeyVisualCache().getTileCount());
+    }
+
+    public void testDisabledCache() {
+        mKeyboardView.setKeyVisualCacheEnabled(true);
+        mKeyboardView.draw(mCanvas);
+        assertNotNull(mKeyboardView.getKeyVisualCache());
+        mKeyboardView.setKeyVisualCacheEnabled(false);
+        assertNull(mKeyboardView.getKeyVisualCache());
+        mKeyboardView.draw(mCanvas);
+    }
+}
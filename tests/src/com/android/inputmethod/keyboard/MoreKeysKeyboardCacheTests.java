@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.inputmethod.keyboard;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Paint;
+import android.test.suitebuilder.annotation.MediumTest;
+import android.view.inputmethod.EditorInfo;
+import android.view.inputmethod.InputMethodSubtype;
+
+import com.android.inputmethod.latin.RichInputMethodSubtype;
+import com.android.inputmethod.latin.utils.ExecutorUtils;
+import com.android.inputmethod.latin.utils.ResourceUtils;
+import com.android.inputmethod.latin.utils.SubtypeLocaleUtils;
+
+import java.util.ArrayList;
+import java.util.Locale;
+
+@MediumTest
+public class MoreKeysKeyboardCacheTests extends KeyboardLayoutSetTestsBase {
+    private InputMethodSubtype mSubtype;
+    private Keyboard mKeyboard;
+    private MoreKeysKeyboardCache mCache;
+
+    @Override
+    protected int getKeyboardThemeForTests() {
+        return KeyboardTheme.THEME_ID_LXX_LIGHT;
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mSubtype = getSubtype(Locale.US, SubtypeLocaleUtils.QWERTY);
+        mKeyboard = createKeyboardLayoutSet(mSubtype, new EditorInfo())
+                .getKeyboard(KeyboardId.ELEMENT_ALPHABET);
+        mCache = new MoreKeysKeyboardCache();
+    }
+
+    private MoreKeysKeyboardCache.Request newRequest(final Keyboard keyboard, final int code) {
+        final Key key = keyboard.getKey(code);
+        assertNotNull(key);
+        assertNotNull(key.getMoreKeys());
+        return new MoreKeysKeyboardCache.Request(getContext(), key, keyboard,
+                false /* isSingleMoreKeyWithPreview */, 0 /* keyPreviewVisibleWidth */,
+                0 /* keyPreviewVisibleHeight */, new Paint());
+    }
+
+    public void testMoreKeysKeyboardIsBuiltOnce() {
+        final MoreKeysKeyboard first = mCache.getMoreKeysKeyboard(newRequest(mKeyboard, 'e'));
+        final MoreKeysKeyboard second = mCache.getMoreKeysKeyboard(newRequest(mKeyboard, 'e'));
+        assertSame(first, second);
+        assertEquals(1, mCache.getBuildCount());
+        assertNotSame(first, mCache.getMoreKeysKeyboard(newRequest(mKeyboard, 'a')));
+        assertEquals(2, mCache.getBuildCount());
+    }
+
+    public void testMoreKeysKeyboardsAreKeyedByGeometry() {
+        final Context context = getContext();
+        final Resources res = context.getResources();
+        final KeyboardLayoutSet.Builder builder = new KeyboardLayoutSet.Builder(
+                context, new EditorInfo());
+        builder.setKeyboardGeometry(ResourceUtils.getDefaultKeyboardWidth(res) / 2,
+                ResourceUtils.getDefaultKeyboardHeight(res))
+                .setSubtype(RichInputMethodSubtype.getRichInputMethodSubtype(mSubtype));
+        final Keyboard narrowKeyboard = builder.build().getKeyboard(KeyboardId.ELEMENT_ALPHABET);
+
+        final MoreKeysKeyboard wide = mCache.getMoreKeysKeyboard(newRequest(mKeyboard, 'e'));
+        final MoreKeysKeyboard narrow = mCache.getMoreKeysKeyboard(
+                newRequest(narrowKeyboard, 'e'));
+        assertNotSame(wide, narrow);
+        assertEquals(2, mCache.getBuildCount());
+    }
+
+    public void testPrefetchBuildsMoreKeysKeyboards() throws Exception {
+        final ArrayList<MoreKeysKeyboardCache.Request> requests = new ArrayList<>();
+        requests.add(newRequest(mKeyboard, 'e'));
+        requests.add(newRequest(mKeyboard, 'u'));
+        mCache.prefetchMoreKeysKeyboards(requests);
+        ExecutorUtils.getBackgroundExecutor(ExecutorUtils.KEYBOARD).submit(new Runnable() {
+            @Override
+            public void run() {}
+        }).get();
+        for (final MoreKeysKeyboardCache.Request request : requests) {
+            assertTrue(mCache.isCached(request));
+        }
+        assertEquals(2, mCache.getBuildCount());
+        mCache.getMoreKeysKeyboard(newRequest(mKeyboard, 'u'));
+        assertEquals(2, mCache.getBuildCount());
+    }
+}
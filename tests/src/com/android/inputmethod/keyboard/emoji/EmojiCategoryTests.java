@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.inputmethod.keyboard.emoji;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.res.Resources;
+import android.content.res.TypedArray;
+import android.preference.PreferenceManager;
+import android.test.suitebuilder.annotation.MediumTest;
+import android.util.Pair;
+
+import com.android.inputmethod.keyboard.Key;
+import com.android.inputmethod.keyboard.KeyboardLayoutSet;
+import com.android.inputmethod.keyboard.KeyboardLayoutSetTestsBase;
+import com.android.inputmethod.keyboard.KeyboardTheme;
+import com.android.inputmethod.latin.R;
+import com.android.inputmethod.latin.RichInputMethodSubtype;
+import com.android.inputmethod.latin.settings.Settings;
+import com.android.inputmethod.latin.utils.ExecutorUtils;
+import com.android.inputmethod.latin.utils.ResourceUtils;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+@MediumTest
+public class EmojiCategoryTests extends KeyboardLayoutSetTestsBase {
+    private SharedPreferences mPrefs;
+    private KeyboardLayoutSet mLayoutSet;
+
+    @Override
+    protected int getKeyboardThemeForTests() {
+        return KeyboardTheme.THEME_ID_LXX_LIGHT;
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        final Context context = getContext();
+        final Resources res = context.getResources();
+        mPrefs = PreferenceManager.getDefaultSharedPreferences(context);
+        final KeyboardLayoutSet.Builder builder = new KeyboardLayoutSet.Builder(
+                context, null /* editorInfo */);
+        builder.setSubtype(RichInputMethodSubtype.getEmojiSubtype());
+        builder.setKeyboardGeometry(ResourceUtils.getDefaultKeyboardWidth(res),
+                new EmojiLayoutParams(res).mEmojiKeyboardHeight);
+        mLayoutSet = builder.build();
+    }
+
+    private EmojiCategory createEmojiCategory() {
+        return createEmojiCategory(EmojiRecentsStore.getInstance(getContext()));
+    }
+
+    private EmojiCategory createEmojiCategory(final EmojiRecentsStore recentsStore) {
+        final Context context = getContext();
+        final TypedArray emojiPalettesViewAttr = context.obtainStyledAttributes(null,
+                R.styleable.EmojiPalettesView, R.attr.emojiPalettesViewStyle,
+                R.style.EmojiPalettesView);
+        final EmojiCategory emojiCategory = new EmojiCategory(mPrefs, recentsStore,
+                context.getResources(), mLayoutSet, emojiPalettesViewAttr);
+        emojiPalettesViewAttr.recycle();
+        return emojiCategory;
+    }
+
+    private static void waitForPrefetch() throws Exception {
+        ExecutorUtils.getBackgroundExecutor(ExecutorUtils.KEYBOARD).submit(new Runnable() {
+            @Override
+            public void run() {}
+        }).get();
+    }
+
+    public void testPageCountsMatchCategoryKeyboards() {
+        final EmojiCategory emojiCategory = createEmojiCategory();
+        for (final EmojiCategory.CategoryProperties properties
+                : emojiCategory.getShownCategories()) {
+            final int categoryId = properties.mCategoryId;
+            if (categoryId == EmojiCategory.ID_RECENTS) {
+                continue;
+            }
+            final int pageCount = emojiCategory.getCategoryPageSize(categoryId);
+            assertTrue(pageCount > 0);
+            for (int pageId = 0; pageId < pageCount; pageId++) {
+                final DynamicGridKeyboard keyboard = emojiCategory.getKeyboard(categoryId, pageId);
+                assertNotNull(keyboard);
+                assertFalse(keyboard.getSortedKeys().isEmpty());
+            }
+            // A page past the pages of the category is empty rather than missing.
+            assertTrue(emojiCategory.getKeyboard(categoryId, pageCount).getSortedKeys().isEmpty());
+        }
+    }
+
+    public void testKeyboardsAreBuiltLazily() {
+        final EmojiCategory first = createEmojiCategory();
+        final int categoryId = first.getShownCategories().get(1).mCategoryId;
+        Settings.writeLastShownEmojiCategoryId(mPrefs, categoryId);
+
+        final EmojiCategory emojiCategory = createEmojiCategory();
+        assertEquals(categoryId, emojiCategory.getCurrentCategoryId());
+        for (final EmojiCategory.CategoryProperties properties
+                : emojiCategory.getShownCategories()) {
+            for (int pageId = 0; pageId < properties.mPageCount; pageId++) {
+                assertFalse(emojiCategory.isKeyboardBuilt(properties.mCategoryId, pageId));
+            }
+        }
+        emojiCategory.getKeyboard(categoryId, 0 /* categoryPageId */);
+        assertTrue(emojiCategory.isKeyboardBuilt(categoryId, 0 /* categoryPageId */));
+        assertFalse(emojiCategory.isKeyboardBuilt(EmojiCategory.ID_RECENTS, 0));
+    }
+
+    public void testPrefetchBuildsNeighborPages() throws Exception {
+        final EmojiCategory emojiCategory = createEmojiCategory();
+        final int position = emojiCategory.getTotalPageCountOfAllCategories() / 2;
+        emojiCategory.prefetchKeyboardsAround(position);
+        waitForPrefetch();
+        assertTrue(emojiCategory.isKeyboardBuilt(EmojiCategory.ID_RECENTS, 0));
+        for (int pos = position - 2; pos <= position + 2; pos++) {
+            final Pair<Integer, Integer> categoryAndId =
+                    emojiCategory.getCategoryIdAndPageIdFromPagePosition(pos);
+            assertTrue(emojiCategory.isKeyboardBuilt(categoryAndId.first, categoryAndId.second));
+        }
+    }
+
+    public void testRecentKeysAreResolvedFromCategoryArrays() {
+        final File file = new File(getContext().getCacheDir(), "emoji_recents_test");
+        file.delete();
+        final EmojiRecentsStore recentsStore = new EmojiRecentsStore(mPrefs, file);
+        final EmojiCategory emojiCategory = createEmojiCategory(recentsStore);
+        final List<EmojiCategory.CategoryProperties> categories =
+                emojiCategory.getShownCategories();
+        final int categoryId = categories.get(1).mCategoryId;
+        // The emoticons are the last category, and their keys are texts.
+        final int emoticonsCategoryId = categories.get(categories.size() - 1).mCategoryId;
+        final Key categoryKey = emojiCategory.getKeyboard(categoryId, 0).getSortedKeys().get(0);
+        final Key emoticonKey = emojiCategory.getKeyboard(emoticonsCategoryId, 0)
+                .getSortedKeys().get(0);
+        final ArrayList<Object> recentKeys = new ArrayList<>();
+        recentKeys.add(emoticonKey.getOutputText());
+        recentKeys.add(categoryKey.getOutputText() != null ? categoryKey.getOutputText()
+                : categoryKey.getCode());
+        recentKeys.add("not an emoji");
+        recentsStore.save(recentKeys);
+
+        final List<Key> keys = createEmojiCategory(recentsStore)
+                .getKeyboard(EmojiCategory.ID_RECENTS, 0).getSortedKeys();
+        assertEquals(2, keys.size());
+        assertEquals(emoticonKey.getLabel(), keys.get(0).getLabel());
+        assertEquals(emoticonKey.getCode(), keys.get(0).getCode());
+        assertEquals(emoticonKey.getOutputText(), keys.get(0).getOutputText());
+        assertEquals(categoryKey.getLabel(), keys.get(1).getLabel());
+        assertEquals(categoryKey.getCode(), keys.get(1).getCode());
+        assertEquals(categoryKey.getOutputText(), keys.get(1).getOutputText());
+        file.delete();
+    }
+
+    public void testKeyIndicesFollowRecentKeys() {
+        final File file = new File(getContext().getCacheDir(), "emoji_recents_test");
+        file.delete();
+        final EmojiCategory emojiCategory = createEmojiCategory(
+                new EmojiRecentsStore(mPrefs, file));
+        final int categoryId = emojiCategory.getShownCategories().get(1).mCategoryId;
+        final List<Key> categoryKeys = emojiCategory.getKeyboard(categoryId, 0).getSortedKeys();
+        final DynamicGridKeyboard recentsKeyboard =
+                emojiCategory.getKeyboard(EmojiCategory.ID_RECENTS, 0);
+        recentsKeyboard.addKeyFirst(categoryKeys.get(0));
+        final Key firstKey = recentsKeyboard.getSortedKeys().get(0);
+        assertEquals(0, recentsKeyboard.getKeyIndex(firstKey));
+        // The sorted keys change when a key is added, and the indices follow them.
+        recentsKeyboard.addKeyFirst(categoryKeys.get(1));
+        final List<Key> recentKeys = recentsKeyboard.getSortedKeys();
+        assertEquals(2, recentKeys.size());
+        assertSame(firstKey, recentKeys.get(1));
+        for (int index = 0; index < recentKeys.size(); index++) {
+            assertEquals(index, recentsKeyboard.getKeyIndex(recentKeys.get(index)));
+        }
+        file.delete();
+    }
+}
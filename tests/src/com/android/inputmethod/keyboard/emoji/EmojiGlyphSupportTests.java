@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.inputmethod.keyboard.emoji;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.res.Resources;
+
+import androidx.test.InstrumentationRegistry;
+import androidx.test.filters.SmallTest;
+import androidx.test.runner.AndroidJUnit4;
+
+import com.android.inputmethod.keyboard.internal.CodesArrayParser;
+import com.android.inputmethod.latin.R;
+import com.android.inputmethod.latin.settings.Settings;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.HashSet;
+
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class EmojiGlyphSupportTests {
+    private static final String PREFS_NAME = EmojiGlyphSupportTests.class.getSimpleName();
+    private static final int[] CODES_ARRAY_IDS = {
+        R.array.emoji_eight_smiley_people,
+        R.array.emoji_eight_flags
+    };
+
+    private SharedPreferences mPrefs;
+    private Resources mResources;
+
+    @Before
+    public void setUp() {
+        final Context context = InstrumentationRegistry.getTargetContext();
+        mPrefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        mPrefs.edit().clear().commit();
+        mResources = context.getResources();
+    }
+
+    @After
+    public void tearDown() {
+        mPrefs.edit().clear().commit();
+    }
+
+    @Test
+    public void testProbesOncePerFingerprint() {
+        final EmojiGlyphSupport probed = new EmojiGlyphSupport(
+                mPrefs, mResources, CODES_ARRAY_IDS);
+        assertTrue(probed.getProbeCount() > 0);
+
+        final EmojiGlyphSupport loaded = new EmojiGlyphSupport(
+                mPrefs, mResources, CODES_ARRAY_IDS);
+        assertEquals(0, loaded.getProbeCount());
+        assertEquals(probed.canShowFlagEmoji(), loaded.canShowFlagEmoji());
+        assertEquals(probed.canShowUnicodeEightEmoji(), loaded.canShowUnicodeEightEmoji());
+        for (final int codesArrayId : CODES_ARRAY_IDS) {
+            assertEquals(probed.getRenderableKeyCount(codesArrayId),
+                    loaded.getRenderableKeyCount(codesArrayId));
+        }
+    }
+
+    @Test
+    public void testProbesAgainWhenFingerprintChanges() {
+        new EmojiGlyphSupport(mPrefs, mResources, CODES_ARRAY_IDS);
+        // As if the system had been updated.
+        Settings.writeEmojiGlyphSupport(mPrefs, "other-fingerprint",
+                Settings.readEmojiUnsupportedGlyphs(mPrefs));
+        final EmojiGlyphSupport probed = new EmojiGlyphSupport(
+                mPrefs, mResources, CODES_ARRAY_IDS);
+        assertTrue(probed.getProbeCount() > 0);
+    }
+
+    @Test
+    public void testUnsupportedGlyphsAreNotCounted() {
+        final int codesArrayId = R.array.emoji_eight_smiley_people;
+        final EmojiGlyphSupport probed = new EmojiGlyphSupport(
+                mPrefs, mResources, CODES_ARRAY_IDS);
+        final String label = CodesArrayParser.parseLabel(
+                mResources.getStringArray(codesArrayId)[0]);
+        assertTrue(probed.canShow(label));
+        // As if the system font couldn't render the first emoji.
+        final HashSet<String> unsupportedGlyphs =
+                new HashSet<>(Settings.readEmojiUnsupportedGlyphs(mPrefs));
+        unsupportedGlyphs.add(label);
+        Settings.writeEmojiGlyphSupport(mPrefs,
+                Settings.readEmojiGlyphSupportFingerprint(mPrefs), unsupportedGlyphs);
+
+        final EmojiGlyphSupport loaded = new EmojiGlyphSupport(
+                mPrefs, mResources, CODES_ARRAY_IDS);
+        assertFalse(loaded.canShow(label));
+        assertEquals(probed.getRenderableKeyCount(codesArrayId) - 1,
+                loaded.getRenderableKeyCount(codesArrayId));
+    }
+
+    @Test
+    public void testProvisionalIndexShowsAllEmoji() {
+        final int codesArrayId = R.array.emoji_eight_smiley_people;
+        final EmojiGlyphSupport probed = new EmojiGlyphSupport(
+                mPrefs, mResources, CODES_ARRAY_IDS);
+        assertFalse(probed.isProvisional());
+        final String label = CodesArrayParser.parseLabel(
+                mResources.getStringArray(codesArrayId)[0]);
+        // As if the system font couldn't render the first emoji.
+        final HashSet<String> unsupportedGlyphs =
+                new HashSet<>(Settings.readEmojiUnsupportedGlyphs(mPrefs));
+        unsupportedGlyphs.add(label);
+        Settings.writeEmojiGlyphSupport(mPrefs,
+                Settings.readEmojiGlyphSupportFingerprint(mPrefs), unsupportedGlyphs);
+
+        final EmojiGlyphSupport provisional = EmojiGlyphSupport.newProvisionalInstance(
+                mPrefs, mResources, CODES_ARRAY_IDS);
+        assertTrue(provisional.isProvisional());
+        assertEquals(0, provisional.getProbeCount());
+        assertEquals(probed.canShowFlagEmoji(), provisional.canShowFlagEmoji());
+        assertEquals(probed.canShowUnicodeEightEmoji(), provisional.canShowUnicodeEightEmoji());
+        assertTrue(provisional.canShow(label));
+        assertEquals(mResources.getStringArray(codesArrayId).length,
+                provisional.getRenderableKeyCount(codesArrayId));
+    }
+
+    @Test
+    public void testProvisionalIndexProbesOnlyCategoriesWithoutPersistedIndex() {
+        final EmojiGlyphSupport provisional = EmojiGlyphSupport.newProvisionalInstance(
+                mPrefs, mResources, CODES_ARRAY_IDS);
+        // The flags and the Unicode 8 emoji.
+        assertEquals(2, provisional.getProbeCount());
+        final EmojiGlyphSupport probed = new EmojiGlyphSupport(
+                mPrefs, mResources, CODES_ARRAY_IDS);
+        assertEquals(probed.canShowFlagEmoji(), provisional.canShowFlagEmoji());
+        assertEquals(probed.canShowUnicodeEightEmoji(), provisional.canShowUnicodeEightEmoji());
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.inputmethod.keyboard.emoji;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import androidx.test.InstrumentationRegistry;
+import androidx.test.filters.SmallTest;
+import androidx.test.runner.AndroidJUnit4;
+
+import com.android.inputmethod.latin.settings.Settings;
+import com.android.inputmethod.latin.utils.ExecutorUtils;
+import com.android.inputmethod.latin.utils.JsonUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class EmojiRecentsStoreTests {
+    private static final String TAG = EmojiRecentsStoreTests.class.getSimpleName();
+    private static final String PREFS_NAME = EmojiRecentsStoreTests.class.getSimpleName();
+    private static final int BENCHMARK_ITERATIONS = 1000;
+
+    private SharedPreferences mPrefs;
+    private File mFile;
+
+    @Before
+    public void setUp() {
+        final Context context = InstrumentationRegistry.getTargetContext();
+        mPrefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        mPrefs.edit().clear().commit();
+        mFile = new File(context.getCacheDir(), PREFS_NAME);
+        mFile.delete();
+    }
+
+    @After
+    public void tearDown() {
+        mPrefs.edit().clear().commit();
+        mFile.delete();
+    }
+
+    private static List<Object> createRecentKeys(final int count) {
+        final ArrayList<Object> keys = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            if (i % 4 == 0) {
+                // A flag or a sequence, which has an output text.
+                keys.add(new String(Character.toChars(0x1F1E6 + i % 26))
+                        + new String(Character.toChars(0x1F1E6 + (i + 1) % 26)));
+            } else {
+                keys.add(0x1F600 + i);
+            }
+        }
+        return keys;
+    }
+
+    private static void waitForWrites() throws Exception {
+        ExecutorUtils.getBackgroundExecutor(ExecutorUtils.KEYBOARD).submit(new Runnable() {
+            @Override
+            public void run() {}
+        }).get();
+    }
+
+    @Test
+    public void testEncodeAndDecode() throws Exception {
+        final List<Object> keys = createRecentKeys(30);
+        assertEquals(keys, EmojiRecentsStore.decode(EmojiRecentsStore.encode(keys)));
+        final List<Object> noKeys = new ArrayList<>();
+        assertEquals(noKeys, EmojiRecentsStore.decode(EmojiRecentsStore.encode(noKeys)));
+    }
+
+    @Test
+    public void testUnknownFormatIsIgnored() throws Exception {
+        final byte[] data = EmojiRecentsStore.encode(createRecentKeys(10));
+        // The format version follows the magic number.
+        data[4] = (byte)(EmojiRecentsStore.FORMAT_VERSION + 1);
+        assertTrue(EmojiRecentsStore.decode(data).isEmpty());
+        assertTrue(EmojiRecentsStore.decode(new byte[] { 1, 2, 3 }).isEmpty());
+    }
+
+    @Test
+    public void testMigratesFromPreferences() throws Exception {
+        final List<Object> keys = createRecentKeys(10);
+        Settings.writeEmojiRecentKeys(mPrefs, JsonUtils.listToJsonStr(keys));
+        final EmojiRecentsStore store = new EmojiRecentsStore(mPrefs, mFile);
+        assertEquals(keys, store.load());
+        store.flush();
+        waitForWrites();
+        assertTrue(mFile.exists());
+        assertEquals("", Settings.readEmojiRecentKeys(mPrefs));
+        assertEquals(keys, new EmojiRecentsStore(mPrefs, mFile).load());
+    }
+
+    @Test
+    public void testSaveIsDeferredUntilFlush() throws Exception {
+        final EmojiRecentsStore store = new EmojiRecentsStore(mPrefs, mFile);
+        assertTrue(store.load().isEmpty());
+        final List<Object> keys = createRecentKeys(10);
+        for (int count = 1; count <= keys.size(); count++) {
+            store.save(keys.subList(0, count));
+        }
+        assertEquals(keys, store.load());
+        assertFalse(mFile.exists());
+        store.flush();
+        waitForWrites();
+        assertEquals(keys, new EmojiRecentsStore(mPrefs, mFile).load());
+    }
+
+    @Test
+    public void testBinaryFormatIsSmallerThanJson() throws Exception {
+        final List<Object> keys = createRecentKeys(60);
+        final String jsonStr = JsonUtils.listToJsonStr(keys);
+        final byte[] data = EmojiRecentsStore.encode(keys);
+
+        long startTime = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_ITERATIONS; i++) {
+            JsonUtils.jsonStrToList(JsonUtils.listToJsonStr(keys));
+        }
+        final long jsonNanos = (System.nanoTime() - startTime) / BENCHMARK_ITERATIONS;
+        startTime = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_ITERATIONS; i++) {
+            EmojiRecentsStore.decode(EmojiRecentsStore.encode(keys));
+        }
+        final long binaryNanos = (System.nanoTime() - startTime) / BENCHMARK_ITERATIONS;
+        Log.i(TAG, "JSON: " + jsonStr.length() + " chars, " + jsonNanos + " ns per round trip");
+        Log.i(TAG, "Binary: " + data.length + " bytes, " + binaryNanos + " ns per round trip");
+
+        assertTrue(data.length < jsonStr.length());
+    }
+}
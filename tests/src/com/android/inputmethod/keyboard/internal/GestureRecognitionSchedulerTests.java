@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.inputmethod.keyboard.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import androidx.test.filters.SmallTest;
+import androidx.test.runner.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class GestureRecognitionSchedulerTests {
+    private static final int MINIMUM_TIME = 100; // msec
+
+    private static void recognize(final GestureRecognitionScheduler scheduler, final int times,
+            final int latency) {
+        for (int i = 0; i < times; i++) {
+            final int requestId = scheduler.onRecognitionRequested(
+                    i * 1000 /* requestTime */, false /* isTailBatchInput */);
+            assertTrue(scheduler.onRecognitionCompleted(requestId, latency));
+        }
+    }
+
+    @Test
+    public void testDefaultInterval() {
+        final GestureRecognitionScheduler scheduler = new GestureRecognitionScheduler();
+        assertEquals(MINIMUM_TIME, scheduler.getRecognitionInterval(MINIMUM_TIME));
+    }
+
+    @Test
+    public void testSlowDecoder() {
+        final GestureRecognitionScheduler scheduler = new GestureRecognitionScheduler();
+        recognize(scheduler, 10, 200 /* latency */);
+        assertEquals(200, scheduler.getAverageLatency());
+        assertEquals(250, scheduler.getRecognitionInterval(MINIMUM_TIME));
+        // The interval is capped.
+        recognize(scheduler, 50, 2000 /* latency */);
+        assertEquals(MINIMUM_TIME * 4, scheduler.getRecognitionInterval(MINIMUM_TIME));
+    }
+
+    @Test
+    public void testFastDecoder() {
+        final GestureRecognitionScheduler scheduler = new GestureRecognitionScheduler();
+        recognize(scheduler, 10, 60 /* latency */);
+        assertEquals(75, scheduler.getRecognitionInterval(MINIMUM_TIME));
+        // The interval has a floor.
+        recognize(scheduler, 50, 1 /* latency */);
+        assertEquals(MINIMUM_TIME / 2, scheduler.getRecognitionInterval(MINIMUM_TIME));
+    }
+
+    @Test
+    public void testPendingRecognition() {
+        final GestureRecognitionScheduler scheduler = new GestureRecognitionScheduler();
+        assertFalse(scheduler.hasPendingRecognition(0, MINIMUM_TIME));
+        final int requestId = scheduler.onRecognitionRequested(
+                1000 /* requestTime */, false /* isTailBatchInput */);
+        assertTrue(scheduler.hasPendingRecognition(1100, MINIMUM_TIME));
+        // A lost recognition doesn't stall the incremental recognitions.
+        assertFalse(scheduler.hasPendingRecognition(1000 + MINIMUM_TIME * 4 + 1, MINIMUM_TIME));
+        assertTrue(scheduler.onRecognitionCompleted(requestId, 100 /* latency */));
+        assertFalse(scheduler.hasPendingRecognition(1100, MINIMUM_TIME));
+
+        scheduler.onRecognitionRequested(2000 /* requestTime */, false /* isTailBatchInput */);
+        scheduler.onRecognitionCanceled();
+        assertFalse(scheduler.hasPendingRecognition(2000, MINIMUM_TIME));
+    }
+
+    @Test
+    public void testSupersededRecognition() {
+        final GestureRecognitionScheduler scheduler = new GestureRecognitionScheduler();
+        final int updateId = scheduler.onRecognitionRequested(
+                1000 /* requestTime */, false /* isTailBatchInput */);
+        final int tailId = scheduler.onRecognitionRequested(
+                1050 /* requestTime */, true /* isTailBatchInput */);
+        // The tail recognition doesn't block the next batch input.
+        assertFalse(scheduler.hasPendingRecognition(1060, MINIMUM_TIME));
+        assertFalse(scheduler.onRecognitionCompleted(updateId, 80 /* latency */));
+        assertTrue(scheduler.onRecognitionCompleted(tailId, 60 /* latency */));
+        // The latency of the superseded recognition is ignored.
+        assertEquals(60, scheduler.getAverageLatency());
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.inputmethod.keyboard.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.PorterDuff;
+import android.graphics.RectF;
+import android.util.Log;
+
+import androidx.test.filters.SmallTest;
+import androidx.test.runner.AndroidJUnit4;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class GestureTrailOutlineTests {
+    private static final String TAG = GestureTrailOutlineTests.class.getSimpleName();
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 720;
+    private static final float START_RADIUS = 15.0f;
+    private static final float END_RADIUS = 4.0f;
+    private static final int FRAME_COUNT = 60;
+
+    // The key centers a gesture goes through, like the word "keyboard" on a QWERTY layout.
+    private static final int[] GESTURE_KEY_CENTERS = {
+        810, 400, 162, 160, 594, 160, 702, 640, 810, 160, 54, 400, 378, 160, 270, 400
+    };
+    // Points are sampled about this many pixels apart, like an interpolated gesture stroke.
+    private static final int SAMPLING_DISTANCE = 12;
+
+    private float[] mXs;
+    private float[] mYs;
+    private Bitmap mBitmap;
+    private Canvas mCanvas;
+    private Paint mPaint;
+
+    @Before
+    public void setUp() {
+        int pointCount = 1;
+        for (int k = 2; k < GESTURE_KEY_CENTERS.length; k += 2) {
+            pointCount += getStepCount(k);
+        }
+        mXs = new float[pointCount];
+        mYs = new float[pointCount];
+        mXs[0] = GESTURE_KEY_CENTERS[0];
+        mYs[0] = GESTURE_KEY_CENTERS[1];
+        int index = 1;
+        for (int k = 2; k < GESTURE_KEY_CENTERS.length; k += 2) {
+            final int steps = getStepCount(k);
+            for (int step = 1; step <= steps; step++) {
+                final float t = (float)step / steps;
+                mXs[index] = GESTURE_KEY_CENTERS[k - 2]
+                        + (GESTURE_KEY_CENTERS[k] - GESTURE_KEY_CENTERS[k - 2]) * t;
+                // Curve a bit between the keys.
+                mYs[index] = GESTURE_KEY_CENTERS[k - 1]
+                        + (GESTURE_KEY_CENTERS[k + 1] - GESTURE_KEY_CENTERS[k - 1]) * t
+                        + (float)Math.sin(Math.PI * t) * 30.0f;
+                index++;
+            }
+        }
+        mBitmap = Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888);
+        mCanvas = new Canvas(mBitmap);
+        mPaint = new Paint();
+        mPaint.setAntiAlias(true);
+        mPaint.setColor(Color.BLACK);
+        mPaint.setStyle(Paint.Style.FILL);
+    }
+
+    private static int getStepCount(final int k) {
+        final double distance = Math.hypot(GESTURE_KEY_CENTERS[k] - GESTURE_KEY_CENTERS[k - 2],
+                GESTURE_KEY_CENTERS[k + 1] - GESTURE_KEY_CENTERS[k - 1]);
+        return Math.max(1, (int)(distance / SAMPLING_DISTANCE));
+    }
+
+    // The radius of a point shrinks linearly along the trail, and with the age of the trail.
+    private float getRadius(final int index, final int frame) {
+        final float radius = END_RADIUS + (START_RADIUS - END_RADIUS) * index / mXs.length;
+        return Math.max(radius - frame * 0.05f, 0.5f);
+    }
+
+    private void drawWithRoundedLines(final RoundedLine roundedLine, final int frame) {
+        for (int i = 1; i < mXs.length; i++) {
+            final Path path = roundedLine.makePath(mXs[i - 1], mYs[i - 1], getRadius(i - 1, frame),
+                    mXs[i], mYs[i], getRadius(i, frame));
+            if (!path.isEmpty()) {
+                mCanvas.drawPath(path, mPaint);
+            }
+        }
+    }
+
+    private void drawWithOutline(final GestureTrailOutline outline, final Path path,
+            final int frame) {
+        path.rewind();
+        for (int i = 1; i < mXs.length; i++) {
+            outline.addSegment(path, i, mXs[i - 1], mYs[i - 1], getRadius(i - 1, frame),
+                    mXs[i], mYs[i], getRadius(i, frame));
+        }
+        mCanvas.drawPath(path, mPaint);
+    }
+
+    private int countCoveredPixels() {
+        final int[] pixels = new int[WIDTH * HEIGHT];
+        mBitmap.getPixels(pixels, 0, WIDTH, 0, 0, WIDTH, HEIGHT);
+        int count = 0;
+        for (final int pixel : pixels) {
+            if (Color.alpha(pixel) >= 0x80) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void clearCanvas() {
+        mCanvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+    }
+
+    @Test
+    public void testSinglePathCoversTheSameArea() {
+        drawWithRoundedLines(new RoundedLine(), 0 /* frame */);
+        final int expectedCount = countCoveredPixels();
+        clearCanvas();
+        drawWithOutline(new GestureTrailOutline(4), new Path(), 0 /* frame */);
+        final int count = countCoveredPixels();
+        // The overlapping segments of the single path must not cancel each other out.
+        assertTrue(expectedCount > 0);
+        assertEquals(expectedCount, count, expectedCount / 100);
+    }
+
+    @Test
+    public void testAnglesFollowTheShrinkingRadii() {
+        final GestureTrailOutline outline = new GestureTrailOutline(4);
+        final Path path = new Path();
+        // The angles computed at the first frame are reused for the later frames.
+        drawWithOutline(outline, path, 0 /* frame */);
+        final int lastFrame = FRAME_COUNT - 1;
+        clearCanvas();
+        drawWithOutline(outline, path, lastFrame);
+        final int count = countCoveredPixels();
+        clearCanvas();
+        drawWithRoundedLines(new RoundedLine(), lastFrame);
+        final int expectedCount = countCoveredPixels();
+        assertEquals(expectedCount, count, expectedCount / 100);
+    }
+
+    @Test
+    public void testShiftAndInvalidate() {
+        final GestureTrailOutline outline = new GestureTrailOutline(4);
+        final Path path = new Path();
+        final RectF bounds = new RectF();
+        final RectF expectedBounds = new RectF();
+        assertFalse(outline.addSegment(path, 0, 10.0f, 10.0f, 5.0f, 10.0f, 10.0f, 5.0f));
+        assertTrue(path.isEmpty());
+        assertTrue(outline.addSegment(path, 1, 10.0f, 10.0f, 5.0f, 50.0f, 10.0f, 5.0f));
+        assertTrue(outline.addSegment(path, 2, 50.0f, 10.0f, 5.0f, 50.0f, 50.0f, 5.0f));
+        path.computeBounds(expectedBounds, true /* unused */);
+
+        // Once the first point is removed, the segments have moved down by one.
+        outline.shift(1);
+        path.rewind();
+        assertTrue(outline.addSegment(path, 0, 10.0f, 10.0f, 5.0f, 50.0f, 10.0f, 5.0f));
+        assertTrue(outline.addSegment(path, 1, 50.0f, 10.0f, 5.0f, 50.0f, 50.0f, 5.0f));
+        path.computeBounds(bounds, true /* unused */);
+        assertEquals(expectedBounds, bounds);
+
+        // A point that has moved is taken into account after it is invalidated.
+        outline.invalidateFrom(1);
+        path.rewind();
+        assertTrue(outline.addSegment(path, 0, 10.0f, 10.0f, 5.0f, 50.0f, 10.0f, 5.0f));
+        assertTrue(outline.addSegment(path, 1, 50.0f, 10.0f, 5.0f, 90.0f, 10.0f, 5.0f));
+        path.computeBounds(bounds, true /* unused */);
+        assertEquals(95.0f, bounds.right, 0.5f);
+    }
+
+    @Test
+    public void testFrameTime() {
+        final RoundedLine roundedLine = new RoundedLine();
+        // Warm up.
+        drawWithRoundedLines(roundedLine, 0 /* frame */);
+        long startTime = System.nanoTime();
+        for (int frame = 0; frame < FRAME_COUNT; frame++) {
+            clearCanvas();
+            drawWithRoundedLines(roundedLine, frame);
+        }
+        final long roundedLinesFrameTime = (System.nanoTime() - startTime) / 1000 / FRAME_COUNT;
+
+        final GestureTrailOutline outline = new GestureTrailOutline(4);
+        final Path path = new Path();
+        drawWithOutline(outline, path, 0 /* frame */);
+        startTime = System.nanoTime();
+        for (int frame = 0; frame < FRAME_COUNT; frame++) {
+            clearCanvas();
+            drawWithOutline(outline, path, frame);
+        }
+        final long outlineFrameTime = (System.nanoTime() - startTime) / 1000 / FRAME_COUNT;
+        Log.i(TAG, "Gesture trail of " + mXs.length + " points: path per segment="
+                + roundedLinesFrameTime + "us, single path=" + outlineFrameTime + "us");
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.inputmethod.keyboard.internal;
+
+import android.content.res.TypedArray;
+import android.test.suitebuilder.annotation.SmallTest;
+import android.view.View;
+import android.view.inputmethod.EditorInfo;
+import android.widget.FrameLayout;
+
+import com.android.inputmethod.keyboard.Key;
+import com.android.inputmethod.keyboard.Keyboard;
+import com.android.inputmethod.keyboard.KeyboardId;
+import com.android.inputmethod.keyboard.KeyboardLayoutSet;
+import com.android.inputmethod.keyboard.KeyboardLayoutSetTestsBase;
+import com.android.inputmethod.keyboard.KeyboardTheme;
+import com.android.inputmethod.latin.R;
+import com.android.inputmethod.latin.common.CoordinateUtils;
+import com.android.inputmethod.latin.utils.SubtypeLocaleUtils;
+
+import java.util.Locale;
+
+@SmallTest
+public class KeyPreviewChoreographerTests extends KeyboardLayoutSetTestsBase {
+    private static final String TYPED_KEYS = "the quick brown fox jumps over the lazy dog";
+
+    private KeyboardLayoutSet mLayoutSet;
+    private Keyboard mKeyboard;
+    private KeyDrawParams mDrawParams;
+    private KeyPreviewChoreographer mChoreographer;
+    private FrameLayout mPlacerView;
+    private final int[] mOriginCoords = CoordinateUtils.newInstance();
+    private int mKeyboardViewWidth;
+
+    @Override
+    protected int getKeyboardThemeForTests() {
+        return KeyboardTheme.THEME_ID_LXX_LIGHT;
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mLayoutSet = createKeyboardLayoutSet(
+                getSubtype(Locale.US, SubtypeLocaleUtils.QWERTY), new EditorInfo());
+        mKeyboard = mLayoutSet.getKeyboard(KeyboardId.ELEMENT_ALPHABET);
+        final TypedArray mainKeyboardViewAttr = getContext().obtainStyledAttributes(null,
+                R.styleable.MainKeyboardView, R.attr.mainKeyboardViewStyle,
+                R.style.MainKeyboardView);
+        final KeyPreviewDrawParams previewParams = new KeyPreviewDrawParams(mainKeyboardViewAttr);
+        mainKeyboardViewAttr.recycle();
+        mChoreographer = new KeyPreviewChoreographer(previewParams);
+        mDrawParams = new KeyDrawParams();
+        mDrawParams.updateParams(mKeyboard.mMostCommonKeyHeight - mKeyboard.mVerticalGap,
+                mKeyboard.mKeyVisualAttributes);
+        mPlacerView = new FrameLayout(getContext());
+        mKeyboardViewWidth = mKeyboard.mOccupiedWidth;
+        mChoreographer.setKeyboard(mKeyboard);
+    }
+
+    private void typeKey(final Key key) {
+        mChoreographer.placeAndShowKeyPreview(key, mKeyboard.mIconsSet, mDrawParams,
+                mKeyboardViewWidth, mOriginCoords, mPlacerView, false /* withAnimation */);
+        assertTrue(mChoreographer.isShowingKeyPreview(key));
+        mChoreographer.dismissKeyPreview(key, false /* withAnimation */);
+        assertFalse(mChoreographer.isShowingKeyPreview(key));
+    }
+
+    private void typeKeys(final String text) {
+        for (int index = 0; index < text.length(); index++) {
+            final Key key = mKeyboard.getKey(text.charAt(index));
+            assertNotNull(key);
+            typeKey(key);
+        }
+    }
+
+    public void testWarmedUpPreviewsAllocateNothing() {
+        typeKeys(TYPED_KEYS);
+        final int allocationCount = mChoreographer.getAllocationCount();
+        final int measureCount = mChoreographer.getMeasureCount();
+        typeKeys(TYPED_KEYS);
+        assertEquals(allocationCount, mChoreographer.getAllocationCount());
+        assertEquals(measureCount, mChoreographer.getMeasureCount());
+        // A single view is reused for sequential key presses.
+        assertEquals(1, mPlacerView.getChildCount());
+    }
+
+    public void testEachKeyIsMeasuredOnce() {
+        typeKeys(TYPED_KEYS);
+        int distinctKeyCount = 0;
+        for (final Key key : mKeyboard.getSortedKeys()) {
+            if (TYPED_KEYS.indexOf(key.getCode()) >= 0) {
+                distinctKeyCount++;
+            }
+        }
+        assertEquals(distinctKeyCount, mChoreographer.getMeasureCount());
+    }
+
+    public void testRolloverUsesOneViewPerPressedKey() {
+        final Key firstKey = mKeyboard.getKey('a');
+        final Key secondKey = mKeyboard.getKey('s');
+        for (int i = 0; i < 10; i++) {
+            mChoreographer.placeAndShowKeyPreview(firstKey, mKeyboard.mIconsSet, mDrawParams,
+                    mKeyboardViewWidth, mOriginCoords, mPlacerView, false /* withAnimation */);
+            mChoreographer.placeAndShowKeyPreview(secondKey, mKeyboard.mIconsSet, mDrawParams,
+                    mKeyboardViewWidth, mOriginCoords, mPlacerView, false /* withAnimation */);
+            assertTrue(mChoreographer.isShowingKeyPreview(firstKey));
+            assertTrue(mChoreographer.isShowingKeyPreview(secondKey));
+            mChoreographer.dismissKeyPreview(firstKey, false /* withAnimation */);
+            mChoreographer.dismissKeyPreview(secondKey, false /* withAnimation */);
+        }
+        assertEquals(2, mPlacerView.getChildCount());
+        assertEquals(2, mChoreographer.getMeasureCount());
+        for (int index = 0; index < mPlacerView.getChildCount(); index++) {
+            assertEquals(View.INVISIBLE, mPlacerView.getChildAt(index).getVisibility());
+        }
+    }
+
+    public void testPlacementsAreKeptPerKeyboard() {
+        final Keyboard shiftedKeyboard = mLayoutSet.getKeyboard(
+                KeyboardId.ELEMENT_ALPHABET_MANUAL_SHIFTED);
+        typeKeys(TYPED_KEYS);
+        final int measureCount = mChoreographer.getMeasureCount();
+        // Toggling shift back and forth doesn't measure the unshifted previews again.
+        mChoreographer.setKeyboard(shiftedKeyboard);
+        mChoreographer.setKeyboard(mKeyboard);
+        typeKeys(TYPED_KEYS);
+        assertEquals(measureCount, mChoreographer.getMeasureCount());
+
+        // The labels may have changed once the placements are cleared.
+        mChoreographer.clearPlacements();
+        mChoreographer.setKeyboard(mKeyboard);
+        typeKeys(TYPED_KEYS);
+        assertEquals(measureCount * 2, mChoreographer.getMeasureCount());
+    }
+}
@@ -16,8 +16,11 @@
 
 package com.android.inputmethod.keyboard.internal;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 
 import android.content.Context;
 import android.view.inputmethod.InputMethodInfo;
@@ -108,4 +111,49 @@ public final class KeyboardTextsSetTests {
             }
         }
     }
+
+    // Test that all "!text/" references have been expanded by tools/make-keyboard-text.
+    @Test
+    public void testAllTextsAreFlattened() {
+        final Context context = getContext();
+        final KeyboardTextsSet textsSet = new KeyboardTextsSet();
+        final int textsCount = KeyboardTextsTable.getTextsCount();
+        for (final InputMethodSubtype subtype : mAllSubtypesList) {
+            final Locale locale = SubtypeLocaleUtils.getSubtypeLocale(subtype);
+            textsSet.setLocale(locale, context);
+            for (int id = 0; id < textsCount; id++) {
+                final String name = KeyboardTextsTable.getTextName(id);
+                final String text = textsSet.getText(id);
+                assertNotNull(name + " of " + locale, text);
+                assertFalse(name + " of " + locale + ": " + text,
+                        text.contains(KeyboardTextsSet.PREFIX_TEXT));
+                assertEquals(name + " of " + locale, text, textsSet.getText(name));
+            }
+        }
+    }
+
+    // Test that a plain "!text/" reference resolves to the flattened text of the table itself,
+    // without scanning or copying it. See KeyboardLayoutSetLoadingTests for the time it takes to
+    // load the keyboards, which resolves these references.
+    @Test
+    public void testResolveTextReference() {
+        final Context context = getContext();
+        final KeyboardTextsSet textsSet = new KeyboardTextsSet();
+        final int textsCount = KeyboardTextsTable.getTextsCount();
+        for (final InputMethodSubtype subtype : mAllSubtypesList) {
+            final Locale locale = SubtypeLocaleUtils.getSubtypeLocale(subtype);
+            textsSet.setLocale(locale, context);
+            for (int id = 0; id < textsCount; id++) {
+                final String name = KeyboardTextsTable.getTextName(id);
+                final String text = textsSet.getText(id);
+                final String resolvedText =
+                        textsSet.resolveTextReference(KeyboardTextsSet.PREFIX_TEXT + name);
+                if (text.isEmpty()) {
+                    assertNull(name + " of " + locale, resolvedText);
+                } else if (!text.contains("!string/")) {
+                    assertSame(name + " of " + locale, text, resolvedText);
+                }
+            }
+        }
+    }
 }
@@ -66,6 +66,9 @@ public class InputTestsBase extends ServiceTestCase<LatinIMEForTests> {
     protected static final int DELAY_TO_WAIT_FOR_PREDICTIONS_MILLIS = 200;
     // We wait for gesture computation for this delay
     protected static final int DELAY_TO_WAIT_FOR_GESTURE_MILLIS = 200;
+    // Suggestions for typing are computed in the background, and we wait for them this long
+    private static final int TIMEOUT_TO_WAIT_FOR_SUGGESTIONS_MILLIS = 1000;
+    private static final int DELAY_TO_POLL_FOR_SUGGESTIONS_MILLIS = 10;
     // If a dictionary takes longer to load, we could have serious problems.
     private final int TIMEOUT_TO_WAIT_FOR_LOADING_MAIN_DICTIONARY_IN_SECONDS = 5;
 
@@ -263,6 +266,18 @@ public class InputTestsBase extends ServiceTestCase<LatinIMEForTests> {
         // Empty class
     }
     protected void runMessages() {
+        runPendingMessages();
+        // The suggestions for typing requested by these messages come back in a message that is
+        // posted from another thread, so we wait for it and run it too.
+        int remainingMillis = TIMEOUT_TO_WAIT_FOR_SUGGESTIONS_MILLIS;
+        while (mLatinIME.mInputLogic.hasSuggestionsForTypingInFlight() && remainingMillis > 0) {
+            sleep(DELAY_TO_POLL_FOR_SUGGESTIONS_MILLIS);
+            remainingMillis -= DELAY_TO_POLL_FOR_SUGGESTIONS_MILLIS;
+            runPendingMessages();
+        }
+    }
+
+    private void runPendingMessages() {
         mLatinIME.mHandler.post(new Runnable() {
                 @Override
                 public void run() {
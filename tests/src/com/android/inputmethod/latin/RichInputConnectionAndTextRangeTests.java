@@ -144,6 +144,21 @@ public class RichInputConnectionAndTextRangeTests {
         public boolean finishComposingText() {
             return true;
         }
+
+        @Override
+        public boolean setComposingText(final CharSequence text, final int newCursorPosition) {
+            return true;
+        }
+
+        @Override
+        public boolean commitText(final CharSequence text, final int newCursorPosition) {
+            return true;
+        }
+
+        @Override
+        public boolean setSelection(final int start, final int end) {
+            return true;
+        }
     }
 
     static class MockInputMethodService extends InputMethodService {
@@ -384,6 +399,50 @@ public class RichInputConnectionAndTextRangeTests {
         assertEquals(suggestions.length, 0);
     }
 
+    @Test
+    public void testTypingAndMovingBackUseCachedText() {
+        final MockInputMethodService ims = new MockInputMethodService();
+        final RichInputConnection ic = new RichInputConnection(ims);
+        ims.setInputConnection(new MockConnection("Hello world", 11));
+        ic.resetCachesUponCursorMoveAndReturnSuccess(ims.cursorPos(), ims.cursorPos(), true);
+        final int ipcCount = ic.getTextReadIpcCount();
+
+        ic.setComposingText("fo", 1);
+        ic.setComposingText("foo", 1);
+        assertEquals("worldfoo", ic.getTextBeforeCursor(8, 0).toString());
+        ic.commitText("foo ", 1);
+        assertEquals("Hello worldfoo ", ic.getTextBeforeCursor(100, 0).toString());
+        ic.deleteTextBeforeCursor(1);
+        assertEquals('o', ic.getCodePointBeforeCursor());
+        // Moving the cursor back doesn't fetch the text before it again.
+        ic.setSelection(11, 11);
+        assertEquals("world", ic.getTextBeforeCursor(5, 0).toString());
+        assertEquals(ipcCount, ic.getTextReadIpcCount());
+
+        // Moving it forward does.
+        ic.setSelection(13, 13);
+        assertEquals(ipcCount + 1, ic.getTextReadIpcCount());
+    }
+
+    @Test
+    public void testCursorCapsModeIsReusedUntilTextChanges() {
+        final MockInputMethodService ims = new MockInputMethodService();
+        final RichInputConnection ic = new RichInputConnection(ims);
+        ims.setInputConnection(new MockConnection("Hello world.", 12));
+        ic.resetCachesUponCursorMoveAndReturnSuccess(ims.cursorPos(), ims.cursorPos(), true);
+        final int inputType = TextUtils.CAP_MODE_SENTENCES;
+
+        assertEquals(inputType, ic.getCursorCapsMode(inputType, mSpacingAndPunctuations, true));
+        assertEquals(inputType, ic.getCursorCapsMode(inputType, mSpacingAndPunctuations, true));
+        assertEquals(1, ic.getCapsModeComputationCount());
+        assertEquals(0, ic.getCursorCapsMode(inputType, mSpacingAndPunctuations, false));
+        assertEquals(2, ic.getCapsModeComputationCount());
+
+        ic.commitText(" Foo ", 1);
+        assertEquals(0, ic.getCursorCapsMode(inputType, mSpacingAndPunctuations, true));
+        assertEquals(3, ic.getCapsModeComputationCount());
+    }
+
     @Test
     public void testCursorTouchingWord() {
         final MockInputMethodService ims = new MockInputMethodService();
@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.inputmethod.latin;
+
+import static org.junit.Assert.assertEquals;
+
+import androidx.test.filters.SmallTest;
+import androidx.test.runner.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class TextWindowTests {
+    @Test
+    public void testAppendAndTruncate() {
+        final TextWindow window = new TextWindow(16);
+        window.append("hello");
+        window.append(" world");
+        assertEquals("hello world", window.toString());
+        window.truncate(5);
+        assertEquals("hello", window.toString());
+        window.append("!");
+        assertEquals("hello!", window.toString());
+        window.truncate(-1);
+        assertEquals(0, window.length());
+        window.append("again");
+        window.clear();
+        assertEquals("", window.toString());
+    }
+
+    @Test
+    public void testOldestCharactersAreDropped() {
+        final TextWindow window = new TextWindow(8);
+        window.append("abcdef");
+        window.append("ghijk");
+        assertEquals("defghijk", window.toString());
+        window.append("0123456789");
+        assertEquals("23456789", window.toString());
+        assertEquals("789", window.tail(3).toString());
+        assertEquals("23456789", window.tail(100).toString());
+    }
+
+    @Test
+    public void testViewsAreReadOnlySnapshots() {
+        final TextWindow window = new TextWindow(8);
+        window.append("abcdef");
+        final CharSequence view = window.tail(4);
+        assertEquals("cdef", view.toString());
+        assertEquals("de", view.subSequence(1, 3).toString());
+        assertEquals('f', view.charAt(3));
+
+        // Appending after the end of the view doesn't copy the buffer.
+        window.append("gh");
+        assertEquals(1, window.getBufferCount());
+        assertEquals("cdef", view.toString());
+
+        // Overwriting the characters of the view moves the window to a new buffer.
+        window.truncate(3);
+        window.append("XYZ");
+        assertEquals(2, window.getBufferCount());
+        assertEquals("abcXYZ", window.toString());
+        assertEquals("cdef", view.toString());
+
+        // So does wrapping around over them.
+        final CharSequence wrappedView = window.view(0, 2);
+        window.append("01234567");
+        assertEquals(3, window.getBufferCount());
+        assertEquals("ab", wrappedView.toString());
+        assertEquals("01234567", window.toString());
+    }
+}
@@ -23,6 +23,7 @@ import static org.junit.Assert.assertTrue;
 import androidx.test.filters.SmallTest;
 import androidx.test.runner.AndroidJUnit4;
 
+import com.android.inputmethod.event.Event;
 import com.android.inputmethod.latin.common.Constants;
 import com.android.inputmethod.latin.common.CoordinateUtils;
 import com.android.inputmethod.latin.common.StringUtils;
@@ -130,4 +131,35 @@ public class WordComposerTests {
         wc.setCursorPositionWithinWord(2);
         assertTrue(wc.moveCursorByAndReturnIfInsideComposingWord(0));
     }
+
+    @Test
+    public void testSequenceNumberAndCopy() {
+        final WordComposer wc = new WordComposer();
+        final int[] codePoints = StringUtils.toCodePointArray("abc");
+        wc.setComposingWord(codePoints, CoordinateUtils.newCoordinateArray(codePoints.length,
+                Constants.NOT_A_COORDINATE, Constants.NOT_A_COORDINATE));
+        final int sequenceNumber = wc.getSequenceNumber();
+
+        final WordComposer copy = new WordComposer(wc);
+        assertEquals("abc", copy.getTypedWord());
+        assertEquals(3, copy.size());
+        assertTrue(copy.isResumed());
+        assertEquals(sequenceNumber, copy.getSequenceNumber());
+
+        // Editing the word changes its sequence number, but not the copy.
+        wc.applyProcessedEvent(wc.processEvent(
+                Event.createEventForCodePointFromUnknownSource('d')));
+        assertTrue(sequenceNumber != wc.getSequenceNumber());
+        assertEquals("abcd", wc.getTypedWord());
+        assertEquals("abc", copy.getTypedWord());
+        assertEquals(sequenceNumber, copy.getSequenceNumber());
+
+        // So does committing it.
+        final int sequenceNumberBeforeCommit = wc.getSequenceNumber();
+        wc.commitWord(LastComposedWord.COMMIT_TYPE_USER_TYPED_WORD, "abcd",
+                LastComposedWord.NOT_A_SEPARATOR, NgramContext.EMPTY_PREV_WORDS_INFO);
+        assertTrue(sequenceNumberBeforeCommit != wc.getSequenceNumber());
+        assertFalse(wc.isComposingWord());
+        assertEquals("abc", copy.getTypedWord());
+    }
 }
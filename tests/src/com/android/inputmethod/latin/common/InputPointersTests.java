@@ -29,6 +29,7 @@ import androidx.test.runner.AndroidJUnit4;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.nio.IntBuffer;
 import java.util.Arrays;
 
 @SmallTest
@@ -341,4 +342,83 @@ public class InputPointersTests {
             assertEquals("times at " + i, time, src.getTimes()[i]);
         }
     }
+
+    private static void assertDirectBuffer(final String message, final InputPointers expected,
+            final IntBuffer buffer) {
+        assertTrue(message + " direct", buffer.isDirect());
+        assertEquals(message + " planes", 0,
+                buffer.capacity() % InputPointers.DIRECT_BUFFER_PLANE_COUNT);
+        final int stride = buffer.capacity() / InputPointers.DIRECT_BUFFER_PLANE_COUNT;
+        final int size = expected.getPointerSize();
+        assertTrue(message + " stride", stride >= size);
+        for (int i = 0; i < size; i++) {
+            assertEquals(message + " xCoordinates at " + i,
+                    expected.getXCoordinates()[i], buffer.get(i));
+            assertEquals(message + " yCoordinates at " + i,
+                    expected.getYCoordinates()[i], buffer.get(stride + i));
+            assertEquals(message + " pointerIds at " + i,
+                    expected.getPointerIds()[i], buffer.get(stride * 2 + i));
+            assertEquals(message + " times at " + i,
+                    expected.getTimes()[i], buffer.get(stride * 3 + i));
+        }
+    }
+
+    @Test
+    public void testDirectBuffer() {
+        final InputPointers src = new InputPointers(DEFAULT_CAPACITY);
+        final int limit = 1000;
+        final int step = 100;
+        for (int i = 0; i < limit; i += step) {
+            for (int j = i; j < i + step; j++) {
+                src.addPointer(j, j * 2, j * 3, j * 4);
+            }
+            assertDirectBuffer("appended " + (i + step), src, src.getDirectBuffer(0));
+        }
+
+        final IntBuffer buffer = src.getDirectBuffer(0);
+        final int stride = buffer.capacity() / InputPointers.DIRECT_BUFFER_PLANE_COUNT;
+        assertSame("same buffer", buffer, src.getDirectBuffer(stride));
+        assertNotSame("grown buffer", buffer, src.getDirectBuffer(stride + 1));
+
+        src.addPointerAt(limit / 2, -1, -2, -3, -4);
+        assertDirectBuffer("overwritten", src, src.getDirectBuffer(0));
+
+        src.shift(step);
+        assertDirectBuffer("shifted", src, src.getDirectBuffer(0));
+
+        src.reset();
+        src.addPointer(1, 2, 3, 4);
+        assertDirectBuffer("reset", src, src.getDirectBuffer(0));
+    }
+
+    @Test
+    public void testDirectBufferWithSet() {
+        final InputPointers src = new InputPointers(DEFAULT_CAPACITY);
+        final InputPointers dst = new InputPointers(DEFAULT_CAPACITY);
+        final int limit = 300;
+        for (int i = 0; i < limit; i++) {
+            src.addPointer(i, i * 2, i * 3, i * 4);
+            if (i % 30 == 0) {
+                dst.set(src);
+                assertDirectBuffer("set " + i, dst, dst.getDirectBuffer(0));
+            }
+        }
+
+        // The destination forks from the source when it appends pointers by itself.
+        dst.set(src);
+        assertDirectBuffer("set all", dst, dst.getDirectBuffer(0));
+        dst.addPointer(-1, -2, -3, -4);
+        assertDirectBuffer("appended to destination", dst, dst.getDirectBuffer(0));
+        src.addPointer(5, 6, 7, 8);
+        dst.set(src);
+        assertDirectBuffer("appended to source", dst, dst.getDirectBuffer(0));
+
+        src.reset();
+        src.addPointer(9, 10, 11, 12);
+        dst.set(src);
+        assertDirectBuffer("reset source", dst, dst.getDirectBuffer(0));
+
+        dst.copy(src);
+        assertDirectBuffer("copy", dst, dst.getDirectBuffer(0));
+    }
 }
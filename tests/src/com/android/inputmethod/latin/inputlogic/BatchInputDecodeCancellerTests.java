@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.inputmethod.latin.inputlogic;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import androidx.test.filters.SmallTest;
+import androidx.test.runner.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class BatchInputDecodeCancellerTests {
+    // The cancellation flag of the traverse session, as the native search would see it.
+    private static final class SessionFlag implements BatchInputDecodeCanceller.Listener {
+        boolean mIsCancelled;
+
+        @Override
+        public void setBatchInputSuggestionsCancelled(final boolean isCancelled) {
+            mIsCancelled = isCancelled;
+        }
+    }
+
+    @Test
+    public void testLiftingFingerWhileUpdateIsDecoded() {
+        final SessionFlag flag = new SessionFlag();
+        final BatchInputDecodeCanceller canceller = new BatchInputDecodeCanceller(flag);
+        final int updateId = canceller.onDecodeStarted(true /* isIntermediateUpdate */);
+        // The finger lifts: the end of the batch input cancels the update being decoded.
+        assertTrue(canceller.cancelUpdateInFlight());
+        assertTrue(flag.mIsCancelled);
+        canceller.onDecodeFinished(updateId);
+        // The end of the batch input is decoded right after, without the cancellation.
+        assertFalse(flag.mIsCancelled);
+        final int tailId = canceller.onDecodeStarted(false /* isIntermediateUpdate */);
+        assertFalse(flag.mIsCancelled);
+        // Only an intermediate update can be cancelled.
+        assertFalse(canceller.cancelUpdateInFlight());
+        assertFalse(flag.mIsCancelled);
+        canceller.onDecodeFinished(tailId);
+        assertFalse(canceller.isCancelled());
+    }
+
+    @Test
+    public void testCancellationNeverHitsAnotherDecode() {
+        final SessionFlag flag = new SessionFlag();
+        final BatchInputDecodeCanceller canceller = new BatchInputDecodeCanceller(flag);
+        assertFalse(canceller.cancelUpdateInFlight());
+        // Suggestions for a gestured word are fetched on another thread during an update.
+        final int otherId = canceller.onDecodeStarted(false /* isIntermediateUpdate */);
+        final int updateId = canceller.onDecodeStarted(true /* isIntermediateUpdate */);
+        assertFalse(canceller.cancelUpdateInFlight());
+        assertFalse(flag.mIsCancelled);
+        canceller.onDecodeFinished(otherId);
+        assertTrue(canceller.cancelUpdateInFlight());
+        assertTrue(flag.mIsCancelled);
+        // Another decode that starts clears the cancellation, and lets the update run to its end.
+        final int lateId = canceller.onDecodeStarted(false /* isIntermediateUpdate */);
+        assertFalse(flag.mIsCancelled);
+        canceller.onDecodeFinished(updateId);
+        canceller.onDecodeFinished(lateId);
+        assertFalse(canceller.cancelUpdateInFlight());
+        assertFalse(flag.mIsCancelled);
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.inputmethod.latin.inputlogic;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import android.content.res.Resources;
+import android.inputmethodservice.InputMethodService;
+
+import androidx.test.InstrumentationRegistry;
+import androidx.test.filters.SmallTest;
+import androidx.test.runner.AndroidJUnit4;
+
+import com.android.inputmethod.latin.NgramContext;
+import com.android.inputmethod.latin.RichInputConnection;
+import com.android.inputmethod.latin.settings.SpacingAndPunctuations;
+import com.android.inputmethod.latin.utils.RunInLocale;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Locale;
+
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class ComposingWordContextTests {
+    private RichInputConnection mConnection;
+    private SpacingAndPunctuations mSpacingAndPunctuations;
+
+    private static SpacingAndPunctuations getSpacingAndPunctuations(final Locale locale) {
+        final RunInLocale<SpacingAndPunctuations> job = new RunInLocale<SpacingAndPunctuations>() {
+            @Override
+            protected SpacingAndPunctuations job(final Resources res) {
+                return new SpacingAndPunctuations(res);
+            }
+        };
+        final Resources res = InstrumentationRegistry.getTargetContext().getResources();
+        return job.runInLocale(res, locale);
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        // The service isn't connected to any editor, so the context is always empty.
+        mConnection = new RichInputConnection(new InputMethodService());
+        mSpacingAndPunctuations = getSpacingAndPunctuations(Locale.ENGLISH);
+    }
+
+    @Test
+    public void testContextIsComputedOncePerWord() {
+        final ComposingWordContext context = new ComposingWordContext();
+        final NgramContext ngramContext =
+                context.getNgramContext(mConnection, mSpacingAndPunctuations);
+        assertSame(ngramContext, context.getNgramContext(mConnection, mSpacingAndPunctuations));
+        assertSame(ngramContext, context.getNgramContext(mConnection, mSpacingAndPunctuations));
+        assertEquals(1, context.getComputationCount());
+
+        context.invalidate();
+        context.getNgramContext(mConnection, mSpacingAndPunctuations);
+        context.getNgramContext(mConnection, mSpacingAndPunctuations);
+        assertEquals(2, context.getComputationCount());
+    }
+
+    @Test
+    public void testContextIsComputedAgainForOtherSettings() {
+        final ComposingWordContext context = new ComposingWordContext();
+        context.getNgramContext(mConnection, mSpacingAndPunctuations);
+        context.getNgramContext(mConnection, getSpacingAndPunctuations(Locale.FRENCH));
+        assertEquals(2, context.getComputationCount());
+    }
+}
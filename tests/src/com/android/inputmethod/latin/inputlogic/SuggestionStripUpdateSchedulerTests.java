@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.inputmethod.latin.inputlogic;
+
+import static org.junit.Assert.assertEquals;
+
+import androidx.test.filters.SmallTest;
+import androidx.test.runner.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class SuggestionStripUpdateSchedulerTests {
+    private static final int DEFAULT_DELAY = 100; // msec
+
+    // Types key strokes at a regular interval, and returns the time of the last update.
+    private static long type(final SuggestionStripUpdateScheduler scheduler, final long startTime,
+            final int times, final int interval) {
+        long updateTime = 0;
+        for (int i = 0; i < times; i++) {
+            final long time = startTime + i * interval;
+            updateTime = scheduler.scheduleUpdate(time, DEFAULT_DELAY,
+                    i > 0 && updateTime > time /* isUpdatePending */);
+        }
+        return updateTime;
+    }
+
+    private static void fetch(final SuggestionStripUpdateScheduler scheduler, final int times,
+            final int latency) {
+        for (int i = 0; i < times; i++) {
+            scheduler.onSuggestionsFetched(latency);
+        }
+    }
+
+    @Test
+    public void testDefaultDelay() {
+        final SuggestionStripUpdateScheduler scheduler = new SuggestionStripUpdateScheduler();
+        assertEquals(DEFAULT_DELAY, scheduler.getUpdateDelay(DEFAULT_DELAY));
+        assertEquals(1000 + DEFAULT_DELAY, scheduler.scheduleUpdate(1000, DEFAULT_DELAY, false));
+    }
+
+    @Test
+    public void testFastSuggestions() {
+        final SuggestionStripUpdateScheduler scheduler = new SuggestionStripUpdateScheduler();
+        type(scheduler, 0, 10, 150 /* interval */);
+        assertEquals(150, scheduler.getAverageKeyStrokeInterval());
+        fetch(scheduler, 10, 20 /* latency */);
+        // The suggestions come back before the next key stroke.
+        assertEquals(DEFAULT_DELAY, scheduler.getUpdateDelay(DEFAULT_DELAY));
+    }
+
+    @Test
+    public void testSlowSuggestions() {
+        final SuggestionStripUpdateScheduler scheduler = new SuggestionStripUpdateScheduler();
+        type(scheduler, 0, 10, 160 /* interval */);
+        fetch(scheduler, 10, 200 /* latency */);
+        assertEquals(200, scheduler.getAverageLatency());
+        // The update waits for a pause in the typing.
+        assertEquals(200, scheduler.getUpdateDelay(DEFAULT_DELAY));
+        // The delay is capped.
+        type(scheduler, 10000, 50, 900 /* interval */);
+        fetch(scheduler, 50, 2000 /* latency */);
+        assertEquals(DEFAULT_DELAY * 4, scheduler.getUpdateDelay(DEFAULT_DELAY));
+    }
+
+    @Test
+    public void testPausesAreNotTypingRhythm() {
+        final SuggestionStripUpdateScheduler scheduler = new SuggestionStripUpdateScheduler();
+        type(scheduler, 0, 10, 150 /* interval */);
+        scheduler.scheduleUpdate(10000, DEFAULT_DELAY, false /* isUpdatePending */);
+        assertEquals(150, scheduler.getAverageKeyStrokeInterval());
+    }
+
+    @Test
+    public void testPostponedUpdateIsBounded() {
+        final SuggestionStripUpdateScheduler scheduler = new SuggestionStripUpdateScheduler();
+        type(scheduler, 0, 10, 200 /* interval */);
+        fetch(scheduler, 10, 300 /* latency */);
+        assertEquals(250, scheduler.getUpdateDelay(DEFAULT_DELAY));
+        // Each key stroke postpones the pending update, but not past 4 times the default delay
+        // after the first postponing key stroke.
+        assertEquals(10250, scheduler.scheduleUpdate(10000, DEFAULT_DELAY, false));
+        assertEquals(10400, scheduler.scheduleUpdate(10200, DEFAULT_DELAY, true));
+        assertEquals(10400, scheduler.scheduleUpdate(10390, DEFAULT_DELAY, true));
+        // Once the update has happened, the next key stroke starts a new one.
+        assertEquals(10850, scheduler.scheduleUpdate(10600, DEFAULT_DELAY, false));
+    }
+}
@@ -21,6 +21,9 @@ import static junit.framework.TestCase.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import android.text.TextPaint;
+import android.util.Log;
+
 import androidx.test.filters.SmallTest;
 import androidx.test.runner.AndroidJUnit4;
 
@@ -29,9 +32,13 @@ import com.android.inputmethod.latin.SuggestedWords;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.util.ArrayList;
+
 @SmallTest
 @RunWith(AndroidJUnit4.class)
 public class SuggestionStripLayoutHelperTests {
+    private static final String TAG = SuggestionStripLayoutHelperTests.class.getSimpleName();
+
     private static void confirmShowTypedWord(final String message, final int inputType) {
         assertFalse(message, SuggestionStripLayoutHelper.shouldOmitTypedWord(
                 inputType,
@@ -232,4 +239,41 @@ public class SuggestionStripLayoutHelperTests {
                         POSITION_CENTER /* centerPositionInStrip */,
                         POSITION_LEFT /* typedWordPositionWhenAutoCorrect */));
     }
+
+    private static final String[] TYPED_WORDS = {
+        "the", "quick", "brown", "fox", "jumps", "over", "lazy", "dog", "internationalization",
+        "suggestion", "keyboard", "strip", "supercalifragilisticexpialidocious"
+    };
+    private static final int SUGGESTION_WIDTH = 200;
+
+    // Lays out the strip words of every keystroke of the typed words, and returns the time it
+    // took in microseconds.
+    private static long layOutStripWords(final TextPaint paint, final ArrayList<Float> scaleXs) {
+        final long startTime = System.nanoTime();
+        for (final String word : TYPED_WORDS) {
+            for (int length = 1; length <= word.length(); length++) {
+                final String typedWord = word.substring(0, length);
+                for (final String stripWord : new String[] { typedWord, word, word + "s" }) {
+                    SuggestionStripLayoutHelper.getEllipsizedTextWithSettingScaleX(
+                            stripWord, SUGGESTION_WIDTH, paint);
+                    scaleXs.add(paint.getTextScaleX());
+                }
+            }
+        }
+        return (System.nanoTime() - startTime) / 1000;
+    }
+
+    @Test
+    public void testStripWordsLayoutTime() {
+        final TextPaint paint = new TextPaint();
+        paint.setTextSize(36.0f);
+        final ArrayList<Float> firstScaleXs = new ArrayList<>();
+        final long firstTime = layOutStripWords(paint, firstScaleXs);
+        final ArrayList<Float> secondScaleXs = new ArrayList<>();
+        final long secondTime = layOutStripWords(paint, secondScaleXs);
+        // The cached measurements don't change the layout.
+        assertEquals(firstScaleXs, secondScaleXs);
+        Log.i(TAG, "Strip words layout: first=" + firstTime + "us, measured again="
+                + secondTime + "us");
+    }
 }
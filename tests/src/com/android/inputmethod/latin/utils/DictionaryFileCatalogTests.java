@@ -0,0 +1,208 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.inputmethod.latin.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import androidx.test.filters.SmallTest;
+import androidx.test.runner.AndroidJUnit4;
+
+import com.android.inputmethod.latin.common.LocaleUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class DictionaryFileCatalogTests {
+    // Far enough in the past for the listings of the directories to be trusted.
+    private static final long OLD_TIME = 1000000000000L;
+
+    private File mDirectory;
+    private File mCatalogFile;
+
+    // A catalog that counts the header reads instead of reading dictionary headers.
+    private static class TestCatalog extends DictionaryFileCatalog {
+        int mReadCount;
+
+        TestCatalog(final File catalogFile) {
+            super(catalogFile);
+        }
+
+        @Override
+        Entry readEntry(final File file, final long size, final long lastModified) {
+            mReadCount++;
+            return new Entry(size, lastModified, "en_US" /* localeString */,
+                    String.valueOf(size) /* versionString */, "main:en_us" /* idString */);
+        }
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        mDirectory = File.createTempFile("DictionaryFileCatalogTests", "");
+        mDirectory.delete();
+        mDirectory.mkdirs();
+        mCatalogFile = new File(mDirectory, "catalog");
+    }
+
+    @After
+    public void tearDown() {
+        deleteRecursively(mDirectory);
+    }
+
+    private static void deleteRecursively(final File file) {
+        final File[] files = file.listFiles();
+        if (null != files) {
+            for (final File child : files) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+
+    private static File createFile(final File directory, final String name, final int size)
+            throws IOException {
+        final File file = new File(directory, name);
+        final FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(new byte[size]);
+        } finally {
+            out.close();
+        }
+        file.setLastModified(OLD_TIME);
+        return file;
+    }
+
+    @Test
+    public void testEntryIsReadOnlyWhenFileChanges() throws IOException {
+        final TestCatalog catalog = new TestCatalog(mCatalogFile);
+        final File file = createFile(mDirectory, "main_en_us", 20);
+        final DictionaryFileCatalog.Entry entry = catalog.getEntry(file);
+        assertNotNull(entry);
+        assertTrue(entry.hasHeader());
+        assertEquals(20, entry.getContentVersion());
+        assertEquals(1, catalog.mReadCount);
+
+        catalog.getEntry(file);
+        assertEquals(1, catalog.mReadCount);
+
+        file.setLastModified(OLD_TIME + 1000);
+        catalog.getEntry(file);
+        assertEquals(2, catalog.mReadCount);
+
+        createFile(mDirectory, "main_en_us", 30);
+        assertEquals(30, catalog.getEntry(file).getContentVersion());
+        assertEquals(3, catalog.mReadCount);
+
+        file.delete();
+        assertNull(catalog.getEntry(file));
+    }
+
+    @Test
+    public void testPersistence() throws IOException {
+        final File file = createFile(mDirectory, "main_en_us", 20);
+        final TestCatalog catalog = new TestCatalog(mCatalogFile);
+        catalog.getEntry(file);
+        assertEquals(catalog.getMatchLevel("en", "en_US"),
+                LocaleUtils.getMatchLevel("en", "en_US"));
+        catalog.saveIfChanged();
+        assertTrue(mCatalogFile.exists());
+
+        final TestCatalog loadedCatalog = new TestCatalog(mCatalogFile);
+        final DictionaryFileCatalog.Entry entry = loadedCatalog.getEntry(file);
+        assertEquals(0, loadedCatalog.mReadCount);
+        assertEquals("en_US", entry.mLocaleString);
+        assertEquals("20", entry.mVersionString);
+        assertEquals("main:en_us", entry.mIdString);
+        assertEquals(LocaleUtils.getMatchLevel("en", "en_US"),
+                loadedCatalog.getMatchLevel("en", "en_US"));
+    }
+
+    @Test
+    public void testBrokenCatalogIsIgnored() throws IOException {
+        createFile(mDirectory, "catalog", 3);
+        final File file = createFile(mDirectory, "main_en_us", 20);
+        final TestCatalog catalog = new TestCatalog(mCatalogFile);
+        assertNotNull(catalog.getEntry(file));
+        assertEquals(1, catalog.mReadCount);
+    }
+
+    @Test
+    public void testListing() throws IOException {
+        final File localeDirectory = new File(mDirectory, "en_US");
+        localeDirectory.mkdirs();
+        createFile(localeDirectory, "main_en_us", 20);
+        localeDirectory.setLastModified(OLD_TIME);
+        final TestCatalog catalog = new TestCatalog(mCatalogFile);
+        assertEquals(1, catalog.listFiles(localeDirectory).length);
+        assertNull(catalog.listFiles(new File(mDirectory, "missing")));
+        assertNull(catalog.listFiles(new File(localeDirectory, "main_en_us")));
+
+        // The listing of an unmodified directory is reused.
+        createFile(localeDirectory, "emoji_en_us", 10);
+        localeDirectory.setLastModified(OLD_TIME);
+        assertEquals(1, catalog.listFiles(localeDirectory).length);
+
+        // A modified directory is listed again.
+        localeDirectory.setLastModified(OLD_TIME + 1000);
+        assertEquals(2, catalog.listFiles(localeDirectory).length);
+    }
+
+    @Test
+    public void testRecentlyModifiedDirectoryIsListedAgain() throws IOException {
+        final File localeDirectory = new File(mDirectory, "en_US");
+        localeDirectory.mkdirs();
+        final TestCatalog catalog = new TestCatalog(mCatalogFile);
+        assertEquals(0, catalog.listFiles(localeDirectory).length);
+        // The directory has been modified just now, so a change within the resolution of the
+        // modification time must not be missed.
+        final long lastModified = localeDirectory.lastModified();
+        createFile(localeDirectory, "main_en_us", 20);
+        localeDirectory.setLastModified(lastModified);
+        assertEquals(1, catalog.listFiles(localeDirectory).length);
+    }
+
+    @Test
+    public void testRenamedFileKeepsItsEntry() throws IOException {
+        final File stagingDirectory = new File(mDirectory, "staging");
+        final File cacheDirectory = new File(mDirectory, "en_US");
+        stagingDirectory.mkdirs();
+        cacheDirectory.mkdirs();
+        final TestCatalog catalog = new TestCatalog(mCatalogFile);
+        final File stagingFile = createFile(stagingDirectory, "en_US___main_en_us", 20);
+        catalog.onFileInstalled(stagingFile);
+        assertEquals(1, catalog.mReadCount);
+
+        final File cacheFile = new File(cacheDirectory, "main_en_us");
+        assertTrue(stagingFile.renameTo(cacheFile));
+        catalog.onFileRenamed(stagingFile, cacheFile);
+        assertEquals(20, catalog.getEntry(cacheFile).getContentVersion());
+        assertEquals(1, catalog.mReadCount);
+        assertFalse(stagingFile.exists());
+        assertNull(catalog.getEntry(stagingFile));
+    }
+}
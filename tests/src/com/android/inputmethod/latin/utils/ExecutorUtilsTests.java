@@ -17,6 +17,8 @@
 package com.android.inputmethod.latin.utils;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 import android.util.Log;
 
@@ -26,6 +28,10 @@ import androidx.test.runner.AndroidJUnit4;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -62,4 +68,75 @@ public class ExecutorUtilsTests {
 
         assertEquals(NUM_OF_TASKS, v.get());
     }
+
+    @Test
+    public void testCallAll() {
+        final ArrayList<Callable<Integer>> tasks = new ArrayList<>();
+        for (int i = 0; i < NUM_OF_TASKS; ++i) {
+            final int value = i;
+            tasks.add(new Callable<Integer>() {
+                @Override
+                public Integer call() {
+                    if (value == 1) {
+                        throw new RuntimeException("Test exception");
+                    }
+                    return value;
+                }
+            });
+        }
+        final List<Integer> results = ExecutorUtils.callAll(tasks, 4 /* threadCount */);
+        assertEquals(NUM_OF_TASKS, results.size());
+        for (int i = 0; i < NUM_OF_TASKS; ++i) {
+            if (i == 1) {
+                assertNull(results.get(i));
+            } else {
+                assertEquals(i, (int) results.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void testCallAllWaitsForRunningTasksWhenInterrupted() throws InterruptedException {
+        final CountDownLatch started = new CountDownLatch(1);
+        final AtomicInteger startedCount = new AtomicInteger(0);
+        final ArrayList<Callable<String>> tasks = new ArrayList<>();
+        for (int i = 0; i < NUM_OF_TASKS; ++i) {
+            tasks.add(new Callable<String>() {
+                @Override
+                public String call() {
+                    startedCount.incrementAndGet();
+                    started.countDown();
+                    try {
+                        Thread.sleep(DELAY_FOR_WAITING_TASKS_MILLISECONDS * 10);
+                        return "finished";
+                    } catch (InterruptedException e) {
+                        // The task still returns what the caller has to clean up.
+                        return "interrupted";
+                    }
+                }
+            });
+        }
+        final ArrayList<List<String>> results = new ArrayList<>();
+        final boolean[] isInterrupted = new boolean[1];
+        final Thread caller = new Thread() {
+            @Override
+            public void run() {
+                results.add(ExecutorUtils.callAll(tasks, 1 /* threadCount */));
+                isInterrupted[0] = Thread.currentThread().isInterrupted();
+            }
+        };
+        caller.start();
+        started.await();
+        caller.interrupt();
+        caller.join();
+
+        assertTrue(isInterrupted[0]);
+        assertEquals(1, startedCount.get());
+        final List<String> callerResults = results.get(0);
+        assertEquals(NUM_OF_TASKS, callerResults.size());
+        assertEquals("interrupted", callerResults.get(0));
+        for (int i = 1; i < NUM_OF_TASKS; ++i) {
+            assertNull(callerResults.get(i));
+        }
+    }
 }
@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.inputmethod.latin.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.fail;
+
+import androidx.test.filters.SmallTest;
+import androidx.test.runner.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPOutputStream;
+
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class FileTransformsTests {
+    private static final int BUFFER_SIZE = 1024;
+    private static final byte[] MAGIC_NUMBER =
+            new byte[] { (byte)0x9B, (byte)0xC1, (byte)0x3A, (byte)0xFE };
+    private static final byte[][] MAGIC_NUMBERS = new byte[][] { MAGIC_NUMBER };
+
+    private static byte[] createPayload() {
+        final byte[] payload = new byte[BUFFER_SIZE * 5 + 17];
+        System.arraycopy(MAGIC_NUMBER, 0, payload, 0, MAGIC_NUMBER.length);
+        for (int i = MAGIC_NUMBER.length; i < payload.length; i++) {
+            payload[i] = (byte)(i * 31);
+        }
+        return payload;
+    }
+
+    private static byte[] compress(final byte[] data) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final GZIPOutputStream gzipOut = new GZIPOutputStream(out);
+        gzipOut.write(data);
+        gzipOut.close();
+        return out.toByteArray();
+    }
+
+    private static byte[] decode(final byte[] container, final byte[][] magicNumbers)
+            throws IOException {
+        final InputStream in = FileTransforms.getDecodedStream(
+                new ByteArrayInputStream(container), BUFFER_SIZE, magicNumbers);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[BUFFER_SIZE];
+        for (int readBytes = in.read(buffer); readBytes >= 0; readBytes = in.read(buffer)) {
+            out.write(buffer, 0, readBytes);
+        }
+        in.close();
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testUncompressed() throws IOException {
+        final byte[] payload = createPayload();
+        assertArrayEquals(payload, decode(payload, MAGIC_NUMBERS));
+        assertArrayEquals(payload, decode(payload, null));
+    }
+
+    @Test
+    public void testCompressed() throws IOException {
+        final byte[] payload = createPayload();
+        assertArrayEquals(payload, decode(compress(payload), MAGIC_NUMBERS));
+        assertArrayEquals(payload, decode(compress(payload), null));
+    }
+
+    @Test
+    public void testCompressedTwice() throws IOException {
+        final byte[] payload = createPayload();
+        assertArrayEquals(payload, decode(compress(compress(payload)), MAGIC_NUMBERS));
+    }
+
+    @Test
+    public void testWrongMagicNumber() throws IOException {
+        final byte[] payload = createPayload();
+        payload[0] = 0;
+        try {
+            decode(compress(payload), MAGIC_NUMBERS);
+            fail("The payload has a wrong magic number");
+        } catch (IOException e) {
+            // Expected.
+        }
+        // Without magic numbers to check, any payload is accepted.
+        assertArrayEquals(payload, decode(compress(payload), null));
+    }
+
+    @Test
+    public void testTooManyCompressionLayers() throws IOException {
+        final byte[] payload = createPayload();
+        try {
+            decode(compress(compress(compress(payload))), MAGIC_NUMBERS);
+            fail("The container has too many compression layers");
+        } catch (IOException e) {
+            // Expected.
+        }
+    }
+
+    @Test
+    public void testShortPayload() throws IOException {
+        try {
+            decode(new byte[] { MAGIC_NUMBER[0] }, MAGIC_NUMBERS);
+            fail("The payload is shorter than the magic number");
+        } catch (IOException e) {
+            // Expected.
+        }
+    }
+}
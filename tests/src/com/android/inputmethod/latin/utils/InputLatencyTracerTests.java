@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.inputmethod.latin.utils;
+
+import static org.junit.Assert.assertEquals;
+
+import android.os.SystemClock;
+
+import androidx.test.filters.SmallTest;
+import androidx.test.runner.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class InputLatencyTracerTests {
+    private static void assertStageCounts(final InputLatencyTracer tracer,
+            final int... expectedCounts) {
+        for (int stage = 0; stage < expectedCounts.length; stage++) {
+            assertEquals("stage " + stage, expectedCounts[stage],
+                    tracer.getStageLatency(stage).getCount());
+        }
+    }
+
+    @Test
+    public void testKeyStrokeGoesThroughAllStages() {
+        final InputLatencyTracer tracer = new InputLatencyTracer();
+        final int sequenceNumber = tracer.onKeyDetected(SystemClock.uptimeMillis());
+        tracer.onStage(InputLatencyTracer.STAGE_INPUT_PROCESSED);
+        tracer.onStage(InputLatencyTracer.STAGE_SUGGESTIONS_REQUESTED, sequenceNumber);
+        tracer.onStage(InputLatencyTracer.STAGE_SUGGESTIONS_FETCHED, sequenceNumber);
+        assertEquals(0, tracer.getTotalLatency().getCount());
+        tracer.onStage(InputLatencyTracer.STAGE_SUGGESTION_STRIP_LAID_OUT, sequenceNumber);
+        assertStageCounts(tracer, 1, 1, 1, 1, 1);
+        assertEquals(1, tracer.getTotalLatency().getCount());
+
+        tracer.reset();
+        assertStageCounts(tracer, 0, 0, 0, 0, 0);
+        assertEquals(0, tracer.getTotalLatency().getCount());
+    }
+
+    @Test
+    public void testStagesAreRecordedOnceAndInOrder() {
+        final InputLatencyTracer tracer = new InputLatencyTracer();
+        final int sequenceNumber = tracer.onKeyDetected(SystemClock.uptimeMillis());
+        tracer.onStage(InputLatencyTracer.STAGE_SUGGESTIONS_REQUESTED, sequenceNumber);
+        tracer.onStage(InputLatencyTracer.STAGE_SUGGESTIONS_REQUESTED, sequenceNumber);
+        // The input processed stage can't come after the suggestions requested stage.
+        tracer.onStage(InputLatencyTracer.STAGE_INPUT_PROCESSED, sequenceNumber);
+        assertStageCounts(tracer, 1, 0, 1, 0, 0);
+    }
+
+    @Test
+    public void testOldKeyStrokesAreIgnored() {
+        final InputLatencyTracer tracer = new InputLatencyTracer();
+        final int firstSequenceNumber = tracer.onKeyDetected(SystemClock.uptimeMillis());
+        for (int i = 0; i < 100; i++) {
+            tracer.onKeyDetected(SystemClock.uptimeMillis());
+        }
+        tracer.onStage(InputLatencyTracer.STAGE_INPUT_PROCESSED, firstSequenceNumber);
+        assertStageCounts(tracer, 101, 0);
+        // Stages of key strokes that were never detected are ignored too.
+        tracer.onStage(InputLatencyTracer.STAGE_INPUT_PROCESSED, tracer.getSequenceNumber() + 1);
+        assertStageCounts(tracer, 101, 0);
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.inputmethod.latin.utils;
+
+import static org.junit.Assert.assertEquals;
+
+import androidx.test.filters.SmallTest;
+import androidx.test.runner.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class LatencyHistogramTests {
+    @Test
+    public void testEmpty() {
+        final LatencyHistogram histogram = new LatencyHistogram("test");
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentile(50));
+        assertEquals("test: count=0", histogram.toString());
+    }
+
+    @Test
+    public void testPercentiles() {
+        final LatencyHistogram histogram = new LatencyHistogram("test");
+        // 90 latencies of 10 ms, 9 of 100 ms and one of 1000 ms.
+        for (int i = 0; i < 90; i++) {
+            histogram.record(10);
+        }
+        for (int i = 0; i < 9; i++) {
+            histogram.record(100);
+        }
+        histogram.record(1000);
+        assertEquals(100, histogram.getCount());
+        // The percentiles are the upper bounds of the power-of-two buckets.
+        assertEquals(16, histogram.getPercentile(50));
+        assertEquals(16, histogram.getPercentile(90));
+        assertEquals(128, histogram.getPercentile(95));
+        assertEquals(128, histogram.getPercentile(99));
+        // The upper bound is capped at the maximum latency.
+        assertEquals(1000, histogram.getPercentile(100));
+        assertEquals("test: count=100 p50<=16 p95<=128 p99<=128 max=1000 ms"
+                + " [<16:90, <128:9, <1024:1]", histogram.toString());
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+    }
+
+    @Test
+    public void testOutOfRange() {
+        final LatencyHistogram histogram = new LatencyHistogram("test");
+        histogram.record(-5);
+        histogram.record(0);
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(1, histogram.getPercentile(50));
+        assertEquals(Long.MAX_VALUE, histogram.getPercentile(100));
+    }
+}
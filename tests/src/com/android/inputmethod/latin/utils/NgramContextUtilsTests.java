@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.inputmethod.latin.utils;
+
+import static org.junit.Assert.assertEquals;
+
+import android.content.res.Resources;
+
+import androidx.test.InstrumentationRegistry;
+import androidx.test.filters.SmallTest;
+import androidx.test.runner.AndroidJUnit4;
+
+import com.android.inputmethod.latin.NgramContext;
+import com.android.inputmethod.latin.NgramContext.WordInfo;
+import com.android.inputmethod.latin.define.DecoderSpecificConstants;
+import com.android.inputmethod.latin.settings.SpacingAndPunctuations;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class NgramContextUtilsTests {
+    private static final String ALPHABET = "abc d  \t\r\n.,'-\u000B\f\u00A0";
+    private static final int MAX_TEXT_LENGTH = 12;
+    private static final int TEXT_COUNT = 20000;
+
+    private SpacingAndPunctuations mSpacingAndPunctuations;
+
+    @Before
+    public void setUp() throws Exception {
+        final RunInLocale<SpacingAndPunctuations> job = new RunInLocale<SpacingAndPunctuations>() {
+            @Override
+            protected SpacingAndPunctuations job(final Resources res) {
+                return new SpacingAndPunctuations(res);
+            }
+        };
+        final Resources res = InstrumentationRegistry.getTargetContext().getResources();
+        mSpacingAndPunctuations = job.runInLocale(res, Locale.ENGLISH);
+    }
+
+    // The implementation of NgramContextUtils#getNgramContextFromNthPreviousWord that split the
+    // text with regular expressions.
+    private static final Pattern NEWLINE_REGEX = Pattern.compile("[\\r\\n]+");
+    private static final Pattern SPACE_REGEX = Pattern.compile("\\s+");
+
+    private static NgramContext getNgramContextBySplitting(final CharSequence prev,
+            final SpacingAndPunctuations spacingAndPunctuations, final int n) {
+        if (prev == null) return NgramContext.EMPTY_PREV_WORDS_INFO;
+        final String[] lines = NEWLINE_REGEX.split(prev);
+        if (lines.length == 0) {
+            return new NgramContext(WordInfo.BEGINNING_OF_SENTENCE_WORD_INFO);
+        }
+        final String[] w = SPACE_REGEX.split(lines[lines.length - 1]);
+        final WordInfo[] prevWordsInfo =
+                new WordInfo[DecoderSpecificConstants.MAX_PREV_WORD_COUNT_FOR_N_GRAM];
+        Arrays.fill(prevWordsInfo, WordInfo.EMPTY_WORD_INFO);
+        for (int i = 0; i < prevWordsInfo.length; i++) {
+            final int focusedWordIndex = w.length - n - i;
+            if ((focusedWordIndex + 1) >= 0 && (focusedWordIndex + 1) < w.length) {
+                final String wordFollowingTheNthPrevWord = w[focusedWordIndex + 1];
+                if (!wordFollowingTheNthPrevWord.isEmpty() && spacingAndPunctuations
+                        .isWordConnector(wordFollowingTheNthPrevWord.charAt(0))) {
+                    break;
+                }
+            }
+            if (focusedWordIndex < 0) {
+                prevWordsInfo[i] = WordInfo.BEGINNING_OF_SENTENCE_WORD_INFO;
+                break;
+            }
+            final String focusedWord = w[focusedWordIndex];
+            final int length = focusedWord.length();
+            if (length <= 0) {
+                prevWordsInfo[i] = WordInfo.BEGINNING_OF_SENTENCE_WORD_INFO;
+                break;
+            }
+            final char lastChar = focusedWord.charAt(length - 1);
+            if (spacingAndPunctuations.isSentenceTerminator(lastChar)) {
+                prevWordsInfo[i] = WordInfo.BEGINNING_OF_SENTENCE_WORD_INFO;
+                break;
+            }
+            if (spacingAndPunctuations.isWordSeparator(lastChar)
+                    || spacingAndPunctuations.isWordConnector(lastChar)) {
+                break;
+            }
+            prevWordsInfo[i] = new WordInfo(focusedWord);
+        }
+        return new NgramContext(prevWordsInfo);
+    }
+
+    private void assertSameAsSplitting(final CharSequence text) {
+        for (int n = 1; n <= DecoderSpecificConstants.MAX_PREV_WORD_COUNT_FOR_N_GRAM + 1; n++) {
+            assertEquals("n = " + n + " after >" + text + "<",
+                    getNgramContextBySplitting(text, mSpacingAndPunctuations, n),
+                    NgramContextUtils.getNgramContextFromNthPreviousWord(
+                            text, mSpacingAndPunctuations, n));
+        }
+    }
+
+    @Test
+    public void testLineAndSpaceBoundaries() {
+        assertSameAsSplitting(null);
+        assertSameAsSplitting("");
+        assertSameAsSplitting("\n");
+        assertSameAsSplitting("\r\n\n");
+        assertSameAsSplitting(" ");
+        assertSameAsSplitting(" \t ");
+        assertSameAsSplitting("abc\n");
+        assertSameAsSplitting("abc\n ");
+        assertSameAsSplitting("abc\ndef ghi\r\n\n");
+        assertSameAsSplitting(" abc");
+        assertSameAsSplitting("  abc def ");
+        assertSameAsSplitting("abc\u000Bdef\fghi");
+        assertSameAsSplitting("abc\u00A0def");
+        assertSameAsSplitting("abc 'def");
+        assertSameAsSplitting("abc def. ");
+        assertSameAsSplitting("abc. def");
+    }
+
+    @Test
+    public void testRandomTextsMatchSplitting() {
+        final Random random = new Random(1);
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < TEXT_COUNT; i++) {
+            sb.setLength(0);
+            final int length = random.nextInt(MAX_TEXT_LENGTH + 1);
+            for (int j = 0; j < length; j++) {
+                sb.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+            }
+            assertSameAsSplitting(sb.toString());
+        }
+    }
+}
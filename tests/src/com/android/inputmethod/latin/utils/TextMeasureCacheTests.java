@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.inputmethod.latin.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.graphics.Typeface;
+import android.text.SpannableString;
+
+import androidx.test.filters.SmallTest;
+import androidx.test.runner.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class TextMeasureCacheTests {
+    private static final int KIND = 0;
+    private static final int OTHER_KIND = 1;
+
+    @Test
+    public void testKey() {
+        final TextMeasureCache cache = new TextMeasureCache(16);
+        cache.put(KIND, Typeface.DEFAULT, 12.0f, 1.0f, "abc", 30.0f);
+        assertEquals(30.0f, cache.get(KIND, Typeface.DEFAULT, 12.0f, 1.0f, "abc"), 0.0f);
+        // Any text with the same characters matches.
+        assertEquals(30.0f, cache.get(KIND, Typeface.DEFAULT, 12.0f, 1.0f,
+                new SpannableString("abc")), 0.0f);
+        assertTrue(Float.isNaN(cache.get(OTHER_KIND, Typeface.DEFAULT, 12.0f, 1.0f, "abc")));
+        assertTrue(Float.isNaN(cache.get(KIND, Typeface.DEFAULT_BOLD, 12.0f, 1.0f, "abc")));
+        assertTrue(Float.isNaN(cache.get(KIND, null, 12.0f, 1.0f, "abc")));
+        assertTrue(Float.isNaN(cache.get(KIND, Typeface.DEFAULT, 12.5f, 1.0f, "abc")));
+        assertTrue(Float.isNaN(cache.get(KIND, Typeface.DEFAULT, 12.0f, 0.7f, "abc")));
+        assertTrue(Float.isNaN(cache.get(KIND, Typeface.DEFAULT, 12.0f, 1.0f, "abd")));
+        assertTrue(Float.isNaN(cache.get(KIND, Typeface.DEFAULT, 12.0f, 1.0f, "ab")));
+
+        cache.put(KIND, Typeface.DEFAULT, 12.0f, 1.0f, "abc", 31.0f);
+        assertEquals(31.0f, cache.get(KIND, Typeface.DEFAULT, 12.0f, 1.0f, "abc"), 0.0f);
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedIsEvicted() {
+        final int capacity = 8;
+        final TextMeasureCache cache = new TextMeasureCache(capacity);
+        for (int i = 0; i < capacity; i++) {
+            cache.put(KIND, Typeface.DEFAULT, 12.0f, 1.0f, "text" + i, i);
+        }
+        // Use the oldest entry, so that the second one is evicted first.
+        assertEquals(0.0f, cache.get(KIND, Typeface.DEFAULT, 12.0f, 1.0f, "text0"), 0.0f);
+        cache.put(KIND, Typeface.DEFAULT, 12.0f, 1.0f, "text" + capacity, capacity);
+        assertEquals(capacity, cache.size());
+        assertTrue(Float.isNaN(cache.get(KIND, Typeface.DEFAULT, 12.0f, 1.0f, "text1")));
+        for (int i = 0; i <= capacity; i++) {
+            if (i != 1) {
+                assertEquals(i, cache.get(KIND, Typeface.DEFAULT, 12.0f, 1.0f, "text" + i),
+                        0.0f);
+            }
+        }
+
+        // Many more entries than the capacity keep the most recent ones.
+        for (int i = 0; i < capacity * 100; i++) {
+            cache.put(KIND, Typeface.DEFAULT, 12.0f, 1.0f, "more" + i, i);
+        }
+        assertEquals(capacity, cache.size());
+        for (int i = capacity * 99; i < capacity * 100; i++) {
+            assertEquals(i, cache.get(KIND, Typeface.DEFAULT, 12.0f, 1.0f, "more" + i), 0.0f);
+        }
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertTrue(Float.isNaN(cache.get(KIND, Typeface.DEFAULT, 12.0f, 1.0f, "more0")));
+    }
+}
@@ -34,12 +34,18 @@ public class MoreKeysResources {
 
     private static final String JAVA_TEMPLATE = "KeyboardTextsTable.tmpl";
     private static final String MARK_NAMES = "@NAMES@";
+    private static final String MARK_TEXT_IDS = "@TEXT_IDS@";
     private static final String MARK_DEFAULT_TEXTS = "@DEFAULT_TEXTS@";
     private static final String MARK_TEXTS = "@TEXTS@";
     private static final String TEXTS_ARRAY_NAME_PREFIX = "TEXTS_";
     private static final String MARK_LOCALES_AND_TEXTS = "@LOCALES_AND_TEXTS@";
     private static final String EMPTY_STRING_VAR = "EMPTY";
 
+    // These must be consistent with {@link KeyboardTextsSet}.
+    private static final String PREFIX_TEXT = "!text/";
+    private static final char BACKSLASH = '\\';
+    private static final int MAX_REFERENCE_INDIRECTION = 10;
+
     private final JarFile mJar;
     // String resources maps sorted by its language. The language is determined from the jar entry
     // name by calling {@link JarUtils#getLocaleFromEntryName(String)}.
@@ -140,6 +146,8 @@ public class MoreKeysResources {
         while ((line = in.readLine()) != null) {
             if (line.contains(MARK_NAMES)) {
                 dumpNames(out);
+            } else if (line.contains(MARK_TEXT_IDS)) {
+                dumpTextIds(out);
             } else if (line.contains(MARK_DEFAULT_TEXTS)) {
                 dumpDefaultTexts(out);
             } else if (line.contains(MARK_TEXTS)) {
@@ -161,6 +169,13 @@ public class MoreKeysResources {
         }
     }
 
+    private void dumpTextIds(final PrintStream out) {
+        final int namesCount = mSortedResourceNames.length;
+        for (int index = 0; index < namesCount; index++) {
+            out.format("        case \"%s\": return %d;\n", mSortedResourceNames[index], index);
+        }
+    }
+
     private void dumpDefaultTexts(final PrintStream out) {
         final int outputArraySize = dumpTextsInternal(out, mDefaultResourceMap);
         mDefaultResourceMap.setOutputArraySize(outputArraySize);
@@ -207,12 +222,13 @@ public class MoreKeysResources {
         for (int index = 0; index < namesCount; index++) {
             final String name = mSortedResourceNames[index];
             final StringResource res = resMap.get(name);
-            if (res != null) {
+            final String value = getValueToDump(resMap, name);
+            if (value != null) {
                 // TODO: Check whether the resource value is equal to the default.
-                if (res.mComment != null) {
+                if (res != null && res.mComment != null) {
                     formatter.outCommentLines(addPrefix("        // ", res. mComment));
                 }
-                final String escaped = escapeNonAscii(res.mValue);
+                final String escaped = escapeNonAscii(value);
                 if (escaped.length() == 0) {
                     formatter.outElement(EMPTY_STRING_VAR + ",");
                 } else {
@@ -231,6 +247,122 @@ public class MoreKeysResources {
         return outputArraySize;
     }
 
+    // Returns the value of the text <code>name</code> that should be dumped into the texts array of
+    // <code>resMap</code> as a Java string literal content, or null if the text can be looked up
+    // from the default texts array. All "!text/" references are expanded here so that
+    // {@link KeyboardTextsSet#resolveTextReference(String)} needn't resolve them at run time.
+    // A text that is not defined in <code>resMap</code> still has to be dumped when its default
+    // value refers to a text that <code>resMap</code> overrides.
+    private String getValueToDump(final StringResourceMap resMap, final String name) {
+        final StringResource res = resMap.get(name);
+        final String rawValue = (res != null) ? res.mValue : mDefaultResourceMap.get(name).mValue;
+        if (!rawValue.contains(PREFIX_TEXT)) {
+            return (res != null) ? rawValue : null;
+        }
+        final String flattened = resolveText(resMap, name, 0);
+        if (res == null && flattened.equals(resolveText(mDefaultResourceMap, name, 0))) {
+            return null;
+        }
+        return escapeJavaString(flattened);
+    }
+
+    // Returns the text <code>name</code> of <code>resMap</code>, falling back to the default, with
+    // all "!text/" references expanded. The returned text is unescaped; in the same form as the
+    // text {@link KeyboardTextsTable#getText(int,String[])} returns at run time.
+    private String resolveText(final StringResourceMap resMap, final String name,
+            final int level) {
+        if (level >= MAX_REFERENCE_INDIRECTION) {
+            throw new RuntimeException("Too many " + PREFIX_TEXT + " reference indirection: "
+                    + name + " in " + resMap.mLocale);
+        }
+        StringResource res = resMap.get(name);
+        if (res == null) {
+            res = mDefaultResourceMap.get(name);
+        }
+        if (res == null) {
+            throw new RuntimeException("Unknown text name=" + name + " in " + resMap.mLocale);
+        }
+        final String text = unescapeJavaString(res.mValue);
+        if (!text.contains(PREFIX_TEXT)) {
+            return text;
+        }
+        // This must be consistent with {@link KeyboardTextsSet#resolveTextReference(String)}.
+        final StringBuilder sb = new StringBuilder();
+        final int size = text.length();
+        for (int pos = 0; pos < size; pos++) {
+            final char c = text.charAt(pos);
+            if (text.startsWith(PREFIX_TEXT, pos)) {
+                final int end = searchTextNameEnd(text, pos + PREFIX_TEXT.length());
+                final String refName = text.substring(pos + PREFIX_TEXT.length(), end);
+                sb.append(resolveText(resMap, refName, level + 1));
+                pos = end - 1;
+            } else if (c == BACKSLASH) {
+                // Append both escape character and escaped character.
+                sb.append(text.substring(pos, Math.min(pos + 2, size)));
+                pos++;
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static int searchTextNameEnd(final String text, final int start) {
+        final int size = text.length();
+        for (int pos = start; pos < size; pos++) {
+            final char c = text.charAt(pos);
+            // Label name should be consisted of [a-zA-Z_0-9].
+            if ((c >= 'a' && c <= 'z') || c == '_' || (c >= '0' && c <= '9')) {
+                continue;
+            }
+            return pos;
+        }
+        return size;
+    }
+
+    // The string resource values are written in Java string literal form.
+    private static String unescapeJavaString(final String text) {
+        final StringBuilder sb = new StringBuilder();
+        final int length = text.length();
+        for (int i = 0; i < length; i++) {
+            final char c = text.charAt(i);
+            if (c != BACKSLASH || i + 1 >= length) {
+                sb.append(c);
+                continue;
+            }
+            final char escaped = text.charAt(++i);
+            switch (escaped) {
+            case 'n':
+                sb.append('\n');
+                break;
+            case 't':
+                sb.append('\t');
+                break;
+            case 'u':
+                sb.append((char)Integer.parseInt(text.substring(i + 1, i + 5), 16));
+                i += 4;
+                break;
+            default:
+                sb.append(escaped);
+                break;
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String escapeJavaString(final String text) {
+        final StringBuilder sb = new StringBuilder();
+        final int length = text.length();
+        for (int i = 0; i < length; i++) {
+            final char c = text.charAt(i);
+            if (c == BACKSLASH || c == '"') {
+                sb.append(BACKSLASH);
+            }
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
     private static String addPrefix(final String prefix, final String lines) {
         final StringBuilder sb = new StringBuilder();
         for (final String line : lines.split("\n")) {